@@ -55,6 +55,7 @@ import android.widget.Toast;
 import androidx.preference.Preference;
 import androidx.preference.SwitchPreference;
 
+import com.android.settings.network.CarrierConfigCache;
 import com.android.settings.network.ProxySubscriptionManager;
 import com.android.settings.network.SubscriptionUtil;
 
@@ -731,8 +732,8 @@ public class IccLockSettings extends SettingsPreferenceFragment
 
     private boolean isSubscriptionVisible(CarrierConfigManager carrierConfigManager,
             SubscriptionInfo subInfo) {
-        final PersistableBundle bundle = carrierConfigManager
-                .getConfigForSubId(subInfo.getSubscriptionId());
+        final PersistableBundle bundle = CarrierConfigCache.getInstance().getConfigForSubId(
+                getContext(), carrierConfigManager, subInfo.getSubscriptionId());
         if (bundle == null) {
             return false;
         }
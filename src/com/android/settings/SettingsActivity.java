@@ -54,7 +54,9 @@ import com.android.internal.util.ArrayUtils;
 import com.android.settings.Settings.WifiSettingsActivity;
 import com.android.settings.applications.manageapplications.ManageApplications;
 import com.android.settings.core.OnActivityResultListener;
+import com.android.settings.core.PreferenceMetadataIndex;
 import com.android.settings.core.SettingsBaseActivity;
+import com.android.settings.core.StaticAvailabilityCache;
 import com.android.settings.core.SubSettingLauncher;
 import com.android.settings.core.gateway.SettingsGateway;
 import com.android.settings.dashboard.DashboardFeatureProvider;
@@ -236,6 +238,10 @@ public class SettingsActivity extends SettingsBaseActivity
         final FeatureFactory factory = FeatureFactory.getFactory(this);
 
         mDashboardFeatureProvider = factory.getDashboardFeatureProvider(this);
+        // Read cached controller availability and preference metadata before the fragment's
+        // controllers ask for them.
+        StaticAvailabilityCache.preload(this);
+        PreferenceMetadataIndex.preload(this);
 
         // Should happen before any call to getIntent()
         getMetaData();
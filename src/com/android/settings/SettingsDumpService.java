@@ -35,7 +35,10 @@ import android.telephony.TelephonyManager;
 import androidx.annotation.VisibleForTesting;
 
 import com.android.settings.applications.ProcStatsData;
+import com.android.settings.core.instrumentation.SettingsIntelligenceLogWriter;
 import com.android.settings.fuelgauge.batterytip.AnomalyConfigJobService;
+import com.android.settings.network.CarrierConfigCache;
+import com.android.settings.slices.SliceDataCache;
 import com.android.settingslib.net.DataUsageController;
 
 import org.json.JSONArray;
@@ -60,6 +63,12 @@ public class SettingsDumpService extends Service {
     @VisibleForTesting
     static final String KEY_ANOMALY_DETECTION = "anomaly_detection";
     @VisibleForTesting
+    static final String KEY_SLICE_DATA_CACHE = "slice_data_cache";
+    @VisibleForTesting
+    static final String KEY_CARRIER_CONFIG_CACHE = "carrier_config_cache";
+    @VisibleForTesting
+    static final String KEY_INTELLIGENCE_LOG_WRITER = "intelligence_log_writer";
+    @VisibleForTesting
     static final Intent BROWSER_INTENT =
             new Intent("android.intent.action.VIEW", Uri.parse("http://"));
 
@@ -79,6 +88,9 @@ public class SettingsDumpService extends Service {
             dump.put(KEY_MEMORY, dumpMemory());
             dump.put(KEY_DEFAULT_BROWSER_APP, dumpDefaultBrowser());
             dump.put(KEY_ANOMALY_DETECTION, dumpAnomalyDetection());
+            dump.put(KEY_SLICE_DATA_CACHE, SliceDataCache.getInstance().dump());
+            dump.put(KEY_CARRIER_CONFIG_CACHE, CarrierConfigCache.getInstance().dump());
+            dump.put(KEY_INTELLIGENCE_LOG_WRITER, SettingsIntelligenceLogWriter.dump());
         } catch (Exception e) {
             e.printStackTrace();
         }
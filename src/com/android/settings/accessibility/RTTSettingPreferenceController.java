@@ -36,6 +36,7 @@ import androidx.preference.PreferenceScreen;
 import com.android.settings.R;
 import com.android.settings.accessibility.rtt.TelecomUtil;
 import com.android.settings.core.BasePreferenceController;
+import com.android.settings.network.CarrierConfigCache;
 
 import java.util.List;
 
@@ -108,7 +109,8 @@ public class RTTSettingPreferenceController extends BasePreferenceController {
             Log.d(TAG, "rtt calling supported by telecom:: " + isRttCallingSupported);
 
             if (isRttCallingSupported) {
-                PersistableBundle carrierConfig = mCarrierConfigManager.getConfigForSubId(subId);
+                PersistableBundle carrierConfig = CarrierConfigCache.getInstance()
+                        .getConfigForSubId(mContext, mCarrierConfigManager, subId);
                 // If IGNORE_RTT_MODE_SETTING_BOOL=true, RTT visibility is not supported because
                 // this means we must use the legacy Telecom setting, which does not support RTT
                 // visibility.
@@ -149,7 +151,8 @@ public class RTTSettingPreferenceController extends BasePreferenceController {
 
         // If an invalid subId is used, this bundle will contain default values.
         final int subId = SubscriptionManager.getDefaultVoiceSubscriptionId();
-        final PersistableBundle bundle = mCarrierConfigManager.getConfigForSubId(subId);
+        final PersistableBundle bundle = CarrierConfigCache.getInstance()
+                .getConfigForSubId(mContext, mCarrierConfigManager, subId);
 
         return bundle != null
                 ? bundle.getBoolean(key)
@@ -90,10 +90,8 @@ public class AppStateAlarmsAndRemindersBridge extends AppStateBaseBridge {
     @Override
     protected void loadAllExtraInfo() {
         final List<AppEntry> allApps = mAppSession.getAllApps();
-        for (int i = 0; i < allApps.size(); i++) {
-            final AppEntry currentEntry = allApps.get(i);
-            updateExtraInfo(currentEntry, currentEntry.info.packageName, currentEntry.info.uid);
-        }
+        loadExtraInfoInParallel(allApps,
+                app -> createPermissionState(app.info.packageName, app.info.uid));
     }
 
     public static final AppFilter FILTER_CLOCK_APPS = new AppFilter() {
@@ -18,24 +18,38 @@ package com.android.settings.applications;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
+import android.util.ArrayMap;
+import android.util.ArraySet;
+import android.util.Log;
+import android.util.SparseArray;
+
+import androidx.annotation.VisibleForTesting;
 
 import com.android.settingslib.applications.ApplicationsState;
 import com.android.settingslib.applications.ApplicationsState.AppEntry;
 import com.android.settingslib.applications.ApplicationsState.Session;
 
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Common base class for bridging information to ApplicationsState.
  */
 public abstract class AppStateBaseBridge implements ApplicationsState.Callbacks {
 
+    private static final String TAG = "AppStateBaseBridge";
+
     protected final ApplicationsState mAppState;
     protected final Session mAppSession;
     protected final Callback mCallback;
     protected final BackgroundHandler mHandler;
     protected final MainHandler mMainHandler;
 
+    // Apps of the last full load by uid and package name, only accessed from mHandler.
+    private final SparseArray<ArrayMap<String, AppEntry>> mAppIndex = new SparseArray<>();
+    // Packages by uid not found even after indexing the apps again, until the next full load.
+    private final SparseArray<ArraySet<String>> mMissingApps = new SparseArray<>();
+
     public AppStateBaseBridge(ApplicationsState appState, Callback callback) {
         mAppState = appState;
         mAppSession = mAppState != null ? mAppState.newSession(this) : null;
@@ -109,6 +123,83 @@ public abstract class AppStateBaseBridge implements ApplicationsState.Callbacks
 
     protected abstract void updateExtraInfo(AppEntry app, String pkg, int uid);
 
+    /**
+     * Computes the extra info of a single app for {@link #loadExtraInfoInParallel}. Called
+     * concurrently from several background threads, so it must not touch unsynchronized state.
+     */
+    protected interface ExtraInfoLoader {
+        Object loadExtraInfo(AppEntry app);
+    }
+
+    /**
+     * Computes the extra info of every app of {@code apps} with {@code loader} on a bounded pool
+     * of background threads, then assigns the results to {@link AppEntry#extraInfo} in one pass
+     * once every app is done, so the UI never sees a partially loaded list.
+     */
+    protected void loadExtraInfoInParallel(List<AppEntry> apps, ExtraInfoLoader loader) {
+        final Object[] extraInfos;
+        try {
+            extraInfos = AppStateBridgeExecutor.load(apps, loader);
+        } catch (InterruptedException e) {
+            Log.w(TAG, "Interrupted while loading extra info", e);
+            Thread.currentThread().interrupt();
+            return;
+        }
+        for (int i = 0; i < extraInfos.length; i++) {
+            apps.get(i).extraInfo = extraInfos[i];
+        }
+    }
+
+    @VisibleForTesting
+    void indexApps(List<AppEntry> apps) {
+        mMissingApps.clear();
+        rebuildAppIndex(apps);
+    }
+
+    private void rebuildAppIndex(List<AppEntry> apps) {
+        mAppIndex.clear();
+        if (apps == null) {
+            return;
+        }
+        for (AppEntry app : apps) {
+            ArrayMap<String, AppEntry> packages = mAppIndex.get(app.info.uid);
+            if (packages == null) {
+                packages = new ArrayMap<>(1);
+                mAppIndex.put(app.info.uid, packages);
+            }
+            packages.put(app.info.packageName, app);
+        }
+    }
+
+    @VisibleForTesting
+    AppEntry findApp(String pkg, int uid) {
+        AppEntry app = getIndexedApp(pkg, uid);
+        if (app != null) {
+            return app;
+        }
+        ArraySet<String> missing = mMissingApps.get(uid);
+        if (missing != null && missing.contains(pkg)) {
+            return null;
+        }
+        // The package may have been added since the last full load.
+        rebuildAppIndex(mAppSession.getAllApps());
+        app = getIndexedApp(pkg, uid);
+        if (app == null) {
+            // Don't index every app again for this package until the package list changes.
+            if (missing == null) {
+                missing = new ArraySet<>(1);
+                mMissingApps.put(uid, missing);
+            }
+            missing.add(pkg);
+        }
+        return app;
+    }
+
+    private AppEntry getIndexedApp(String pkg, int uid) {
+        final ArrayMap<String, AppEntry> packages = mAppIndex.get(uid);
+        return packages != null ? packages.get(pkg) : null;
+    }
+
     private class MainHandler extends Handler {
         private static final int MSG_INFO_UPDATED = 1;
 
@@ -139,18 +230,15 @@ public abstract class AppStateBaseBridge implements ApplicationsState.Callbacks
             switch (msg.what) {
                 case MSG_LOAD_ALL:
                     loadAllExtraInfo();
+                    indexApps(mAppSession.getAllApps());
                     mMainHandler.sendEmptyMessage(MainHandler.MSG_INFO_UPDATED);
                     break;
                 case MSG_FORCE_LOAD_PKG:
-                    ArrayList<AppEntry> apps = mAppSession.getAllApps();
-                    final int N = apps.size();
                     String pkg = (String) msg.obj;
                     int uid = msg.arg1;
-                    for (int i = 0; i < N; i++) {
-                        AppEntry app = apps.get(i);
-                        if (app.info.uid == uid && pkg.equals(app.info.packageName)) {
-                            updateExtraInfo(app, pkg, uid);
-                        }
+                    AppEntry app = findApp(pkg, uid);
+                    if (app != null) {
+                        updateExtraInfo(app, pkg, uid);
                     }
                     mMainHandler.sendEmptyMessage(MainHandler.MSG_INFO_UPDATED);
                     break;
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.settings.applications;
+
+import android.os.Process;
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settings.applications.AppStateBaseBridge.ExtraInfoLoader;
+import com.android.settingslib.applications.ApplicationsState.AppEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Computes the extra info of a list of apps for {@link AppStateBaseBridge} subclasses by
+ * partitioning the list across a small pool of background threads shared by all bridges.
+ */
+final class AppStateBridgeExecutor {
+
+    private static final String TAG = "AppStateBridgeExecutor";
+
+    private static final int MAX_POOL_SIZE = 4;
+    private static final long KEEP_ALIVE_SECONDS = 30L;
+    // Below this many apps per partition the per-task overhead outweighs the binder calls saved.
+    @VisibleForTesting
+    static final int MIN_PARTITION_SIZE = 32;
+
+    private static ExecutorService sExecutor;
+
+    private AppStateBridgeExecutor() {
+    }
+
+    /**
+     * Returns the extra info computed by {@code loader} for each app of {@code apps}, in the same
+     * order. Blocks until every partition is done.
+     *
+     * @throws InterruptedException if the calling thread was interrupted while waiting
+     */
+    static Object[] load(List<AppEntry> apps, ExtraInfoLoader loader)
+            throws InterruptedException {
+        final int appCount = apps.size();
+        final Object[] results = new Object[appCount];
+        final int partitionCount = Math.min(getPoolSize(), appCount / MIN_PARTITION_SIZE);
+        if (partitionCount <= 1) {
+            loadPartition(apps, loader, results, 0, appCount);
+            return results;
+        }
+
+        final int partitionSize = (appCount + partitionCount - 1) / partitionCount;
+        final List<Future<?>> futures = new ArrayList<>(partitionCount);
+        final ExecutorService executor = getExecutor();
+        // The calling thread loads the first partition itself.
+        for (int start = partitionSize; start < appCount; start += partitionSize) {
+            final int from = start;
+            final int to = Math.min(start + partitionSize, appCount);
+            futures.add(executor.submit(() -> loadPartition(apps, loader, results, from, to)));
+        }
+        try {
+            loadPartition(apps, loader, results, 0, partitionSize);
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            for (Future<?> future : futures) {
+                future.cancel(true /* mayInterruptIfRunning */);
+            }
+        }
+        return results;
+    }
+
+    private static void loadPartition(List<AppEntry> apps, ExtraInfoLoader loader,
+            Object[] results, int from, int to) {
+        for (int i = from; i < to; i++) {
+            results[i] = loader.loadExtraInfo(apps.get(i));
+        }
+    }
+
+    private static int getPoolSize() {
+        return Math.min(MAX_POOL_SIZE, Runtime.getRuntime().availableProcessors());
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (sExecutor == null) {
+            final int poolSize = getPoolSize();
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize,
+                    KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                    new BridgeThreadFactory());
+            executor.allowCoreThreadTimeOut(true);
+            sExecutor = executor;
+            Log.d(TAG, "Created pool of " + poolSize + " threads");
+        }
+        return sExecutor;
+    }
+
+    private static class BridgeThreadFactory implements ThreadFactory {
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, "AppStateBridge-" + mCount.incrementAndGet());
+        }
+    }
+}
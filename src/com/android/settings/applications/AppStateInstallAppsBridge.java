@@ -57,21 +57,20 @@ public class AppStateInstallAppsBridge extends AppStateBaseBridge {
 
     @Override
     protected void loadAllExtraInfo() {
-        // TODO: consider making this a batch operation with a single binder call
+        // The requesting packages are fetched once for all apps, only the app op is per app.
+        final String[] requesterPackages =
+                getAppOpPermissionPackages(Manifest.permission.REQUEST_INSTALL_PACKAGES);
         final List<AppEntry> allApps = mAppSession.getAllApps();
-        for (int i = 0; i < allApps.size(); i++) {
-            AppEntry currentEntry = allApps.get(i);
-            updateExtraInfo(currentEntry, currentEntry.info.packageName, currentEntry.info.uid);
-        }
+        loadExtraInfoInParallel(allApps, app -> createInstallAppsStateFor(
+                app.info.packageName, app.info.uid, requesterPackages));
     }
 
-    private boolean hasRequestedAppOpPermission(String permission, String packageName) {
+    private String[] getAppOpPermissionPackages(String permission) {
         try {
-            String[] packages = mIpm.getAppOpPermissionPackages(permission);
-            return ArrayUtils.contains(packages, packageName);
+            return mIpm.getAppOpPermissionPackages(permission);
         } catch (RemoteException exc) {
             Log.e(TAG, "PackageManager dead. Cannot get permission info");
-            return false;
+            return null;
         }
     }
 
@@ -90,9 +89,14 @@ public class AppStateInstallAppsBridge extends AppStateBaseBridge {
     }
 
     public InstallAppsState createInstallAppsStateFor(String packageName, int uid) {
+        return createInstallAppsStateFor(packageName, uid,
+                getAppOpPermissionPackages(Manifest.permission.REQUEST_INSTALL_PACKAGES));
+    }
+
+    private InstallAppsState createInstallAppsStateFor(String packageName, int uid,
+            String[] requesterPackages) {
         final InstallAppsState appState = new InstallAppsState();
-        appState.permissionRequested = hasRequestedAppOpPermission(
-                Manifest.permission.REQUEST_INSTALL_PACKAGES, packageName);
+        appState.permissionRequested = ArrayUtils.contains(requesterPackages, packageName);
         appState.appOpMode = getAppOpMode(AppOpsManager.OP_REQUEST_INSTALL_PACKAGES, uid,
                 packageName);
         return appState;
@@ -22,6 +22,7 @@ import android.content.Context;
 
 import com.android.settingslib.applications.ApplicationsState;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -52,19 +53,34 @@ public class AppStateManageExternalStorageBridge extends AppStateAppOpsBridge {
     protected void loadAllExtraInfo() {
         super.loadAllExtraInfo();
         List<ApplicationsState.AppEntry> apps = mAppSession.getAllApps();
+        List<ApplicationsState.AppEntry> requestingApps = new ArrayList<>();
         for (ApplicationsState.AppEntry app : apps) {
             if (app.extraInfo instanceof PermissionState) {
-                ((PermissionState) app.extraInfo).appOpMode =  mAppOpsManager.unsafeCheckOpNoThrow(
-                        APP_OP_STR, app.info.uid, app.info.packageName);
+                requestingApps.add(app);
             }
         }
+        loadExtraInfoInParallel(requestingApps, app -> withAppOpMode(
+                (PermissionState) app.extraInfo, mAppOpsManager.unsafeCheckOpNoThrow(
+                        APP_OP_STR, app.info.uid, app.info.packageName)));
     }
 
     @Override
     public PermissionState getPermissionInfo(String pkg, int uid) {
-        PermissionState ps = super.getPermissionInfo(pkg, uid);
-        ps.appOpMode = mAppOpsManager.unsafeCheckOpNoThrow(APP_OP_STR, uid, pkg);
-        return ps;
+        return withAppOpMode(super.getPermissionInfo(pkg, uid),
+                mAppOpsManager.unsafeCheckOpNoThrow(APP_OP_STR, uid, pkg));
+    }
+
+    /**
+     * Returns a copy of {@code state} with {@code appOpMode}, leaving {@code state} untouched so
+     * a state the UI may already be reading is never modified from a loader thread.
+     */
+    private static PermissionState withAppOpMode(PermissionState state, int appOpMode) {
+        final PermissionState copy = new PermissionState(state.packageName, state.userHandle);
+        copy.packageInfo = state.packageInfo;
+        copy.staticPermissionGranted = state.staticPermissionGranted;
+        copy.permissionDeclared = state.permissionDeclared;
+        copy.appOpMode = appOpMode;
+        return copy;
     }
 
     /**
@@ -24,6 +24,7 @@ import com.android.settingslib.applications.ApplicationsState;
 import com.android.settingslib.applications.ApplicationsState.AppEntry;
 import com.android.settingslib.applications.ApplicationsState.AppFilter;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -53,13 +54,16 @@ public class AppStateMediaManagementAppsBridge extends AppStateAppOpsBridge {
     protected void loadAllExtraInfo() {
         super.loadAllExtraInfo();
         final List<AppEntry> allApps = mAppSession.getAllApps();
+        final List<AppEntry> requestingApps = new ArrayList<>();
         final int appCount = allApps.size();
         for (int i = 0; i < appCount; i++) {
             final AppEntry appEntry = allApps.get(i);
             if (appEntry.extraInfo instanceof PermissionState) {
-                updateExtraInfo(appEntry, appEntry.info.packageName, appEntry.info.uid);
+                requestingApps.add(appEntry);
             }
         }
+        loadExtraInfoInParallel(requestingApps,
+                app -> createPermissionState(app.info.packageName, app.info.uid));
     }
 
     /**
@@ -18,6 +18,7 @@ package com.android.settings.applications;
 import android.app.usage.IUsageStatsManager;
 import android.app.usage.UsageEvents;
 import android.content.Context;
+import android.content.pm.ApplicationInfo;
 import android.os.RemoteException;
 import android.os.UserHandle;
 import android.os.UserManager;
@@ -25,6 +26,7 @@ import android.text.format.DateUtils;
 import android.util.ArrayMap;
 import android.util.Log;
 import android.util.Slog;
+import android.util.SparseArray;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.CompoundButton;
@@ -42,6 +44,7 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Connects the info provided by ApplicationsState and UsageStatsManager.
@@ -55,6 +58,7 @@ public class AppStateNotificationBridge extends AppStateBaseBridge {
     private IUsageStatsManager mUsageStatsManager;
     protected List<Integer> mUserIds;
     private NotificationBackend mBackend;
+    private final SparseArray<NotificationSentStatsStore> mStatsStores = new SparseArray<>();
     private static final int DAYS_TO_CHECK = 7;
 
     public AppStateNotificationBridge(Context context, ApplicationsState appState,
@@ -83,14 +87,34 @@ public class AppStateNotificationBridge extends AppStateBaseBridge {
         }
 
         final Map<String, NotificationsSentState> map = getAggregatedUsageEvents();
+        // System apps and block states are resolved once per user rather than once per app.
+        final SparseArray<List<ApplicationInfo>> userApps = new SparseArray<>();
         for (AppEntry entry : apps) {
-            NotificationsSentState stats =
-                    map.get(getKey(UserHandle.getUserId(entry.info.uid), entry.info.packageName));
+            final int userId = UserHandle.getUserId(entry.info.uid);
+            List<ApplicationInfo> infos = userApps.get(userId);
+            if (infos == null) {
+                infos = new ArrayList<>();
+                userApps.put(userId, infos);
+            }
+            infos.add(entry.info);
+        }
+        final SparseArray<Set<String>> systemApps = new SparseArray<>(userApps.size());
+        final SparseArray<Set<String>> bannedApps = new SparseArray<>(userApps.size());
+        for (int i = 0; i < userApps.size(); i++) {
+            final int userId = userApps.keyAt(i);
+            systemApps.put(userId, mBackend.getSystemAppPackages(mContext, userId));
+            bannedApps.put(userId, mBackend.getBannedPackages(userId, userApps.valueAt(i)));
+        }
+        for (AppEntry entry : apps) {
+            final int userId = UserHandle.getUserId(entry.info.uid);
+            NotificationsSentState stats = map.get(getKey(userId, entry.info.packageName));
             if (stats == null) {
                 stats = new NotificationsSentState();
             }
             calculateAvgSentCounts(stats);
-            addBlockStatus(entry, stats);
+            stats.blocked = bannedApps.get(userId).contains(entry.info.packageName);
+            stats.systemApp = systemApps.get(userId).contains(entry.info.packageName);
+            stats.blockable = !stats.systemApp || (stats.systemApp && stats.blocked);
             entry.extraInfo = stats;
         }
     }
@@ -141,12 +165,18 @@ public class AppStateNotificationBridge extends AppStateBaseBridge {
         }
     }
 
+    /**
+     * Returns the notifications sent by each package of each user over the last
+     * {@link #DAYS_TO_CHECK} days. Only the usage events received since the previous call are
+     * replayed, older ones come from the persisted {@link NotificationSentStatsStore}.
+     */
     protected Map<String, NotificationsSentState> getAggregatedUsageEvents() {
         ArrayMap<String, NotificationsSentState> aggregatedStats = new ArrayMap<>();
 
         long now = System.currentTimeMillis();
-        long startTime = now - (DateUtils.DAY_IN_MILLIS * DAYS_TO_CHECK);
         for (int userId : mUserIds) {
+            final NotificationSentStatsStore store = getStatsStore(userId);
+            final long startTime = store.prepareUpdate(now);
             UsageEvents events = null;
             try {
                 events = mUsageStatsManager.queryEventsForUser(
@@ -158,26 +188,26 @@ public class AppStateNotificationBridge extends AppStateBaseBridge {
                 UsageEvents.Event event = new UsageEvents.Event();
                 while (events.hasNextEvent()) {
                     events.getNextEvent(event);
-                    NotificationsSentState stats =
-                            aggregatedStats.get(getKey(userId, event.getPackageName()));
-                    if (stats == null) {
-                        stats = new NotificationsSentState();
-                        aggregatedStats.put(getKey(userId, event.getPackageName()), stats);
-                    }
-
                     if (event.getEventType() == UsageEvents.Event.NOTIFICATION_INTERRUPTION) {
-                        if (event.getTimeStamp() > stats.lastSent) {
-                            stats.lastSent = event.getTimeStamp();
-                        }
-                        stats.sentCount++;
+                        store.recordNotificationSent(event.getPackageName(), event.getTimeStamp());
                     }
-
                 }
+                store.commit(now);
             }
+            store.collect(userId, aggregatedStats);
         }
         return aggregatedStats;
     }
 
+    private NotificationSentStatsStore getStatsStore(int userId) {
+        NotificationSentStatsStore store = mStatsStores.get(userId);
+        if (store == null) {
+            store = new NotificationSentStatsStore(mContext, userId, DAYS_TO_CHECK);
+            mStatsStores.put(userId, store);
+        }
+        return store;
+    }
+
     protected NotificationsSentState getAggregatedUsageEvents(int userId, String pkg) {
         NotificationsSentState stats = null;
 
@@ -39,11 +39,7 @@ public class AppStateSmsPremBridge extends AppStateBaseBridge {
     @Override
     protected void loadAllExtraInfo() {
         ArrayList<AppEntry> apps = mAppSession.getAllApps();
-        final int N = apps.size();
-        for (int i = 0; i < N; i++) {
-            AppEntry app = apps.get(i);
-            updateExtraInfo(app, app.info.packageName, app.info.uid);
-        }
+        loadExtraInfoInParallel(apps, app -> getState(app.info.packageName));
     }
 
     @Override
@@ -0,0 +1,241 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.settings.applications;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.text.TextUtils;
+import android.text.format.DateUtils;
+import android.util.ArrayMap;
+import android.util.ArraySet;
+import android.util.Log;
+import android.util.SparseIntArray;
+
+import com.android.settings.applications.AppStateNotificationBridge.NotificationsSentState;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+
+/**
+ * Persistent per-user rollup of how many notifications each package sent per day, and when it
+ * last sent one.
+ * <p>
+ * The rollup remembers the end of the last replayed window, so each refresh only needs to replay
+ * the usage events received since then instead of the whole {@code daysToCheck} window. Counts
+ * are kept per local day, so days leave the window as a whole.
+ */
+class NotificationSentStatsStore {
+
+    private static final String TAG = "NotificationSentStats";
+    private static final String PREFS_NAME_PREFIX = "notification_sent_stats_";
+    // Package names can't contain ':', so this can't clash with a package key.
+    private static final String KEY_HIGH_WATER_MARK = ":high_water_mark";
+
+    private final Context mContext;
+    private final int mUserId;
+    private final int mDaysToCheck;
+    private final ArrayMap<String, PackageStats> mStats = new ArrayMap<>();
+    private final Set<String> mDirtyPackages = new ArraySet<>();
+    private SharedPreferences mPrefs;
+    private long mHighWaterMark;
+
+    NotificationSentStatsStore(Context context, int userId, int daysToCheck) {
+        mContext = context;
+        mUserId = userId;
+        mDaysToCheck = daysToCheck;
+    }
+
+    /**
+     * Reads the persisted rollup on first use. Only called from {@link #prepareUpdate}, which
+     * runs on the bridge's background thread, so the disk read never blocks the main thread.
+     */
+    private void ensureLoaded() {
+        if (mPrefs != null) {
+            return;
+        }
+        mPrefs = mContext.getSharedPreferences(PREFS_NAME_PREFIX + mUserId,
+                Context.MODE_PRIVATE);
+        for (Map.Entry<String, ?> entry : mPrefs.getAll().entrySet()) {
+            if (KEY_HIGH_WATER_MARK.equals(entry.getKey())) {
+                mHighWaterMark = (Long) entry.getValue();
+                continue;
+            }
+            final PackageStats stats = PackageStats.parse((String) entry.getValue());
+            if (stats != null) {
+                mStats.put(entry.getKey(), stats);
+            } else {
+                mDirtyPackages.add(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * Drops the days which left the window and returns the time from which usage events need to
+     * be replayed with {@link #recordNotificationSent}.
+     */
+    long prepareUpdate(long now) {
+        ensureLoaded();
+        final long windowStart = now - DateUtils.DAY_IN_MILLIS * mDaysToCheck;
+        if (mHighWaterMark > now) {
+            // The clock went backwards, the rollup can't be trusted anymore.
+            Log.w(TAG, "Clock changed, dropping " + mStats.size() + " packages");
+            mDirtyPackages.addAll(mStats.keySet());
+            mStats.clear();
+            mHighWaterMark = 0;
+        }
+        final int firstDay = getDay(windowStart);
+        for (int i = mStats.size() - 1; i >= 0; i--) {
+            final String pkg = mStats.keyAt(i);
+            final PackageStats stats = mStats.valueAt(i);
+            if (stats.dropDaysBefore(firstDay)) {
+                mDirtyPackages.add(pkg);
+                if (stats.isEmpty()) {
+                    mStats.removeAt(i);
+                }
+            }
+        }
+        return Math.max(mHighWaterMark, windowStart);
+    }
+
+    /** Records that {@code pkg} sent a notification at {@code timestamp}. */
+    void recordNotificationSent(String pkg, long timestamp) {
+        PackageStats stats = mStats.get(pkg);
+        if (stats == null) {
+            stats = new PackageStats();
+            mStats.put(pkg, stats);
+        }
+        stats.record(timestamp);
+        mDirtyPackages.add(pkg);
+    }
+
+    /**
+     * Persists the packages changed since the last commit, and marks the events up to
+     * {@code highWaterMark} as replayed.
+     */
+    void commit(long highWaterMark) {
+        mHighWaterMark = highWaterMark;
+        final SharedPreferences.Editor editor = mPrefs.edit();
+        for (String pkg : mDirtyPackages) {
+            final PackageStats stats = mStats.get(pkg);
+            if (stats == null) {
+                editor.remove(pkg);
+            } else {
+                editor.putString(pkg, stats.toString());
+            }
+        }
+        editor.putLong(KEY_HIGH_WATER_MARK, highWaterMark);
+        editor.apply();
+        mDirtyPackages.clear();
+    }
+
+    /**
+     * Adds a {@link NotificationsSentState} for every package which sent notifications in the
+     * window into {@code result}, keyed by {@code AppStateNotificationBridge#getKey}.
+     */
+    void collect(int userId, Map<String, NotificationsSentState> result) {
+        for (Map.Entry<String, PackageStats> entry : mStats.entrySet()) {
+            final NotificationsSentState state = new NotificationsSentState();
+            state.sentCount = entry.getValue().getSentCount();
+            state.lastSent = entry.getValue().mLastSent;
+            result.put(AppStateNotificationBridge.getKey(userId, entry.getKey()), state);
+        }
+    }
+
+    /**
+     * Returns the local day of {@code timestamp}, so buckets start at local midnight rather than
+     * UTC midnight and the window drops the same days the user sees.
+     */
+    private static int getDay(long timestamp) {
+        final long localTime = timestamp + TimeZone.getDefault().getOffset(timestamp);
+        return (int) Math.max(0, localTime / DateUtils.DAY_IN_MILLIS);
+    }
+
+    /** Daily sent counts of a single package, persisted as "lastSent;day=count,day=count". */
+    private static class PackageStats {
+        final SparseIntArray mDailyCounts = new SparseIntArray();
+        long mLastSent;
+
+        void record(long timestamp) {
+            final int day = getDay(timestamp);
+            mDailyCounts.put(day, mDailyCounts.get(day) + 1);
+            if (timestamp > mLastSent) {
+                mLastSent = timestamp;
+            }
+        }
+
+        /** Returns whether any day was dropped. */
+        boolean dropDaysBefore(int firstDay) {
+            boolean changed = false;
+            // Keys are sorted, so the oldest days come first.
+            while (mDailyCounts.size() > 0 && mDailyCounts.keyAt(0) < firstDay) {
+                mDailyCounts.removeAt(0);
+                changed = true;
+            }
+            if (mDailyCounts.size() == 0) {
+                mLastSent = 0;
+            }
+            return changed;
+        }
+
+        boolean isEmpty() {
+            return mDailyCounts.size() == 0;
+        }
+
+        int getSentCount() {
+            int count = 0;
+            for (int i = 0; i < mDailyCounts.size(); i++) {
+                count += mDailyCounts.valueAt(i);
+            }
+            return count;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder builder = new StringBuilder().append(mLastSent).append(';');
+            for (int i = 0; i < mDailyCounts.size(); i++) {
+                if (i > 0) {
+                    builder.append(',');
+                }
+                builder.append(mDailyCounts.keyAt(i)).append('=').append(mDailyCounts.valueAt(i));
+            }
+            return builder.toString();
+        }
+
+        static PackageStats parse(String value) {
+            if (TextUtils.isEmpty(value)) {
+                return null;
+            }
+            try {
+                final PackageStats stats = new PackageStats();
+                final int separator = value.indexOf(';');
+                stats.mLastSent = Long.parseLong(value.substring(0, separator));
+                final String days = value.substring(separator + 1);
+                if (!days.isEmpty()) {
+                    for (String day : days.split(",")) {
+                        final int equals = day.indexOf('=');
+                        stats.mDailyCounts.put(Integer.parseInt(day.substring(0, equals)),
+                                Integer.parseInt(day.substring(equals + 1)));
+                    }
+                }
+                return stats.isEmpty() ? null : stats;
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Dropping malformed stats " + value, e);
+                return null;
+            }
+        }
+    }
+}
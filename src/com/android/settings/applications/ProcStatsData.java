@@ -18,17 +18,21 @@ package com.android.settings.applications;
 
 import android.app.ActivityManager;
 import android.content.Context;
+import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
 import android.os.ParcelFileDescriptor;
 import android.os.RemoteException;
 import android.os.ServiceManager;
 import android.os.SystemClock;
+import android.text.format.DateUtils;
 import android.text.format.Formatter;
 import android.util.ArrayMap;
 import android.util.Log;
 import android.util.LongSparseArray;
 import android.util.SparseArray;
 
+import androidx.annotation.VisibleForTesting;
+
 import com.android.internal.app.ProcessMap;
 import com.android.internal.app.procstats.DumpUtils;
 import com.android.internal.app.procstats.IProcessStats;
@@ -44,6 +48,7 @@ import com.android.settings.Utils;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
 
@@ -53,13 +58,17 @@ public class ProcStatsData {
 
     private static final boolean DEBUG = ProcessStatsUi.DEBUG;
 
+    // Stats loaded for a duration are reused for this long when switching back to it.
+    private static final long MAX_SNAPSHOT_AGE_MS = DateUtils.MINUTE_IN_MILLIS;
+
     private static ProcessStats sStatsXfer;
+    private static LongSparseArray<StatsSnapshot> sSnapshotsXfer;
 
     private PackageManager mPm;
     private Context mContext;
     private long memTotalTime;
 
-    private IProcessStats mProcessStats;
+    private final StatsLoader mStatsLoader;
     private ProcessStats mStats;
 
     private boolean mUseUss;
@@ -73,15 +82,32 @@ public class ProcStatsData {
 
     private ArrayList<ProcStatsPackageEntry> pkgEntries;
 
+    // The stats loaded for each duration, with the aggregates computed from them.
+    private LongSparseArray<StatsSnapshot> mSnapshots = new LongSparseArray<>();
+    private StatsSnapshot mSnapshot;
+    // Application infos looked up while evaluating the target package of processes, null for
+    // packages which weren't found. Forgotten whenever stats are loaded, so that packages
+    // installed or removed since then are looked up again.
+    private final ArrayMap<String, ApplicationInfo> mAppInfoCache = new ArrayMap<>();
+
     public ProcStatsData(Context context, boolean useXfer) {
+        this(context, useXfer, new ServiceStatsLoader());
+    }
+
+    @VisibleForTesting
+    ProcStatsData(Context context, boolean useXfer, StatsLoader statsLoader) {
         mContext = context;
         mPm = context.getPackageManager();
-        mProcessStats = IProcessStats.Stub.asInterface(
-                ServiceManager.getService(ProcessStats.SERVICE_NAME));
+        mStatsLoader = statsLoader;
         mMemStates = ProcessStats.ALL_MEM_ADJ;
         mStates = ProcessStats.BACKGROUND_PROC_STATES;
         if (useXfer) {
             mStats = sStatsXfer;
+            if (sSnapshotsXfer != null) {
+                mSnapshots = sSnapshotsXfer;
+                // Don't keep the stats of every duration alive once they are handed over.
+                sSnapshotsXfer = null;
+            }
         }
     }
 
@@ -91,6 +117,14 @@ public class ProcStatsData {
 
     public void xferStats() {
         sStatsXfer = mStats;
+        // Only hand over the raw stats, the aggregates hold labels of the current configuration.
+        final LongSparseArray<StatsSnapshot> snapshots = new LongSparseArray<>(mSnapshots.size());
+        for (int i = 0; i < mSnapshots.size(); i++) {
+            final StatsSnapshot snapshot = mSnapshots.valueAt(i);
+            snapshots.put(mSnapshots.keyAt(i),
+                    new StatsSnapshot(snapshot.mStats, snapshot.mLoadTime));
+        }
+        sSnapshotsXfer = snapshots;
     }
 
     public void setMemStates(int[] memStates) {
@@ -125,7 +159,13 @@ public class ProcStatsData {
     public void setDuration(long duration) {
         if (duration != mDuration) {
             mDuration = duration;
-            refreshStats(true);
+            final StatsSnapshot snapshot = mSnapshots.get(duration);
+            if (snapshot != null && snapshot.isFresh()) {
+                mStats = snapshot.mStats;
+                refreshStats(false);
+            } else {
+                refreshStats(true);
+            }
         }
     }
 
@@ -141,7 +181,36 @@ public class ProcStatsData {
         if (mStats == null || forceLoad) {
             load();
         }
+        if (mSnapshot == null || mSnapshot.mStats != mStats) {
+            mSnapshot = getSnapshot(mStats);
+        }
+
+        // Switching back to a duration or filter which was already shown reuses its entries.
+        final String aggregateKey = Arrays.toString(mMemStates) + Arrays.toString(mStates);
+        Aggregate aggregate = mSnapshot.mAggregates.get(aggregateKey);
+        if (aggregate == null) {
+            aggregate = computeAggregate();
+            mSnapshot.mAggregates.put(aggregateKey, aggregate);
+        } else if (DEBUG) {
+            Log.d(TAG, "Reusing entries of " + aggregateKey);
+        }
+        memTotalTime = aggregate.mMemTotalTime;
+        mMemInfo = aggregate.mMemInfo;
+        pkgEntries = aggregate.mPkgEntries;
+    }
+
+    private StatsSnapshot getSnapshot(ProcessStats stats) {
+        for (int i = 0; i < mSnapshots.size(); i++) {
+            if (mSnapshots.valueAt(i).mStats == stats) {
+                return mSnapshots.valueAt(i);
+            }
+        }
+        final StatsSnapshot snapshot = new StatsSnapshot(stats, SystemClock.elapsedRealtime());
+        mSnapshots.put(mDuration, snapshot);
+        return snapshot;
+    }
 
+    private Aggregate computeAggregate() {
         pkgEntries = new ArrayList<>();
 
         long now = SystemClock.uptimeMillis();
@@ -168,6 +237,7 @@ public class ProcStatsData {
         ProcStatsPackageEntry osPkg = createOsEntry(bgTotals, runTotals, totalMem,
                 mMemInfo.baseCacheRam);
         pkgEntries.add(osPkg);
+        return new Aggregate(memTotalTime, mMemInfo, pkgEntries);
     }
 
     private void createPkgMap(ArrayList<ProcStatsEntry> procEntries, ProcessDataCollection bgTotals,
@@ -176,7 +246,8 @@ public class ProcStatsData {
         ArrayMap<String, ProcStatsPackageEntry> pkgMap = new ArrayMap<>();
         for (int i = procEntries.size() - 1; i >= 0; i--) {
             ProcStatsEntry proc = procEntries.get(i);
-            proc.evaluateTargetPackage(mPm, mStats, bgTotals, runTotals, sEntryCompare, mUseUss);
+            proc.evaluateTargetPackage(mPm, mAppInfoCache, mStats, bgTotals, runTotals,
+                    sEntryCompare, mUseUss);
             ProcStatsPackageEntry pkg = pkgMap.get(proc.mBestTargetPackage);
             if (pkg == null) {
                 pkg = new ProcStatsPackageEntry(proc.mBestTargetPackage, memTotalTime);
@@ -343,19 +414,40 @@ public class ProcStatsData {
 
     private void load() {
         try {
-            ParcelFileDescriptor pfd = mProcessStats.getStatsOverTime(mDuration);
-            mStats = new ProcessStats(false);
+            mStats = mStatsLoader.loadStats(mDuration);
+            mSnapshot = new StatsSnapshot(mStats, SystemClock.elapsedRealtime());
+            mSnapshots.put(mDuration, mSnapshot);
+            mAppInfoCache.clear();
+        } catch (RemoteException e) {
+            Log.e(TAG, "RemoteException:", e);
+        }
+    }
+
+    /** Loads the process stats over a duration. */
+    @VisibleForTesting
+    interface StatsLoader {
+        ProcessStats loadStats(long duration) throws RemoteException;
+    }
+
+    /** Reads the process stats from the process stats service. */
+    private static class ServiceStatsLoader implements StatsLoader {
+        private final IProcessStats mProcessStats = IProcessStats.Stub.asInterface(
+                ServiceManager.getService(ProcessStats.SERVICE_NAME));
+
+        @Override
+        public ProcessStats loadStats(long duration) throws RemoteException {
+            ParcelFileDescriptor pfd = mProcessStats.getStatsOverTime(duration);
+            ProcessStats stats = new ProcessStats(false);
             InputStream is = new ParcelFileDescriptor.AutoCloseInputStream(pfd);
-            mStats.read(is);
+            stats.read(is);
             try {
                 is.close();
             } catch (IOException e) {
             }
-            if (mStats.mReadError != null) {
-                Log.w(TAG, "Failure reading process stats: " + mStats.mReadError);
+            if (stats.mReadError != null) {
+                Log.w(TAG, "Failure reading process stats: " + stats.mReadError);
             }
-        } catch (RemoteException e) {
-            Log.e(TAG, "RemoteException:", e);
+            return stats;
         }
     }
 
@@ -451,6 +543,37 @@ public class ProcStatsData {
         }
     }
 
+    /** The stats loaded from the service for a duration. */
+    private static class StatsSnapshot {
+        final ProcessStats mStats;
+        final long mLoadTime;
+        // The aggregates computed from mStats, keyed by mem states and process states.
+        final ArrayMap<String, Aggregate> mAggregates = new ArrayMap<>();
+
+        StatsSnapshot(ProcessStats stats, long loadTime) {
+            mStats = stats;
+            mLoadTime = loadTime;
+        }
+
+        boolean isFresh() {
+            return SystemClock.elapsedRealtime() - mLoadTime < MAX_SNAPSHOT_AGE_MS;
+        }
+    }
+
+    /** The package entries and memory info computed for one set of mem and process states. */
+    private static class Aggregate {
+        final long mMemTotalTime;
+        final MemInfo mMemInfo;
+        final ArrayList<ProcStatsPackageEntry> mPkgEntries;
+
+        Aggregate(long memTotalTime, MemInfo memInfo,
+                ArrayList<ProcStatsPackageEntry> pkgEntries) {
+            mMemTotalTime = memTotalTime;
+            mMemInfo = memInfo;
+            mPkgEntries = pkgEntries;
+        }
+    }
+
     final static Comparator<ProcStatsEntry> sEntryCompare = new Comparator<ProcStatsEntry>() {
         @Override
         public int compare(ProcStatsEntry lhs, ProcStatsEntry rhs) {
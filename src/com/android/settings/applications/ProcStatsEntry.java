@@ -123,6 +123,20 @@ public final class ProcStatsEntry implements Parcelable {
             ProcessStats.ProcessDataCollection bgTotals,
             ProcessStats.ProcessDataCollection runTotals, Comparator<ProcStatsEntry> compare,
             boolean useUss) {
+        evaluateTargetPackage(pm, null /* appInfoCache */, stats, bgTotals, runTotals, compare,
+                useUss);
+    }
+
+    /**
+     * Same as {@link #evaluateTargetPackage(PackageManager, ProcessStats,
+     * ProcessStats.ProcessDataCollection, ProcessStats.ProcessDataCollection, Comparator,
+     * boolean)}, but looks up application infos in {@code appInfoCache} first, and adds the
+     * ones it had to look up to it.
+     */
+    void evaluateTargetPackage(PackageManager pm, ArrayMap<String, ApplicationInfo> appInfoCache,
+            ProcessStats stats, ProcessStats.ProcessDataCollection bgTotals,
+            ProcessStats.ProcessDataCollection runTotals, Comparator<ProcStatsEntry> compare,
+            boolean useUss) {
         mBestTargetPackage = null;
         if (mPackages.size() == 1) {
             if (DEBUG) Log.d(TAG, "Eval pkg of " + mName + ": single pkg " + mPackages.get(0));
@@ -189,7 +203,7 @@ public final class ProcStatsEntry implements Parcelable {
                     continue;
                 }
                 try {
-                    ApplicationInfo ai = pm.getApplicationInfo(subProc.mPackage, 0);
+                    ApplicationInfo ai = getApplicationInfo(pm, appInfoCache, subProc.mPackage);
                     if (ai.icon == 0) {
                         if (DEBUG) Log.d(TAG, "Eval pkg of " + mName + ": pkg "
                                 + subProc.mPackage + " has no icon");
@@ -260,6 +274,27 @@ public final class ProcStatsEntry implements Parcelable {
         }
     }
 
+    private static ApplicationInfo getApplicationInfo(PackageManager pm,
+            ArrayMap<String, ApplicationInfo> appInfoCache, String packageName)
+            throws PackageManager.NameNotFoundException {
+        if (appInfoCache == null) {
+            return pm.getApplicationInfo(packageName, 0);
+        }
+        ApplicationInfo ai = appInfoCache.get(packageName);
+        if (ai == null && !appInfoCache.containsKey(packageName)) {
+            try {
+                ai = pm.getApplicationInfo(packageName, 0);
+            } catch (PackageManager.NameNotFoundException e) {
+                // Remembered as missing below.
+            }
+            appInfoCache.put(packageName, ai);
+        }
+        if (ai == null) {
+            throw new PackageManager.NameNotFoundException(packageName);
+        }
+        return ai;
+    }
+
     public void addService(ServiceState svc) {
         ArrayList<Service> services = mServices.get(svc.getPackage());
         if (services == null) {
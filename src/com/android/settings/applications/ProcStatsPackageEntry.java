@@ -50,6 +50,8 @@ public class ProcStatsPackageEntry implements Parcelable {
     public ApplicationInfo mUiTargetApp;
     public String mUiLabel;
     private long mWindowLength;
+    // Entries are reused while their stats are, so only resolve the label once.
+    private boolean mUiDataRetrieved;
 
     public ProcStatsPackageEntry(String pkg, long windowLength) {
         mPackage = pkg;
@@ -110,6 +112,10 @@ public class ProcStatsPackageEntry implements Parcelable {
     }
 
     public void retrieveUiData(Context context, PackageManager pm) {
+        if (mUiDataRetrieved) {
+            return;
+        }
+        mUiDataRetrieved = true;
         mUiTargetApp = null;
         mUiLabel = mPackage;
         // Only one app associated with this process.
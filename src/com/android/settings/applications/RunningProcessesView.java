@@ -28,6 +28,7 @@ import android.os.UserHandle;
 import android.text.BidiFormatter;
 import android.text.format.DateUtils;
 import android.text.format.Formatter;
+import android.util.ArraySet;
 import android.util.AttributeSet;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -51,6 +52,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
 
 public class RunningProcessesView extends FrameLayout
         implements AdapterView.OnItemClickListener, RecyclerListener,
@@ -306,9 +308,14 @@ public class RunningProcessesView extends FrameLayout
                     // to refresh the entire list.
                     return;
                 }
-                ViewHolder vh = (ViewHolder) view.getTag();
                 RunningState.MergedItem item = mItems.get(position);
-                ActiveItem ai = vh.bind(mState, item, mBuilder);
+                ActiveItem ai = mActiveItems.get(view);
+                if (ai != null && ai.mItem == item) {
+                    // The row already shows this item; it is bound again when it changes.
+                    return;
+                }
+                ViewHolder vh = (ViewHolder) view.getTag();
+                ai = vh.bind(mState, item, mBuilder);
                 mActiveItems.put(view, ai);
             }
         }
@@ -488,6 +495,18 @@ public class RunningProcessesView extends FrameLayout
         return false;
     }
 
+    void rebindItems(ArraySet<RunningState.MergedItem> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<View, ActiveItem> entry : mActiveItems.entrySet()) {
+            ActiveItem ai = entry.getValue();
+            if (items.contains(ai.mItem)) {
+                entry.setValue(ai.mHolder.bind(mState, ai.mItem, mBuilder));
+            }
+        }
+    }
+
     void updateTimes() {
         Iterator<ActiveItem> it = mActiveItems.values().iterator();
         while (it.hasNext()) {
@@ -509,10 +528,12 @@ public class RunningProcessesView extends FrameLayout
                 break;
             case REFRESH_DATA:
                 refreshUi(false);
+                rebindItems(mState.takeChangedItems());
                 updateTimes();
                 break;
             case REFRESH_STRUCTURE:
                 refreshUi(true);
+                rebindItems(mState.takeChangedItems());
                 updateTimes();
                 break;
         }
@@ -645,10 +645,11 @@ public class RunningServiceDetails extends InstrumentedFragment
                 updateTimes();
                 break;
             case REFRESH_DATA:
-                refreshUi(false);
+                refreshUi(mState.takeChangedItems().contains(mMergedItem));
                 updateTimes();
                 break;
             case REFRESH_STRUCTURE:
+                mState.takeChangedItems();
                 refreshUi(true);
                 updateTimes();
                 break;
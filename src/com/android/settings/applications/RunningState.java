@@ -37,11 +37,18 @@ import android.os.HandlerThread;
 import android.os.Looper;
 import android.os.Message;
 import android.os.RemoteException;
+import android.os.SystemClock;
 import android.os.UserHandle;
 import android.os.UserManager;
+import android.text.TextUtils;
 import android.text.format.Formatter;
+import android.util.ArrayMap;
+import android.util.ArraySet;
 import android.util.Log;
 import android.util.SparseArray;
+import android.util.SparseBooleanArray;
+
+import androidx.annotation.VisibleForTesting;
 
 import com.android.settings.R;
 import com.android.settingslib.Utils;
@@ -53,6 +60,7 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * Singleton for retrieving and monitoring the state about all running
@@ -72,9 +80,14 @@ public class RunningState {
 
     static final long TIME_UPDATE_DELAY = 1000;
     static final long CONTENTS_UPDATE_DELAY = 2000;
+    // The memory use of processes which didn't change is read less often than they are polled.
+    static final long MEMORY_UPDATE_DELAY = 10000;
 
     static final int MAX_SERVICES = 100;
 
+    // Bounds the labels remembered for processes which are no longer running.
+    static final int MAX_PROCESS_LABELS = 500;
+
     final Context mApplicationContext;
     final ActivityManager mAm;
     final PackageManager mPm;
@@ -137,6 +150,20 @@ public class RunningState {
     // Temporary structure used when updating above information.
     final SparseArray<AppProcessInfo> mTmpAppProcesses = new SparseArray<AppProcessInfo>();
 
+    // The services and processes the items were last built from, by pid, null until the next
+    // update needs to rebuild them.
+    SparseArray<ArrayList<ActivityManager.RunningServiceInfo>> mLastServicesByPid;
+    SparseArray<ActivityManager.RunningAppProcessInfo> mLastProcessesByPid;
+    long mLastMemoryUpdateTime;
+
+    // The items whose process or services changed since the UI last took them, so that only
+    // their rows need to be bound again.
+    ArraySet<MergedItem> mChangedItems = new ArraySet<>();
+
+    // Labels resolved for processes, by uid and process name, so that a process which comes
+    // back with a new pid doesn't need to be resolved again.
+    final ArrayMap<String, ProcessLabel> mProcessLabels = new ArrayMap<>();
+
     int mSequence = 0;
 
     final Comparator<RunningState.MergedItem> mBackgroundComparator =
@@ -245,7 +272,7 @@ public class RunningState {
                         }
                     }
                     Message cmd = mHandler.obtainMessage(MSG_REFRESH_UI);
-                    cmd.arg1 = update(mApplicationContext, mAm) ? 1 : 0;
+                    cmd.arg1 = update(mApplicationContext, mAm);
                     mHandler.sendMessage(cmd);
                     removeMessages(MSG_UPDATE_CONTENTS);
                     msg = obtainMessage(MSG_UPDATE_CONTENTS);
@@ -264,9 +291,8 @@ public class RunningState {
         public void handleMessage(Message msg) {
             switch (msg.what) {
                 case MSG_REFRESH_UI:
-                    mNextUpdate = msg.arg1 != 0
-                            ? OnRefreshUiListener.REFRESH_STRUCTURE
-                            : OnRefreshUiListener.REFRESH_DATA;
+                    // Don't let a later update downgrade a refresh which wasn't shown yet.
+                    mNextUpdate = Math.max(mNextUpdate, msg.arg1);
                     break;
                 case MSG_UPDATE_TIME:
                     synchronized (mLock) {
@@ -378,6 +404,9 @@ public class RunningState {
         ActivityManager.RunningServiceInfo mRunningService;
         ServiceInfo mServiceInfo;
         boolean mShownAsStarted;
+        // The client the description was last resolved for.
+        String mClientPackage;
+        int mClientLabel;
 
         MergedItem mMergedItem;
 
@@ -495,6 +524,24 @@ public class RunningState {
             }
         }
 
+        void ensureLabel(PackageManager pm, ArrayMap<String, ProcessLabel> labels) {
+            if (mLabel != null) {
+                return;
+            }
+            final String key = mUid + ":" + mProcessName;
+            final ProcessLabel label = labels.get(key);
+            if (label != null) {
+                mLabel = label.mLabel;
+                mDisplayLabel = label.mDisplayLabel;
+                mPackageInfo = label.mPackageInfo;
+                return;
+            }
+            ensureLabel(pm);
+            if (mLabel != null) {
+                labels.put(key, new ProcessLabel(this));
+            }
+        }
+
         boolean updateService(Context context, ActivityManager.RunningServiceInfo service) {
             final PackageManager pm = context.getPackageManager();
 
@@ -534,19 +581,26 @@ public class RunningState {
                     si.mShownAsStarted = false;
                     changed = true;
                 }
-                try {
-                    Resources clientr = pm.getResourcesForApplication(service.clientPackage);
-                    String label = clientr.getString(service.clientLabel);
-                    si.mDescription = context.getResources().getString(
-                            R.string.service_client_name, label);
-                } catch (PackageManager.NameNotFoundException e) {
-                    si.mDescription = null;
+                if (!service.clientPackage.equals(si.mClientPackage)
+                        || service.clientLabel != si.mClientLabel) {
+                    si.mClientPackage = service.clientPackage;
+                    si.mClientLabel = service.clientLabel;
+                    try {
+                        Resources clientr = pm.getResourcesForApplication(service.clientPackage);
+                        String label = clientr.getString(service.clientLabel);
+                        si.mDescription = context.getResources().getString(
+                                R.string.service_client_name, label);
+                    } catch (PackageManager.NameNotFoundException e) {
+                        si.mDescription = null;
+                    }
                 }
             } else {
                 if (!si.mShownAsStarted) {
                     si.mShownAsStarted = true;
                     changed = true;
                 }
+                si.mClientPackage = null;
+                si.mClientLabel = 0;
                 si.mDescription = context.getResources().getString(
                         R.string.service_started_by_app);
             }
@@ -570,7 +624,8 @@ public class RunningState {
             return false;
         }
 
-        boolean buildDependencyChain(Context context, PackageManager pm, int curSeq) {
+        boolean buildDependencyChain(Context context, PackageManager pm,
+                ArrayMap<String, ProcessLabel> labels, int curSeq) {
             final int NP = mDependentProcesses.size();
             boolean changed = false;
             for (int i = 0; i < NP; i++) {
@@ -580,8 +635,8 @@ public class RunningState {
                     proc.mClient = this;
                 }
                 proc.mCurSeq = curSeq;
-                proc.ensureLabel(pm);
-                changed |= proc.buildDependencyChain(context, pm, curSeq);
+                proc.ensureLabel(pm, labels);
+                changed |= proc.buildDependencyChain(context, pm, labels, curSeq);
             }
 
             if (mLastNumDependentProcesses != mDependentProcesses.size()) {
@@ -606,6 +661,19 @@ public class RunningState {
         }
     }
 
+    /** The label resolved for a process. */
+    static class ProcessLabel {
+        final String mLabel;
+        final CharSequence mDisplayLabel;
+        final PackageItemInfo mPackageInfo;
+
+        ProcessLabel(ProcessItem proc) {
+            mLabel = proc.mLabel;
+            mDisplayLabel = proc.mDisplayLabel;
+            mPackageInfo = proc.mPackageInfo;
+        }
+    }
+
     static class MergedItem extends BaseItem {
         ProcessItem mProcess;
         UserState mUser;
@@ -780,7 +848,8 @@ public class RunningState {
         }
     }
 
-    private RunningState(Context context) {
+    @VisibleForTesting
+    RunningState(Context context) {
         mApplicationContext = context.getApplicationContext();
         mAm = mApplicationContext.getSystemService(ActivityManager.class);
         mPm = mApplicationContext.getPackageManager();
@@ -868,6 +937,13 @@ public class RunningState {
         mRunningProcesses.clear();
         mProcessItems.clear();
         mAllProcessItems.clear();
+        mProcessLabels.clear();
+        mLastServicesByPid = null;
+        mLastProcessesByPid = null;
+        mLastMemoryUpdateTime = 0;
+        synchronized (mLock) {
+            mChangedItems.clear();
+        }
     }
 
     private void addOtherUserItem(Context context, ArrayList<MergedItem> newMergedItems,
@@ -899,45 +975,22 @@ public class RunningState {
         userItem.mChildren.add(newItem);
     }
 
-    private boolean update(Context context, ActivityManager am) {
-        final PackageManager pm = context.getPackageManager();
-
-        mSequence++;
-
+    /**
+     * Rebuilds the items from the services and processes which are running, reusing the items
+     * of the processes and services which were already running. Returns whether the list of
+     * merged items changed, rather than just the content of some of them.
+     */
+    private boolean updateItems(Context context, PackageManager pm,
+            List<ActivityManager.RunningServiceInfo> services,
+            List<ActivityManager.RunningAppProcessInfo> processes) {
         boolean changed = false;
-
-        // Retrieve list of services, filtering out anything that definitely
-        // won't be shown in the UI.
-        List<ActivityManager.RunningServiceInfo> services
-                = am.getRunningServices(MAX_SERVICES);
-        int NS = services != null ? services.size() : 0;
-        for (int i = 0; i < NS; i++) {
-            ActivityManager.RunningServiceInfo si = services.get(i);
-            // We are not interested in services that have not been started
-            // and don't have a known client, because
-            // there is nothing the user can do about them.
-            if (!si.started && si.clientLabel == 0) {
-                services.remove(i);
-                i--;
-                NS--;
-                continue;
-            }
-            // We likewise don't care about services running in a
-            // persistent process like the system or phone.
-            if ((si.flags & ActivityManager.RunningServiceInfo.FLAG_PERSISTENT_PROCESS)
-                    != 0) {
-                services.remove(i);
-                i--;
-                NS--;
-                continue;
-            }
+        final int NS = services != null ? services.size() : 0;
+        final int NP = processes != null ? processes.size() : 0;
+        if (mProcessLabels.size() > MAX_PROCESS_LABELS) {
+            mProcessLabels.clear();
         }
 
-        // Retrieve list of running processes, organizing them into a sparse
-        // array for easy retrieval.
-        List<ActivityManager.RunningAppProcessInfo> processes
-                = am.getRunningAppProcesses();
-        final int NP = processes != null ? processes.size() : 0;
+        // Organize the running processes into a sparse array for easy retrieval.
         mTmpAppProcesses.clear();
         for (int i = 0; i < NP; i++) {
             ActivityManager.RunningAppProcessInfo pi = processes.get(i);
@@ -1054,7 +1107,7 @@ public class RunningState {
                 }
                 proc.mCurSeq = mSequence;
                 proc.mInteresting = true;
-                proc.ensureLabel(pm);
+                proc.ensureLabel(pm, mProcessLabels);
             } else {
                 proc.mInteresting = false;
             }
@@ -1111,7 +1164,7 @@ public class RunningState {
         for (int i = 0; i < NAP; i++) {
             ProcessItem proc = mServiceProcessesByPid.valueAt(i);
             if (proc.mCurSeq == mSequence) {
-                changed |= proc.buildDependencyChain(context, pm, mSequence);
+                changed |= proc.buildDependencyChain(context, pm, mProcessLabels, mSequence);
             }
         }
 
@@ -1123,7 +1176,7 @@ public class RunningState {
             while (pit.hasNext()) {
                 ProcessItem pi = pit.next();
                 if (pi.mCurSeq == mSequence) {
-                    pi.ensureLabel(pm);
+                    pi.ensureLabel(pm, mProcessLabels);
                     if (pi.mPid == 0) {
                         // Validation: a non-process can't be dependent on anything.
                         pi.mDependentProcesses.clear();
@@ -1206,7 +1259,7 @@ public class RunningState {
 
                 // Now add the services running in it.
                 MergedItem mergedItem = null;
-                boolean haveAllMerged = false;
+                boolean haveAllMerged = true;
                 boolean needDivider = false;
                 for (ServiceItem si : pi.mServices.values()) {
                     si.mNeedDivider = needDivider;
@@ -1230,11 +1283,13 @@ public class RunningState {
                         mergedItem.mServices.add(si);
                         si.mMergedItem = mergedItem;
                     }
-                    mergedItem.mProcess = pi;
-                    mergedItem.mOtherProcesses.clear();
-                    for (int mpi = firstProc; mpi < (mProcessItems.size() - 1); mpi++) {
-                        mergedItem.mOtherProcesses.add(mProcessItems.get(mpi));
-                    }
+                }
+                // The processes the item depends on may have changed even if its services
+                // didn't.
+                mergedItem.mProcess = pi;
+                mergedItem.mOtherProcesses.clear();
+                for (int mpi = firstProc; mpi < (mProcessItems.size() - 1); mpi++) {
+                    mergedItem.mOtherProcesses.add(mProcessItems.get(mpi));
                 }
 
                 mergedItem.update(context, false);
@@ -1278,10 +1333,266 @@ public class RunningState {
 
             synchronized (mLock) {
                 mItems = newItems;
-                mMergedItems = newMergedItems;
+                if (!sameItems(mMergedItems, newMergedItems)) {
+                    mMergedItems = newMergedItems;
+                    return true;
+                }
             }
         }
 
+        return false;
+    }
+
+    private static boolean sameItems(ArrayList<MergedItem> items1, ArrayList<MergedItem> items2) {
+        final int N = items1.size();
+        if (N != items2.size()) {
+            return false;
+        }
+        for (int i = 0; i < N; i++) {
+            if (items1.get(i) != items2.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Points the process items to the latest info of their process, for the processes which
+     * didn't change in a way that matters to the items.
+     */
+    private void updateRunningProcessInfos(List<ActivityManager.RunningAppProcessInfo> processes) {
+        final int NP = processes != null ? processes.size() : 0;
+        for (int i = 0; i < NP; i++) {
+            ActivityManager.RunningAppProcessInfo pi = processes.get(i);
+            ProcessItem proc = mServiceProcessesByPid.get(pi.pid);
+            if (proc == null) {
+                proc = mRunningProcesses.get(pi.pid);
+            }
+            if (proc != null) {
+                proc.mRunningProcessInfo = pi;
+            }
+        }
+    }
+
+    /** Returns whether the service lists only differ in ways which don't matter to the items. */
+    @VisibleForTesting
+    static boolean sameServices(List<ActivityManager.RunningServiceInfo> services1,
+            List<ActivityManager.RunningServiceInfo> services2) {
+        final int N = services1 != null ? services1.size() : 0;
+        if (N != (services2 != null ? services2.size() : 0)) {
+            return false;
+        }
+        for (int i = 0; i < N; i++) {
+            final ActivityManager.RunningServiceInfo si1 = services1.get(i);
+            final ActivityManager.RunningServiceInfo si2 = services2.get(i);
+            if (si1.pid != si2.pid || si1.uid != si2.uid
+                    || si1.foreground != si2.foreground || si1.started != si2.started
+                    || si1.flags != si2.flags || si1.restarting != si2.restarting
+                    || si1.activeSince != si2.activeSince || si1.clientLabel != si2.clientLabel
+                    || !Objects.equals(si1.service, si2.service)
+                    || !TextUtils.equals(si1.process, si2.process)
+                    || !TextUtils.equals(si1.clientPackage, si2.clientPackage)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns whether the processes only differ in ways which don't matter to the items. */
+    @VisibleForTesting
+    static boolean sameProcess(ActivityManager.RunningAppProcessInfo pi1,
+            ActivityManager.RunningAppProcessInfo pi2) {
+        if (pi1 == null || pi2 == null) {
+            return pi1 == pi2;
+        }
+        return pi1.pid == pi2.pid && pi1.uid == pi2.uid && pi1.flags == pi2.flags
+                && pi1.importance == pi2.importance
+                && pi1.importanceReasonCode == pi2.importanceReasonCode
+                && pi1.importanceReasonPid == pi2.importanceReasonPid
+                && TextUtils.equals(pi1.processName, pi2.processName);
+    }
+
+    @VisibleForTesting
+    static SparseArray<ArrayList<ActivityManager.RunningServiceInfo>> getServicesByPid(
+            List<ActivityManager.RunningServiceInfo> services) {
+        final SparseArray<ArrayList<ActivityManager.RunningServiceInfo>> servicesByPid =
+                new SparseArray<>();
+        final int NS = services != null ? services.size() : 0;
+        for (int i = 0; i < NS; i++) {
+            final ActivityManager.RunningServiceInfo si = services.get(i);
+            ArrayList<ActivityManager.RunningServiceInfo> pidServices = servicesByPid.get(si.pid);
+            if (pidServices == null) {
+                pidServices = new ArrayList<>();
+                servicesByPid.put(si.pid, pidServices);
+            }
+            pidServices.add(si);
+        }
+        return servicesByPid;
+    }
+
+    @VisibleForTesting
+    static SparseArray<ActivityManager.RunningAppProcessInfo> getProcessesByPid(
+            List<ActivityManager.RunningAppProcessInfo> processes) {
+        final SparseArray<ActivityManager.RunningAppProcessInfo> processesByPid =
+                new SparseArray<>();
+        final int NP = processes != null ? processes.size() : 0;
+        for (int i = 0; i < NP; i++) {
+            final ActivityManager.RunningAppProcessInfo pi = processes.get(i);
+            processesByPid.put(pi.pid, pi);
+        }
+        return processesByPid;
+    }
+
+    /**
+     * Returns the pids whose services or process were started, stopped or changed in a way
+     * which matters to the items between the two snapshots.
+     */
+    @VisibleForTesting
+    static SparseBooleanArray getChangedPids(
+            SparseArray<ArrayList<ActivityManager.RunningServiceInfo>> oldServices,
+            SparseArray<ArrayList<ActivityManager.RunningServiceInfo>> newServices,
+            SparseArray<ActivityManager.RunningAppProcessInfo> oldProcesses,
+            SparseArray<ActivityManager.RunningAppProcessInfo> newProcesses) {
+        final SparseBooleanArray changedPids = new SparseBooleanArray();
+        for (int i = 0; i < oldServices.size(); i++) {
+            final int pid = oldServices.keyAt(i);
+            if (!sameServices(oldServices.valueAt(i), newServices.get(pid))) {
+                changedPids.put(pid, true);
+            }
+        }
+        for (int i = 0; i < newServices.size(); i++) {
+            final int pid = newServices.keyAt(i);
+            if (oldServices.indexOfKey(pid) < 0) {
+                changedPids.put(pid, true);
+            }
+        }
+        for (int i = 0; i < oldProcesses.size(); i++) {
+            final int pid = oldProcesses.keyAt(i);
+            if (!sameProcess(oldProcesses.valueAt(i), newProcesses.get(pid))) {
+                changedPids.put(pid, true);
+            }
+        }
+        for (int i = 0; i < newProcesses.size(); i++) {
+            final int pid = newProcesses.keyAt(i);
+            if (oldProcesses.indexOfKey(pid) < 0) {
+                changedPids.put(pid, true);
+            }
+        }
+        return changedPids;
+    }
+
+    /** Returns whether the item shows any of the processes or their services. */
+    private static boolean hasPid(MergedItem item, SparseBooleanArray pids) {
+        if (item.mProcess != null && pids.get(item.mProcess.mPid)) {
+            return true;
+        }
+        for (int i = 0; i < item.mOtherProcesses.size(); i++) {
+            if (pids.get(item.mOtherProcesses.get(i).mPid)) {
+                return true;
+            }
+        }
+        for (int i = 0; i < item.mServices.size(); i++) {
+            final ServiceItem si = item.mServices.get(i);
+            if (si.mRunningService != null && pids.get(si.mRunningService.pid)) {
+                return true;
+            }
+        }
+        for (int i = 0; i < item.mChildren.size(); i++) {
+            if (hasPid(item.mChildren.get(i), pids)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds the items which show any of the changed pids, or were already changed, to the
+     * changed items. Items which are no longer shown are dropped.
+     */
+    private void addChangedItems(ArraySet<MergedItem> changedItems, ArrayList<MergedItem> items,
+            SparseBooleanArray changedPids) {
+        for (int i = 0; i < items.size(); i++) {
+            final MergedItem item = items.get(i);
+            if (mChangedItems.contains(item) || hasPid(item, changedPids)) {
+                changedItems.add(item);
+            }
+        }
+    }
+
+    /** Returns the items whose rows need to be bound again, and forgets about them. */
+    ArraySet<MergedItem> takeChangedItems() {
+        synchronized (mLock) {
+            final ArraySet<MergedItem> changedItems = mChangedItems;
+            mChangedItems = new ArraySet<>();
+            return changedItems;
+        }
+    }
+
+    /**
+     * Polls the running services and processes, and returns the
+     * {@link OnRefreshUiListener} refresh the UI needs.
+     */
+    @VisibleForTesting
+    int update(Context context, ActivityManager am) {
+        final PackageManager pm = context.getPackageManager();
+
+        boolean changed = false;
+
+        // Retrieve list of services, filtering out anything that definitely
+        // won't be shown in the UI.
+        List<ActivityManager.RunningServiceInfo> services
+                = am.getRunningServices(MAX_SERVICES);
+        int NS = services != null ? services.size() : 0;
+        for (int i = 0; i < NS; i++) {
+            ActivityManager.RunningServiceInfo si = services.get(i);
+            // We are not interested in services that have not been started
+            // and don't have a known client, because
+            // there is nothing the user can do about them.
+            if (!si.started && si.clientLabel == 0) {
+                services.remove(i);
+                i--;
+                NS--;
+                continue;
+            }
+            // We likewise don't care about services running in a
+            // persistent process like the system or phone.
+            if ((si.flags & ActivityManager.RunningServiceInfo.FLAG_PERSISTENT_PROCESS)
+                    != 0) {
+                services.remove(i);
+                i--;
+                NS--;
+                continue;
+            }
+        }
+
+        // Retrieve list of running processes.
+        List<ActivityManager.RunningAppProcessInfo> processes
+                = am.getRunningAppProcesses();
+
+        final SparseArray<ArrayList<ActivityManager.RunningServiceInfo>> servicesByPid =
+                getServicesByPid(services);
+        final SparseArray<ActivityManager.RunningAppProcessInfo> processesByPid =
+                getProcessesByPid(processes);
+        SparseBooleanArray changedPids = null;
+        if (mLastServicesByPid != null) {
+            changedPids = getChangedPids(mLastServicesByPid, servicesByPid,
+                    mLastProcessesByPid, processesByPid);
+        }
+        if (changedPids != null && changedPids.size() == 0) {
+            // Nothing the items are built from changed since the last update, so keep them
+            // and only refresh their memory use below, once it is due.
+            updateRunningProcessInfos(processes);
+            if (SystemClock.uptimeMillis() - mLastMemoryUpdateTime < MEMORY_UPDATE_DELAY) {
+                return OnRefreshUiListener.REFRESH_TIME;
+            }
+        } else {
+            mSequence++;
+            mLastServicesByPid = servicesByPid;
+            mLastProcessesByPid = processesByPid;
+            changed = updateItems(context, pm, services, processes);
+        }
+        mLastMemoryUpdateTime = SystemClock.uptimeMillis();
+
         // Count number of interesting other (non-active) processes, and
         // build a list of all processes we will retrieve memory for.
         mAllProcessItems.clear();
@@ -1289,7 +1600,7 @@ public class RunningState {
         int numBackgroundProcesses = 0;
         int numForegroundProcesses = 0;
         int numServiceProcesses = 0;
-        NRP = mRunningProcesses.size();
+        final int NRP = mRunningProcesses.size();
         for (int i = 0; i < NRP; i++) {
             ProcessItem proc = mRunningProcesses.valueAt(i);
             if (proc.mCurSeq != mSequence) {
@@ -1324,8 +1635,7 @@ public class RunningState {
             for (int i = 0; i < numProc; i++) {
                 pids[i] = mAllProcessItems.get(i).mPid;
             }
-            long[] pss = ActivityManager.getService()
-                    .getProcessPss(pids);
+            long[] pss = getProcessPss(pids);
             int bgIndex = 0;
             for (int i = 0; i < pids.length; i++) {
                 ProcessItem proc = mAllProcessItems.get(i);
@@ -1436,9 +1746,21 @@ public class RunningState {
                 mHaveData = true;
                 mLock.notifyAll();
             }
+            if (changedPids != null && changedPids.size() > 0) {
+                final ArraySet<MergedItem> changedItems = new ArraySet<>();
+                addChangedItems(changedItems, mMergedItems, changedPids);
+                addChangedItems(changedItems, mUserBackgroundItems, changedPids);
+                mChangedItems = changedItems;
+            }
         }
 
-        return changed;
+        return changed
+                ? OnRefreshUiListener.REFRESH_STRUCTURE : OnRefreshUiListener.REFRESH_DATA;
+    }
+
+    @VisibleForTesting
+    long[] getProcessPss(int[] pids) throws RemoteException {
+        return ActivityManager.getService().getProcessPss(pids);
     }
 
     void setWatchingBackgroundItems(boolean watching) {
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications.manageapplications;
+
+import android.content.pm.ApplicationInfo;
+import android.text.TextUtils;
+import android.util.LongSparseArray;
+
+import androidx.recyclerview.widget.DiffUtil;
+
+import com.android.settingslib.applications.ApplicationsState.AppEntry;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A DiffCallback to calculate the difference between old and new {@link AppEntry} lists.
+ * <p>
+ * {@link AppEntry} objects are shared with {@code ApplicationsState} and updated in place, so
+ * both lists usually hold the very same, already updated, objects. Contents are therefore
+ * compared against what was last bound to the view instead of against the old list.
+ */
+class AppEntriesDiffCallback extends DiffUtil.Callback {
+
+    private final List<AppEntry> mOldEntries;
+    private final List<AppEntry> mNewEntries;
+    private final LongSparseArray<BoundContent> mBoundContents;
+
+    AppEntriesDiffCallback(List<AppEntry> oldEntries, List<AppEntry> newEntries,
+            LongSparseArray<BoundContent> boundContents) {
+        mOldEntries = oldEntries;
+        mNewEntries = newEntries;
+        mBoundContents = boundContents;
+    }
+
+    @Override
+    public int getOldListSize() {
+        return mOldEntries.size();
+    }
+
+    @Override
+    public int getNewListSize() {
+        return mNewEntries.size();
+    }
+
+    @Override
+    public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+        return mOldEntries.get(oldItemPosition).id == mNewEntries.get(newItemPosition).id;
+    }
+
+    @Override
+    public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+        final AppEntry newEntry = mNewEntries.get(newItemPosition);
+        final BoundContent boundContent = mBoundContents.get(newEntry.id);
+        // Entries which were never bound will be bound with their latest content anyway.
+        return boundContent == null || boundContent.matches(newEntry);
+    }
+
+    /** The part of an {@link AppEntry} which was shown when its view was last bound. */
+    static class BoundContent {
+        private final String mLabel;
+        private final String mSizeStr;
+        private final String mInternalSizeStr;
+        private final String mExternalSizeStr;
+        private final Object mExtraInfo;
+        private final int mFlags;
+        private final boolean mEnabled;
+        private final int mEnabledSetting;
+
+        BoundContent(AppEntry entry) {
+            mLabel = entry.label;
+            mSizeStr = entry.sizeStr;
+            mInternalSizeStr = entry.internalSizeStr;
+            mExternalSizeStr = entry.externalSizeStr;
+            mExtraInfo = entry.extraInfo;
+            final ApplicationInfo info = entry.info;
+            mFlags = info != null ? info.flags : 0;
+            mEnabled = info != null && info.enabled;
+            mEnabledSetting = info != null ? info.enabledSetting : 0;
+        }
+
+        boolean matches(AppEntry entry) {
+            final ApplicationInfo info = entry.info;
+            return TextUtils.equals(mLabel, entry.label)
+                    && TextUtils.equals(mSizeStr, entry.sizeStr)
+                    && TextUtils.equals(mInternalSizeStr, entry.internalSizeStr)
+                    && TextUtils.equals(mExternalSizeStr, entry.externalSizeStr)
+                    && Objects.equals(mExtraInfo, entry.extraInfo)
+                    && mFlags == (info != null ? info.flags : 0)
+                    && mEnabled == (info != null && info.enabled)
+                    && mEnabledSetting == (info != null ? info.enabledSetting : 0);
+        }
+    }
+}
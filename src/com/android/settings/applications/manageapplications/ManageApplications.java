@@ -41,7 +41,6 @@ import android.compat.annotation.ChangeId;
 import android.compat.annotation.LoggingOnly;
 import android.content.Context;
 import android.content.Intent;
-import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageItemInfo;
 import android.net.Uri;
 import android.os.Build;
@@ -57,6 +56,7 @@ import android.text.TextUtils;
 import android.util.ArraySet;
 import android.util.IconDrawableFactory;
 import android.util.Log;
+import android.util.LongSparseArray;
 import android.view.LayoutInflater;
 import android.view.Menu;
 import android.view.MenuInflater;
@@ -75,6 +75,7 @@ import androidx.annotation.VisibleForTesting;
 import androidx.annotation.WorkerThread;
 import androidx.coordinatorlayout.widget.CoordinatorLayout;
 import androidx.core.view.ViewCompat;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
@@ -106,6 +107,7 @@ import com.android.settings.applications.AppStateUsageBridge.UsageState;
 import com.android.settings.applications.AppStateWriteSettingsBridge;
 import com.android.settings.applications.AppStorageSettings;
 import com.android.settings.applications.UsageAccessDetails;
+import com.android.settings.applications.manageapplications.AppEntriesDiffCallback.BoundContent;
 import com.android.settings.applications.appinfo.AlarmsAndRemindersDetails;
 import com.android.settings.applications.appinfo.AppInfoDashboardFragment;
 import com.android.settings.applications.appinfo.DrawOverlayDetails;
@@ -138,6 +140,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -1006,8 +1009,16 @@ public class ManageApplications extends InstrumentedFragment
         private AppFilterItem mAppFilter;
         private ArrayList<ApplicationsState.AppEntry> mEntries;
         private ArrayList<ApplicationsState.AppEntry> mOriginalEntries;
+        // What each entry showed when it was last bound, to diff rebuilt lists against.
+        private final LongSparseArray<BoundContent> mBoundContents = new LongSparseArray<>();
+        // Packages whose size changed since the last frame.
+        private final ArraySet<String> mPendingSizeChanges = new ArraySet<>();
+        private final Runnable mFlushSizeChangesRunnable = this::flushPendingSizeChanges;
         private boolean mResumed;
         private int mLastSortMode = -1;
+        // The sort mode and comparator mEntries is sorted with.
+        private int mEntriesSortMode = -1;
+        private Comparator<AppEntry> mComparator;
         private int mWhichSize = SIZE_TOTAL;
         private AppFilter mCompositeFilter;
         private boolean mHasReceivedLoadEntries;
@@ -1229,6 +1240,7 @@ public class ManageApplications extends InstrumentedFragment
                 comparatorObj = ApplicationsState.ALPHA_COMPARATOR;
             }
 
+            mComparator = comparatorObj;
             final AppFilter finalFilterObj = new CompoundFilter(filterObj,
                     ApplicationsState.FILTER_NOT_HIDE);
             ThreadUtils.postOnBackgroundThread(() -> {
@@ -1289,9 +1301,12 @@ public class ManageApplications extends InstrumentedFragment
                     || filterType == FILTER_APPS_POWER_ALLOWLIST_ALL) {
                 entries = removeDuplicateIgnoringUser(entries);
             }
+            final ArrayList<AppEntry> oldEntries = mEntries;
             mEntries = entries;
             mOriginalEntries = entries;
-            notifyDataSetChanged();
+            // A new sort order moves most of the entries, so don't bother diffing.
+            dispatchEntriesChanged(oldEntries, entries, mLastSortMode != mEntriesSortMode);
+            mEntriesSortMode = mLastSortMode;
             if (getItemCount() == 0) {
                 mLoadingViewController.showEmpty(false /* animate */);
             } else {
@@ -1321,6 +1336,22 @@ public class ManageApplications extends InstrumentedFragment
             mManageApplications.setHasInstant(mState.haveInstantApps());
         }
 
+        /**
+         * Notifies the change from {@code oldEntries} to {@code newEntries} as item inserts,
+         * removals, moves and changes, so only the affected rows are rebound.
+         */
+        private void dispatchEntriesChanged(List<AppEntry> oldEntries, List<AppEntry> newEntries,
+                boolean fullUpdate) {
+            if (fullUpdate || oldEntries == null || oldEntries.isEmpty() || newEntries == null) {
+                mBoundContents.clear();
+                notifyDataSetChanged();
+                return;
+            }
+            DiffUtil.calculateDiff(
+                    new AppEntriesDiffCallback(oldEntries, newEntries, mBoundContents))
+                    .dispatchUpdatesTo(this);
+        }
+
         @VisibleForTesting
         void updateLoading() {
             final boolean appLoaded = mHasReceivedLoadEntries && mSession.getAllApps().size() != 0;
@@ -1365,22 +1396,124 @@ public class ManageApplications extends InstrumentedFragment
             if (mEntries == null) {
                 return;
             }
+            // Sizes are reported one package at a time while they are computed, so apply them
+            // at most once per frame.
+            final boolean scheduled = !mPendingSizeChanges.isEmpty();
+            mPendingSizeChanges.add(packageName);
+            if (scheduled) {
+                return;
+            }
+            if (mRecyclerView != null) {
+                mRecyclerView.postOnAnimation(mFlushSizeChangesRunnable);
+            } else {
+                flushPendingSizeChanges();
+            }
+        }
+
+        @VisibleForTesting
+        void flushPendingSizeChanges() {
+            if (mEntries == null || mPendingSizeChanges.isEmpty()) {
+                mPendingSizeChanges.clear();
+                return;
+            }
+            if (mPendingSizeChanges.contains(mManageApplications.mCurrentPkgName)) {
+                // We got the size information for the last app the
+                // user viewed, and are sorting by size...  they may
+                // have cleared data, so we immediately want to resort
+                // the list with the new size to reflect it to the user.
+                mPendingSizeChanges.clear();
+                rebuild();
+                return;
+            }
+            final ArrayList<AppEntry> changedEntries = new ArrayList<>();
             final int size = mEntries.size();
             for (int i = 0; i < size; i++) {
                 final AppEntry entry = mEntries.get(i);
-                final ApplicationInfo info = entry.info;
-                if (info == null && !TextUtils.equals(packageName, info.packageName)) {
-                    continue;
+                if (entry.info != null && mPendingSizeChanges.contains(entry.info.packageName)) {
+                    changedEntries.add(entry);
                 }
-                if (TextUtils.equals(mManageApplications.mCurrentPkgName, info.packageName)) {
-                    // We got the size information for the last app the
-                    // user viewed, and are sorting by size...  they may
-                    // have cleared data, so we immediately want to resort
-                    // the list with the new size to reflect it to the user.
-                    rebuild();
+            }
+            mPendingSizeChanges.clear();
+            final boolean sortedBySize = mEntriesSortMode == R.id.sort_order_size
+                    && mLastSortMode == R.id.sort_order_size && mComparator != null;
+            if (sortedBySize && !changedEntries.isEmpty()) {
+                // The search filter may be iterating the current lists in the background, so
+                // reorder copies of them.
+                final boolean filtered = mOriginalEntries != mEntries;
+                mEntries = new ArrayList<>(mEntries);
+                mOriginalEntries = filtered && mOriginalEntries != null
+                        ? new ArrayList<>(mOriginalEntries) : mEntries;
+                if (changedEntries.size() > 1) {
+                    // Each changed entry is out of order, so a binary search can't place one
+                    // while the others are still in the list. Take all of them out first.
+                    removeEntries(mEntries, changedEntries, true /* notify */);
+                    if (mOriginalEntries != mEntries) {
+                        removeEntries(mOriginalEntries, changedEntries, false /* notify */);
+                    }
+                    for (AppEntry entry : changedEntries) {
+                        notifyItemInserted(insertSorted(mEntries, entry));
+                        if (mOriginalEntries != mEntries) {
+                            insertSorted(mOriginalEntries, entry);
+                        }
+                    }
                     return;
+                }
+            }
+            for (AppEntry entry : changedEntries) {
+                final int from = mEntries.indexOf(entry);
+                if (from < 0) {
+                    continue;
+                }
+                int to = from;
+                if (sortedBySize) {
+                    to = moveToSortedPosition(mEntries, from);
+                    if (mOriginalEntries != mEntries) {
+                        moveToSortedPosition(mOriginalEntries, mOriginalEntries.indexOf(entry));
+                    }
+                    if (to != from) {
+                        notifyItemMoved(from, to);
+                    }
+                }
+                if (mOnScrollListener != null) {
+                    mOnScrollListener.postNotifyItemChange(to);
                 } else {
-                    mOnScrollListener.postNotifyItemChange(i);
+                    notifyItemChanged(to);
+                }
+            }
+        }
+
+        /**
+         * Moves the entry at {@code from} to where {@link #mComparator} sorts it among the other,
+         * still sorted, entries and returns its new position.
+         */
+        private int moveToSortedPosition(List<AppEntry> entries, int from) {
+            if (from < 0) {
+                return from;
+            }
+            return insertSorted(entries, entries.remove(from));
+        }
+
+        /**
+         * Inserts {@code entry} where {@link #mComparator} sorts it among the sorted
+         * {@code entries} and returns its position.
+         */
+        private int insertSorted(List<AppEntry> entries, AppEntry entry) {
+            int to = Collections.binarySearch(entries, entry, mComparator);
+            if (to < 0) {
+                to = -to - 1;
+            }
+            entries.add(to, entry);
+            return to;
+        }
+
+        private void removeEntries(List<AppEntry> entries, List<AppEntry> removedEntries,
+                boolean notify) {
+            for (int i = entries.size() - 1; i >= 0; i--) {
+                if (removedEntries.contains(entries.get(i))) {
+                    entries.remove(i);
+                    if (notify) {
+                        notifyItemRemoved(i);
+                    }
                 }
             }
         }
@@ -1446,6 +1579,7 @@ public class ManageApplications extends InstrumentedFragment
                 updateSummary(holder, entry);
                 updateSwitch(holder, entry);
                 holder.updateDisableView(entry.info);
+                mBoundContents.put(entry.id, new BoundContent(entry));
             }
             holder.setEnabled(isEnabled(position));
 
@@ -1575,8 +1709,9 @@ public class ManageApplications extends InstrumentedFragment
 
             @Override
             protected void publishResults(CharSequence constraint, FilterResults results) {
+                final ArrayList<ApplicationsState.AppEntry> oldEntries = mEntries;
                 mEntries = (ArrayList<ApplicationsState.AppEntry>) results.values;
-                notifyDataSetChanged();
+                dispatchEntriesChanged(oldEntries, mEntries, false /* fullUpdate */);
             }
         }
     }
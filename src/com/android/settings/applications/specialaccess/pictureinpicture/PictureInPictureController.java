@@ -22,7 +22,8 @@ import android.content.pm.PackageManager;
 
 import com.android.settings.core.BasePreferenceController;
 
-public class PictureInPictureController extends BasePreferenceController {
+public class PictureInPictureController extends BasePreferenceController
+        implements BasePreferenceController.StaticAvailability {
 
     public PictureInPictureController(Context context, String preferenceKey) {
         super(context, preferenceKey);
@@ -45,11 +45,6 @@ public class AvailableMediaBluetoothDeviceUpdater extends BluetoothDeviceUpdater
         mAudioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
     }
 
-    @Override
-    public void onAudioModeChanged() {
-        forceUpdate();
-    }
-
     @Override
     public boolean isFilterMatched(CachedBluetoothDevice cachedDevice) {
         final int audioMode = mAudioManager.getMode();
@@ -105,6 +100,11 @@ public class AvailableMediaBluetoothDeviceUpdater extends BluetoothDeviceUpdater
         return device.setActive();
     }
 
+    @Override
+    protected int getDeviceCategories() {
+        return BluetoothDeviceEventDispatcher.CATEGORY_AVAILABLE_MEDIA;
+    }
+
     @Override
     protected String getPreferenceKey() {
         return PREF_KEY;
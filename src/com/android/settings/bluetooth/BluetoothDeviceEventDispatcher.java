@@ -0,0 +1,311 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.bluetooth;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothProfile;
+import android.content.Context;
+import android.media.AudioManager;
+import android.util.Log;
+import android.view.Choreographer;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settingslib.bluetooth.BluetoothCallback;
+import com.android.settingslib.bluetooth.CachedBluetoothDevice;
+import com.android.settingslib.bluetooth.LocalBluetoothManager;
+import com.android.settingslib.bluetooth.LocalBluetoothProfileManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Receives the bluetooth events on behalf of every registered {@link BluetoothDeviceUpdater}.
+ * <p>
+ * Each device is classified once per event into one of the {@code CATEGORY_*} groups, and only
+ * the updaters interested in its previous or new category are asked to update it. Device events
+ * received within a frame are handled together on the next frame.
+ * <p>
+ * All methods are called on the main thread.
+ */
+public class BluetoothDeviceEventDispatcher implements BluetoothCallback,
+        LocalBluetoothProfileManager.ServiceListener {
+    private static final String TAG = "BtDeviceEventDispatcher";
+    private static final boolean DBG = Log.isLoggable(TAG, Log.DEBUG);
+
+    /** Device which is not bonded. */
+    static final int CATEGORY_NONE = 0;
+    /** Connected device playing the audio of the current audio mode, or a hearing aid. */
+    static final int CATEGORY_AVAILABLE_MEDIA = 1 << 0;
+    /** Other connected device. */
+    static final int CATEGORY_CONNECTED = 1 << 1;
+    /** Bonded device which is not connected. */
+    static final int CATEGORY_SAVED = 1 << 2;
+    /** Bonded TWS+ device which is not connected. */
+    static final int CATEGORY_SAVED_TWS = 1 << 3;
+    static final int CATEGORY_ALL = CATEGORY_AVAILABLE_MEDIA | CATEGORY_CONNECTED
+            | CATEGORY_SAVED | CATEGORY_SAVED_TWS;
+
+    private static final Map<LocalBluetoothManager, BluetoothDeviceEventDispatcher> sInstances =
+            new WeakHashMap<>();
+
+    private final LocalBluetoothManager mLocalManager;
+    private final AudioManager mAudioManager;
+    private final List<BluetoothDeviceUpdater> mUpdaters = new ArrayList<>();
+    private final Map<CachedBluetoothDevice, Integer> mCategories = new HashMap<>();
+    private final Set<CachedBluetoothDevice> mPendingDevices = new LinkedHashSet<>();
+    private final Choreographer.FrameCallback mFrameCallback =
+            frameTimeNanos -> dispatchPendingEvents();
+    private boolean mFramePending;
+    private boolean mClassifyAll;
+
+    /**
+     * Returns the dispatcher of the events of {@code localManager}.
+     */
+    public static BluetoothDeviceEventDispatcher getInstance(Context context,
+            LocalBluetoothManager localManager) {
+        BluetoothDeviceEventDispatcher dispatcher = sInstances.get(localManager);
+        if (dispatcher == null) {
+            dispatcher = new BluetoothDeviceEventDispatcher(context, localManager);
+            sInstances.put(localManager, dispatcher);
+        }
+        return dispatcher;
+    }
+
+    @VisibleForTesting
+    BluetoothDeviceEventDispatcher(Context context, LocalBluetoothManager localManager) {
+        mLocalManager = localManager;
+        mAudioManager = context.getApplicationContext().getSystemService(AudioManager.class);
+    }
+
+    /**
+     * Starts delivering the events to {@code updater}. The first updater registers the
+     * dispatcher to the bluetooth events.
+     */
+    public void addUpdater(BluetoothDeviceUpdater updater) {
+        if (mUpdaters.contains(updater)) {
+            return;
+        }
+        mUpdaters.add(updater);
+        if (mUpdaters.size() == 1) {
+            mLocalManager.getEventManager().registerCallback(this);
+            mLocalManager.getProfileManager().addServiceListener(this);
+            classifyAllDevices();
+        }
+    }
+
+    /**
+     * Stops delivering the events to {@code updater}. The last updater unregisters the
+     * dispatcher from the bluetooth events.
+     */
+    public void removeUpdater(BluetoothDeviceUpdater updater) {
+        if (!mUpdaters.remove(updater) || !mUpdaters.isEmpty()) {
+            return;
+        }
+        mLocalManager.getEventManager().unregisterCallback(this);
+        mLocalManager.getProfileManager().removeServiceListener(this);
+        cancelPendingEvents();
+        mCategories.clear();
+    }
+
+    @Override
+    public void onBluetoothStateChanged(int bluetoothState) {
+        if (BluetoothAdapter.STATE_ON == bluetoothState) {
+            cancelPendingEvents();
+            for (BluetoothDeviceUpdater updater : new ArrayList<>(mUpdaters)) {
+                updater.forceUpdate();
+            }
+            classifyAllDevices();
+        } else if (BluetoothAdapter.STATE_OFF == bluetoothState) {
+            cancelPendingEvents();
+            for (BluetoothDeviceUpdater updater : new ArrayList<>(mUpdaters)) {
+                updater.removeAllDevicesFromPreference();
+            }
+        }
+    }
+
+    @Override
+    public void onDeviceAdded(CachedBluetoothDevice cachedDevice) {
+        scheduleUpdate(cachedDevice);
+    }
+
+    @Override
+    public void onDeviceDeleted(CachedBluetoothDevice cachedDevice) {
+        mPendingDevices.remove(cachedDevice);
+        mCategories.remove(cachedDevice);
+        for (BluetoothDeviceUpdater updater : new ArrayList<>(mUpdaters)) {
+            updater.onDeviceDeleted(cachedDevice);
+        }
+    }
+
+    @Override
+    public void onDeviceBondStateChanged(CachedBluetoothDevice cachedDevice, int bondState) {
+        scheduleUpdate(cachedDevice);
+    }
+
+    @Override
+    public void onProfileConnectionStateChanged(CachedBluetoothDevice cachedDevice, int state,
+            int bluetoothProfile) {
+        scheduleUpdate(cachedDevice);
+    }
+
+    @Override
+    public void onAclConnectionStateChanged(CachedBluetoothDevice cachedDevice, int state) {
+        scheduleUpdate(cachedDevice);
+    }
+
+    /**
+     * Reclassifies every device on the next frame. The updaters are not forwarded this event,
+     * as {@link BluetoothDeviceUpdater#forceUpdate()} on each of them would update every device
+     * again; they are only asked to update the devices which moved between their groups.
+     */
+    @Override
+    public void onAudioModeChanged() {
+        // The audio mode moves devices between the available media and connected groups.
+        mClassifyAll = true;
+        scheduleFrame();
+    }
+
+    @Override
+    public void onServiceConnected() {
+        cancelPendingEvents();
+        for (BluetoothDeviceUpdater updater : new ArrayList<>(mUpdaters)) {
+            updater.forceUpdate();
+        }
+        classifyAllDevices();
+    }
+
+    @Override
+    public void onServiceDisconnected() {
+
+    }
+
+    /**
+     * Classifies the devices changed since the last frame and updates the interested updaters.
+     */
+    @VisibleForTesting
+    void dispatchPendingEvents() {
+        if (mFramePending) {
+            Choreographer.getInstance().removeFrameCallback(mFrameCallback);
+            mFramePending = false;
+        }
+        final Collection<CachedBluetoothDevice> devices = mClassifyAll
+                ? mLocalManager.getCachedDeviceManager().getCachedDevicesCopy()
+                : new ArrayList<>(mPendingDevices);
+        mClassifyAll = false;
+        mPendingDevices.clear();
+        if (devices.isEmpty() || !BluetoothAdapter.getDefaultAdapter().isEnabled()) {
+            return;
+        }
+
+        final int audioProfile = getCurrentAudioProfile(mAudioManager);
+        int updateCount = 0;
+        for (CachedBluetoothDevice cachedDevice : devices) {
+            final int category = classify(cachedDevice, audioProfile);
+            final Integer previous = mCategories.put(cachedDevice, category);
+            final int previousCategory = previous != null ? previous : CATEGORY_NONE;
+            if (previousCategory == category) {
+                continue;
+            }
+            final int changedCategories = previousCategory | category;
+            for (BluetoothDeviceUpdater updater : new ArrayList<>(mUpdaters)) {
+                if ((updater.getDeviceCategories() & changedCategories) != 0) {
+                    updater.update(cachedDevice);
+                    updateCount++;
+                }
+            }
+        }
+        if (DBG) {
+            Log.d(TAG, "dispatchPendingEvents() devices : " + devices.size()
+                    + ", updates : " + updateCount);
+        }
+    }
+
+    /**
+     * Returns the {@code CATEGORY_*} group of {@code cachedDevice}.
+     *
+     * @param audioProfile is the profile playing the audio of the current audio mode, either
+     *        {@link BluetoothProfile#A2DP} or {@link BluetoothProfile#HEADSET}.
+     */
+    @VisibleForTesting
+    static int classify(CachedBluetoothDevice cachedDevice, int audioProfile) {
+        final BluetoothDevice device = cachedDevice.getDevice();
+        if (device.getBondState() != BluetoothDevice.BOND_BONDED) {
+            return CATEGORY_NONE;
+        }
+        if (!device.isConnected()) {
+            return device.isTwsPlusDevice() ? CATEGORY_SAVED_TWS : CATEGORY_SAVED;
+        }
+        if (cachedDevice.isConnectedHearingAidDevice()) {
+            return CATEGORY_AVAILABLE_MEDIA;
+        }
+        final boolean isAudioConnected = audioProfile == BluetoothProfile.HEADSET
+                ? cachedDevice.isConnectedHfpDevice() : cachedDevice.isConnectedA2dpDevice();
+        return isAudioConnected ? CATEGORY_AVAILABLE_MEDIA : CATEGORY_CONNECTED;
+    }
+
+    /**
+     * Returns {@link BluetoothProfile#HEADSET} during a call, {@link BluetoothProfile#A2DP}
+     * otherwise.
+     */
+    static int getCurrentAudioProfile(AudioManager audioManager) {
+        final int audioMode = audioManager.getMode();
+        if (audioMode == AudioManager.MODE_RINGTONE
+                || audioMode == AudioManager.MODE_IN_CALL
+                || audioMode == AudioManager.MODE_IN_COMMUNICATION) {
+            return BluetoothProfile.HEADSET;
+        }
+        return BluetoothProfile.A2DP;
+    }
+
+    private void scheduleUpdate(CachedBluetoothDevice cachedDevice) {
+        mPendingDevices.add(cachedDevice);
+        scheduleFrame();
+    }
+
+    private void scheduleFrame() {
+        if (!mFramePending) {
+            mFramePending = true;
+            Choreographer.getInstance().postFrameCallback(mFrameCallback);
+        }
+    }
+
+    private void cancelPendingEvents() {
+        if (mFramePending) {
+            Choreographer.getInstance().removeFrameCallback(mFrameCallback);
+            mFramePending = false;
+        }
+        mPendingDevices.clear();
+        mClassifyAll = false;
+    }
+
+    private void classifyAllDevices() {
+        mCategories.clear();
+        final int audioProfile = getCurrentAudioProfile(mAudioManager);
+        for (CachedBluetoothDevice cachedDevice :
+                mLocalManager.getCachedDeviceManager().getCachedDevicesCopy()) {
+            mCategories.put(cachedDevice, classify(cachedDevice, audioProfile));
+        }
+    }
+}
@@ -48,6 +48,10 @@ import java.util.Map;
  *
  * In {@link BluetoothDeviceUpdater}, it uses {@link BluetoothDeviceFilter.Filter} to detect
  * whether the {@link CachedBluetoothDevice} is relevant.
+ *
+ * Once registered, the events are received through the {@link BluetoothDeviceEventDispatcher}
+ * shared by all the updaters, which only updates the devices whose
+ * {@link #getDeviceCategories() categories} changed.
  */
 public abstract class BluetoothDeviceUpdater implements BluetoothCallback,
         LocalBluetoothProfileManager.ServiceListener {
@@ -61,6 +65,7 @@ public abstract class BluetoothDeviceUpdater implements BluetoothCallback,
     protected DashboardFragment mFragment;
     @VisibleForTesting
     protected LocalBluetoothManager mLocalManager;
+    private BluetoothDeviceEventDispatcher mEventDispatcher;
 
     @VisibleForTesting
     final GearPreference.OnGearClickListener mDeviceProfilesListener = pref -> {
@@ -91,8 +96,9 @@ public abstract class BluetoothDeviceUpdater implements BluetoothCallback,
             return;
         }
         mLocalManager.setForegroundActivity(mFragment.getContext());
-        mLocalManager.getEventManager().registerCallback(this);
-        mLocalManager.getProfileManager().addServiceListener(this);
+        mEventDispatcher =
+                BluetoothDeviceEventDispatcher.getInstance(mFragment.getContext(), mLocalManager);
+        mEventDispatcher.addUpdater(this);
         forceUpdate();
     }
 
@@ -105,8 +111,10 @@ public abstract class BluetoothDeviceUpdater implements BluetoothCallback,
             return;
         }
         mLocalManager.setForegroundActivity(null);
-        mLocalManager.getEventManager().unregisterCallback(this);
-        mLocalManager.getProfileManager().removeServiceListener(this);
+        if (mEventDispatcher != null) {
+            mEventDispatcher.removeUpdater(this);
+            mEventDispatcher = null;
+        }
     }
 
     /**
@@ -210,6 +218,15 @@ public abstract class BluetoothDeviceUpdater implements BluetoothCallback,
      */
     public abstract boolean isFilterMatched(CachedBluetoothDevice cachedBluetoothDevice);
 
+    /**
+     * Return the {@code BluetoothDeviceEventDispatcher.CATEGORY_*} groups of the devices which
+     * may match {@link #isFilterMatched(CachedBluetoothDevice)}. The updater is only told about
+     * the devices entering or leaving these groups.
+     */
+    protected int getDeviceCategories() {
+        return BluetoothDeviceEventDispatcher.CATEGORY_ALL;
+    }
+
     /**
      * Return a preference key for logging
      */
@@ -33,7 +33,7 @@ import com.android.settingslib.core.instrumentation.MetricsFeatureProvider;
  * Controller that shows received files
  */
 public class BluetoothFilesPreferenceController extends BasePreferenceController
-        implements PreferenceControllerMixin {
+        implements PreferenceControllerMixin, BasePreferenceController.StaticAvailability {
     private static final String TAG = "BluetoothFilesPrefCtrl";
 
     public static final String KEY_RECEIVED_FILES = "bt_received_files";
@@ -45,11 +45,6 @@ public class ConnectedBluetoothDeviceUpdater extends BluetoothDeviceUpdater {
         mAudioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
     }
 
-    @Override
-    public void onAudioModeChanged() {
-        forceUpdate();
-    }
-
     @Override
     public boolean isFilterMatched(CachedBluetoothDevice cachedDevice) {
         final int audioMode = mAudioManager.getMode();
@@ -114,6 +109,11 @@ public class ConnectedBluetoothDeviceUpdater extends BluetoothDeviceUpdater {
         }
     }
 
+    @Override
+    protected int getDeviceCategories() {
+        return BluetoothDeviceEventDispatcher.CATEGORY_CONNECTED;
+    }
+
     @Override
     protected String getPreferenceKey() {
         return PREF_KEY;
@@ -155,6 +155,15 @@ public class SavedBluetoothDeviceUpdater extends BluetoothDeviceUpdater
         return true;
     }
 
+    @Override
+    protected int getDeviceCategories() {
+        return mDisplayConnected
+                ? BluetoothDeviceEventDispatcher.CATEGORY_SAVED
+                        | BluetoothDeviceEventDispatcher.CATEGORY_AVAILABLE_MEDIA
+                        | BluetoothDeviceEventDispatcher.CATEGORY_CONNECTED
+                : BluetoothDeviceEventDispatcher.CATEGORY_SAVED;
+    }
+
     @Override
     protected String getPreferenceKey() {
         return PREF_KEY;
@@ -83,6 +83,11 @@ public class SavedBluetoothTwsDeviceUpdater extends BluetoothDeviceUpdater {
             !device.isConnected() && device.isTwsPlusDevice();
     }
 
+    @Override
+    protected int getDeviceCategories() {
+        return BluetoothDeviceEventDispatcher.CATEGORY_SAVED_TWS;
+    }
+
     @Override
     protected String getPreferenceKey() {
         return PREF_KEY;
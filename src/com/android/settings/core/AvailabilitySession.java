@@ -0,0 +1,294 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import android.content.Context;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settingslib.core.AbstractPreferenceController;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Session computing the availability status of {@link AvailabilityStatusHandler} controllers
+ * ahead, in parallel, and pinning it until the session is closed.
+ * <p>
+ * Controllers implementing {@link InputConsumer} declare the expensive {@link Input}s their
+ * availability depends on. Each input is fetched once per session, and a controller is only
+ * evaluated once its declared inputs are fetched. Controllers read inputs back through
+ * {@link #getInput(Context, Input)}, or through a cache the input fills when loaded.
+ * <p>
+ * A session is built and closed on the same thread, around one refresh of the preferences.
+ */
+public class AvailabilitySession implements AutoCloseable {
+
+    private static final String TAG = "AvailabilitySession";
+    private static final int MAX_POOL_SIZE = 4;
+    private static final long KEEP_ALIVE_SECONDS = 30L;
+
+    // Session whose inputs are served by getInput() on the current thread.
+    private static final ThreadLocal<AvailabilitySession> sCurrentSession = new ThreadLocal<>();
+    private static Executor sExecutor;
+
+    /**
+     * An expensive input shared by the availability of several controllers, such as the list of
+     * active subscriptions. Inputs are told apart with {@link Object#equals(Object)}.
+     */
+    public interface Input<T> {
+        /**
+         * Loads the input, usually on a background thread.
+         */
+        T load(Context context);
+    }
+
+    /**
+     * Interface of controllers declaring the {@link Input}s their availability depends on.
+     */
+    public interface InputConsumer {
+        /**
+         * @return the inputs read by {@link BasePreferenceController#getAvailabilityStatus()}.
+         */
+        Collection<Input<?>> getAvailabilityInputs();
+    }
+
+    private final Context mContext;
+    private final AvailabilitySession mPreviousSession;
+    private final Map<Input<?>, FutureTask<?>> mInputs = new ConcurrentHashMap<>();
+    private final List<PinTask> mPinTasks = new ArrayList<>();
+    private final long mStartTime;
+
+    /**
+     * Builder of session
+     */
+    public static class Builder {
+        private final Context mContext;
+        private final Collection<AbstractPreferenceController> mControllers;
+        private Executor mExecutor;
+
+        /**
+         * Constructor
+         *
+         * @param context is the context the inputs are loaded with.
+         * @param controllers is a collection of {@link AbstractPreferenceController}
+         *        which would have {@link BasePreferenceController#getAvailabilityStatus()}
+         *        under control within this session.
+         */
+        public Builder(Context context, Collection<AbstractPreferenceController> controllers) {
+            mContext = context;
+            mControllers = controllers;
+        }
+
+        @VisibleForTesting
+        Builder setExecutor(Executor executor) {
+            mExecutor = executor;
+            return this;
+        }
+
+        /**
+         * Method to build this session.
+         * @return {@link AvailabilitySession} session been setup.
+         */
+        public AvailabilitySession build() {
+            return new AvailabilitySession(mContext, mControllers,
+                    mExecutor != null ? mExecutor : getSharedExecutor());
+        }
+    }
+
+    private AvailabilitySession(Context context,
+            Collection<AbstractPreferenceController> controllers, Executor executor) {
+        mContext = context;
+        mStartTime = SystemClock.elapsedRealtime();
+        mPreviousSession = sCurrentSession.get();
+        sCurrentSession.set(this);
+
+        // Inputs are queued ahead of the controllers waiting on them, so the bounded pool can't
+        // end up filled with controllers waiting for inputs which never get to run.
+        for (AbstractPreferenceController controller : controllers) {
+            if (!(controller instanceof InputConsumer)) {
+                continue;
+            }
+            for (Input<?> input : ((InputConsumer) controller).getAvailabilityInputs()) {
+                final FutureTask<?> task = createInputTask(input);
+                if (mInputs.putIfAbsent(input, task) == null) {
+                    executor.execute(task);
+                }
+            }
+        }
+        for (AbstractPreferenceController controller : controllers) {
+            if (controller instanceof AvailabilityStatusHandler
+                    && controller instanceof BasePreferenceController) {
+                final PinTask task = new PinTask((BasePreferenceController) controller);
+                mPinTasks.add(task);
+                executor.execute(task);
+            }
+        }
+    }
+
+    /**
+     * Returns {@code input} as fetched by the session running on the calling thread, or loads it
+     * right away when there's no such session.
+     */
+    public static <T> T getInput(Context context, Input<T> input) {
+        final AvailabilitySession session = sCurrentSession.get();
+        return session != null ? session.get(input) : input.load(context);
+    }
+
+    /**
+     * @return {@code true} if a session is running on the calling thread.
+     */
+    public static boolean isInSession() {
+        return sCurrentSession.get() != null;
+    }
+
+    /**
+     * Close the session.
+     *
+     * Waits for every controller to be evaluated, then no longer controls the status.
+     */
+    @Override
+    public void close() {
+        for (PinTask task : mPinTasks) {
+            try {
+                if (task.get()) {
+                    task.mHandler.unsetAvailabilityStatus();
+                }
+            } catch (ExecutionException | InterruptedException exception) {
+                Log.e(TAG, "setup availability status failed!", exception);
+            }
+        }
+        sCurrentSession.set(mPreviousSession);
+        Log.d(TAG, mPinTasks.size() + " controllers, " + mInputs.size() + " inputs: +"
+                + (SystemClock.elapsedRealtime() - mStartTime) + "ms");
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T get(Input<T> input) {
+        FutureTask<?> task = mInputs.get(input);
+        if (task == null) {
+            // Not declared by any controller, load it on the calling thread once.
+            final FutureTask<T> newTask = createInputTask(input);
+            task = mInputs.putIfAbsent(input, newTask);
+            if (task == null) {
+                task = newTask;
+                newTask.run();
+            }
+        }
+        try {
+            return (T) task.get();
+        } catch (ExecutionException | InterruptedException exception) {
+            Log.w(TAG, "Unable to fetch " + input + ", loading it again", exception);
+            return input.load(mContext);
+        }
+    }
+
+    /**
+     * Waits for the inputs declared by {@code controller} to be fetched. Their tasks are queued
+     * ahead of the controller, so they are already running or done.
+     */
+    private void awaitInputs(BasePreferenceController controller) {
+        if (!(controller instanceof InputConsumer)) {
+            return;
+        }
+        for (Input<?> input : ((InputConsumer) controller).getAvailabilityInputs()) {
+            final FutureTask<?> task = mInputs.get(input);
+            if (task == null) {
+                continue;
+            }
+            try {
+                task.get();
+            } catch (ExecutionException | InterruptedException exception) {
+                // The controller loads the input again when reading it.
+                Log.w(TAG, "Unable to fetch " + input, exception);
+            }
+        }
+    }
+
+    private <T> FutureTask<T> createInputTask(Input<T> input) {
+        return new FutureTask<>(() -> input.load(mContext));
+    }
+
+    private static synchronized Executor getSharedExecutor() {
+        if (sExecutor == null) {
+            final int poolSize = Math.min(MAX_POOL_SIZE,
+                    Math.max(2, Runtime.getRuntime().availableProcessors()));
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize,
+                    KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                    new SessionThreadFactory());
+            executor.allowCoreThreadTimeOut(true);
+            sExecutor = executor;
+        }
+        return sExecutor;
+    }
+
+    /**
+     * Computes and pins the availability status of one controller. Its result tells whether the
+     * status got pinned.
+     */
+    private class PinTask extends FutureTask<Boolean> {
+        final AvailabilityStatusHandler mHandler;
+
+        PinTask(BasePreferenceController controller) {
+            super(() -> pin(controller));
+            mHandler = (AvailabilityStatusHandler) controller;
+        }
+    }
+
+    private boolean pin(BasePreferenceController controller) {
+        awaitInputs(controller);
+        final AvailabilitySession previousSession = sCurrentSession.get();
+        sCurrentSession.set(this);
+        try {
+            final int status = controller.getAvailabilityStatus();
+            ((AvailabilityStatusHandler) controller).setAvailabilityStatus(status);
+            return true;
+        } catch (Exception exception) {
+            Log.e(TAG, "Setup availability status failed! " + controller.getPreferenceKey(),
+                    exception);
+            return false;
+        } finally {
+            sCurrentSession.set(previousSession);
+        }
+    }
+
+    private static class SessionThreadFactory implements ThreadFactory {
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, "AvailabilitySession-" + mCount.incrementAndGet());
+        }
+    }
+}
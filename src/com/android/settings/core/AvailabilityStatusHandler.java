@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+/**
+ * Interface of {@link BasePreferenceController}s whose availability status can be computed ahead
+ * by an {@link AvailabilitySession} and pinned for the duration of the session.
+ */
+public interface AvailabilityStatusHandler {
+
+    /**
+     * Set availability status of preference controller to a fixed value.
+     * @param status is the given status. Which will be reported from
+     * {@link BasePreferenceController#getAvailabilityStatus()}
+     */
+    void setAvailabilityStatus(int status);
+
+    /**
+     * Undo one {@link #setAvailabilityStatus(int)}. Once every call is undone, the controller
+     * computes its availability status again.
+     */
+    void unsetAvailabilityStatus();
+}
@@ -254,7 +254,7 @@ public abstract class BasePreferenceController extends AbstractPreferenceControl
             return false;
         }
 
-        final int availabilityStatus = getAvailabilityStatus();
+        final int availabilityStatus = getAvailabilityStatusInternal();
         return (availabilityStatus == AVAILABLE
                 || availabilityStatus == AVAILABLE_UNSEARCHABLE
                 || availabilityStatus == DISABLED_DEPENDENT_SETTING);
@@ -268,7 +268,19 @@ public abstract class BasePreferenceController extends AbstractPreferenceControl
      * Note that a return value of {@code true} does not mean that the setting is available.
      */
     public final boolean isSupported() {
-        return getAvailabilityStatus() != UNSUPPORTED_ON_DEVICE;
+        return getAvailabilityStatusInternal() != UNSUPPORTED_ON_DEVICE;
+    }
+
+    /**
+     * @return {@link AvailabilityStatus} of the Setting, read from {@link StaticAvailabilityCache}
+     * if the controller is a {@link StaticAvailability}.
+     */
+    @AvailabilityStatus
+    private int getAvailabilityStatusInternal() {
+        if (this instanceof StaticAvailability) {
+            return StaticAvailabilityCache.getInstance(mContext).getAvailabilityStatus(this);
+        }
+        return getAvailabilityStatus();
     }
 
     /**
@@ -277,7 +289,7 @@ public abstract class BasePreferenceController extends AbstractPreferenceControl
     @Override
     public void displayPreference(PreferenceScreen screen) {
         super.displayPreference(screen);
-        if (getAvailabilityStatus() == DISABLED_DEPENDENT_SETTING) {
+        if (getAvailabilityStatusInternal() == DISABLED_DEPENDENT_SETTING) {
             // Disable preference if it depends on another setting.
             final Preference preference = screen.findPreference(getPreferenceKey());
             if (preference != null) {
@@ -301,7 +313,7 @@ public abstract class BasePreferenceController extends AbstractPreferenceControl
      */
     public void updateNonIndexableKeys(List<String> keys) {
         final boolean shouldSuppressFromSearch = !isAvailable()
-                || getAvailabilityStatus() == AVAILABLE_UNSEARCHABLE;
+                || getAvailabilityStatusInternal() == AVAILABLE_UNSEARCHABLE;
         if (shouldSuppressFromSearch) {
             final String key = getPreferenceKey();
             if (TextUtils.isEmpty(key)) {
@@ -404,6 +416,21 @@ public abstract class BasePreferenceController extends AbstractPreferenceControl
     public interface UiBlocker {
     }
 
+    /**
+     * Used for {@link BasePreferenceController} whose {@link #getAvailabilityStatus()} makes
+     * binder calls, e.g. to query hardware features or other packages, yet depends only on
+     * inputs which don't change until the build, user, locale, configuration or resource
+     * overlays change. The status is then computed once and persisted in
+     * {@link StaticAvailabilityCache}.
+     *
+     * Checks only reading resources or build properties are cheaper than the cache lookup and
+     * shouldn't use it.
+     *
+     * This must be used in {@link BasePreferenceController}
+     */
+    public interface StaticAvailability {
+    }
+
     /**
      * Set the metrics category of the parent fragment.
      *
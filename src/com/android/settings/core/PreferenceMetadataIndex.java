@@ -0,0 +1,482 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_APPEND;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_CONTROLLER;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_FOR_WORK;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_ICON;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_KEY;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_KEYWORDS;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_PREF_TYPE;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_SEARCHABLE;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_SUMMARY;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_TITLE;
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_UNAVAILABLE_SLICE_SUBTITLE;
+import static com.android.settings.core.PreferenceXmlParserUtils.PREF_SCREEN_TAG;
+
+import android.annotation.XmlRes;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.os.Build;
+import android.os.Bundle;
+import android.text.TextUtils;
+import android.util.AtomicFile;
+import android.util.Log;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+import android.util.TypedValue;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settings.core.PreferenceXmlParserUtils.MetadataFlag;
+import com.android.settingslib.utils.ThreadUtils;
+
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Binary index of the metadata declared in preference screen xml.
+ * <p>
+ * Every screen is parsed once with all {@link MetadataFlag}s, and the result is kept in memory
+ * and persisted to a compact binary file in the code cache directory. Later processes memory-map
+ * that file and answer {@link PreferenceXmlParserUtils#extractMetadata(Context, int, int)}
+ * without inflating xml. Strings are stored as resource ids where possible so the index stays
+ * valid across locale changes; the file is dropped when the build, the resource qualifiers or
+ * the resource overlays change, or when it turns out to be truncated. The code cache directory
+ * is also wiped by the system on package update.
+ */
+public class PreferenceMetadataIndex {
+
+    private static final String TAG = "PreferenceMetadataIndex";
+
+    @VisibleForTesting
+    static final String INDEX_FILE_NAME = "preference_metadata.idx";
+    private static final int MAGIC = 0x504d4958; // "PMIX"
+    private static final int VERSION = 1;
+
+    private static final byte VALUE_NULL = 0;
+    private static final byte VALUE_RES_ID = 1;
+    private static final byte VALUE_LITERAL = 2;
+
+    private static PreferenceMetadataIndex sInstance;
+
+    private final String mFingerprint;
+    private final File mIndexFile;
+    // Screens decoded or parsed in this process.
+    private final SparseArray<List<Entry>> mEntries = new SparseArray<>();
+    // Offsets of screens available in the mapped index file.
+    private final SparseIntArray mMappedOffsets = new SparseIntArray();
+    private ByteBuffer mMappedBuffer;
+    private boolean mWritePending;
+
+    /**
+     * Returns the index for the current build and resource configuration, or {@code null} if the
+     * configuration cannot be determined.
+     */
+    public static synchronized PreferenceMetadataIndex getInstance(Context context) {
+        final Context appContext = context.getApplicationContext();
+        final String fingerprint = getFingerprint(appContext);
+        if (fingerprint == null) {
+            return null;
+        }
+        final File dir = appContext.getCodeCacheDir();
+        final File indexFile = dir == null ? null : new File(dir, INDEX_FILE_NAME);
+        if (sInstance == null || !TextUtils.equals(sInstance.mFingerprint, fingerprint)
+                || !sameFile(sInstance.mIndexFile, indexFile)) {
+            sInstance = new PreferenceMetadataIndex(fingerprint, indexFile);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Maps the index file on a background thread, so that the first screen extracting metadata
+     * on the main thread doesn't have to.
+     */
+    public static void preload(Context context) {
+        ThreadUtils.postOnBackgroundThread(() -> getInstance(context));
+    }
+
+    @VisibleForTesting
+    PreferenceMetadataIndex(String fingerprint, File indexFile) {
+        mFingerprint = fingerprint;
+        mIndexFile = indexFile;
+        mapIndexFile();
+    }
+
+    /**
+     * Same contract as {@link PreferenceXmlParserUtils#extractMetadata(Context, int, int)}.
+     */
+    public List<Bundle> extractMetadata(Context context, @XmlRes int xmlResId, int flags)
+            throws IOException, XmlPullParserException {
+        final List<Entry> entries = getEntries(context, xmlResId);
+        final List<Bundle> metadata = new ArrayList<>(entries.size());
+        final boolean hasPrefScreenFlag = hasFlag(flags, MetadataFlag.FLAG_INCLUDE_PREF_SCREEN);
+        for (Entry entry : entries) {
+            if (!hasPrefScreenFlag && TextUtils.equals(PREF_SCREEN_TAG, entry.mType)) {
+                continue;
+            }
+            metadata.add(entry.toBundle(context, flags));
+        }
+        return metadata;
+    }
+
+    @VisibleForTesting
+    synchronized boolean isMapped(@XmlRes int xmlResId) {
+        return mMappedOffsets.indexOfKey(xmlResId) >= 0;
+    }
+
+    private List<Entry> getEntries(Context context, @XmlRes int xmlResId)
+            throws IOException, XmlPullParserException {
+        synchronized (this) {
+            List<Entry> entries = mEntries.get(xmlResId);
+            if (entries != null) {
+                return entries;
+            }
+            final int offsetIndex = mMappedOffsets.indexOfKey(xmlResId);
+            if (offsetIndex >= 0) {
+                entries = readMappedScreenLocked(offsetIndex);
+                if (entries != null) {
+                    mEntries.put(xmlResId, entries);
+                    return entries;
+                }
+            }
+        }
+        // Not indexed yet, parse xml outside of the lock.
+        final List<Entry> entries = PreferenceXmlParserUtils.parseEntries(context, xmlResId);
+        synchronized (this) {
+            mEntries.put(xmlResId, entries);
+            scheduleWriteLocked();
+        }
+        return entries;
+    }
+
+    private void scheduleWriteLocked() {
+        if (mIndexFile == null || mWritePending) {
+            return;
+        }
+        mWritePending = true;
+        ThreadUtils.postOnBackgroundThread(this::writeIndexFile);
+    }
+
+    private void mapIndexFile() {
+        if (mIndexFile == null || !mIndexFile.exists()) {
+            return;
+        }
+        try (FileInputStream in = new FileInputStream(mIndexFile);
+             FileChannel channel = in.getChannel()) {
+            final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+                    || !TextUtils.equals(mFingerprint, readString(buffer))) {
+                Log.d(TAG, "Index file is stale, ignoring it");
+                return;
+            }
+            final int screenCount = buffer.getInt();
+            for (int i = 0; i < screenCount; i++) {
+                mMappedOffsets.put(buffer.getInt(), buffer.getInt());
+            }
+            mMappedBuffer = buffer;
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Failed to map index file", e);
+            mMappedOffsets.clear();
+        }
+    }
+
+    private void writeIndexFile() {
+        final SparseArray<List<Entry>> snapshot;
+        synchronized (this) {
+            // Decode every mapped screen so the new file is a superset of the old one.
+            for (int i = 0; i < mMappedOffsets.size(); i++) {
+                final int resId = mMappedOffsets.keyAt(i);
+                if (mEntries.get(resId) == null) {
+                    final List<Entry> entries = readMappedScreenLocked(i);
+                    if (entries == null) {
+                        // The mapped file is invalid and was dropped, only keep parsed screens.
+                        break;
+                    }
+                    mEntries.put(resId, entries);
+                }
+            }
+            snapshot = mEntries.clone();
+            mWritePending = false;
+        }
+
+        final AtomicFile file = new AtomicFile(mIndexFile);
+        FileOutputStream out = null;
+        try {
+            final ByteArrayOutputStream data = new ByteArrayOutputStream();
+            final DataOutputStream dataOut = new DataOutputStream(data);
+            final int[] offsets = new int[snapshot.size()];
+            for (int i = 0; i < snapshot.size(); i++) {
+                offsets[i] = dataOut.size();
+                writeScreen(dataOut, snapshot.valueAt(i));
+            }
+            final byte[] fingerprint = mFingerprint.getBytes(StandardCharsets.UTF_8);
+            // magic, version, fingerprint, count, directory
+            final int headerSize = 4 + 4 + 4 + fingerprint.length + 4 + snapshot.size() * 8;
+
+            out = file.startWrite();
+            final DataOutputStream fileOut = new DataOutputStream(out);
+            fileOut.writeInt(MAGIC);
+            fileOut.writeInt(VERSION);
+            fileOut.writeInt(fingerprint.length);
+            fileOut.write(fingerprint);
+            fileOut.writeInt(snapshot.size());
+            for (int i = 0; i < snapshot.size(); i++) {
+                fileOut.writeInt(snapshot.keyAt(i));
+                fileOut.writeInt(headerSize + offsets[i]);
+            }
+            data.writeTo(fileOut);
+            fileOut.flush();
+            file.finishWrite(out);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write index file", e);
+            file.failWrite(out);
+        }
+    }
+
+    /**
+     * Decodes the mapped screen at {@code offsetIndex}, or returns {@code null} and stops using
+     * the mapped file if it is truncated or otherwise corrupt, so that screens are parsed from xml
+     * again and the file is rebuilt on the next write.
+     */
+    private List<Entry> readMappedScreenLocked(int offsetIndex) {
+        try {
+            return readScreen(mMappedBuffer.duplicate(), mMappedOffsets.valueAt(offsetIndex));
+        } catch (BufferUnderflowException | IllegalArgumentException
+                | NegativeArraySizeException e) {
+            Log.w(TAG, "Index file is corrupt, rebuilding it", e);
+            mMappedOffsets.clear();
+            mMappedBuffer = null;
+            return null;
+        }
+    }
+
+    private static void writeScreen(DataOutputStream out, List<Entry> entries)
+            throws IOException {
+        out.writeInt(entries.size());
+        for (Entry entry : entries) {
+            writeLiteral(out, entry.mType);
+            entry.mKey.write(out);
+            entry.mController.write(out);
+            entry.mTitle.write(out);
+            entry.mSummary.write(out);
+            out.writeInt(entry.mIcon);
+            entry.mKeywords.write(out);
+            out.writeBoolean(entry.mSearchable);
+            out.writeBoolean(entry.mAppend);
+            entry.mUnavailableSliceSubtitle.write(out);
+            out.writeBoolean(entry.mForWork);
+        }
+    }
+
+    private static List<Entry> readScreen(ByteBuffer buffer, int offset) {
+        buffer.position(offset);
+        final int count = buffer.getInt();
+        final List<Entry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final Entry entry = new Entry();
+            entry.mType = readString(buffer);
+            entry.mKey = Value.read(buffer);
+            entry.mController = Value.read(buffer);
+            entry.mTitle = Value.read(buffer);
+            entry.mSummary = Value.read(buffer);
+            entry.mIcon = buffer.getInt();
+            entry.mKeywords = Value.read(buffer);
+            entry.mSearchable = buffer.get() != 0;
+            entry.mAppend = buffer.get() != 0;
+            entry.mUnavailableSliceSubtitle = Value.read(buffer);
+            entry.mForWork = buffer.get() != 0;
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    private static void writeLiteral(DataOutputStream out, String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns a fingerprint of the build, of the resource qualifiers that select preference xml
+     * and of the resource overlays applied to the app, or {@code null} when the configuration is
+     * unavailable.
+     */
+    @VisibleForTesting
+    static String getFingerprint(Context context) {
+        final Context appContext = context.getApplicationContext();
+        final Resources res = appContext.getResources();
+        final Configuration config = res == null ? null : res.getConfiguration();
+        if (config == null) {
+            return null;
+        }
+        return new StringBuilder()
+                .append(Build.FINGERPRINT).append('|')
+                .append(config.mcc).append('|')
+                .append(config.mnc).append('|')
+                .append(config.screenLayout).append('|')
+                .append(config.uiMode).append('|')
+                .append(config.smallestScreenWidthDp).append('|')
+                .append(config.densityDpi).append('|')
+                .append(Arrays.toString(appContext.getApplicationInfo().resourceDirs))
+                .toString();
+    }
+
+    private static boolean sameFile(File a, File b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private static boolean hasFlag(int flags, @MetadataFlag int flag) {
+        return (flags & flag) != 0;
+    }
+
+    /**
+     * Metadata of a single preference, holding every field {@link MetadataFlag} can request.
+     */
+    static class Entry {
+        String mType;
+        Value mKey;
+        Value mController;
+        Value mTitle;
+        Value mSummary;
+        int mIcon;
+        Value mKeywords;
+        boolean mSearchable;
+        boolean mAppend;
+        Value mUnavailableSliceSubtitle;
+        boolean mForWork;
+
+        Bundle toBundle(Context context, int flags) {
+            final Bundle bundle = new Bundle();
+            if (hasFlag(flags, MetadataFlag.FLAG_NEED_PREF_TYPE)) {
+                bundle.putString(METADATA_PREF_TYPE, mType);
+            }
+            if (hasFlag(flags, MetadataFlag.FLAG_NEED_KEY)) {
+                bundle.putString(METADATA_KEY, mKey.resolve(context));
+            }
+            if (hasFlag(flags, MetadataFlag.FLAG_NEED_PREF_CONTROLLER)) {
+                bundle.putString(METADATA_CONTROLLER, mController.resolve(context));
+            }
+            if (hasFlag(flags, MetadataFlag.FLAG_NEED_PREF_TITLE)) {
+                bundle.putString(METADATA_TITLE, mTitle.resolve(context));
+            }
+            if (hasFlag(flags, MetadataFlag.FLAG_NEED_PREF_SUMMARY)) {
+                bundle.putString(METADATA_SUMMARY, mSummary.resolve(context));
+            }
+            if (hasFlag(flags, MetadataFlag.FLAG_NEED_PREF_ICON)) {
+                bundle.putInt(METADATA_ICON, mIcon);
+            }
+            if (hasFlag(flags, MetadataFlag.FLAG_NEED_KEYWORDS)) {
+                bundle.putString(METADATA_KEYWORDS, mKeywords.resolve(context));
+            }
+            if (hasFlag(flags, MetadataFlag.FLAG_NEED_SEARCHABLE)) {
+                bundle.putBoolean(METADATA_SEARCHABLE, mSearchable);
+            }
+            if (hasFlag(flags, MetadataFlag.FLAG_NEED_PREF_APPEND)
+                    && hasFlag(flags, MetadataFlag.FLAG_INCLUDE_PREF_SCREEN)) {
+                bundle.putBoolean(METADATA_APPEND, mAppend);
+            }
+            if (hasFlag(flags, MetadataFlag.FLAG_UNAVAILABLE_SLICE_SUBTITLE)) {
+                bundle.putString(METADATA_UNAVAILABLE_SLICE_SUBTITLE,
+                        mUnavailableSliceSubtitle.resolve(context));
+            }
+            if (hasFlag(flags, MetadataFlag.FLAG_FOR_WORK)) {
+                bundle.putBoolean(METADATA_FOR_WORK, mForWork);
+            }
+            return bundle;
+        }
+    }
+
+    /**
+     * A string attribute, stored either as a string resource id or as a literal.
+     */
+    static class Value {
+        private static final Value NULL = new Value(VALUE_NULL, 0, null);
+
+        private final byte mKind;
+        private final int mResId;
+        private final String mLiteral;
+
+        private Value(byte kind, int resId, String literal) {
+            mKind = kind;
+            mResId = resId;
+            mLiteral = literal;
+        }
+
+        static Value from(TypedArray attributes, int index) {
+            final TypedValue value = attributes.peekValue(index);
+            if (value != null && value.type == TypedValue.TYPE_STRING && value.resourceId != 0) {
+                return new Value(VALUE_RES_ID, value.resourceId, null);
+            }
+            final String literal = attributes.getString(index);
+            return literal == null ? NULL : new Value(VALUE_LITERAL, 0, literal);
+        }
+
+        String resolve(Context context) {
+            switch (mKind) {
+                case VALUE_RES_ID:
+                    return context.getResources().getString(mResId);
+                case VALUE_LITERAL:
+                    return mLiteral;
+                default:
+                    return null;
+            }
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeByte(mKind);
+            if (mKind == VALUE_RES_ID) {
+                out.writeInt(mResId);
+            } else if (mKind == VALUE_LITERAL) {
+                writeLiteral(out, mLiteral);
+            }
+        }
+
+        static Value read(ByteBuffer buffer) {
+            final byte kind = buffer.get();
+            if (kind == VALUE_RES_ID) {
+                return new Value(VALUE_RES_ID, buffer.getInt(), null);
+            } else if (kind == VALUE_LITERAL) {
+                return new Value(VALUE_LITERAL, 0, readString(buffer));
+            }
+            return NULL;
+        }
+    }
+}
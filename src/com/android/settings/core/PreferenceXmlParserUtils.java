@@ -169,6 +169,9 @@ public class PreferenceXmlParserUtils {
 
     /**
      * Extracts metadata from preference xml and put them into a {@link Bundle}.
+     * <p>
+     * Results are served from {@link PreferenceMetadataIndex}, so each screen is only parsed
+     * once per build and resource configuration.
      *
      * @param xmlResId xml res id of a preference screen
      * @param flags    Should be one or more of {@link MetadataFlag}.
@@ -176,11 +179,33 @@ public class PreferenceXmlParserUtils {
     @NonNull
     public static List<Bundle> extractMetadata(Context context, @XmlRes int xmlResId, int flags)
             throws IOException, XmlPullParserException {
-        final List<Bundle> metadata = new ArrayList<>();
         if (xmlResId <= 0) {
             Log.d(TAG, xmlResId + " is invalid.");
-            return metadata;
+            return new ArrayList<>();
+        }
+        final PreferenceMetadataIndex index = PreferenceMetadataIndex.getInstance(context);
+        if (index != null) {
+            return index.extractMetadata(context, xmlResId, flags);
         }
+        final List<Bundle> metadata = new ArrayList<>();
+        final boolean hasPrefScreenFlag = hasFlag(flags, MetadataFlag.FLAG_INCLUDE_PREF_SCREEN);
+        for (PreferenceMetadataIndex.Entry entry : parseEntries(context, xmlResId)) {
+            if (!hasPrefScreenFlag && TextUtils.equals(PREF_SCREEN_TAG, entry.mType)) {
+                continue;
+            }
+            metadata.add(entry.toBundle(context, flags));
+        }
+        return metadata;
+    }
+
+    /**
+     * Parses every supported preference of the xml, including the {@link #PREF_SCREEN_TAG}, with
+     * all metadata fields.
+     */
+    @NonNull
+    static List<PreferenceMetadataIndex.Entry> parseEntries(Context context,
+            @XmlRes int xmlResId) throws IOException, XmlPullParserException {
+        final List<PreferenceMetadataIndex.Entry> entries = new ArrayList<>();
         final XmlResourceParser parser = context.getResources().getXml(xmlResId);
 
         int type;
@@ -189,74 +214,46 @@ public class PreferenceXmlParserUtils {
             // Parse next until start tag is found
         }
         final int outerDepth = parser.getDepth();
-        final boolean hasPrefScreenFlag = hasFlag(flags, MetadataFlag.FLAG_INCLUDE_PREF_SCREEN);
         do {
             if (type != XmlPullParser.START_TAG) {
                 continue;
             }
             final String nodeName = parser.getName();
-            if (!hasPrefScreenFlag && TextUtils.equals(PREF_SCREEN_TAG, nodeName)) {
-                continue;
-            }
             if (!SUPPORTED_PREF_TYPES.contains(nodeName) && !nodeName.endsWith("Preference")) {
                 continue;
             }
-            final Bundle preferenceMetadata = new Bundle();
             final AttributeSet attrs = Xml.asAttributeSet(parser);
-
             final TypedArray preferenceAttributes = context.obtainStyledAttributes(attrs,
                     R.styleable.Preference);
-            TypedArray preferenceScreenAttributes = null;
-            if (hasPrefScreenFlag) {
-                preferenceScreenAttributes = context.obtainStyledAttributes(
-                        attrs, R.styleable.PreferenceScreen);
-            }
-
-            if (hasFlag(flags, MetadataFlag.FLAG_NEED_PREF_TYPE)) {
-                preferenceMetadata.putString(METADATA_PREF_TYPE, nodeName);
-            }
-            if (hasFlag(flags, MetadataFlag.FLAG_NEED_KEY)) {
-                preferenceMetadata.putString(METADATA_KEY, getKey(preferenceAttributes));
-            }
-            if (hasFlag(flags, MetadataFlag.FLAG_NEED_PREF_CONTROLLER)) {
-                preferenceMetadata.putString(METADATA_CONTROLLER,
-                        getController(preferenceAttributes));
-            }
-            if (hasFlag(flags, MetadataFlag.FLAG_NEED_PREF_TITLE)) {
-                preferenceMetadata.putString(METADATA_TITLE, getTitle(preferenceAttributes));
-            }
-            if (hasFlag(flags, MetadataFlag.FLAG_NEED_PREF_SUMMARY)) {
-                preferenceMetadata.putString(METADATA_SUMMARY, getSummary(preferenceAttributes));
-            }
-            if (hasFlag(flags, MetadataFlag.FLAG_NEED_PREF_ICON)) {
-                preferenceMetadata.putInt(METADATA_ICON, getIcon(preferenceAttributes));
-            }
-            if (hasFlag(flags, MetadataFlag.FLAG_NEED_KEYWORDS)) {
-                preferenceMetadata.putString(METADATA_KEYWORDS, getKeywords(preferenceAttributes));
-            }
-            if (hasFlag(flags, MetadataFlag.FLAG_NEED_SEARCHABLE)) {
-                preferenceMetadata.putBoolean(METADATA_SEARCHABLE,
-                        isSearchable(preferenceAttributes));
-            }
-            if (hasFlag(flags, MetadataFlag.FLAG_NEED_PREF_APPEND) && hasPrefScreenFlag) {
-                preferenceMetadata.putBoolean(METADATA_APPEND,
-                        isAppended(preferenceScreenAttributes));
-            }
-            if (hasFlag(flags, MetadataFlag.FLAG_UNAVAILABLE_SLICE_SUBTITLE)) {
-                preferenceMetadata.putString(METADATA_UNAVAILABLE_SLICE_SUBTITLE,
-                        getUnavailableSliceSubtitle(preferenceAttributes));
-            }
-            if (hasFlag(flags, MetadataFlag.FLAG_FOR_WORK)) {
-                preferenceMetadata.putBoolean(METADATA_FOR_WORK,
-                        isForWork(preferenceAttributes));
-            }
-            metadata.add(preferenceMetadata);
+            final TypedArray preferenceScreenAttributes = context.obtainStyledAttributes(
+                    attrs, R.styleable.PreferenceScreen);
+
+            final PreferenceMetadataIndex.Entry entry = new PreferenceMetadataIndex.Entry();
+            entry.mType = nodeName;
+            entry.mKey = PreferenceMetadataIndex.Value.from(preferenceAttributes,
+                    com.android.internal.R.styleable.Preference_key);
+            entry.mController = PreferenceMetadataIndex.Value.from(preferenceAttributes,
+                    R.styleable.Preference_controller);
+            entry.mTitle = PreferenceMetadataIndex.Value.from(preferenceAttributes,
+                    com.android.internal.R.styleable.Preference_title);
+            entry.mSummary = PreferenceMetadataIndex.Value.from(preferenceAttributes,
+                    com.android.internal.R.styleable.Preference_summary);
+            entry.mIcon = getIcon(preferenceAttributes);
+            entry.mKeywords = PreferenceMetadataIndex.Value.from(preferenceAttributes,
+                    R.styleable.Preference_keywords);
+            entry.mSearchable = isSearchable(preferenceAttributes);
+            entry.mAppend = isAppended(preferenceScreenAttributes);
+            entry.mUnavailableSliceSubtitle = PreferenceMetadataIndex.Value.from(
+                    preferenceAttributes, R.styleable.Preference_unavailableSliceSubtitle);
+            entry.mForWork = isForWork(preferenceAttributes);
+            entries.add(entry);
 
             preferenceAttributes.recycle();
+            preferenceScreenAttributes.recycle();
         } while ((type = parser.next()) != XmlPullParser.END_DOCUMENT
                 && (type != XmlPullParser.END_TAG || parser.getDepth() > outerDepth));
         parser.close();
-        return metadata;
+        return entries;
     }
 
     /**
@@ -298,22 +295,6 @@ public class PreferenceXmlParserUtils {
         return result.toString();
     }
 
-    private static String getKey(TypedArray styledAttributes) {
-        return styledAttributes.getString(com.android.internal.R.styleable.Preference_key);
-    }
-
-    private static String getTitle(TypedArray styledAttributes) {
-        return styledAttributes.getString(com.android.internal.R.styleable.Preference_title);
-    }
-
-    private static String getSummary(TypedArray styledAttributes) {
-        return styledAttributes.getString(com.android.internal.R.styleable.Preference_summary);
-    }
-
-    private static String getController(TypedArray styledAttributes) {
-        return styledAttributes.getString(R.styleable.Preference_controller);
-    }
-
     private static int getIcon(TypedArray styledAttributes) {
         return styledAttributes.getResourceId(com.android.internal.R.styleable.Icon_icon, 0);
     }
@@ -322,20 +303,11 @@ public class PreferenceXmlParserUtils {
         return styledAttributes.getBoolean(R.styleable.Preference_searchable, true /* default */);
     }
 
-    private static String getKeywords(TypedArray styledAttributes) {
-        return styledAttributes.getString(R.styleable.Preference_keywords);
-    }
-
     private static boolean isAppended(TypedArray styledAttributes) {
         return styledAttributes.getInt(R.styleable.PreferenceScreen_staticPreferenceLocation,
                 PREPEND_VALUE) == APPEND_VALUE;
     }
 
-    private static String getUnavailableSliceSubtitle(TypedArray styledAttributes) {
-        return styledAttributes.getString(
-                R.styleable.Preference_unavailableSliceSubtitle);
-    }
-
     private static boolean isForWork(TypedArray styledAttributes) {
         return styledAttributes.getBoolean(
                 R.styleable.Preference_forWork, false);
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.os.Build;
+import android.os.UserHandle;
+import android.text.TextUtils;
+import android.util.ArrayMap;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settingslib.applications.InterestingConfigChanges;
+import com.android.settingslib.utils.ThreadUtils;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Persistent cache of availability verdicts for controllers implementing
+ * {@link BasePreferenceController.StaticAvailability}.
+ * <p>
+ * Entries are only valid for the fingerprint they were computed under: build fingerprint, user,
+ * locales, the configuration fields tracked by {@link InterestingConfigChanges} and the resource
+ * overlays of the app. Whenever the fingerprint changes the whole cache is dropped.
+ * <p>
+ * Verdicts are kept in memory once read, and {@link #preload(Context)} reads them off the main
+ * thread ahead of the first lookup.
+ */
+public class StaticAvailabilityCache {
+
+    @VisibleForTesting
+    static final String PREF_NAME = "static_availability_cache";
+    @VisibleForTesting
+    static final String KEY_FINGERPRINT = "fingerprint";
+
+    private static StaticAvailabilityCache sInstance;
+
+    private final Context mContext;
+    private final SharedPreferences mPrefs;
+    private final InterestingConfigChanges mInterestingConfigChanges;
+    @GuardedBy("this")
+    private Map<String, Integer> mEntries;
+
+    /**
+     * Returns the process wide cache bound to the application context.
+     */
+    public static synchronized StaticAvailabilityCache getInstance(Context context) {
+        final Context appContext = context.getApplicationContext();
+        if (sInstance == null || sInstance.mContext != appContext) {
+            sInstance = new StaticAvailabilityCache(appContext);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Reads the persisted verdicts in the background, so that the first lookup doesn't wait for
+     * the disk on the main thread.
+     */
+    public static void preload(Context context) {
+        ThreadUtils.postOnBackgroundThread(() -> {
+            final StaticAvailabilityCache cache = getInstance(context);
+            synchronized (cache) {
+                cache.loadLocked();
+            }
+        });
+    }
+
+    @VisibleForTesting
+    StaticAvailabilityCache(Context context) {
+        mContext = context;
+        mPrefs = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+        mInterestingConfigChanges = new InterestingConfigChanges();
+    }
+
+    /**
+     * Returns the cached {@link BasePreferenceController.AvailabilityStatus} of the controller,
+     * computing and persisting it on a miss.
+     */
+    @BasePreferenceController.AvailabilityStatus
+    public int getAvailabilityStatus(BasePreferenceController controller) {
+        final String key = getEntryKey(controller);
+        synchronized (this) {
+            loadLocked();
+            final Integer status = mEntries.get(key);
+            if (status != null) {
+                return status;
+            }
+        }
+        final int status = controller.getAvailabilityStatus();
+        synchronized (this) {
+            mEntries.put(key, status);
+            mPrefs.edit().putInt(key, status).apply();
+        }
+        return status;
+    }
+
+    /**
+     * Drops all cached verdicts.
+     */
+    public synchronized void clear() {
+        mEntries = new ArrayMap<>();
+        mPrefs.edit().clear().putString(KEY_FINGERPRINT, getFingerprint()).apply();
+    }
+
+    /**
+     * Drops the cache if the fingerprint changed, then reads the persisted verdicts if they
+     * aren't in memory yet.
+     */
+    @GuardedBy("this")
+    private void loadLocked() {
+        if (mInterestingConfigChanges.applyNewConfig(mContext.getResources())) {
+            final String fingerprint = getFingerprint();
+            if (!TextUtils.equals(fingerprint, mPrefs.getString(KEY_FINGERPRINT, null))) {
+                mPrefs.edit().clear().putString(KEY_FINGERPRINT, fingerprint).apply();
+                mEntries = new ArrayMap<>();
+            }
+        }
+        if (mEntries != null) {
+            return;
+        }
+        mEntries = new ArrayMap<>();
+        for (Map.Entry<String, ?> entry : mPrefs.getAll().entrySet()) {
+            if (entry.getValue() instanceof Integer) {
+                mEntries.put(entry.getKey(), (Integer) entry.getValue());
+            }
+        }
+    }
+
+    @VisibleForTesting
+    String getFingerprint() {
+        final Resources res = mContext.getResources();
+        final Configuration config = res.getConfiguration();
+        return new StringBuilder()
+                .append(Build.FINGERPRINT).append('|')
+                .append(UserHandle.myUserId()).append('|')
+                .append(config.getLocales().toLanguageTags()).append('|')
+                .append(config.mcc).append('|')
+                .append(config.mnc).append('|')
+                .append(config.uiMode).append('|')
+                .append(config.screenLayout).append('|')
+                .append(res.getDisplayMetrics().densityDpi).append('|')
+                .append(Arrays.toString(mContext.getApplicationInfo().resourceDirs))
+                .toString();
+    }
+
+    private static String getEntryKey(BasePreferenceController controller) {
+        return controller.getClass().getName() + "/" + controller.getPreferenceKey();
+    }
+}
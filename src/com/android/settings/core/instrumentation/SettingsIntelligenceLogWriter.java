@@ -23,6 +23,7 @@ import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.Looper;
 import android.os.Process;
+import android.os.SystemClock;
 import android.os.UserHandle;
 import android.text.TextUtils;
 import android.text.format.DateUtils;
@@ -36,24 +37,51 @@ import com.android.settings.intelligence.LogProto.SettingsLog;
 import com.android.settings.overlay.FeatureFactory;
 import com.android.settingslib.core.instrumentation.LogWriter;
 
+import org.json.JSONException;
+import org.json.JSONObject;
+
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
-import java.util.LinkedList;
+import java.util.ArrayDeque;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class SettingsIntelligenceLogWriter implements LogWriter {
     private static final String TAG = "IntelligenceLogWriter";
 
     private static final String LOG = "logs";
     private static final long MESSAGE_DELAY = DateUtils.MINUTE_IN_MILLIS; // 1 minute
+    // Oldest logs are dropped once this many are waiting to be sent.
+    @VisibleForTesting
+    static final int MAX_BUFFERED_LOGS = 500;
+    // Logs are sent right away once this many are waiting.
+    private static final int FLUSH_THRESHOLD = 200;
+    // Each broadcast stays well below the binder transaction limit.
+    @VisibleForTesting
+    static final int MAX_BATCH_BYTES = 100 * 1024;
+    // Repeats of the last log within this window are dropped.
+    private static final long DEDUP_WINDOW_MS = DateUtils.SECOND_IN_MILLIS;
 
-    private List<SettingsLog> mSettingsLogList;
+    private static final AtomicLong sFlushedCount = new AtomicLong();
+    private static final AtomicLong sBatchCount = new AtomicLong();
+    private static final AtomicLong sDroppedCount = new AtomicLong();
+    private static final AtomicLong sDedupedCount = new AtomicLong();
+
+    // Only accessed on the worker thread.
+    private final ArrayDeque<SettingsLog> mSettingsLogs = new ArrayDeque<>();
+    private final ByteArrayOutputStream mBuffer = new ByteArrayOutputStream();
+    private SettingsLog mLastLog;
+    private long mLastLogTime;
+    // The broadcast action logs are sent with, resolved on the worker thread on first use.
+    private String mLogAction;
+    // Set once no log action turns out to be configured, so logs are neither buffered nor sent.
+    private volatile boolean mLoggingDisabled;
     private SendLogHandler mLogHandler;
 
     public SettingsIntelligenceLogWriter() {
-        mSettingsLogList = new LinkedList<>();
         final HandlerThread workerThread = new HandlerThread("SettingsIntelligenceLogWriter",
                 Process.THREAD_PRIORITY_BACKGROUND);
         workerThread.start();
@@ -116,6 +144,9 @@ public class SettingsIntelligenceLogWriter implements LogWriter {
 
     @Override
     public void action(int attribution, int action, int pageId, String key, int value) {
+        if (mLoggingDisabled) {
+            return;
+        }
         final ZonedDateTime now = ZonedDateTime.now(ZoneId.systemDefault());
         final SettingsLog settingsLog = SettingsLog.newBuilder()
                 .setAttribution(attribution)
@@ -125,8 +156,9 @@ public class SettingsIntelligenceLogWriter implements LogWriter {
                 .setChangedPreferenceIntValue(value)
                 .setTimestamp(now.toString())
                 .build();
+        final long time = SystemClock.elapsedRealtime();
         mLogHandler.post(() -> {
-            mSettingsLogList.add(settingsLog);
+            addLog(settingsLog, time);
         });
         if (action == SettingsEnums.ACTION_CONTEXTUAL_CARD_DISMISS) {
             // Directly send this event to notify SI instantly that the card is dismissed
@@ -136,29 +168,109 @@ public class SettingsIntelligenceLogWriter implements LogWriter {
         }
     }
 
+    /**
+     * Returns the counters of logs sent, batches sent, logs dropped because the buffer was full or
+     * couldn't be serialized, and repeated logs dropped.
+     */
+    public static JSONObject dump() throws JSONException {
+        final JSONObject obj = new JSONObject();
+        obj.put("flushed", sFlushedCount.get());
+        obj.put("batches", sBatchCount.get());
+        obj.put("dropped", sDroppedCount.get());
+        obj.put("deduped", sDedupedCount.get());
+        return obj;
+    }
+
+    private void addLog(SettingsLog settingsLog, long time) {
+        final Context context = FeatureFactory.getAppContext();
+        // Without a context yet, keep the log until the action can be resolved.
+        if (context != null && TextUtils.isEmpty(getLogAction(context))) {
+            return;
+        }
+        if (mLastLog != null && time - mLastLogTime < DEDUP_WINDOW_MS
+                && isSameLog(mLastLog, settingsLog)) {
+            sDedupedCount.incrementAndGet();
+            return;
+        }
+        mLastLog = settingsLog;
+        mLastLogTime = time;
+        if (mSettingsLogs.size() >= MAX_BUFFERED_LOGS) {
+            mSettingsLogs.poll();
+            sDroppedCount.incrementAndGet();
+        }
+        mSettingsLogs.add(settingsLog);
+        if (mSettingsLogs.size() >= FLUSH_THRESHOLD) {
+            mLogHandler.sendLog();
+        }
+    }
+
+    /**
+     * Returns the broadcast action logs are sent with, empty if Settings Intelligence doesn't
+     * take logs, in which case logging is disabled and the buffered logs are dropped.
+     */
+    private String getLogAction(Context context) {
+        if (mLogAction == null) {
+            mLogAction = context.getString(R.string.config_settingsintelligence_log_action);
+            if (TextUtils.isEmpty(mLogAction)) {
+                mLoggingDisabled = true;
+                mLogHandler.removeCallbacks(mSendLogsRunnable);
+                mSettingsLogs.clear();
+            }
+        }
+        return mLogAction;
+    }
+
+    @VisibleForTesting
+    static boolean isSameLog(SettingsLog log, SettingsLog other) {
+        return log.getAttribution() == other.getAttribution()
+                && log.getAction() == other.getAction()
+                && log.getPageId() == other.getPageId()
+                && log.getChangedPreferenceIntValue() == other.getChangedPreferenceIntValue()
+                && TextUtils.equals(log.getChangedPreferenceKey(),
+                        other.getChangedPreferenceKey());
+    }
+
     @VisibleForTesting
     static byte[] serialize(List<SettingsLog> settingsLogs) {
-        final int size = settingsLogs.size();
-        final ByteArrayOutputStream bout = new ByteArrayOutputStream();
-        final DataOutputStream output = new DataOutputStream(bout);
+        return serialize(new ArrayDeque<>(settingsLogs), new ByteArrayOutputStream(),
+                Integer.MAX_VALUE);
+    }
+
+    /**
+     * Serializes logs from the head of {@code settingsLogs} into {@code buffer}, removing them,
+     * until the next one would take the data over {@code maxBytes}. At least one log is
+     * serialized.
+     */
+    @VisibleForTesting
+    static byte[] serialize(Queue<SettingsLog> settingsLogs, ByteArrayOutputStream buffer,
+            int maxBytes) {
+        // The data starts with the number of logs, so pick the ones fitting first.
+        int size = 0;
+        int bytes = Integer.BYTES;
+        for (SettingsLog settingsLog : settingsLogs) {
+            final int length = Integer.BYTES + settingsLog.getSerializedSize();
+            if (size > 0 && bytes + length > maxBytes) {
+                break;
+            }
+            bytes += length;
+            size++;
+        }
+
+        buffer.reset();
+        final DataOutputStream output = new DataOutputStream(buffer);
         // The data format is "size, length, byte array, length, byte array ..."
         try {
             output.writeInt(size);
-            for (SettingsLog settingsLog : settingsLogs) {
-                final byte[] data = settingsLog.toByteArray();
-                output.writeInt(data.length);
-                output.write(data);
+            for (int i = 0; i < size; i++) {
+                final SettingsLog settingsLog = settingsLogs.poll();
+                output.writeInt(settingsLog.getSerializedSize());
+                settingsLog.writeTo(output);
             }
-            return bout.toByteArray();
+            output.flush();
+            return buffer.toByteArray();
         } catch (Exception e) {
             Log.e(TAG, "serialize error", e);
             return null;
-        } finally {
-            try {
-                output.close();
-            } catch (Exception e) {
-                Log.e(TAG, "close error", e);
-            }
         }
     }
 
@@ -185,16 +297,27 @@ public class SettingsIntelligenceLogWriter implements LogWriter {
             Log.e(TAG, "context is null");
             return;
         }
-        final String action = context.getString(R.string
-                .config_settingsintelligence_log_action);
-        if (!TextUtils.isEmpty(action) && !mSettingsLogList.isEmpty()) {
+        final String action = getLogAction(context);
+        if (TextUtils.isEmpty(action)) {
+            return;
+        }
+        final String packageName = context.getString(R.string
+                .config_settingsintelligence_package_name);
+        while (!mSettingsLogs.isEmpty()) {
+            final int pendingCount = mSettingsLogs.size();
+            final byte[] data = serialize(mSettingsLogs, mBuffer, MAX_BATCH_BYTES);
+            final int batchSize = pendingCount - mSettingsLogs.size();
+            if (data == null) {
+                sDroppedCount.addAndGet(batchSize);
+                continue;
+            }
             final Intent intent = new Intent();
-            intent.setPackage(context.getString(R.string
-                    .config_settingsintelligence_package_name));
+            intent.setPackage(packageName);
             intent.setAction(action);
-            intent.putExtra(LOG, serialize(mSettingsLogList));
+            intent.putExtra(LOG, data);
             context.sendBroadcastAsUser(intent, UserHandle.CURRENT);
-            mSettingsLogList.clear();
+            sFlushedCount.addAndGet(batchSize);
+            sBatchCount.incrementAndGet();
         }
     };
 }
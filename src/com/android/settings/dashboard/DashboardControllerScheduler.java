@@ -0,0 +1,263 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.dashboard;
+
+import android.os.SystemClock;
+import android.text.TextUtils;
+import android.util.ArrayMap;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+import androidx.preference.Preference;
+import androidx.preference.PreferenceScreen;
+
+import com.android.settings.R;
+import com.android.settingslib.core.AbstractPreferenceController;
+import com.android.settingslib.core.instrumentation.MetricsFeatureProvider;
+import com.android.settingslib.utils.ThreadUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Schedules {@link ControllerTask}s of a {@link DashboardFragment} on a bounded, process-wide
+ * pool. Controllers whose preference is visible without scrolling run in a higher priority lane
+ * than the ones below the fold, and the caller only waits for each task up to its deadline.
+ * Tasks that miss the deadline get a placeholder summary, which is cleared once they finish
+ * unless their controller has set a summary of its own.
+ */
+public class DashboardControllerScheduler {
+    private static final String TAG = "DashboardCtrlScheduler";
+
+    @VisibleForTesting
+    static final long VISIBLE_DEADLINE_MS = 100L;
+    @VisibleForTesting
+    static final long BELOW_FOLD_DEADLINE_MS = 30L;
+    private static final long KEEP_ALIVE_SECONDS = 30L;
+    // Number of top level preferences considered visible when the screen is not collapsed.
+    private static final int DEFAULT_VISIBLE_COUNT = 12;
+    private static final int STRAGGLER_THRESHOLD_MS = 50;
+
+    /** Priority lanes; lower ordinal runs first. */
+    enum Lane {
+        VISIBLE,
+        BELOW_FOLD
+    }
+
+    private static Executor sExecutor;
+
+    private final Executor mExecutor;
+    private final MetricsFeatureProvider mMetricsFeature;
+    private final int mMetricsCategory;
+    private final AtomicLong mSequence = new AtomicLong();
+    private final Map<String, Long> mTimings = new ArrayMap<>();
+
+    public DashboardControllerScheduler(MetricsFeatureProvider metricsFeature,
+            int metricsCategory) {
+        this(getSharedExecutor(), metricsFeature, metricsCategory);
+    }
+
+    @VisibleForTesting
+    DashboardControllerScheduler(Executor executor, MetricsFeatureProvider metricsFeature,
+            int metricsCategory) {
+        mExecutor = executor;
+        mMetricsFeature = metricsFeature;
+        mMetricsCategory = metricsCategory;
+    }
+
+    /**
+     * Runs all controllers against the screen, waiting for each one at most until its lane
+     * deadline. A controller missing it shows a placeholder, and updates its preference on its
+     * own once it finishes, as every {@link ControllerTask} does.
+     */
+    public void schedule(PreferenceScreen screen,
+            Collection<List<AbstractPreferenceController>> controllerLists) {
+        final long start = SystemClock.elapsedRealtime();
+        final List<ScheduledTask> taskList = new ArrayList<>();
+        for (List<AbstractPreferenceController> controllerList : controllerLists) {
+            for (AbstractPreferenceController controller : controllerList) {
+                final Lane lane = getLane(screen, controller.getPreferenceKey());
+                final ScheduledTask task = new ScheduledTask(
+                        new ControllerTask(controller, screen, mMetricsFeature, mMetricsCategory),
+                        lane, mSequence.getAndIncrement());
+                taskList.add(task);
+                mExecutor.execute(task);
+            }
+        }
+
+        int lateCount = 0;
+        for (ScheduledTask task : taskList) {
+            final long deadline = start + (task.mLane == Lane.VISIBLE
+                    ? VISIBLE_DEADLINE_MS : BELOW_FOLD_DEADLINE_MS);
+            final long remaining = Math.max(0L, deadline - SystemClock.elapsedRealtime());
+            try {
+                task.get(remaining, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                lateCount++;
+                task.mPlaceholder = showPlaceholder(screen, task.getController());
+            } catch (InterruptedException | ExecutionException e) {
+                Log.w(TAG, task.getController().getPreferenceKey() + " " + e.getMessage());
+            }
+        }
+        if (lateCount > 0) {
+            Log.d(TAG, lateCount + " controllers missed their deadline");
+        }
+    }
+
+    /**
+     * Returns the background run time of each controller, keyed by controller class name and
+     * preference key.
+     */
+    public Map<String, Long> getControllerTimings() {
+        synchronized (mTimings) {
+            return new ArrayMap<>(mTimings);
+        }
+    }
+
+    @VisibleForTesting
+    static Lane getLane(PreferenceScreen screen, String key) {
+        if (screen == null || TextUtils.isEmpty(key)) {
+            return Lane.BELOW_FOLD;
+        }
+        final int initialCount = screen.getInitialExpandedChildrenCount();
+        final int visibleCount = initialCount == Integer.MAX_VALUE
+                ? DEFAULT_VISIBLE_COUNT : initialCount;
+        final int count = Math.min(screen.getPreferenceCount(), visibleCount);
+        for (int i = 0; i < count; i++) {
+            final Preference preference = screen.getPreference(i);
+            if (TextUtils.equals(key, preference.getKey())) {
+                return Lane.VISIBLE;
+            }
+        }
+        return Lane.BELOW_FOLD;
+    }
+
+    /**
+     * Sets a placeholder summary on the preference of a late controller.
+     *
+     * @return the preference showing the placeholder, or {@code null} if none was set.
+     */
+    private static Preference showPlaceholder(PreferenceScreen screen,
+            AbstractPreferenceController controller) {
+        final String key = controller.getPreferenceKey();
+        if (screen == null || TextUtils.isEmpty(key)) {
+            return null;
+        }
+        final Preference preference = screen.findPreference(key);
+        if (preference == null || !TextUtils.isEmpty(preference.getSummary())) {
+            return null;
+        }
+        preference.setSummary(R.string.summary_placeholder);
+        return preference;
+    }
+
+    private static void clearPlaceholder(Preference preference) {
+        final CharSequence placeholder =
+                preference.getContext().getText(R.string.summary_placeholder);
+        if (TextUtils.equals(placeholder, preference.getSummary())) {
+            preference.setSummary(null);
+        }
+    }
+
+    @VisibleForTesting
+    static String getTimingKey(AbstractPreferenceController controller) {
+        return controller.getClass().getSimpleName() + "/" + controller.getPreferenceKey();
+    }
+
+    private void recordTiming(AbstractPreferenceController controller, long elapsedTime) {
+        final String name = getTimingKey(controller);
+        synchronized (mTimings) {
+            mTimings.put(name, elapsedTime);
+        }
+        if (elapsedTime > STRAGGLER_THRESHOLD_MS) {
+            Log.w(TAG, "Controller " + name + " took " + elapsedTime + " ms in background");
+        }
+    }
+
+    private static synchronized Executor getSharedExecutor() {
+        if (sExecutor == null) {
+            final int poolSize = Math.max(2, Runtime.getRuntime().availableProcessors());
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize,
+                    KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new PriorityBlockingQueue<>(),
+                    new DashboardThreadFactory());
+            executor.allowCoreThreadTimeOut(true);
+            sExecutor = executor;
+        }
+        return sExecutor;
+    }
+
+    /**
+     * {@link ControllerFutureTask} ordered by lane first, then by submission order.
+     */
+    @VisibleForTesting
+    class ScheduledTask extends ControllerFutureTask implements Comparable<ScheduledTask> {
+        final Lane mLane;
+        private final long mSequence;
+        // Only accessed on the main thread.
+        private Preference mPlaceholder;
+
+        ScheduledTask(ControllerTask task, Lane lane, long sequence) {
+            super(task, null /* result */);
+            mLane = lane;
+            mSequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            final long startTime = SystemClock.elapsedRealtime();
+            super.run();
+            recordTiming(getController(), SystemClock.elapsedRealtime() - startTime);
+            // Posted after the controller's own updateState(), so a summary it set is kept.
+            ThreadUtils.postOnMainThread(() -> {
+                if (mPlaceholder != null) {
+                    clearPlaceholder(mPlaceholder);
+                    mPlaceholder = null;
+                }
+            });
+        }
+
+        @Override
+        public int compareTo(@NonNull ScheduledTask other) {
+            final int result = mLane.compareTo(other.mLane);
+            return result != 0 ? result : Long.compare(mSequence, other.mSequence);
+        }
+    }
+
+    private static class DashboardThreadFactory implements ThreadFactory {
+        private final AtomicInteger mCount = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            final Thread thread = new Thread(runnable, "DashboardController-"
+                    + mCount.getAndIncrement());
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        }
+    }
+}
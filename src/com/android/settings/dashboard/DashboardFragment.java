@@ -22,6 +22,7 @@ import android.content.Context;
 import android.os.Bundle;
 import android.text.TextUtils;
 import android.util.ArrayMap;
+import android.util.FeatureFlagUtils;
 import android.util.Log;
 
 import androidx.annotation.CallSuper;
@@ -34,9 +35,12 @@ import androidx.preference.SwitchPreference;
 
 import com.android.settings.R;
 import com.android.settings.SettingsPreferenceFragment;
+import com.android.settings.core.AvailabilitySession;
+import com.android.settings.core.AvailabilityStatusHandler;
 import com.android.settings.core.BasePreferenceController;
 import com.android.settings.core.CategoryMixin.CategoryHandler;
 import com.android.settings.core.CategoryMixin.CategoryListener;
+import com.android.settings.core.FeatureFlags;
 import com.android.settings.core.PreferenceControllerListHelper;
 import com.android.settings.overlay.FeatureFactory;
 import com.android.settings.widget.PrimarySwitchPreference;
@@ -47,7 +51,6 @@ import com.android.settingslib.drawer.DashboardCategory;
 import com.android.settingslib.drawer.ProviderTile;
 import com.android.settingslib.drawer.Tile;
 import com.android.settingslib.search.Indexable;
-import com.android.settingslib.utils.ThreadUtils;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -56,7 +59,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.ExecutionException;
 
 /**
  * Base fragment for dashboard style UI containing a list of static and dynamic setting items.
@@ -77,6 +79,8 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
     UiBlockerController mBlockerController;
     private DashboardFeatureProvider mDashboardFeatureProvider;
     private DashboardTilePlaceholderPreferenceController mPlaceholderPreferenceController;
+    @VisibleForTesting
+    DashboardControllerScheduler mControllerScheduler;
     private boolean mListeningToCategoryChange;
     private List<String> mSuppressInjectedTileKeys;
 
@@ -178,8 +182,10 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
 
     @Override
     public void onCreatePreferences(Bundle savedInstanceState, String rootKey) {
-        checkUiBlocker(mControllers);
-        refreshAllPreferences(getLogTag());
+        try (AvailabilitySession session = startAvailabilitySession()) {
+            checkUiBlocker(mControllers);
+            refreshAllPreferences(getLogTag());
+        }
         mControllers.stream()
                 .map(controller -> (Preference) findPreference(controller.getPreferenceKey()))
                 .filter(Objects::nonNull)
@@ -216,7 +222,9 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
     @Override
     public void onResume() {
         super.onResume();
-        updatePreferenceStates();
+        try (AvailabilitySession session = startAvailabilitySession()) {
+            updatePreferenceStates();
+        }
         writeElapsedTimeMetric(SettingsEnums.ACTION_DASHBOARD_VISIBLE_TIME,
                 "isParalleledControllers:" + isParalleledControllers());
     }
@@ -347,6 +355,30 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
         return false;
     }
 
+    /**
+     * @return {@code true} if the availability of {@link AvailabilityStatusHandler} controllers
+     * should be computed ahead, in parallel, for each refresh of the preferences.
+     * Override this function to enable/disable the behavior.
+     */
+    protected boolean isAvailabilitySessionEnabled() {
+        return false;
+    }
+
+    /**
+     * Start an {@link AvailabilitySession} over all controllers.
+     *
+     * @return the session to close once the preferences are refreshed, or {@code null} when
+     * {@link #isAvailabilitySessionEnabled()} is {@code false} or a session is already running.
+     */
+    protected AvailabilitySession startAvailabilitySession() {
+        if (!isAvailabilitySessionEnabled() || AvailabilitySession.isInSession()) {
+            return null;
+        }
+        final List<AbstractPreferenceController> controllers = new ArrayList<>();
+        mPreferenceControllers.values().forEach(controllers::addAll);
+        return new AvailabilitySession.Builder(getContext(), controllers).build();
+    }
+
     /**
      * Get current PreferenceController(s)
      */
@@ -358,6 +390,11 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
      * Update state of each preference managed by PreferenceController.
      */
     protected void updatePreferenceStates() {
+        if (isParalleledControllers() && FeatureFlagUtils.isEnabled(getContext(),
+                FeatureFlags.CONTROLLER_ENHANCEMENT)) {
+            updatePreferenceStatesInParallel();
+            return;
+        }
         final PreferenceScreen screen = getPreferenceScreen();
         Collection<List<AbstractPreferenceController>> controllerLists =
                 mPreferenceControllers.values();
@@ -387,32 +424,27 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
 
     /**
      * Use parallel method to update state of each preference managed by PreferenceController.
+     * Controllers are run on {@link DashboardControllerScheduler}, and the ones missing their
+     * deadline update their preference once they finish.
      */
     @VisibleForTesting
     // To use this parallel approach will cause the side effect of the UI flicker. Such as
     // the thumb sliding of the toggle button.
     void updatePreferenceStatesInParallel() {
-        final PreferenceScreen screen = getPreferenceScreen();
-        final Collection<List<AbstractPreferenceController>> controllerLists =
-                mPreferenceControllers.values();
-        final List<ControllerFutureTask> taskList = new ArrayList<>();
-        for (List<AbstractPreferenceController> controllerList : controllerLists) {
-            for (AbstractPreferenceController controller : controllerList) {
-                final ControllerFutureTask task = new ControllerFutureTask(
-                        new ControllerTask(controller, screen, mMetricsFeatureProvider,
-                                getMetricsCategory()), null /* result */);
-                taskList.add(task);
-                ThreadUtils.postOnBackgroundThread(task);
-            }
+        if (mControllerScheduler == null) {
+            mControllerScheduler = new DashboardControllerScheduler(mMetricsFeatureProvider,
+                    getMetricsCategory());
         }
+        mControllerScheduler.schedule(getPreferenceScreen(), mPreferenceControllers.values());
+    }
 
-        for (ControllerFutureTask task : taskList) {
-            try {
-                task.get();
-            } catch (InterruptedException | ExecutionException e) {
-                Log.w(TAG, task.getController().getPreferenceKey() + " " + e.getMessage());
-            }
-        }
+    /**
+     * Returns the background run time of each controller from the last parallel update, keyed by
+     * controller class name and preference key.
+     */
+    public Map<String, Long> getControllerTimings() {
+        return mControllerScheduler == null
+                ? new ArrayMap<>() : mControllerScheduler.getControllerTimings();
     }
 
     /**
@@ -64,6 +64,15 @@ import com.android.settings.search.actionbar.SearchMenuController;
 import com.android.settings.widget.SettingsMainSwitchBar;
 import com.android.settingslib.core.AbstractPreferenceController;
 import com.android.settingslib.core.lifecycle.Lifecycle;
+import com.android.settingslib.core.lifecycle.LifecycleObserver;
+import com.android.settingslib.core.lifecycle.events.OnAttach;
+import com.android.settingslib.core.lifecycle.events.OnCreate;
+import com.android.settingslib.core.lifecycle.events.OnDestroy;
+import com.android.settingslib.core.lifecycle.events.OnPause;
+import com.android.settingslib.core.lifecycle.events.OnResume;
+import com.android.settingslib.core.lifecycle.events.OnSaveInstanceState;
+import com.android.settingslib.core.lifecycle.events.OnStart;
+import com.android.settingslib.core.lifecycle.events.OnStop;
 import com.android.settingslib.development.DeveloperOptionsPreferenceController;
 import com.android.settingslib.development.DevelopmentSettingsEnabler;
 import com.android.settingslib.development.SystemPropPoker;
@@ -73,6 +82,7 @@ import com.android.settingslib.widget.OnMainSwitchChangeListener;
 import com.google.android.setupcompat.util.WizardManagerHelper;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 @SearchIndexable(forTarget = SearchIndexable.ALL & ~SearchIndexable.ARC)
@@ -91,6 +101,8 @@ public class DevelopmentSettingsDashboardFragment extends RestrictedDashboardFra
     private SettingsMainSwitchBar mSwitchBar;
     private DevelopmentSwitchBarController mSwitchBarController;
     private List<AbstractPreferenceController> mPreferenceControllers = new ArrayList<>();
+    // Resume/pause observers which don't observe the lifecycle until they're available.
+    private final List<AbstractPreferenceController> mPendingObservers = new ArrayList<>();
     private BluetoothA2dp mBluetoothA2dp;
 
     private final BroadcastReceiver mEnableAdbReceiver = new BroadcastReceiver() {
@@ -396,12 +408,70 @@ public class DevelopmentSettingsDashboardFragment extends RestrictedDashboardFra
             mPreferenceControllers = new ArrayList<>();
             return null;
         }
+        // Controllers are built without the lifecycle, which is then observed by the
+        // controllers needing it.
         mPreferenceControllers = buildPreferenceControllers(context, getActivity(),
-                getSettingsLifecycle(), this /* devOptionsDashboardFragment */,
+                null /* lifecycle */, this /* devOptionsDashboardFragment */,
                 new BluetoothA2dpConfigStore());
+        mPendingObservers.clear();
+        addLifecycleObservers(getSettingsLifecycle(), mPreferenceControllers, mPendingObservers);
         return mPreferenceControllers;
     }
 
+    @Override
+    public void onResume() {
+        // Ahead of super.onResume(), so that the new observers get this resume as well.
+        addAvailableObservers(getSettingsLifecycle(), mPendingObservers);
+        super.onResume();
+    }
+
+    /**
+     * Makes the available controllers observe {@code lifecycle}, except the ones only observing
+     * {@link OnResume} and {@link OnPause}, which are added to {@code pendingObservers}. Those
+     * only matter while their preference is shown, and start observing on the first resume they
+     * are available. Unavailable controllers implementing {@link OnDestroy} still observe it, to
+     * release in {@link OnDestroy#onDestroy()} what their constructor acquired.
+     */
+    @VisibleForTesting
+    static void addLifecycleObservers(Lifecycle lifecycle,
+            List<AbstractPreferenceController> controllers,
+            List<AbstractPreferenceController> pendingObservers) {
+        for (AbstractPreferenceController controller : controllers) {
+            if (!(controller instanceof LifecycleObserver)) {
+                continue;
+            }
+            if (isResumeObserverOnly(controller)) {
+                pendingObservers.add(controller);
+            } else if (controller instanceof OnDestroy || controller.isAvailable()) {
+                lifecycle.addObserver((LifecycleObserver) controller);
+            }
+        }
+    }
+
+    /**
+     * Makes the available controllers of {@code pendingObservers} observe {@code lifecycle}, and
+     * removes them from the list.
+     */
+    @VisibleForTesting
+    static void addAvailableObservers(Lifecycle lifecycle,
+            List<AbstractPreferenceController> pendingObservers) {
+        final Iterator<AbstractPreferenceController> iterator = pendingObservers.iterator();
+        while (iterator.hasNext()) {
+            final AbstractPreferenceController controller = iterator.next();
+            if (controller.isAvailable()) {
+                lifecycle.addObserver((LifecycleObserver) controller);
+                iterator.remove();
+            }
+        }
+    }
+
+    private static boolean isResumeObserverOnly(AbstractPreferenceController controller) {
+        return (controller instanceof OnResume || controller instanceof OnPause)
+                && !(controller instanceof OnAttach || controller instanceof OnCreate
+                || controller instanceof OnStart || controller instanceof OnStop
+                || controller instanceof OnDestroy || controller instanceof OnSaveInstanceState);
+    }
+
     private void registerReceivers() {
         LocalBroadcastManager.getInstance(getContext())
                 .registerReceiver(mEnableAdbReceiver, new IntentFilter(
@@ -41,6 +41,7 @@ import com.android.settings.deviceinfo.storage.SecondaryUserController;
 import com.android.settings.deviceinfo.storage.StorageAsyncLoader;
 import com.android.settings.deviceinfo.storage.StorageEntry;
 import com.android.settings.deviceinfo.storage.StorageItemPreferenceController;
+import com.android.settings.deviceinfo.storage.StorageResultCache;
 import com.android.settings.deviceinfo.storage.UserIconLoader;
 import com.android.settings.deviceinfo.storage.VolumeSizesLoader;
 import com.android.settings.overlay.FeatureFactory;
@@ -114,7 +115,9 @@ public class StorageCategoryFragment extends DashboardFragment
         }
         if (mSelectedStorageEntry.isPrivate()) {
             mStorageInfo = null;
-            mAppsResult = null;
+            // Show the last known sizes until the loader computed fresh ones.
+            mAppsResult = new StorageResultCache(getContext())
+                    .get(mSelectedStorageEntry.getFsUuid());
             maybeSetLoading(isQuotaSupported());
 
             // To prevent flicker, sets null volume to hide category preferences.
@@ -269,8 +272,11 @@ public class StorageCategoryFragment extends DashboardFragment
     @Override
     public void onLoadFinished(Loader<SparseArray<StorageAsyncLoader.StorageResult>> loader,
             SparseArray<StorageAsyncLoader.StorageResult> data) {
+        final boolean changed = !StorageResultCache.isSame(mAppsResult, data);
         mAppsResult = data;
-        onReceivedSizes();
+        if (changed) {
+            onReceivedSizes();
+        }
     }
 
     @Override
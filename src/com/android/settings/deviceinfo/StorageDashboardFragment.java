@@ -49,6 +49,7 @@ import com.android.settings.deviceinfo.storage.SecondaryUserController;
 import com.android.settings.deviceinfo.storage.StorageAsyncLoader;
 import com.android.settings.deviceinfo.storage.StorageEntry;
 import com.android.settings.deviceinfo.storage.StorageItemPreferenceController;
+import com.android.settings.deviceinfo.storage.StorageResultCache;
 import com.android.settings.deviceinfo.storage.StorageSelectionPreferenceController;
 import com.android.settings.deviceinfo.storage.StorageUsageProgressBarPreferenceController;
 import com.android.settings.deviceinfo.storage.StorageUtils;
@@ -242,7 +243,9 @@ public class StorageDashboardFragment extends DashboardFragment
         }
         if (mSelectedStorageEntry.isPrivate()) {
             mStorageInfo = null;
-            mAppsResult = null;
+            // Show the last known sizes until the loader computed fresh ones.
+            mAppsResult = new StorageResultCache(getContext())
+                    .get(mSelectedStorageEntry.getFsUuid());
             maybeSetLoading(isQuotaSupported());
 
             // To prevent flicker, sets null volume to hide category preferences.
@@ -469,8 +472,11 @@ public class StorageDashboardFragment extends DashboardFragment
     @Override
     public void onLoadFinished(Loader<SparseArray<StorageAsyncLoader.StorageResult>> loader,
             SparseArray<StorageAsyncLoader.StorageResult> data) {
+        final boolean changed = !StorageResultCache.isSame(mAppsResult, data);
         mAppsResult = data;
-        onReceivedSizes();
+        if (changed) {
+            onReceivedSizes();
+        }
     }
 
     @Override
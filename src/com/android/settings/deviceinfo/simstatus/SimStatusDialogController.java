@@ -60,6 +60,7 @@ import androidx.lifecycle.LifecycleObserver;
 import androidx.lifecycle.OnLifecycleEvent;
 
 import com.android.settings.R;
+import com.android.settings.network.CarrierConfigCache;
 import com.android.settingslib.DeviceInfoUtils;
 import com.android.settingslib.Utils;
 import com.android.settingslib.core.lifecycle.Lifecycle;
@@ -485,8 +486,8 @@ public class SimStatusDialogController implements LifecycleObserver {
         boolean showSignalStrength = true;
         if (mSubscriptionInfo != null) {
             final int subscriptionId = mSubscriptionInfo.getSubscriptionId();
-            final PersistableBundle carrierConfig =
-                    mCarrierConfigManager.getConfigForSubId(subscriptionId);
+            final PersistableBundle carrierConfig = CarrierConfigCache.getInstance()
+                    .getConfigForSubId(mContext, mCarrierConfigManager, subscriptionId);
             if (carrierConfig != null) {
                 showSignalStrength = carrierConfig.getBoolean(
                         CarrierConfigManager.KEY_SHOW_SIGNAL_STRENGTH_IN_SIM_STATUS_BOOL);
@@ -558,7 +559,8 @@ public class SimStatusDialogController implements LifecycleObserver {
         }
 
         boolean show4GForLTE = false;
-        final PersistableBundle carrierConfig = mCarrierConfigManager.getConfigForSubId(subId);
+        final PersistableBundle carrierConfig = CarrierConfigCache.getInstance()
+                .getConfigForSubId(mContext, mCarrierConfigManager, subId);
         if (carrierConfig != null) {
             show4GForLTE = carrierConfig.getBoolean(
                     CarrierConfigManager.KEY_SHOW_4G_FOR_LTE_DATA_ICON_BOOL);
@@ -593,8 +595,8 @@ public class SimStatusDialogController implements LifecycleObserver {
         boolean showIccId = false;
         if (mSubscriptionInfo != null) {
             final int subscriptionId = mSubscriptionInfo.getSubscriptionId();
-            final PersistableBundle carrierConfig =
-                    mCarrierConfigManager.getConfigForSubId(subscriptionId);
+            final PersistableBundle carrierConfig = CarrierConfigCache.getInstance()
+                    .getConfigForSubId(mContext, mCarrierConfigManager, subscriptionId);
             if (carrierConfig != null) {
                 showIccId = carrierConfig.getBoolean(
                         CarrierConfigManager.KEY_SHOW_ICCID_IN_SIM_STATUS_BOOL);
@@ -669,8 +671,8 @@ public class SimStatusDialogController implements LifecycleObserver {
             return false;
         }
         final int subscriptionId = mSubscriptionInfo.getSubscriptionId();
-        final PersistableBundle carrierConfig =
-                mCarrierConfigManager.getConfigForSubId(subscriptionId);
+        final PersistableBundle carrierConfig = CarrierConfigCache.getInstance()
+                .getConfigForSubId(mContext, mCarrierConfigManager, subscriptionId);
         return carrierConfig == null ? false :
                 carrierConfig.getBoolean(
                         CarrierConfigManager.KEY_SHOW_IMS_REGISTRATION_STATUS_BOOL);
@@ -41,10 +41,14 @@ import android.util.SparseArray;
 
 import com.android.settingslib.applications.StorageStatsSource;
 import com.android.settingslib.utils.AsyncLoaderCompat;
+import com.android.settingslib.utils.ThreadUtils;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * StorageAsyncLoader is a Loader which loads categorized app information and external stats for all
@@ -54,6 +58,8 @@ public class StorageAsyncLoader
         extends AsyncLoaderCompat<SparseArray<StorageAsyncLoader.StorageResult>> {
     private UserManager mUserManager;
     private static final String TAG = "StorageAsyncLoader";
+    // Apps per background task; below this the per-task overhead outweighs the stats calls saved.
+    private static final int APPS_PER_TASK = 32;
 
     private String mUuid;
     private StorageStatsSource mStatsManager;
@@ -71,9 +77,17 @@ public class StorageAsyncLoader
 
     @Override
     public SparseArray<StorageResult> loadInBackground() {
-        return getStorageResultsForUsers();
+        final SparseArray<StorageResult> results = getStorageResultsForUsers();
+        if (results != null) {
+            new StorageResultCache(getContext()).put(mUuid, results);
+        }
+        return results;
     }
 
+    /**
+     * Loads the results of every user. The stats of the apps and the media sizes of all users are
+     * loaded by parallel background tasks, then attributed to each user in user id order.
+     */
     private SparseArray<StorageResult> getStorageResultsForUsers() {
         mSeenPackages = new ArraySet<>();
         final SparseArray<StorageResult> results = new SparseArray<>();
@@ -83,48 +97,160 @@ public class StorageAsyncLoader
         Collections.sort(infos,
                 (userInfo, otherUser) -> Integer.compare(userInfo.id, otherUser.id));
 
+        final List<UserLoad> loads = new ArrayList<>(infos.size());
+        final List<Runnable> tasks = new ArrayList<>();
         for (UserInfo info : infos) {
-            final StorageResult result = getAppsAndGamesSize(info.id);
-
-            result.imagesSize = getFilesSize(info.id, MediaStore.Images.Media.EXTERNAL_CONTENT_URI,
-                    null /* queryArgs */);
-            result.videosSize = getFilesSize(info.id, MediaStore.Video.Media.EXTERNAL_CONTENT_URI,
-                    null /* queryArgs */);
-            result.audioSize = getFilesSize(info.id, MediaStore.Audio.Media.EXTERNAL_CONTENT_URI,
-                    null /* queryArgs */);
-
-            final Bundle documentsAndOtherQueryArgs = new Bundle();
-            documentsAndOtherQueryArgs.putString(ContentResolver.QUERY_ARG_SQL_SELECTION,
-                    FileColumns.MEDIA_TYPE + "!=" + FileColumns.MEDIA_TYPE_IMAGE
-                    + " AND " + FileColumns.MEDIA_TYPE + "!=" + FileColumns.MEDIA_TYPE_VIDEO
-                    + " AND " + FileColumns.MEDIA_TYPE + "!=" + FileColumns.MEDIA_TYPE_AUDIO
-                    + " AND " + FileColumns.MIME_TYPE + " IS NOT NULL");
-            result.documentsAndOtherSize = getFilesSize(info.id,
-                    MediaStore.Files.getContentUri(MediaStore.VOLUME_EXTERNAL),
-                    documentsAndOtherQueryArgs);
-
-            final Bundle trashQueryArgs = new Bundle();
-            trashQueryArgs.putInt(MediaStore.QUERY_ARG_MATCH_TRASHED, MediaStore.MATCH_ONLY);
-            result.trashSize = getFilesSize(info.id,
-                    MediaStore.Files.getContentUri(MediaStore.VOLUME_EXTERNAL), trashQueryArgs);
-
-            results.put(info.id, result);
+            final UserLoad load = new UserLoad(info.id,
+                    mPackageManager.getInstalledApplicationsAsUser(0, info.id));
+            loads.add(load);
+            tasks.add(() -> loadUserSizes(load));
+            for (int from = 0; from < load.mApps.size(); from += APPS_PER_TASK) {
+                final int start = from;
+                final int end = Math.min(from + APPS_PER_TASK, load.mApps.size());
+                tasks.add(() -> loadAppStats(load, start, end));
+            }
+        }
+        try {
+            runInParallel(tasks);
+        } catch (InterruptedException e) {
+            Log.w(TAG, "Interrupted while loading", e);
+            Thread.currentThread().interrupt();
+            return null;
+        }
+
+        for (UserLoad load : loads) {
+            results.put(load.mUserId, getAppsAndGamesSize(load));
         }
         return results;
     }
 
-    private long getFilesSize(int userId, Uri uri, Bundle queryArgs) {
-        final Context perUserContext;
+    /**
+     * Runs {@code tasks} on background threads, the first one on the calling thread, and waits
+     * until all of them are done.
+     */
+    private static void runInParallel(List<Runnable> tasks) throws InterruptedException {
+        final List<Future<?>> futures = new ArrayList<>(tasks.size());
         try {
-            perUserContext = getContext().createPackageContextAsUser(
+            for (int i = 1, size = tasks.size(); i < size; i++) {
+                futures.add(ThreadUtils.postOnBackgroundThread(tasks.get(i)));
+            }
+            if (!tasks.isEmpty()) {
+                tasks.get(0).run();
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            for (Future<?> future : futures) {
+                future.cancel(true /* mayInterruptIfRunning */);
+            }
+        }
+    }
+
+    private void loadUserSizes(UserLoad load) {
+        final StorageResult result = load.mResult;
+        loadMediaSizes(load.mUserId, result);
+
+        Log.d(TAG, "Loading external stats");
+        try {
+            result.externalStats = mStatsManager.getExternalStorageStats(mUuid,
+                    UserHandle.of(load.mUserId));
+        } catch (IOException e) {
+            Log.w(TAG, e);
+        }
+    }
+
+    /**
+     * Loads the sizes of the media file categories of {@code userId} with a single query grouped
+     * by media type, falling back to one query per category if the provider rejects it.
+     */
+    private void loadMediaSizes(int userId, StorageResult result) {
+        final Context perUserContext = getPerUserContext(userId);
+        if (perUserContext == null) {
+            return;
+        }
+
+        final Bundle queryArgs = new Bundle();
+        queryArgs.putString(ContentResolver.QUERY_ARG_SQL_SELECTION,
+                FileColumns.MIME_TYPE + " IS NOT NULL OR " + MediaColumns.IS_TRASHED + "=1");
+        queryArgs.putString(ContentResolver.QUERY_ARG_SQL_GROUP_BY,
+                MediaColumns.IS_TRASHED + "," + FileColumns.MEDIA_TYPE);
+        queryArgs.putInt(MediaStore.QUERY_ARG_MATCH_TRASHED, MediaStore.MATCH_INCLUDE);
+        try (Cursor cursor = perUserContext.getContentResolver().query(
+                MediaStore.Files.getContentUri(MediaStore.VOLUME_EXTERNAL),
+                new String[] {MediaColumns.IS_TRASHED, FileColumns.MEDIA_TYPE,
+                        "sum(" + MediaColumns.SIZE + ")"},
+                queryArgs,
+                null /* cancellationSignal */)) {
+            if (cursor != null) {
+                while (cursor.moveToNext()) {
+                    final long size = cursor.getLong(2);
+                    if (cursor.getInt(0) != 0) {
+                        result.trashSize += size;
+                        continue;
+                    }
+                    switch (cursor.getInt(1)) {
+                        case FileColumns.MEDIA_TYPE_IMAGE:
+                            result.imagesSize += size;
+                            break;
+                        case FileColumns.MEDIA_TYPE_VIDEO:
+                            result.videosSize += size;
+                            break;
+                        case FileColumns.MEDIA_TYPE_AUDIO:
+                            result.audioSize += size;
+                            break;
+                        default:
+                            result.documentsAndOtherSize += size;
+                            break;
+                    }
+                }
+                return;
+            }
+        } catch (IllegalArgumentException | SecurityException e) {
+            Log.w(TAG, "Grouped media query failed, querying each category", e);
+        }
+        result.imagesSize = getFilesSize(perUserContext,
+                MediaStore.Images.Media.EXTERNAL_CONTENT_URI, null /* queryArgs */);
+        result.videosSize = getFilesSize(perUserContext,
+                MediaStore.Video.Media.EXTERNAL_CONTENT_URI, null /* queryArgs */);
+        result.audioSize = getFilesSize(perUserContext,
+                MediaStore.Audio.Media.EXTERNAL_CONTENT_URI, null /* queryArgs */);
+
+        final Bundle documentsAndOtherQueryArgs = new Bundle();
+        documentsAndOtherQueryArgs.putString(ContentResolver.QUERY_ARG_SQL_SELECTION,
+                FileColumns.MEDIA_TYPE + "!=" + FileColumns.MEDIA_TYPE_IMAGE
+                + " AND " + FileColumns.MEDIA_TYPE + "!=" + FileColumns.MEDIA_TYPE_VIDEO
+                + " AND " + FileColumns.MEDIA_TYPE + "!=" + FileColumns.MEDIA_TYPE_AUDIO
+                + " AND " + FileColumns.MIME_TYPE + " IS NOT NULL");
+        result.documentsAndOtherSize = getFilesSize(perUserContext,
+                MediaStore.Files.getContentUri(MediaStore.VOLUME_EXTERNAL),
+                documentsAndOtherQueryArgs);
+
+        final Bundle trashQueryArgs = new Bundle();
+        trashQueryArgs.putInt(MediaStore.QUERY_ARG_MATCH_TRASHED, MediaStore.MATCH_ONLY);
+        result.trashSize = getFilesSize(perUserContext,
+                MediaStore.Files.getContentUri(MediaStore.VOLUME_EXTERNAL), trashQueryArgs);
+    }
+
+    private Context getPerUserContext(int userId) {
+        try {
+            return getContext().createPackageContextAsUser(
                 getContext().getApplicationContext().getPackageName(),
                 0 /* flags= */,
                 UserHandle.of(userId));
         } catch (NameNotFoundException e) {
             Log.e(TAG, "Not able to get Context for user ID " + userId);
-            return 0L;
+            return null;
         }
+    }
 
+    private long getFilesSize(Context perUserContext, Uri uri, Bundle queryArgs) {
         try (Cursor cursor = perUserContext.getContentResolver().query(
                 uri,
                 new String[] {"sum(" + MediaColumns.SIZE + ")"},
@@ -137,14 +263,11 @@ public class StorageAsyncLoader
         }
     }
 
-    private StorageResult getAppsAndGamesSize(int userId) {
-        Log.d(TAG, "Loading apps");
-        final List<ApplicationInfo> applicationInfos =
-                mPackageManager.getInstalledApplicationsAsUser(0, userId);
-        final StorageResult result = new StorageResult();
-        final UserHandle myUser = UserHandle.of(userId);
-        for (int i = 0, size = applicationInfos.size(); i < size; i++) {
-            final ApplicationInfo app = applicationInfos.get(i);
+    /** Loads the stats of the apps {@code from} (inclusive) to {@code to} (exclusive). */
+    private void loadAppStats(UserLoad load, int from, int to) {
+        final UserHandle myUser = UserHandle.of(load.mUserId);
+        for (int i = from; i < to; i++) {
+            final ApplicationInfo app = load.mApps.get(i);
 
             StorageStatsSource.AppStorageStats stats;
             try {
@@ -166,11 +289,26 @@ public class StorageAsyncLoader
             if (cacheQuota < cacheBytes) {
                 blamedSize = blamedSize - cacheBytes + cacheQuota;
             }
+            load.mBlamedSizes[i] = blamedSize;
+            load.mCodeSizes[i] = stats.getCodeBytes();
+            load.mLoaded[i] = true;
+        }
+    }
+
+    private StorageResult getAppsAndGamesSize(UserLoad load) {
+        Log.d(TAG, "Attributing apps");
+        final StorageResult result = load.mResult;
+        for (int i = 0, size = load.mApps.size(); i < size; i++) {
+            if (!load.mLoaded[i]) {
+                continue;
+            }
+            final ApplicationInfo app = load.mApps.get(i);
+            final long blamedSize = load.mBlamedSizes[i];
 
             // Code bytes may share between different profiles. To know all the duplicate code size
             // and we can get a reasonable system size in StorageItemPreferenceController.
             if (mSeenPackages.contains(app.packageName)) {
-                result.duplicateCodeSize += stats.getCodeBytes();
+                result.duplicateCodeSize += load.mCodeSizes[i];
             } else {
                 mSeenPackages.add(app.packageName);
             }
@@ -194,18 +332,28 @@ public class StorageAsyncLoader
                     break;
             }
         }
-
-        Log.d(TAG, "Loading external stats");
-        try {
-            result.externalStats = mStatsManager.getExternalStorageStats(mUuid,
-                    UserHandle.of(userId));
-        } catch (IOException e) {
-            Log.w(TAG, e);
-        }
         Log.d(TAG, "Obtaining result completed");
         return result;
     }
 
+    /** The work of loading one user, filled in by the parallel tasks. */
+    private static class UserLoad {
+        final int mUserId;
+        final List<ApplicationInfo> mApps;
+        final long[] mBlamedSizes;
+        final long[] mCodeSizes;
+        final boolean[] mLoaded;
+        final StorageResult mResult = new StorageResult();
+
+        UserLoad(int userId, List<ApplicationInfo> apps) {
+            mUserId = userId;
+            mApps = apps;
+            mBlamedSizes = new long[apps.size()];
+            mCodeSizes = new long[apps.size()];
+            mLoaded = new boolean[apps.size()];
+        }
+    }
+
     @Override
     protected void onDiscardResult(SparseArray<StorageResult> result) {
     }
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.deviceinfo.storage;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+import android.util.SparseArray;
+
+import com.android.settings.deviceinfo.storage.StorageAsyncLoader.StorageResult;
+import com.android.settingslib.applications.StorageStatsSource;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Iterator;
+
+/**
+ * Persists the last {@link StorageResult} of every user per volume, so the storage page can show
+ * the last known sizes right away while {@link StorageAsyncLoader} computes fresh ones.
+ */
+public class StorageResultCache {
+
+    private static final String TAG = "StorageResultCache";
+    private static final String PREFS_NAME = "storage_result_cache";
+    private static final String KEY_INTERNAL_VOLUME = "internal";
+
+    private static final String KEY_GAMES = "games";
+    private static final String KEY_APPS = "apps";
+    private static final String KEY_AUDIO = "audio";
+    private static final String KEY_IMAGES = "images";
+    private static final String KEY_VIDEOS = "videos";
+    private static final String KEY_DOCUMENTS_AND_OTHER = "documents_and_other";
+    private static final String KEY_TRASH = "trash";
+    private static final String KEY_CACHE = "cache";
+    private static final String KEY_DUPLICATE_CODE = "duplicate_code";
+    private static final String KEY_EXTERNAL_STATS = "external_stats";
+
+    private final SharedPreferences mSharedPreferences;
+
+    public StorageResultCache(Context context) {
+        mSharedPreferences = context.getApplicationContext()
+                .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /** Returns the last results stored for the volume {@code fsUuid}, or null if there's none. */
+    public SparseArray<StorageResult> get(String fsUuid) {
+        final String json = mSharedPreferences.getString(getKey(fsUuid), null /* defValue */);
+        if (json == null) {
+            return null;
+        }
+        try {
+            final JSONObject users = new JSONObject(json);
+            final SparseArray<StorageResult> results = new SparseArray<>();
+            for (Iterator<String> it = users.keys(); it.hasNext(); ) {
+                final String userId = it.next();
+                results.put(Integer.parseInt(userId), fromJson(users.getJSONObject(userId)));
+            }
+            return results;
+        } catch (JSONException | NumberFormatException e) {
+            Log.w(TAG, "Dropping unreadable results of " + fsUuid, e);
+            mSharedPreferences.edit().remove(getKey(fsUuid)).apply();
+            return null;
+        }
+    }
+
+    /** Stores {@code results} as the last results of the volume {@code fsUuid}. */
+    public void put(String fsUuid, SparseArray<StorageResult> results) {
+        try {
+            final JSONObject users = new JSONObject();
+            for (int i = 0, size = results.size(); i < size; i++) {
+                users.put(String.valueOf(results.keyAt(i)), toJson(results.valueAt(i)));
+            }
+            mSharedPreferences.edit().putString(getKey(fsUuid), users.toString()).apply();
+        } catch (JSONException e) {
+            Log.w(TAG, "Unable to store results of " + fsUuid, e);
+        }
+    }
+
+    /** Returns whether both results would show the very same sizes. */
+    public static boolean isSame(SparseArray<StorageResult> results,
+            SparseArray<StorageResult> otherResults) {
+        if (results == null || otherResults == null) {
+            return results == otherResults;
+        }
+        if (results.size() != otherResults.size()) {
+            return false;
+        }
+        for (int i = 0, size = results.size(); i < size; i++) {
+            if (results.keyAt(i) != otherResults.keyAt(i)
+                    || !isSame(results.valueAt(i), otherResults.valueAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSame(StorageResult result, StorageResult other) {
+        return result.gamesSize == other.gamesSize
+                && result.allAppsExceptGamesSize == other.allAppsExceptGamesSize
+                && result.audioSize == other.audioSize
+                && result.imagesSize == other.imagesSize
+                && result.videosSize == other.videosSize
+                && result.documentsAndOtherSize == other.documentsAndOtherSize
+                && result.trashSize == other.trashSize
+                && result.cacheSize == other.cacheSize
+                && result.duplicateCodeSize == other.duplicateCodeSize
+                && isSame(result.externalStats, other.externalStats);
+    }
+
+    private static boolean isSame(StorageStatsSource.ExternalStorageStats stats,
+            StorageStatsSource.ExternalStorageStats other) {
+        if (stats == null || other == null) {
+            return stats == other;
+        }
+        return stats.totalBytes == other.totalBytes
+                && stats.audioBytes == other.audioBytes
+                && stats.videoBytes == other.videoBytes
+                && stats.imageBytes == other.imageBytes
+                && stats.appBytes == other.appBytes;
+    }
+
+    private static String getKey(String fsUuid) {
+        return fsUuid != null ? fsUuid : KEY_INTERNAL_VOLUME;
+    }
+
+    private static JSONObject toJson(StorageResult result) throws JSONException {
+        final JSONObject json = new JSONObject()
+                .put(KEY_GAMES, result.gamesSize)
+                .put(KEY_APPS, result.allAppsExceptGamesSize)
+                .put(KEY_AUDIO, result.audioSize)
+                .put(KEY_IMAGES, result.imagesSize)
+                .put(KEY_VIDEOS, result.videosSize)
+                .put(KEY_DOCUMENTS_AND_OTHER, result.documentsAndOtherSize)
+                .put(KEY_TRASH, result.trashSize)
+                .put(KEY_CACHE, result.cacheSize)
+                .put(KEY_DUPLICATE_CODE, result.duplicateCodeSize);
+        final StorageStatsSource.ExternalStorageStats stats = result.externalStats;
+        if (stats != null) {
+            json.put(KEY_EXTERNAL_STATS, new JSONArray()
+                    .put(stats.totalBytes)
+                    .put(stats.audioBytes)
+                    .put(stats.videoBytes)
+                    .put(stats.imageBytes)
+                    .put(stats.appBytes));
+        }
+        return json;
+    }
+
+    private static StorageResult fromJson(JSONObject json) throws JSONException {
+        final StorageResult result = new StorageResult();
+        result.gamesSize = json.getLong(KEY_GAMES);
+        result.allAppsExceptGamesSize = json.getLong(KEY_APPS);
+        result.audioSize = json.getLong(KEY_AUDIO);
+        result.imagesSize = json.getLong(KEY_IMAGES);
+        result.videosSize = json.getLong(KEY_VIDEOS);
+        result.documentsAndOtherSize = json.getLong(KEY_DOCUMENTS_AND_OTHER);
+        result.trashSize = json.getLong(KEY_TRASH);
+        result.cacheSize = json.getLong(KEY_CACHE);
+        result.duplicateCodeSize = json.getLong(KEY_DUPLICATE_CODE);
+        final JSONArray stats = json.optJSONArray(KEY_EXTERNAL_STATS);
+        if (stats != null) {
+            result.externalStats = new StorageStatsSource.ExternalStorageStats(
+                    stats.getLong(0), stats.getLong(1), stats.getLong(2), stats.getLong(3),
+                    stats.getLong(4));
+        }
+        return result;
+    }
+}
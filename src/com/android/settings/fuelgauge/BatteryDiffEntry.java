@@ -123,12 +123,15 @@ public class BatteryDiffEntry {
 
     /** Gets the searching package name for UID battery type. */
     public String getPackageName() {
-        final String packageName = mDefaultPackageName != null
-            ? mDefaultPackageName : mBatteryHistEntry.mPackageName;
+        return trimProcessName(mDefaultPackageName != null
+            ? mDefaultPackageName : mBatteryHistEntry.mPackageName);
+    }
+
+    /** Removes the potential appended process name in the package name. */
+    static String trimProcessName(String packageName) {
         if (packageName == null) {
             return packageName;
         }
-        // Removes potential appended process name in the PackageName.
         // From "com.opera.browser:privileged_process0" to "com.opera.browser"
         final String[] splittedPackageNames = packageName.split(":");
         return splittedPackageNames != null && splittedPackageNames.length > 0
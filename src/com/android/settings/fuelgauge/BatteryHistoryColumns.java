@@ -0,0 +1,277 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.android.settings.fuelgauge;
+
+import android.content.Context;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A columnar view of the battery history snapshots used by
+ * {@link ConvertUtils#getIndexedUsageMap}.
+ *
+ * <p>Every {@link BatteryHistEntry} key is interned to an int id once, and the cumulative usage
+ * of each snapshot is copied into primitive columns indexed by {@code snapshot * keyCount + id}.
+ * The per slot diffs and the 24 hours aggregation then run over those arrays, and
+ * {@link BatteryDiffEntry} instances are only allocated for the entries which are returned.
+ */
+final class BatteryHistoryColumns {
+    // Each time slot aggregates the usage diff of three consecutive snapshots.
+    private static final int TIMESTAMP_STRIDE = 2;
+
+    private final int mTimeSlotSize;
+    private final int mSnapshotCount;
+    private final int mKeyCount;
+    private final boolean[] mEmptySnapshots;
+    private final long[] mForegroundUsageTimes;
+    private final long[] mBackgroundUsageTimes;
+    private final double[] mConsumePowers;
+    private final BatteryHistEntry[] mEntries;
+
+    private BatteryHistoryColumns(
+            int timeSlotSize,
+            long[] batteryHistoryKeys,
+            Map<Long, Map<String, BatteryHistEntry>> batteryHistoryMap) {
+        mTimeSlotSize = timeSlotSize;
+        mSnapshotCount = timeSlotSize * TIMESTAMP_STRIDE + 1;
+        final List<Map<String, BatteryHistEntry>> snapshots = new ArrayList<>(mSnapshotCount);
+        // Interns all keys, ids are assigned in the key set iteration order.
+        final Map<String, Integer> keyIds = new HashMap<>();
+        for (int index = 0; index < mSnapshotCount; index++) {
+            final Map<String, BatteryHistEntry> snapshot =
+                batteryHistoryMap.get(batteryHistoryKeys[index]);
+            snapshots.add(snapshot);
+            if (snapshot == null) {
+                continue;
+            }
+            for (String key : snapshot.keySet()) {
+                keyIds.putIfAbsent(key, null);
+            }
+        }
+        int nextId = 0;
+        for (Map.Entry<String, Integer> keyId : keyIds.entrySet()) {
+            keyId.setValue(nextId++);
+        }
+        mKeyCount = nextId;
+
+        final int cellCount = mSnapshotCount * mKeyCount;
+        mEmptySnapshots = new boolean[mSnapshotCount];
+        mForegroundUsageTimes = new long[cellCount];
+        mBackgroundUsageTimes = new long[cellCount];
+        mConsumePowers = new double[cellCount];
+        mEntries = new BatteryHistEntry[cellCount];
+        for (int index = 0; index < mSnapshotCount; index++) {
+            final Map<String, BatteryHistEntry> snapshot = snapshots.get(index);
+            if (snapshot == null || snapshot.isEmpty()) {
+                mEmptySnapshots[index] = true;
+                continue;
+            }
+            final int offset = index * mKeyCount;
+            for (Map.Entry<String, BatteryHistEntry> entry : snapshot.entrySet()) {
+                final int cell = offset + keyIds.get(entry.getKey());
+                final BatteryHistEntry histEntry = entry.getValue();
+                mForegroundUsageTimes[cell] = histEntry.mForegroundUsageTimeInMs;
+                mBackgroundUsageTimes[cell] = histEntry.mBackgroundUsageTimeInMs;
+                mConsumePowers[cell] = histEntry.mConsumePower;
+                mEntries[cell] = histEntry;
+            }
+        }
+    }
+
+    /** Builds the columns of the snapshots covered by {@code timeSlotSize} time slots. */
+    static BatteryHistoryColumns from(
+            int timeSlotSize,
+            long[] batteryHistoryKeys,
+            Map<Long, Map<String, BatteryHistEntry>> batteryHistoryMap) {
+        return new BatteryHistoryColumns(timeSlotSize, batteryHistoryKeys, batteryHistoryMap);
+    }
+
+    /**
+     * Computes the usage diff of each time slot and of the last 24 hours, see
+     * {@link ConvertUtils#getIndexedUsageMap} for the details.
+     */
+    Map<Integer, List<BatteryDiffEntry>> toIndexedUsageMap(
+            Context context,
+            boolean purgeLowPercentageAndFakeData,
+            List<CharSequence> backgroundUsageTimeHideList) {
+        final int slotCellCount = mTimeSlotSize * mKeyCount;
+        final long[] slotForegroundUsageTimes = new long[slotCellCount];
+        final long[] slotBackgroundUsageTimes = new long[slotCellCount];
+        final double[] slotConsumePowers = new double[slotCellCount];
+        final BatteryHistEntry[] slotEntries = new BatteryHistEntry[slotCellCount];
+        final double[] slotTotalConsumePowers = new double[mTimeSlotSize];
+
+        for (int slot = 0; slot < mTimeSlotSize; slot++) {
+            final int current = slot * TIMESTAMP_STRIDE;
+            // Keeps the time slot empty if there is no enough data to apply interpolation.
+            if (mEmptySnapshots[current]
+                    || mEmptySnapshots[current + 1]
+                    || mEmptySnapshots[current + 2]) {
+                continue;
+            }
+            final int currentOffset = current * mKeyCount;
+            final int nextOffset = currentOffset + mKeyCount;
+            final int nextTwoOffset = nextOffset + mKeyCount;
+            double totalConsumePower = 0.0;
+            for (int id = 0; id < mKeyCount; id++) {
+                final BatteryHistEntry selectedBatteryEntry = selectBatteryHistEntry(
+                    mEntries[currentOffset + id],
+                    mEntries[nextOffset + id],
+                    mEntries[nextTwoOffset + id]);
+                if (selectedBatteryEntry == null) {
+                    continue;
+                }
+                long foregroundUsageTimeInMs = getDiffValue(
+                    mForegroundUsageTimes[currentOffset + id],
+                    mForegroundUsageTimes[nextOffset + id],
+                    mForegroundUsageTimes[nextTwoOffset + id]);
+                long backgroundUsageTimeInMs = getDiffValue(
+                    mBackgroundUsageTimes[currentOffset + id],
+                    mBackgroundUsageTimes[nextOffset + id],
+                    mBackgroundUsageTimes[nextTwoOffset + id]);
+                double consumePower = getDiffValue(
+                    mConsumePowers[currentOffset + id],
+                    mConsumePowers[nextOffset + id],
+                    mConsumePowers[nextTwoOffset + id]);
+                if (foregroundUsageTimeInMs == 0
+                        && backgroundUsageTimeInMs == 0
+                        && consumePower == 0) {
+                    continue;
+                }
+                // Same clipping as ConvertUtils, including its float rounding.
+                final float totalUsageTimeInMs =
+                    foregroundUsageTimeInMs + backgroundUsageTimeInMs;
+                if (totalUsageTimeInMs > ConvertUtils.TOTAL_TIME_THRESHOLD) {
+                    final float ratio = ConvertUtils.TOTAL_TIME_THRESHOLD / totalUsageTimeInMs;
+                    foregroundUsageTimeInMs = Math.round(foregroundUsageTimeInMs * ratio);
+                    backgroundUsageTimeInMs = Math.round(backgroundUsageTimeInMs * ratio);
+                    consumePower = consumePower * ratio;
+                }
+                final int cell = slot * mKeyCount + id;
+                slotForegroundUsageTimes[cell] = foregroundUsageTimeInMs;
+                slotBackgroundUsageTimes[cell] = backgroundUsageTimeInMs;
+                slotConsumePowers[cell] = consumePower;
+                slotEntries[cell] = selectedBatteryEntry;
+                totalConsumePower += consumePower;
+            }
+            slotTotalConsumePowers[slot] = totalConsumePower;
+        }
+
+        // Aggregates all time slots into the last 24 hours data.
+        final long[] allForegroundUsageTimes = new long[mKeyCount];
+        final long[] allBackgroundUsageTimes = new long[mKeyCount];
+        final double[] allConsumePowers = new double[mKeyCount];
+        final BatteryHistEntry[] allEntries = new BatteryHistEntry[mKeyCount];
+        double allTotalConsumePower = 0.0;
+        for (int slot = 0; slot < mTimeSlotSize; slot++) {
+            final int offset = slot * mKeyCount;
+            for (int id = 0; id < mKeyCount; id++) {
+                final int cell = offset + id;
+                if (slotEntries[cell] == null) {
+                    continue;
+                }
+                if (allEntries[id] == null) {
+                    allEntries[id] = slotEntries[cell];
+                }
+                allForegroundUsageTimes[id] += slotForegroundUsageTimes[cell];
+                allBackgroundUsageTimes[id] += slotBackgroundUsageTimes[cell];
+                allConsumePowers[id] += slotConsumePowers[cell];
+                allTotalConsumePower += slotConsumePowers[cell];
+            }
+        }
+
+        final Map<Integer, List<BatteryDiffEntry>> resultMap = new HashMap<>();
+        for (int slot = 0; slot < mTimeSlotSize; slot++) {
+            final List<BatteryDiffEntry> entryList = new ArrayList<>();
+            addDiffEntries(context, entryList, slot * mKeyCount,
+                slotForegroundUsageTimes, slotBackgroundUsageTimes, slotConsumePowers,
+                slotEntries, slotTotalConsumePowers[slot], purgeLowPercentageAndFakeData,
+                backgroundUsageTimeHideList);
+            resultMap.put(Integer.valueOf(slot), entryList);
+        }
+        final List<BatteryDiffEntry> allEntryList = new ArrayList<>();
+        addDiffEntries(context, allEntryList, /*offset=*/ 0,
+            allForegroundUsageTimes, allBackgroundUsageTimes, allConsumePowers,
+            allEntries, allTotalConsumePower, purgeLowPercentageAndFakeData,
+            backgroundUsageTimeHideList);
+        resultMap.put(Integer.valueOf(BatteryChartView.SELECTED_INDEX_ALL), allEntryList);
+        return resultMap;
+    }
+
+    private void addDiffEntries(
+            Context context,
+            List<BatteryDiffEntry> entryList,
+            int offset,
+            long[] foregroundUsageTimes,
+            long[] backgroundUsageTimes,
+            double[] consumePowers,
+            BatteryHistEntry[] entries,
+            double totalConsumePower,
+            boolean purgeLowPercentageAndFakeData,
+            List<CharSequence> backgroundUsageTimeHideList) {
+        for (int id = 0; id < mKeyCount; id++) {
+            final int cell = offset + id;
+            final BatteryHistEntry histEntry = entries[cell];
+            if (histEntry == null) {
+                continue;
+            }
+            long backgroundUsageTimeInMs = backgroundUsageTimes[cell];
+            if (purgeLowPercentageAndFakeData) {
+                // Drops low percentage and fake usage data before allocating anything.
+                final double percentOfTotal = totalConsumePower == 0
+                    ? 0 : (consumePowers[cell] / totalConsumePower) * 100.0;
+                final String packageName =
+                    BatteryDiffEntry.trimProcessName(histEntry.mPackageName);
+                if (percentOfTotal < ConvertUtils.PERCENTAGE_OF_TOTAL_THRESHOLD
+                        || ConvertUtils.FAKE_PACKAGE_NAME.equals(packageName)) {
+                    continue;
+                }
+                if (packageName != null
+                        && !backgroundUsageTimeHideList.isEmpty()
+                        && backgroundUsageTimeHideList.contains(packageName)) {
+                    backgroundUsageTimeInMs = 0;
+                }
+            }
+            final BatteryDiffEntry diffEntry = new BatteryDiffEntry(
+                context,
+                foregroundUsageTimes[cell],
+                backgroundUsageTimeInMs,
+                consumePowers[cell],
+                histEntry);
+            diffEntry.setTotalConsumePower(totalConsumePower);
+            entryList.add(diffEntry);
+        }
+    }
+
+    private static long getDiffValue(long v1, long v2, long v3) {
+        return (v2 > v1 ? v2 - v1 : 0) + (v3 > v2 ? v3 - v2 : 0);
+    }
+
+    private static double getDiffValue(double v1, double v2, double v3) {
+        return (v2 > v1 ? v2 - v1 : 0) + (v3 > v2 ? v3 - v2 : 0);
+    }
+
+    private static BatteryHistEntry selectBatteryHistEntry(
+            BatteryHistEntry entry1,
+            BatteryHistEntry entry2,
+            BatteryHistEntry entry3) {
+        if (entry1 != null) {
+            return entry1;
+        }
+        return entry2 != null ? entry2 : entry3;
+    }
+}
@@ -231,6 +231,11 @@ public class PowerUsageSummary extends PowerUsageBase implements
         return R.xml.power_usage_summary;
     }
 
+    @Override
+    protected boolean isParalleledControllers() {
+        return true;
+    }
+
     @Override
     public void onCreateOptionsMenu(Menu menu, MenuInflater inflater) {
         MenuItem reset = menu.add(0, MENU_STATS_RESET, 0, R.string.battery_stats_reset)
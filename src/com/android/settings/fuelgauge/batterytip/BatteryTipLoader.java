@@ -16,45 +16,77 @@
 
 package com.android.settings.fuelgauge.batterytip;
 
+import android.app.settings.SettingsEnums;
 import android.content.Context;
 import android.os.BatteryUsageStats;
+import android.os.SystemClock;
+import android.util.ArrayMap;
+import android.util.Log;
 
 import androidx.annotation.VisibleForTesting;
 
 import com.android.settings.fuelgauge.BatteryInfo;
 import com.android.settings.fuelgauge.BatteryUtils;
 import com.android.settings.fuelgauge.batterytip.detectors.BatteryDefenderDetector;
+import com.android.settings.fuelgauge.batterytip.detectors.BatteryTipDetector;
 import com.android.settings.fuelgauge.batterytip.detectors.EarlyWarningDetector;
 import com.android.settings.fuelgauge.batterytip.detectors.HighUsageDetector;
 import com.android.settings.fuelgauge.batterytip.detectors.LowBatteryDetector;
 import com.android.settings.fuelgauge.batterytip.detectors.SmartBatteryDetector;
+import com.android.settings.fuelgauge.batterytip.tips.BatteryDefenderTip;
 import com.android.settings.fuelgauge.batterytip.tips.BatteryTip;
+import com.android.settings.fuelgauge.batterytip.tips.EarlyWarningTip;
+import com.android.settings.fuelgauge.batterytip.tips.HighUsageTip;
 import com.android.settings.fuelgauge.batterytip.tips.LowBatteryTip;
+import com.android.settings.fuelgauge.batterytip.tips.SmartBatteryTip;
 import com.android.settings.fuelgauge.batterytip.tips.SummaryTip;
+import com.android.settings.overlay.FeatureFactory;
+import com.android.settingslib.core.instrumentation.MetricsFeatureProvider;
 import com.android.settingslib.fuelgauge.EstimateKt;
 import com.android.settingslib.utils.AsyncLoaderCompat;
+import com.android.settingslib.utils.ThreadUtils;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Loader to compute and return a battery tip list. It will always return a full length list even
  * though some tips may have state {@code BaseBatteryTip.StateType.INVISIBLE}.
+ *
+ * The inputs shared by the detectors are computed once, then the detectors run concurrently. A
+ * detector missing the time budget is reported with an invisible tip, so the list doesn't wait
+ * on the slowest one. Its tip is delivered by a follow-up load once it is detected, as long as
+ * the inputs of that load are the same.
  */
 public class BatteryTipLoader extends AsyncLoaderCompat<List<BatteryTip>> {
     private static final String TAG = "BatteryTipLoader";
 
     private static final boolean USE_FAKE_DATA = false;
+    @VisibleForTesting
+    static final long DETECTION_BUDGET_MS = 1000L;
 
     private BatteryUsageStats mBatteryUsageStats;
+    // Tasks which missed the budget of a previous load, keyed by detector class.
+    private final Map<Class<?>, DetectorTask> mLateTasks = new ArrayMap<>();
+    private final MetricsFeatureProvider mMetricsFeatureProvider;
     @VisibleForTesting
     BatteryUtils mBatteryUtils;
+    @VisibleForTesting
+    long mDetectionBudgetMs = DETECTION_BUDGET_MS;
 
     public BatteryTipLoader(Context context, BatteryUsageStats batteryUsageStats) {
         super(context);
         mBatteryUsageStats = batteryUsageStats;
         mBatteryUtils = BatteryUtils.getInstance(context);
+        mMetricsFeatureProvider = FeatureFactory.getFactory(context).getMetricsFeatureProvider();
     }
 
     @Override
@@ -62,29 +94,121 @@ public class BatteryTipLoader extends AsyncLoaderCompat<List<BatteryTip>> {
         if (USE_FAKE_DATA) {
             return getFakeData();
         }
-        final List<BatteryTip> tips = new ArrayList<>();
-        final BatteryTipPolicy policy = new BatteryTipPolicy(getContext());
-        final BatteryInfo batteryInfo = mBatteryUtils.getBatteryInfo(TAG);
         final Context context = getContext();
+        final BatteryTipPolicy policy = BatteryTipPolicy.getInstance(context);
+        final BatteryInfo batteryInfo = mBatteryUtils.getBatteryInfo(TAG);
+        final List<Object> inputs = getInputs(policy, batteryInfo);
 
-        tips.add(new LowBatteryDetector(context, policy, batteryInfo).detect());
-        tips.add(new HighUsageDetector(context, policy, mBatteryUsageStats, batteryInfo).detect());
-        tips.add(new SmartBatteryDetector(
-                context, policy, batteryInfo, context.getContentResolver()).detect());
-        tips.add(new EarlyWarningDetector(policy, context).detect());
-        tips.add(new BatteryDefenderDetector(batteryInfo).detect());
-        // Disable this feature now since it introduces false positive cases. We will try to improve
-        // it in the future.
-        // tips.add(new RestrictAppDetector(context, policy).detect());
+        final List<DetectorTask> tasks = new ArrayList<>();
+        for (DetectorTask task : createDetectorTasks(context, policy, batteryInfo)) {
+            // A detector still running since a previous load with the same inputs isn't started
+            // again. One started with other inputs would report a stale tip.
+            final DetectorTask lateTask;
+            synchronized (mLateTasks) {
+                lateTask = mLateTasks.remove(task.getDetectorClass());
+            }
+            if (lateTask != null && lateTask.getInputs().equals(inputs)) {
+                tasks.add(lateTask);
+            } else {
+                if (lateTask != null) {
+                    lateTask.cancel();
+                }
+                task.start(inputs, mMetricsFeatureProvider);
+                tasks.add(task);
+            }
+        }
+        final long deadline = SystemClock.elapsedRealtime() + mDetectionBudgetMs;
+        final List<BatteryTip> tips = new ArrayList<>();
+        for (DetectorTask task : tasks) {
+            tips.add(task.getTip(deadline));
+            if (task.hasMissedBudget()) {
+                onDetectorLate(task);
+            }
+        }
 
         Collections.sort(tips);
         return tips;
     }
 
+    /**
+     * Returns the inputs the detectors depend on, compared by content between loads. The policy
+     * is only reparsed when its constants change, so it is compared by identity. The remaining
+     * time only matters through the low battery threshold, so estimates refreshing between loads
+     * don't start the detectors again.
+     */
+    @VisibleForTesting
+    List<Object> getInputs(BatteryTipPolicy policy, BatteryInfo batteryInfo) {
+        if (batteryInfo == null) {
+            return Arrays.asList(policy, mBatteryUsageStats);
+        }
+        return Arrays.asList(policy, mBatteryUsageStats, batteryInfo.batteryLevel,
+                batteryInfo.batteryStatus, batteryInfo.discharging, batteryInfo.isOverheated,
+                LowBatteryDetector.isRemainingTimeLow(policy, batteryInfo));
+    }
+
+    /**
+     * Creates the detectors on the calling thread, with the inputs they share.
+     */
+    @VisibleForTesting
+    List<DetectorTask> createDetectorTasks(Context context, BatteryTipPolicy policy,
+            BatteryInfo batteryInfo) {
+        final List<DetectorTask> tasks = new ArrayList<>();
+        tasks.add(new DetectorTask(new LowBatteryDetector(context, policy, batteryInfo),
+                new LowBatteryTip(BatteryTip.StateType.INVISIBLE, false /* powerSaveModeOn */)));
+        tasks.add(new DetectorTask(
+                new HighUsageDetector(context, policy, mBatteryUsageStats, batteryInfo),
+                new HighUsageTip(0L /* lastFullChargeTimeMs */, new ArrayList<>())));
+        tasks.add(new DetectorTask(new SmartBatteryDetector(
+                context, policy, batteryInfo, context.getContentResolver()),
+                new SmartBatteryTip(BatteryTip.StateType.INVISIBLE)));
+        tasks.add(new DetectorTask(new EarlyWarningDetector(policy, context),
+                new EarlyWarningTip(BatteryTip.StateType.INVISIBLE, false /* powerSaveModeOn */)));
+        tasks.add(new DetectorTask(new BatteryDefenderDetector(batteryInfo),
+                new BatteryDefenderTip(BatteryTip.StateType.INVISIBLE)));
+        // Disable this feature now since it introduces false positive cases. We will try to improve
+        // it in the future.
+        // tasks.add(new DetectorTask(new RestrictAppDetector(context, policy), ...));
+        return tasks;
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        cancelLateTasks();
+    }
+
     @Override
     protected void onDiscardResult(List<BatteryTip> result) {
     }
 
+    /**
+     * Keeps {@code task} for the next load, which is started once it is done. Without a started
+     * loader to deliver the next load, e.g. when loading synchronously, the task is cancelled.
+     */
+    private void onDetectorLate(DetectorTask task) {
+        if (!isStarted()) {
+            task.cancel();
+            return;
+        }
+        synchronized (mLateTasks) {
+            mLateTasks.put(task.getDetectorClass(), task);
+        }
+        task.setOnDoneListener(() -> ThreadUtils.postOnMainThread(() -> {
+            if (isStarted()) {
+                onContentChanged();
+            }
+        }));
+    }
+
+    private void cancelLateTasks() {
+        synchronized (mLateTasks) {
+            for (DetectorTask task : mLateTasks.values()) {
+                task.cancel();
+            }
+            mLateTasks.clear();
+        }
+    }
+
     private List<BatteryTip> getFakeData() {
         final List<BatteryTip> tips = new ArrayList<>();
         tips.add(new SummaryTip(BatteryTip.StateType.NEW,
@@ -94,4 +218,115 @@ public class BatteryTipLoader extends AsyncLoaderCompat<List<BatteryTip>> {
         return tips;
     }
 
+    /**
+     * Runs one {@link BatteryTipDetector} in the background and records its latency under
+     * {@code ACTION_BATTERY_TIP_DETECTOR_LATENCY}, keyed by the detector class name.
+     */
+    @VisibleForTesting
+    static class DetectorTask {
+        private final BatteryTipDetector mDetector;
+        private final BatteryTip mFallbackTip;
+        private Future<BatteryTip> mFuture;
+        private List<Object> mInputs = Collections.emptyList();
+        private boolean mMissedBudget;
+        // Guarded by this.
+        private boolean mDone;
+        private Runnable mOnDoneListener;
+
+        /**
+         * @param fallbackTip is the tip reported when the detector fails or misses the budget.
+         */
+        DetectorTask(BatteryTipDetector detector, BatteryTip fallbackTip) {
+            mDetector = detector;
+            mFallbackTip = fallbackTip;
+        }
+
+        /**
+         * Starts the detector, which was created with {@code inputs}.
+         */
+        @SuppressWarnings("unchecked")
+        void start(List<Object> inputs, MetricsFeatureProvider metricsFeatureProvider) {
+            mInputs = inputs;
+            mFuture = (Future<BatteryTip>) ThreadUtils.postOnBackgroundThread(() -> {
+                final long startTime = SystemClock.elapsedRealtime();
+                try {
+                    return mDetector.detect();
+                } finally {
+                    final int latency = (int) (SystemClock.elapsedRealtime() - startTime);
+                    Log.d(TAG, getName() + " took " + latency + "ms");
+                    metricsFeatureProvider.action(SettingsEnums.PAGE_UNKNOWN,
+                            SettingsEnums.ACTION_BATTERY_TIP_DETECTOR_LATENCY,
+                            SettingsEnums.PAGE_UNKNOWN, getName(), latency);
+                    onDone();
+                }
+            });
+        }
+
+        List<Object> getInputs() {
+            return mInputs;
+        }
+
+        /**
+         * Returns the detected tip, waiting for it until {@code deadline} at most.
+         */
+        BatteryTip getTip(long deadline) {
+            mMissedBudget = false;
+            try {
+                return mFuture.get(Math.max(0L, deadline - SystemClock.elapsedRealtime()),
+                        TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                mMissedBudget = true;
+                Log.w(TAG, getName() + " missed the detection budget");
+            } catch (CancellationException | ExecutionException | InterruptedException e) {
+                Log.e(TAG, getName() + " failed", e);
+            }
+            return mFallbackTip;
+        }
+
+        /**
+         * Returns {@code true} if the last {@link #getTip(long)} returned the fallback tip
+         * because the detector was still running.
+         */
+        boolean hasMissedBudget() {
+            return mMissedBudget;
+        }
+
+        /**
+         * Sets the listener called on the detector thread once the tip is detected, or right
+         * away if it already is.
+         */
+        void setOnDoneListener(Runnable listener) {
+            synchronized (this) {
+                if (!mDone) {
+                    mOnDoneListener = listener;
+                    return;
+                }
+            }
+            listener.run();
+        }
+
+        void cancel() {
+            mFuture.cancel(true /* mayInterruptIfRunning */);
+        }
+
+        Class<?> getDetectorClass() {
+            return mDetector.getClass();
+        }
+
+        private void onDone() {
+            final Runnable listener;
+            synchronized (this) {
+                mDone = true;
+                listener = mOnDoneListener;
+                mOnDoneListener = null;
+            }
+            if (listener != null) {
+                listener.run();
+            }
+        }
+
+        private String getName() {
+            return mDetector.getClass().getSimpleName();
+        }
+    }
 }
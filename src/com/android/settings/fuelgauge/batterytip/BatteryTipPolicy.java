@@ -18,6 +18,7 @@ package com.android.settings.fuelgauge.batterytip;
 
 import android.content.Context;
 import android.provider.Settings;
+import android.text.TextUtils;
 import android.util.KeyValueListParser;
 import android.util.Log;
 
@@ -211,6 +212,10 @@ public class BatteryTipPolicy {
      */
     public final boolean testLowBatteryTip;
 
+    // Last parsed policy, along with the constants it was parsed from.
+    private static BatteryTipPolicy sCachedPolicy;
+    private static String sCachedConstants;
+
     private final KeyValueListParser mParser;
 
     public BatteryTipPolicy(Context context) {
@@ -219,10 +224,11 @@ public class BatteryTipPolicy {
 
     @VisibleForTesting
     BatteryTipPolicy(Context context, KeyValueListParser parser) {
-        mParser = parser;
-        final String value = Settings.Global.getString(context.getContentResolver(),
-                Settings.Global.BATTERY_TIP_CONSTANTS);
+        this(getConstants(context), parser);
+    }
 
+    private BatteryTipPolicy(String value, KeyValueListParser parser) {
+        mParser = parser;
         try {
             mParser.setString(value);
         } catch (IllegalArgumentException e) {
@@ -252,4 +258,24 @@ public class BatteryTipPolicy {
         testLowBatteryTip = mParser.getBoolean(KEY_TEST_LOW_BATTERY_TIP, false);
     }
 
+    /**
+     * Returns the policy of the current {@link Settings.Global#BATTERY_TIP_CONSTANTS}. The parsed
+     * policy is reused until the constants change.
+     */
+    public static BatteryTipPolicy getInstance(Context context) {
+        final String value = getConstants(context);
+        synchronized (BatteryTipPolicy.class) {
+            if (sCachedPolicy == null || !TextUtils.equals(value, sCachedConstants)) {
+                sCachedPolicy = new BatteryTipPolicy(value, new KeyValueListParser(','));
+                sCachedConstants = value;
+            }
+            return sCachedPolicy;
+        }
+    }
+
+    private static String getConstants(Context context) {
+        return Settings.Global.getString(context.getContentResolver(),
+                Settings.Global.BATTERY_TIP_CONSTANTS);
+    }
+
 }
@@ -47,8 +47,7 @@ public class LowBatteryDetector implements BatteryTipDetector {
     public BatteryTip detect() {
         final boolean powerSaveModeOn = mPowerManager.isPowerSaveMode();
         final boolean lowBattery = mBatteryInfo.batteryLevel <= mWarningLevel
-                || (mBatteryInfo.discharging && mBatteryInfo.remainingTimeUs != 0
-                && mBatteryInfo.remainingTimeUs < TimeUnit.HOURS.toMicros(mPolicy.lowBatteryHour));
+                || (mBatteryInfo.discharging && isRemainingTimeLow(mPolicy, mBatteryInfo));
         final boolean lowBatteryEnabled = mPolicy.lowBatteryEnabled && !powerSaveModeOn;
         final boolean dischargingLowBatteryState =
                 mPolicy.testLowBatteryTip || (mBatteryInfo.discharging && lowBattery);
@@ -63,4 +62,13 @@ public class LowBatteryDetector implements BatteryTipDetector {
 
         return new LowBatteryTip(state, powerSaveModeOn);
     }
+
+    /**
+     * Returns {@code true} if the remaining battery time is known and below the low battery
+     * hour of {@code policy}.
+     */
+    public static boolean isRemainingTimeLow(BatteryTipPolicy policy, BatteryInfo batteryInfo) {
+        return batteryInfo.remainingTimeUs != 0
+                && batteryInfo.remainingTimeUs < TimeUnit.HOURS.toMicros(policy.lowBatteryHour);
+    }
 }
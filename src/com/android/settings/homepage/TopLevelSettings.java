@@ -56,6 +56,11 @@ public class TopLevelSettings extends DashboardFragment implements
         return R.xml.top_level_settings;
     }
 
+    @Override
+    protected boolean isParalleledControllers() {
+        return true;
+    }
+
     @Override
     protected String getLogTag() {
         return TAG;
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.homepage.contextualcards;
+
+import android.content.Context;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.ArrayMap;
+import android.util.ArraySet;
+
+import androidx.annotation.VisibleForTesting;
+import androidx.slice.Slice;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Remembers the outcome of {@link EligibleCardChecker} per slice {@link Uri} for a short time,
+ * so that reopening the homepage doesn't bind every slice again just to test eligibility.
+ * <p>
+ * An entry is dropped as soon as its slice notifies a change, and {@link ContextualCardLoader}
+ * drops the whole cache whenever its content observers report that cards were refreshed or
+ * deleted.
+ */
+class CardEligibilityCache {
+
+    @VisibleForTesting
+    static final long TTL_MS = 10000L;
+
+    private static CardEligibilityCache sInstance;
+
+    private final Context mContext;
+    private final Map<Uri, Entry> mEntries = new ArrayMap<>();
+    // Slices observed since the last invalidate().
+    private final Set<Uri> mObservedUris = new ArraySet<>();
+    private final ContentObserver mSliceObserver = new ContentObserver(null /* handler */) {
+        @Override
+        public void onChange(boolean selfChange, Uri uri) {
+            if (uri == null) {
+                invalidate();
+            } else {
+                remove(uri);
+            }
+        }
+    };
+
+    static synchronized CardEligibilityCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new CardEligibilityCache(context);
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    CardEligibilityCache(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    /**
+     * Returns the cached eligibility of {@code uri}, or {@code null} if unknown or expired.
+     */
+    synchronized Entry get(Uri uri) {
+        final Entry entry = mEntries.get(uri);
+        if (entry == null) {
+            return null;
+        }
+        if (getElapsedTime() - entry.mTimestamp > TTL_MS) {
+            mEntries.remove(uri);
+            return null;
+        }
+        return entry;
+    }
+
+    synchronized void put(Uri uri, boolean eligible, Slice slice, boolean hasInlineAction) {
+        mEntries.put(uri, new Entry(eligible, slice, hasInlineAction, getElapsedTime()));
+        if (mObservedUris.add(uri)) {
+            mContext.getContentResolver().registerContentObserver(uri,
+                    false /* notifyForDescendants */, mSliceObserver);
+        }
+    }
+
+    synchronized void remove(Uri uri) {
+        mEntries.remove(uri);
+    }
+
+    synchronized void invalidate() {
+        mEntries.clear();
+        if (!mObservedUris.isEmpty()) {
+            mContext.getContentResolver().unregisterContentObserver(mSliceObserver);
+            mObservedUris.clear();
+        }
+    }
+
+    @VisibleForTesting
+    long getElapsedTime() {
+        return SystemClock.elapsedRealtime();
+    }
+
+    static class Entry {
+        private final boolean mEligible;
+        private final Slice mSlice;
+        private final boolean mHasInlineAction;
+        private final long mTimestamp;
+
+        private Entry(boolean eligible, Slice slice, boolean hasInlineAction, long timestamp) {
+            mEligible = eligible;
+            mSlice = slice;
+            mHasInlineAction = hasInlineAction;
+            mTimestamp = timestamp;
+        }
+
+        boolean isEligible() {
+            return mEligible;
+        }
+
+        Slice getSlice() {
+            return mSlice;
+        }
+
+        boolean hasInlineAction() {
+            return mHasInlineAction;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.homepage.contextualcards;
+
+import android.os.Process;
+
+import androidx.annotation.VisibleForTesting;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Long-lived executors for homepage card work, instead of spinning up a thread pool per load.
+ */
+public final class ContextualCardExecutor {
+
+    private static final int MIN_POOL_SIZE = 4;
+    @VisibleForTesting
+    static final int ELIGIBILITY_POOL_SIZE = 4;
+    @VisibleForTesting
+    static final int ELIGIBILITY_QUEUE_CAPACITY = 32;
+    private static final long KEEP_ALIVE_SECONDS = 30L;
+
+    private static ExecutorService sExecutor;
+    private static ExecutorService sEligibilityExecutor;
+
+    private ContextualCardExecutor() {
+    }
+
+    /**
+     * Returns the bounded executor shared by card work such as conditional card checks. Its
+     * threads time out when idle.
+     */
+    public static synchronized ExecutorService getExecutor() {
+        if (sExecutor == null) {
+            final int poolSize = Math.max(MIN_POOL_SIZE,
+                    Runtime.getRuntime().availableProcessors());
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize,
+                    KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                    new CardThreadFactory());
+            executor.allowCoreThreadTimeOut(true);
+            sExecutor = executor;
+        }
+        return sExecutor;
+    }
+
+    /**
+     * Returns the bounded executor of card eligibility checks, kept apart from other card work so
+     * that checks don't queue behind it. A check that doesn't get a thread before its timeout is
+     * reported as timed out, and a check that doesn't fit in the queue is cancelled right away.
+     * Its threads time out when idle.
+     */
+    public static synchronized ExecutorService getEligibilityExecutor() {
+        if (sEligibilityExecutor == null) {
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(ELIGIBILITY_POOL_SIZE,
+                    ELIGIBILITY_POOL_SIZE, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(ELIGIBILITY_QUEUE_CAPACITY), new CardThreadFactory(),
+                    (runnable, pool) -> {
+                        if (runnable instanceof Future) {
+                            ((Future<?>) runnable).cancel(false /* mayInterruptIfRunning */);
+                        }
+                    });
+            executor.allowCoreThreadTimeOut(true);
+            sEligibilityExecutor = executor;
+        }
+        return sEligibilityExecutor;
+    }
+
+    private static class CardThreadFactory implements ThreadFactory {
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, "ContextualCard-" + mCount.incrementAndGet());
+        }
+    }
+}
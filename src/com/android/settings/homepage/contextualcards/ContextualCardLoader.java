@@ -42,7 +42,6 @@ import com.android.settingslib.utils.AsyncLoaderCompat;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
@@ -62,6 +61,8 @@ public class ContextualCardLoader extends AsyncLoaderCompat<List<ContextualCard>
             new Handler(Looper.getMainLooper())) {
         @Override
         public void onChange(boolean selfChange, Uri uri) {
+            // Cards were refreshed or deleted, previous eligibility results no longer hold.
+            CardEligibilityCache.getInstance(mContext).invalidate();
             if (isStarted()) {
                 mNotifyUri = uri;
                 forceLoad();
@@ -188,12 +189,13 @@ public class ContextualCardLoader extends AsyncLoaderCompat<List<ContextualCard>
             return candidates;
         }
 
-        final ExecutorService executor = Executors.newFixedThreadPool(candidates.size());
+        final ExecutorService executor = ContextualCardExecutor.getEligibilityExecutor();
+        final CardEligibilityCache cache = CardEligibilityCache.getInstance(mContext);
         final List<ContextualCard> cards = new ArrayList<>();
         List<Future<ContextualCard>> eligibleCards = new ArrayList<>();
 
         final List<EligibleCardChecker> checkers = candidates.stream()
-                .map(card -> new EligibleCardChecker(mContext, card))
+                .map(card -> new EligibleCardChecker(mContext, card, cache))
                 .collect(Collectors.toList());
         try {
             eligibleCards = executor.invokeAll(checkers, ELIGIBILITY_CHECKER_TIMEOUT_MS,
@@ -201,16 +203,28 @@ public class ContextualCardLoader extends AsyncLoaderCompat<List<ContextualCard>
         } catch (InterruptedException e) {
             Log.w(TAG, "Failed to get eligible states for all cards", e);
         }
-        executor.shutdown();
 
         // Collect future and eligible cards
+        final MetricsFeatureProvider metricsFeatureProvider =
+                FeatureFactory.getFactory(mContext).getMetricsFeatureProvider();
+        final long[] latenciesMs = new long[candidates.size()];
+        final boolean[] fromCache = new boolean[candidates.size()];
         for (int i = 0; i < eligibleCards.size(); i++) {
             final Future<ContextualCard> cardFuture = eligibleCards.get(i);
             if (cardFuture.isCancelled()) {
                 Log.w(TAG, "Timeout getting eligible state for card: "
                         + candidates.get(i).getSliceUri());
+                latenciesMs[i] = ELIGIBILITY_CHECKER_TIMEOUT_MS;
+                // Checks that finish in time log their own load time.
+                metricsFeatureProvider.action(SettingsEnums.PAGE_UNKNOWN,
+                        SettingsEnums.ACTION_CONTEXTUAL_CARD_LOAD_TIMEOUT,
+                        SettingsEnums.SETTINGS_HOMEPAGE,
+                        candidates.get(i).getTextSliceUri() /* key */,
+                        (int) ELIGIBILITY_CHECKER_TIMEOUT_MS /* value */);
                 continue;
             }
+            latenciesMs[i] = checkers.get(i).getLatencyMs();
+            fromCache[i] = checkers.get(i).isFromCache();
 
             try {
                 final ContextualCard card = cardFuture.get();
@@ -221,6 +235,8 @@ public class ContextualCardLoader extends AsyncLoaderCompat<List<ContextualCard>
                 Log.w(TAG, "Failed to get eligible state for card", e);
             }
         }
+        Log.d(TAG, "Eligibility latency: " + ContextualCardLogUtils
+                .buildCardEligibilityLatencyLog(candidates, latenciesMs, fromCache));
         return cards;
     }
 
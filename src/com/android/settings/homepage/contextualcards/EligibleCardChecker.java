@@ -43,13 +43,36 @@ public class EligibleCardChecker implements Callable<ContextualCard> {
     private static final String TAG = "EligibleCardChecker";
 
     private final Context mContext;
+    private final CardEligibilityCache mCache;
 
     @VisibleForTesting
     ContextualCard mCard;
 
+    private long mLatencyMs;
+    private boolean mFromCache;
+
     EligibleCardChecker(Context context, ContextualCard card) {
+        this(context, card, null /* cache */);
+    }
+
+    EligibleCardChecker(Context context, ContextualCard card, CardEligibilityCache cache) {
         mContext = context;
         mCard = card;
+        mCache = cache;
+    }
+
+    /**
+     * Returns how long the last eligibility check took, in milliseconds.
+     */
+    long getLatencyMs() {
+        return mLatencyMs;
+    }
+
+    /**
+     * Returns {@code true} if the last eligibility check was answered by the cache.
+     */
+    boolean isFromCache() {
+        return mFromCache;
     }
 
     @Override
@@ -73,11 +96,12 @@ public class EligibleCardChecker implements Callable<ContextualCard> {
             result = null;
         }
         // Log individual card loading time
+        mLatencyMs = System.currentTimeMillis() - startTime;
         metricsFeatureProvider.action(SettingsEnums.PAGE_UNKNOWN,
                 SettingsEnums.ACTION_CONTEXTUAL_CARD_LOAD,
                 SettingsEnums.SETTINGS_HOMEPAGE,
                 mCard.getTextSliceUri() /* key */,
-                (int) (System.currentTimeMillis() - startTime) /* value */);
+                (int) mLatencyMs /* value */);
 
         return result;
     }
@@ -93,10 +117,26 @@ public class EligibleCardChecker implements Callable<ContextualCard> {
             return false;
         }
 
+        final CardEligibilityCache.Entry cached = mCache == null ? null : mCache.get(uri);
+        if (cached != null) {
+            mFromCache = true;
+            if (cached.isEligible()) {
+                mCard = card.mutate()
+                        .setSlice(cached.getSlice())
+                        .setHasInlineAction(cached.hasInlineAction())
+                        .build();
+            }
+            return cached.isEligible();
+        }
+
         final Slice slice = bindSlice(uri);
 
         if (slice == null || slice.hasHint(HINT_ERROR)) {
             Log.w(TAG, "Failed to bind slice, not eligible for display " + uri);
+            if (mCache != null) {
+                mCache.put(uri, false /* eligible */, null /* slice */,
+                        false /* hasInlineAction */);
+            }
             return false;
         }
 
@@ -106,6 +146,9 @@ public class EligibleCardChecker implements Callable<ContextualCard> {
             mCard = card.mutate().setHasInlineAction(true).build();
         }
 
+        if (mCache != null) {
+            mCache.put(uri, true /* eligible */, mCard.getSlice(), mCard.hasInlineAction());
+        }
         return true;
     }
 
@@ -23,7 +23,7 @@ import androidx.annotation.NonNull;
 import androidx.annotation.VisibleForTesting;
 
 import com.android.settings.homepage.contextualcards.ContextualCard;
-import com.android.settingslib.utils.ThreadUtils;
+import com.android.settings.homepage.contextualcards.ContextualCardExecutor;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -62,7 +62,7 @@ public class ConditionManager {
         // Check displayable future
         for (ConditionalCardController card : mCardControllers) {
             final DisplayableChecker checker = new DisplayableChecker(getController(card.getId()));
-            displayableCards.add(ThreadUtils.postOnBackgroundThread(checker));
+            displayableCards.add(ContextualCardExecutor.getExecutor().submit(checker));
         }
         // Collect future and add displayable cards
         for (Future<ContextualCard> cardFuture : displayableCards) {
@@ -223,6 +223,26 @@ public class ContextualCardLogUtils {
         return log.toString();
     }
 
+    /**
+     * Serialize the eligibility check latency of each card to string, in the form of
+     * {@code count|uri|latency_ms|from_cache|...}.
+     *
+     * @param cards Checked cards.
+     * @param latenciesMs Eligibility check latency of each card, in milliseconds.
+     * @param fromCache Whether the eligibility of each card came from the cache.
+     */
+    public static String buildCardEligibilityLatencyLog(List<ContextualCard> cards,
+            long[] latenciesMs, boolean[] fromCache) {
+        final StringBuilder log = new StringBuilder();
+        log.append(cards.size());
+        for (int i = 0; i < cards.size(); i++) {
+            log.append("|").append(cards.get(i).getTextSliceUri())
+                    .append("|").append(latenciesMs[i])
+                    .append("|").append(fromCache[i] ? 1 : 0);
+        }
+        return log.toString();
+    }
+
     /**
      * Parse string to a List of {@link CardLog}
      */
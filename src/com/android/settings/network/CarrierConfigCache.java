@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.network;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.PersistableBundle;
+import android.telephony.CarrierConfigManager;
+import android.telephony.SubscriptionManager;
+import android.telephony.SubscriptionManager.OnSubscriptionsChangedListener;
+import android.util.Log;
+import android.util.SparseArray;
+
+import androidx.annotation.VisibleForTesting;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * A process-wide cache of the carrier config of each subscription, so that the many controllers
+ * of a mobile network screen share one {@link CarrierConfigManager#getConfigForSubId(int)} call
+ * per subscription instead of each doing their own.
+ * <p>
+ * Snapshots are keyed by subscription id, and are dropped when the carrier config of their
+ * subscription changes or when the subscriptions change. Every caller gets the same snapshot,
+ * which must be treated as read-only: modifying it, or any array or bundle inside it, would
+ * change what other callers see.
+ */
+public class CarrierConfigCache {
+
+    private static final String TAG = "CarrierConfigCache";
+
+    private static CarrierConfigCache sInstance;
+
+    private final SparseArray<PersistableBundle> mConfigs = new SparseArray<>();
+    // The application the listeners are registered with, and the cached configs loaded in.
+    private Context mAppContext;
+    // Bumped on every invalidation so configs loaded meanwhile aren't cached as current.
+    private int mGeneration;
+
+    private long mHitCount;
+    private long mMissCount;
+    private long mInvalidationCount;
+
+    /**
+     * Returns the process-wide cache.
+     */
+    public static synchronized CarrierConfigCache getInstance() {
+        if (sInstance == null) {
+            sInstance = new CarrierConfigCache();
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    CarrierConfigCache() {
+    }
+
+    /**
+     * Returns the carrier config of {@code subId}, or {@code null} when it isn't available. Same
+     * as {@link CarrierConfigManager#getConfigForSubId(int)} of {@code context}. The returned
+     * bundle is shared and must not be modified.
+     */
+    public PersistableBundle getConfigForSubId(Context context, int subId) {
+        return getConfigForSubId(context, context.getSystemService(CarrierConfigManager.class),
+                subId);
+    }
+
+    /**
+     * Returns the carrier config of {@code subId}, loading it with {@code manager} if it isn't
+     * cached yet, or {@code null} when it isn't available. The returned bundle is shared and must
+     * not be modified.
+     */
+    public PersistableBundle getConfigForSubId(Context context, CarrierConfigManager manager,
+            int subId) {
+        final int generation;
+        synchronized (this) {
+            startListening(context);
+            final PersistableBundle config = mConfigs.get(subId);
+            if (config != null) {
+                mHitCount++;
+                return config;
+            }
+            mMissCount++;
+            generation = mGeneration;
+        }
+
+        final PersistableBundle config = manager != null ? manager.getConfigForSubId(subId) : null;
+        if (config == null) {
+            return null;
+        }
+        synchronized (this) {
+            if (generation == mGeneration) {
+                mConfigs.put(subId, config);
+            }
+        }
+        return config;
+    }
+
+    /**
+     * Drops the cached carrier config of {@code subId}, or of every subscription if {@code subId}
+     * isn't a valid subscription id.
+     */
+    public synchronized void invalidate(int subId) {
+        mGeneration++;
+        mInvalidationCount++;
+        if (!SubscriptionManager.isValidSubscriptionId(subId)) {
+            mConfigs.clear();
+            return;
+        }
+        mConfigs.remove(subId);
+    }
+
+    /**
+     * Drops the cached carrier config of every subscription.
+     */
+    public void invalidateAll() {
+        invalidate(SubscriptionManager.INVALID_SUBSCRIPTION_ID);
+    }
+
+    /**
+     * Returns the cache counters, for {@link com.android.settings.SettingsDumpService}.
+     */
+    public synchronized JSONObject dump() throws JSONException {
+        final JSONObject obj = new JSONObject();
+        obj.put("entries", mConfigs.size());
+        obj.put("hits", mHitCount);
+        obj.put("misses", mMissCount);
+        obj.put("invalidations", mInvalidationCount);
+        return obj;
+    }
+
+    @VisibleForTesting
+    synchronized long getHitCount() {
+        return mHitCount;
+    }
+
+    @VisibleForTesting
+    synchronized long getMissCount() {
+        return mMissCount;
+    }
+
+    private void startListening(Context context) {
+        final Context appContext = context.getApplicationContext();
+        if (appContext == null || appContext == mAppContext) {
+            return;
+        }
+        if (mAppContext != null) {
+            // Only happens when tests recreate the application: configs loaded in the previous
+            // one may come from other mocked services.
+            mGeneration++;
+            mConfigs.clear();
+        }
+        mAppContext = appContext;
+        appContext.registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                if (isInitialStickyBroadcast()) {
+                    return;
+                }
+                invalidate(intent.getIntExtra(CarrierConfigManager.EXTRA_SUBSCRIPTION_INDEX,
+                        SubscriptionManager.INVALID_SUBSCRIPTION_ID));
+            }
+        }, new IntentFilter(CarrierConfigManager.ACTION_CARRIER_CONFIG_CHANGED));
+
+        final SubscriptionManager subscriptionManager =
+                appContext.getSystemService(SubscriptionManager.class);
+        if (subscriptionManager != null) {
+            subscriptionManager.addOnSubscriptionsChangedListener(appContext.getMainExecutor(),
+                    new OnSubscriptionsChangedListener() {
+                        @Override
+                        public void onSubscriptionsChanged() {
+                            Log.d(TAG, "Subscriptions changed, dropping carrier configs");
+                            invalidateAll();
+                        }
+                    });
+        }
+    }
+}
@@ -56,6 +56,8 @@ public class CarrierConfigChangedReceiver extends BroadcastReceiver {
         if (intent.hasExtra(CarrierConfigManager.EXTRA_SUBSCRIPTION_INDEX)) {
             int subId = intent.getIntExtra(CarrierConfigManager.EXTRA_SUBSCRIPTION_INDEX, -1);
             Log.i(TAG, "subId from config changed: " + subId);
+            // Whoever waits on the latch reads the new config right after.
+            CarrierConfigCache.getInstance().invalidate(subId);
             mLatch.countDown();
         }
     }
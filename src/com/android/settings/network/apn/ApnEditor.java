@@ -53,6 +53,7 @@ import com.android.internal.util.ArrayUtils;
 import com.android.settings.R;
 import com.android.settings.SettingsPreferenceFragment;
 import com.android.settings.core.instrumentation.InstrumentedDialogFragment;
+import com.android.settings.network.CarrierConfigCache;
 import com.android.settings.network.ProxySubscriptionManager;
 import com.android.settingslib.utils.ThreadUtils;
 
@@ -1302,7 +1303,8 @@ public class ApnEditor extends SettingsPreferenceFragment
         final CarrierConfigManager configManager = (CarrierConfigManager)
                 getSystemService(Context.CARRIER_CONFIG_SERVICE);
         if (configManager != null) {
-            final PersistableBundle b = configManager.getConfigForSubId(mSubId);
+            final PersistableBundle b = CarrierConfigCache.getInstance()
+                    .getConfigForSubId(getContext(), configManager, mSubId);
             if (b != null) {
                 mReadOnlyApnTypes = b.getStringArray(
                         CarrierConfigManager.KEY_READ_ONLY_APN_TYPES_STRING_ARRAY);
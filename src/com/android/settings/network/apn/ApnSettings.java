@@ -57,6 +57,7 @@ import androidx.preference.PreferenceGroup;
 
 import com.android.settings.R;
 import com.android.settings.RestrictedSettingsFragment;
+import com.android.settings.network.CarrierConfigCache;
 import com.android.settings.network.SubscriptionUtil;
 import com.android.settingslib.RestrictedLockUtils.EnforcedAdmin;
 
@@ -228,7 +229,8 @@ public class ApnSettings extends RestrictedSettingsFragment
 
         final CarrierConfigManager configManager = (CarrierConfigManager)
                 getSystemService(Context.CARRIER_CONFIG_SERVICE);
-        final PersistableBundle b = configManager.getConfigForSubId(mSubId);
+        final PersistableBundle b = CarrierConfigCache.getInstance()
+                .getConfigForSubId(activity, configManager, mSubId);
         mHideImsApn = b.getBoolean(CarrierConfigManager.KEY_HIDE_IMS_APN_BOOL);
         mAllowAddingApns = b.getBoolean(CarrierConfigManager.KEY_ALLOW_ADDING_APNS_BOOL);
         if (mAllowAddingApns) {
@@ -23,11 +23,11 @@ import android.util.Log;
 import androidx.preference.Preference;
 import androidx.preference.PreferenceScreen;
 
+import com.android.settings.core.AvailabilitySession;
 import com.android.settings.dashboard.RestrictedDashboardFragment;
 import com.android.settingslib.core.AbstractPreferenceController;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
 
 abstract class AbstractMobileNetworkSettings extends RestrictedDashboardFragment {
@@ -64,10 +64,9 @@ abstract class AbstractMobileNetworkSettings extends RestrictedDashboardFragment
         return screen.findPreference(key);
     }
 
-    TelephonyStatusControlSession setTelephonyAvailabilityStatus(
-            Collection<AbstractPreferenceController> listOfPrefControllers) {
-        return (new TelephonyStatusControlSession.Builder(listOfPrefControllers))
-                .build();
+    @Override
+    protected boolean isAvailabilitySessionEnabled() {
+        return true;
     }
 
     @Override
@@ -129,8 +128,7 @@ abstract class AbstractMobileNetworkSettings extends RestrictedDashboardFragment
 
         final List<AbstractPreferenceController> controllers =
                 getPreferenceControllersAsList();
-        final TelephonyStatusControlSession session =
-                setTelephonyAvailabilityStatus(controllers);
+        final AvailabilitySession session = startAvailabilitySession();
 
         final PreferenceScreen screen = getPreferenceScreen();
         controllers.forEach(controller -> {
@@ -142,7 +140,9 @@ abstract class AbstractMobileNetworkSettings extends RestrictedDashboardFragment
 
         Log.d(LOG_TAG, "redraw fragment: +" + (endTime - startTime) + "ms");
 
-        session.close();
+        if (session != null) {
+            session.close();
+        }
     }
 
 }
@@ -28,6 +28,8 @@ import android.telephony.SubscriptionManager;
 import androidx.annotation.VisibleForTesting;
 import androidx.preference.Preference;
 
+import com.android.settings.network.CarrierConfigCache;
+
 /**
  * Preference controller for "Carrier Settings"
  */
@@ -47,7 +49,8 @@ public class CarrierPreferenceController extends TelephonyBasePreferenceControll
 
     @Override
     public int getAvailabilityStatus(int subId) {
-        final PersistableBundle carrierConfig = mCarrierConfigManager.getConfigForSubId(subId);
+        final PersistableBundle carrierConfig = CarrierConfigCache.getInstance()
+                .getConfigForSubId(mContext, mCarrierConfigManager, subId);
 
         // Return available if it is in CDMA or GSM mode, and the flag is on
         return carrierConfig != null
@@ -72,7 +75,8 @@ public class CarrierPreferenceController extends TelephonyBasePreferenceControll
     }
 
     private Intent getCarrierSettingsActivityIntent(int subId) {
-        final PersistableBundle config = mCarrierConfigManager.getConfigForSubId(subId);
+        final PersistableBundle config = CarrierConfigCache.getInstance()
+                .getConfigForSubId(mContext, mCarrierConfigManager, subId);
         final ComponentName cn = ComponentName.unflattenFromString(
                 config == null ? "" : config.getString(
                         CarrierConfigManager.KEY_CARRIER_SETTINGS_ACTIVITY_COMPONENT_NAME_STRING,
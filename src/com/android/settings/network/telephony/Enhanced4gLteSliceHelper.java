@@ -39,6 +39,7 @@ import androidx.slice.builders.SliceAction;
 
 import com.android.settings.R;
 import com.android.settings.Utils;
+import com.android.settings.network.CarrierConfigCache;
 import com.android.settings.network.ims.VolteQueryImsState;
 import com.android.settings.slices.CustomSliceRegistry;
 import com.android.settings.slices.SliceBroadcastReceiver;
@@ -257,7 +258,8 @@ public class Enhanced4gLteSliceHelper {
         final CarrierConfigManager configManager = getCarrierConfigManager();
         PersistableBundle bundle = null;
         if (configManager != null) {
-            bundle = configManager.getConfigForSubId(subId);
+            bundle = CarrierConfigCache.getInstance()
+                    .getConfigForSubId(mContext, configManager, subId);
         }
         return bundle;
     }
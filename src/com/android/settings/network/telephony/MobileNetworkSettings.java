@@ -35,6 +35,7 @@ import androidx.annotation.VisibleForTesting;
 import androidx.preference.Preference;
 
 import com.android.settings.R;
+import com.android.settings.core.AvailabilitySession;
 import com.android.settings.datausage.BillingCyclePreferenceController;
 import com.android.settings.datausage.DataUsageSummaryPreferenceController;
 import com.android.settings.network.ActiveSubscriptionsListener;
@@ -200,8 +201,7 @@ public class MobileNetworkSettings extends AbstractMobileNetworkSettings {
     public void onCreate(Bundle icicle) {
         Log.i(LOG_TAG, "onCreate:+");
 
-        final TelephonyStatusControlSession session =
-                setTelephonyAvailabilityStatus(getPreferenceControllersAsList());
+        final AvailabilitySession session = startAvailabilitySession();
 
         super.onCreate(icicle);
         final Context context = getContext();
@@ -209,7 +209,9 @@ public class MobileNetworkSettings extends AbstractMobileNetworkSettings {
         mTelephonyManager = context.getSystemService(TelephonyManager.class)
                 .createForSubscriptionId(mSubId);
 
-        session.close();
+        if (session != null) {
+            session.close();
+        }
 
         onRestoreInstance(icicle);
     }
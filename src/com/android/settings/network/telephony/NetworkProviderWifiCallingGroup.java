@@ -41,6 +41,7 @@ import androidx.preference.PreferenceGroup;
 import androidx.preference.PreferenceScreen;
 
 import com.android.settings.R;
+import com.android.settings.network.CarrierConfigCache;
 import com.android.settings.network.SubscriptionUtil;
 import com.android.settings.network.SubscriptionsChangeListener;
 import com.android.settings.network.ims.WifiCallingQueryImsState;
@@ -273,8 +274,8 @@ public class NetworkProviderWifiCallingGroup extends
     private boolean isWifiCallingAvailableForCarrier(int subId) {
         boolean isWifiCallingAvailableForCarrier = false;
         if (mCarrierConfigManager != null) {
-            final PersistableBundle carrierConfig =
-                    mCarrierConfigManager.getConfigForSubId(subId);
+            final PersistableBundle carrierConfig = CarrierConfigCache.getInstance()
+                    .getConfigForSubId(mContext, mCarrierConfigManager, subId);
             if (carrierConfig != null) {
                 isWifiCallingAvailableForCarrier = carrierConfig.getBoolean(
                         CarrierConfigManager.KEY_CARRIER_WFC_IMS_AVAILABLE_BOOL);
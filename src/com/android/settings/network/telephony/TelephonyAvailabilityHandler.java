@@ -20,19 +20,15 @@
  */
 package com.android.settings.network.telephony;
 
-public interface TelephonyAvailabilityHandler {
+import com.android.settings.core.AvailabilityStatusHandler;
 
-    /**
-     * Set availability status of preference controller to a fixed value.
-     * @param status is the given status. Which will be reported from
-     * {@link BasePreferenceController#getAvailabilityStatus()}
-     */
-    void setAvailabilityStatus(int status);
+public interface TelephonyAvailabilityHandler extends AvailabilityStatusHandler {
 
     /**
      * Do not set availability, use
      * {@link MobileNetworkUtils#getAvailability(Context, int, TelephonyAvailabilityCallback)}
      * to get the availability.
      */
+    @Override
     void unsetAvailabilityStatus();
 }
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.network.telephony;
+
+import android.content.Context;
+import android.os.PersistableBundle;
+import android.telephony.SubscriptionManager;
+
+import com.android.settings.core.AvailabilitySession;
+import com.android.settings.network.CarrierConfigCache;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * {@link AvailabilitySession.Input}s shared by the availability of telephony preference
+ * controllers.
+ */
+final class TelephonyAvailabilityInputs {
+
+    /**
+     * Ids of the active subscriptions, used by controllers not bound to a subscription.
+     */
+    static final AvailabilitySession.Input<int[]> ACTIVE_SUBSCRIPTION_IDS =
+            new AvailabilitySession.Input<int[]>() {
+                @Override
+                public int[] load(Context context) {
+                    return MobileNetworkUtils.getActiveSubscriptionIdList(context);
+                }
+
+                @Override
+                public String toString() {
+                    return "ActiveSubscriptionIds";
+                }
+            };
+
+    private TelephonyAvailabilityInputs() {
+    }
+
+    /**
+     * @return the inputs the availability of a controller bound to {@code subId} depends on.
+     */
+    static Collection<AvailabilitySession.Input<?>> getInputs(int subId) {
+        return Collections.singletonList(SubscriptionManager.isValidSubscriptionId(subId)
+                ? new CarrierConfigInput(subId) : ACTIVE_SUBSCRIPTION_IDS);
+    }
+
+    /**
+     * Carrier config of one subscription. Loading it fills {@link CarrierConfigCache}, and the
+     * session evaluates the controllers declaring it only once it is loaded, so that they share
+     * one fetch instead of all missing the cache at once.
+     */
+    private static class CarrierConfigInput
+            implements AvailabilitySession.Input<PersistableBundle> {
+        private final int mSubId;
+
+        CarrierConfigInput(int subId) {
+            mSubId = subId;
+        }
+
+        @Override
+        public PersistableBundle load(Context context) {
+            return CarrierConfigCache.getInstance().getConfigForSubId(context, mSubId);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof CarrierConfigInput && ((CarrierConfigInput) obj).mSubId == mSubId;
+        }
+
+        @Override
+        public int hashCode() {
+            return mSubId;
+        }
+
+        @Override
+        public String toString() {
+            return "CarrierConfig[" + mSubId + "]";
+        }
+    }
+}
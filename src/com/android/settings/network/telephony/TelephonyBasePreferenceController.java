@@ -19,18 +19,21 @@ package com.android.settings.network.telephony;
 import android.content.Context;
 import android.content.res.Resources;
 import android.os.PersistableBundle;
-import android.telephony.CarrierConfigManager;
 import android.telephony.SubscriptionManager;
 
+import com.android.settings.core.AvailabilitySession;
 import com.android.settings.core.BasePreferenceController;
+import com.android.settings.network.CarrierConfigCache;
 
+import java.util.Collection;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * {@link BasePreferenceController} that used by all preferences that requires subscription id.
  */
 public abstract class TelephonyBasePreferenceController extends BasePreferenceController
-        implements TelephonyAvailabilityCallback, TelephonyAvailabilityHandler {
+        implements TelephonyAvailabilityCallback, TelephonyAvailabilityHandler,
+        AvailabilitySession.InputConsumer {
     protected int mSubId;
     private AtomicInteger mAvailabilityStatus = new AtomicInteger(0);
     private AtomicInteger mSetSessionCount = new AtomicInteger(0);
@@ -60,6 +63,11 @@ public abstract class TelephonyBasePreferenceController extends BasePreferenceCo
         mSetSessionCount.getAndDecrement();
     }
 
+    @Override
+    public Collection<AvailabilitySession.Input<?>> getAvailabilityInputs() {
+        return TelephonyAvailabilityInputs.getInputs(mSubId);
+    }
+
     /**
      * Get carrier config based on specific subscription id.
      *
@@ -71,9 +79,7 @@ public abstract class TelephonyBasePreferenceController extends BasePreferenceCo
         if (!SubscriptionManager.isValidSubscriptionId(subId)) {
             return null;
         }
-        final CarrierConfigManager carrierConfigMgr =
-                mContext.getSystemService(CarrierConfigManager.class);
-        return carrierConfigMgr.getConfigForSubId(subId);
+        return CarrierConfigCache.getInstance().getConfigForSubId(mContext, subId);
     }
 
     /**
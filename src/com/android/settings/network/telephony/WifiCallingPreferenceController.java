@@ -37,6 +37,7 @@ import androidx.preference.Preference;
 import androidx.preference.PreferenceScreen;
 
 import com.android.settings.R;
+import com.android.settings.network.CarrierConfigCache;
 import com.android.settings.network.ims.WifiCallingQueryImsState;
 import com.android.settingslib.core.lifecycle.LifecycleObserver;
 import com.android.settingslib.core.lifecycle.events.OnStart;
@@ -131,8 +132,8 @@ public class WifiCallingPreferenceController extends TelephonyBasePreferenceCont
         if (queryImsState(subId).isEnabledByUser()) {
             boolean useWfcHomeModeForRoaming = false;
             if (mCarrierConfigManager != null) {
-                final PersistableBundle carrierConfig =
-                        mCarrierConfigManager.getConfigForSubId(subId);
+                final PersistableBundle carrierConfig = CarrierConfigCache.getInstance()
+                        .getConfigForSubId(mContext, mCarrierConfigManager, subId);
                 if (carrierConfig != null) {
                     useWfcHomeModeForRoaming = carrierConfig.getBoolean(
                             CarrierConfigManager
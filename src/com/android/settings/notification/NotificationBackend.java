@@ -47,6 +47,7 @@ import android.os.UserHandle;
 import android.service.notification.ConversationChannelWrapper;
 import android.service.notification.NotificationListenerFilter;
 import android.text.format.DateUtils;
+import android.util.ArraySet;
 import android.util.IconDrawableFactory;
 import android.util.Log;
 
@@ -66,6 +67,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 public class NotificationBackend {
     private static final String TAG = "NotificationBackend";
@@ -184,6 +186,58 @@ public class NotificationBackend {
         return false;
     }
 
+    /**
+     * Bulk version of {@link #isSystemApp} for every package installed for {@code userId}: the
+     * packages are fetched in a single call and role holders and non-blockable packages are only
+     * resolved once, instead of a PackageManager and a RoleManager call per app.
+     */
+    public Set<String> getSystemAppPackages(Context context, int userId) {
+        final Set<String> systemApps = new ArraySet<>();
+        final PackageManager pm = context.getPackageManager();
+        final RoleManager rm = context.getSystemService(RoleManager.class);
+        final Set<String> roleHolders = new ArraySet<>();
+        roleHolders.addAll(rm.getRoleHolders(RoleManager.ROLE_DIALER));
+        roleHolders.addAll(rm.getRoleHolders(RoleManager.ROLE_EMERGENCY));
+        final String[] nonBlockablePkgs = context.getResources().getStringArray(
+                com.android.internal.R.array.config_nonBlockableNotificationPackages);
+        for (PackageInfo info : pm.getInstalledPackagesAsUser(
+                PackageManager.GET_SIGNATURES, userId)) {
+            final AppRow row = new AppRow();
+            row.systemApp = Utils.isSystemPackage(context.getResources(), pm, info)
+                    || roleHolders.contains(info.packageName);
+            markAppRowWithBlockables(nonBlockablePkgs, row, info.packageName);
+            if (row.systemApp) {
+                systemApps.add(info.packageName);
+            }
+        }
+        return systemApps;
+    }
+
+    /**
+     * Returns the packages among {@code apps} of {@code userId} whose notifications are blocked.
+     * NoMan only reports how many apps of a user are blocked, so per-package lookups are skipped
+     * when none are and stop once that many have been found.
+     */
+    public Set<String> getBannedPackages(int userId, List<ApplicationInfo> apps) {
+        final Set<String> bannedApps = new ArraySet<>();
+        int blockedCount;
+        try {
+            blockedCount = sINM.getBlockedAppCount(userId);
+        } catch (Exception e) {
+            Log.w(TAG, "Error calling NoMan", e);
+            blockedCount = apps.size();
+        }
+        for (ApplicationInfo info : apps) {
+            if (bannedApps.size() >= blockedCount) {
+                break;
+            }
+            if (getNotificationsBanned(info.packageName, info.uid)) {
+                bannedApps.add(info.packageName);
+            }
+        }
+        return bannedApps;
+    }
+
     public boolean getNotificationsBanned(String pkg, int uid) {
         try {
             final boolean enabled = sINM.areNotificationsEnabledForPackage(pkg, uid);
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.notification.history;
+
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.graphics.drawable.Drawable;
+import android.os.LocaleList;
+import android.os.SystemClock;
+import android.os.UserHandle;
+import android.util.LruCache;
+
+/**
+ * A bounded cache of the labels and badged icons of the apps shown on the notification history
+ * page, shared by {@link HistoryLoader} and {@link NotificationSbnAdapter} so that reopening the
+ * page doesn't resolve every app again. Labels and icons are resolved lazily, on first use, and
+ * resolved again once the locales change.
+ */
+final class AppLabelIconCache {
+
+    private static final int MAX_ENTRIES = 64;
+    // Entries are dropped after a while so that app updates eventually show up.
+    private static final long MAX_AGE_MS = 10 * 60 * 1000L;
+    private static final int APP_INFO_FLAGS = PackageManager.MATCH_UNINSTALLED_PACKAGES
+            | PackageManager.MATCH_DISABLED_COMPONENTS
+            | PackageManager.MATCH_DIRECT_BOOT_UNAWARE
+            | PackageManager.MATCH_DIRECT_BOOT_AWARE;
+
+    private static final LruCache<String, Entry> sCache = new LruCache<>(MAX_ENTRIES);
+
+    private AppLabelIconCache() {
+    }
+
+    /** Returns the label of {@code pkg} for {@code userId}, or null if it isn't installed. */
+    static CharSequence getLabel(PackageManager pm, String pkg, int userId) {
+        return getEntry(pm, pkg, userId).getLabel(pm);
+    }
+
+    /**
+     * Returns the icon of {@code pkg} badged for {@code userId}, or the default activity icon if
+     * it isn't installed.
+     */
+    static Drawable getIcon(PackageManager pm, String pkg, int userId) {
+        return getEntry(pm, pkg, userId).getIcon(pm, userId);
+    }
+
+    private static Entry getEntry(PackageManager pm, String pkg, int userId) {
+        final String key = pkg + "|" + userId;
+        Entry entry = sCache.get(key);
+        if (entry == null || !entry.isValid()) {
+            ApplicationInfo info;
+            try {
+                info = pm.getApplicationInfoAsUser(pkg, APP_INFO_FLAGS, userId);
+            } catch (PackageManager.NameNotFoundException e) {
+                // app is gone, just show package name and generic icon
+                info = null;
+            }
+            entry = new Entry(info);
+            sCache.put(key, entry);
+        }
+        return entry;
+    }
+
+    private static class Entry {
+        private final ApplicationInfo mInfo;
+        private final long mLoadTime;
+        private final LocaleList mLocales;
+        private CharSequence mLabel;
+        private Drawable mIcon;
+
+        Entry(ApplicationInfo info) {
+            mInfo = info;
+            mLoadTime = SystemClock.elapsedRealtime();
+            mLocales = LocaleList.getDefault();
+        }
+
+        boolean isValid() {
+            return SystemClock.elapsedRealtime() - mLoadTime < MAX_AGE_MS
+                    && mLocales.equals(LocaleList.getDefault());
+        }
+
+        synchronized CharSequence getLabel(PackageManager pm) {
+            if (mLabel == null && mInfo != null) {
+                mLabel = String.valueOf(pm.getApplicationLabel(mInfo));
+            }
+            return mLabel;
+        }
+
+        synchronized Drawable getIcon(PackageManager pm, int userId) {
+            if (mIcon == null) {
+                mIcon = mInfo != null
+                        ? pm.getUserBadgedIcon(pm.getApplicationIcon(mInfo), UserHandle.of(userId))
+                        : pm.getDefaultActivityIcon();
+            }
+            // A drawable can only be attached to one view at a time.
+            final Drawable.ConstantState state = mIcon.getConstantState();
+            return state != null ? state.newDrawable() : mIcon;
+        }
+    }
+}
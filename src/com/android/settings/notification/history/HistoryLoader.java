@@ -19,7 +19,6 @@ package com.android.settings.notification.history;
 import android.app.NotificationHistory;
 import android.app.NotificationHistory.HistoricalNotification;
 import android.content.Context;
-import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
 import android.os.UserHandle;
 import android.util.Slog;
@@ -35,9 +34,13 @@ import java.util.Map;
 
 public class HistoryLoader {
     private static final String TAG = "HistoryLoader";
+    // Enough packages to fill the first screen; later pages are appended below it.
+    private static final int PAGE_SIZE = 8;
+
     private final Context mContext;
     private final NotificationBackend mBackend;
     private final PackageManager mPm;
+    private volatile boolean mCanceled;
 
     public HistoryLoader(Context context, NotificationBackend backend, PackageManager pm) {
         mContext = context;
@@ -45,55 +48,83 @@ public class HistoryLoader {
         mPm = pm;
     }
 
+    /**
+     * Loads the notification history grouped by package and delivers it to {@code listener} on
+     * the main thread in pages, the most recently notifying packages first. The whole history is
+     * read before the first page, as it isn't ordered by package; only the labels and icons are
+     * resolved page by page, right before a page is delivered.
+     */
     public void load(OnHistoryLoaderListener listener) {
         ThreadUtils.postOnBackgroundThread(() -> {
             try {
-                Map<String, NotificationHistoryPackage> historicalNotifications = new HashMap<>();
-                NotificationHistory history =
-                        mBackend.getNotificationHistory(mContext.getPackageName(),
-                                mContext.getAttributionTag());
-                while (history.hasNextNotification()) {
-                    HistoricalNotification hn = history.getNextNotification();
-
-                    String key = hn.getPackage() + "|" + hn.getUid();
-                    NotificationHistoryPackage hnsForPackage = historicalNotifications.getOrDefault(
-                            key,
-                            new NotificationHistoryPackage(hn.getPackage(), hn.getUid()));
-                    hnsForPackage.notifications.add(hn);
-                    historicalNotifications.put(key, hnsForPackage);
-                }
-                List<NotificationHistoryPackage> packages =
-                        new ArrayList<>(historicalNotifications.values());
-                Collections.sort(packages,
-                        (o1, o2) -> -1 * Long.compare(o1.getMostRecent(), o2.getMostRecent()));
-                for (NotificationHistoryPackage nhp : packages) {
-                    ApplicationInfo info;
-                    try {
-                        info = mPm.getApplicationInfoAsUser(
-                                nhp.pkgName,
-                                PackageManager.MATCH_UNINSTALLED_PACKAGES
-                                        | PackageManager.MATCH_DISABLED_COMPONENTS
-                                        | PackageManager.MATCH_DIRECT_BOOT_UNAWARE
-                                        | PackageManager.MATCH_DIRECT_BOOT_AWARE,
-                                UserHandle.getUserId(nhp.uid));
-                        if (info != null) {
-                            nhp.label = String.valueOf(mPm.getApplicationLabel(info));
-                            nhp.icon = mPm.getUserBadgedIcon(mPm.getApplicationIcon(info),
-                                    UserHandle.of(UserHandle.getUserId(nhp.uid)));
-                        }
-                    } catch (PackageManager.NameNotFoundException e) {
-                        // app is gone, just show package name and generic icon
-                        nhp.icon = mPm.getDefaultActivityIcon();
+                List<NotificationHistoryPackage> packages = loadPackages();
+                int start = 0;
+                do {
+                    if (mCanceled) {
+                        return;
                     }
-                }
-                ThreadUtils.postOnMainThread(() -> listener.onHistoryLoaded(packages));
+                    final int end = Math.min(start + PAGE_SIZE, packages.size());
+                    final List<NotificationHistoryPackage> page =
+                            new ArrayList<>(packages.subList(start, end));
+                    for (NotificationHistoryPackage nhp : page) {
+                        final int userId = UserHandle.getUserId(nhp.uid);
+                        nhp.label = AppLabelIconCache.getLabel(mPm, nhp.pkgName, userId);
+                        nhp.icon = AppLabelIconCache.getIcon(mPm, nhp.pkgName, userId);
+                    }
+                    final int firstPosition = start;
+                    final boolean lastPage = end == packages.size();
+                    ThreadUtils.postOnMainThread(() -> {
+                        if (!mCanceled) {
+                            listener.onHistoryLoaded(page, firstPosition, lastPage);
+                        }
+                    });
+                    start = end;
+                } while (start < packages.size());
             } catch (Exception e) {
                 Slog.e(TAG, "Error loading history", e);
             }
         });
     }
 
+    /** Stops delivering pages to the listener of the current load. */
+    public void cancel() {
+        mCanceled = true;
+    }
+
+    /**
+     * Reads the whole notification history into one {@link NotificationHistoryPackage} per
+     * package and returns them sorted by their most recent notification.
+     */
+    private List<NotificationHistoryPackage> loadPackages() {
+        Map<String, NotificationHistoryPackage> historicalNotifications = new HashMap<>();
+        NotificationHistory history =
+                mBackend.getNotificationHistory(mContext.getPackageName(),
+                        mContext.getAttributionTag());
+        while (history.hasNextNotification()) {
+            HistoricalNotification hn = history.getNextNotification();
+
+            String key = hn.getPackage() + "|" + hn.getUid();
+            NotificationHistoryPackage hnsForPackage = historicalNotifications.get(key);
+            if (hnsForPackage == null) {
+                hnsForPackage = new NotificationHistoryPackage(hn.getPackage(), hn.getUid());
+                historicalNotifications.put(key, hnsForPackage);
+            }
+            hnsForPackage.notifications.add(hn);
+        }
+        List<NotificationHistoryPackage> packages =
+                new ArrayList<>(historicalNotifications.values());
+        Collections.sort(packages,
+                (o1, o2) -> -1 * Long.compare(o1.getMostRecent(), o2.getMostRecent()));
+        return packages;
+    }
+
     interface OnHistoryLoaderListener {
-        void onHistoryLoaded(List<NotificationHistoryPackage> notificationsByPackage);
+        /**
+         * Called on the main thread with the next page of packages. {@code firstPosition} is the
+         * position of the first package of the page among all packages, and {@code lastPage}
+         * tells whether more pages will follow. An empty history is delivered as one empty page.
+         */
+        void onHistoryLoaded(List<NotificationHistoryPackage> notificationsByPackage,
+                int firstPosition, boolean lastPage);
     }
 }
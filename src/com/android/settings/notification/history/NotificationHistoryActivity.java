@@ -149,14 +149,18 @@ public class NotificationHistoryActivity extends CollapsingToolbarBaseActivity {
         }
     }
 
-    private HistoryLoader.OnHistoryLoaderListener mOnHistoryLoaderListener = notifications -> {
-        findViewById(R.id.today_list).setVisibility(
-                notifications.isEmpty() ? View.GONE : View.VISIBLE);
-        mCountdownLatch.countDown();
-        View recyclerView = mTodayView.findViewById(R.id.apps);
-        recyclerView.setClipToOutline(true);
-        mTodayView.setOutlineProvider(mOutlineProvider);
-        mSnoozeView.setOutlineProvider(mOutlineProvider);
+    private HistoryLoader.OnHistoryLoaderListener mOnHistoryLoaderListener =
+            (notifications, firstPosition, lastPage) -> {
+        if (firstPosition == 0) {
+            // The first page is empty only if the whole history is.
+            findViewById(R.id.today_list).setVisibility(
+                    notifications.isEmpty() ? View.GONE : View.VISIBLE);
+            mCountdownLatch.countDown();
+            View recyclerView = mTodayView.findViewById(R.id.apps);
+            recyclerView.setClipToOutline(true);
+            mTodayView.setOutlineProvider(mOutlineProvider);
+            mSnoozeView.setOutlineProvider(mOutlineProvider);
+        }
         // for each package, new header and recycler view
         for (int i = 0, notificationsSize = notifications.size(); i < notificationsSize; i++) {
             NotificationHistoryPackage nhp = notifications.get(i);
@@ -176,7 +180,7 @@ public class NotificationHistoryActivity extends CollapsingToolbarBaseActivity {
             header.setStateDescription(container.getVisibility() == View.VISIBLE
                     ? getString(R.string.condition_expand_hide)
                     : getString(R.string.condition_expand_show));
-            int finalI = i;
+            int finalI = firstPosition + i;
             header.setOnClickListener(v -> {
                 container.setVisibility(container.getVisibility() == View.VISIBLE
                         ? View.GONE : View.VISIBLE);
@@ -294,6 +298,10 @@ public class NotificationHistoryActivity extends CollapsingToolbarBaseActivity {
 
     @Override
     public void onPause() {
+        // onResume starts over with a fresh loader, don't append its pages to the new views
+        if (mHistoryLoader != null) {
+            mHistoryLoader.cancel();
+        }
         try {
             mListener.unregisterAsSystemService();
         } catch (RemoteException e) {
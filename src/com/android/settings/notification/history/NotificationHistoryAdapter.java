@@ -40,6 +40,7 @@ import com.android.internal.logging.UiEventLogger;
 import com.android.settings.R;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 
 public class NotificationHistoryAdapter extends
@@ -47,6 +48,8 @@ public class NotificationHistoryAdapter extends
         NotificationHistoryRecyclerView.OnItemSwipeDeleteListener {
 
     private static String TAG = "NotiHistoryAdapter";
+    private static final Comparator<HistoricalNotification> POSTED_TIME_DESCENDING =
+            (o1, o2) -> Long.compare(o2.getPostedTimeMs(), o1.getPostedTimeMs());
 
     private INotificationManager mNm;
     private List<HistoricalNotification> mValues;
@@ -131,10 +134,23 @@ public class NotificationHistoryAdapter extends
 
     public void onRebuildComplete(List<HistoricalNotification> notifications) {
         mValues = notifications;
-        mValues.sort((o1, o2) -> Long.compare(o2.getPostedTimeMs(), o1.getPostedTimeMs()));
+        // HistoryLoader already hands out each package's notifications most recent first.
+        if (!isSortedByPostedTime(mValues)) {
+            mValues.sort(POSTED_TIME_DESCENDING);
+        }
         notifyDataSetChanged();
     }
 
+    private static boolean isSortedByPostedTime(List<HistoricalNotification> notifications) {
+        for (int i = 1, size = notifications.size(); i < size; i++) {
+            if (POSTED_TIME_DESCENDING.compare(notifications.get(i - 1), notifications.get(i))
+                    > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public void onItemSwipeDeleted(int position) {
         if (position > (mValues.size() - 1)) {
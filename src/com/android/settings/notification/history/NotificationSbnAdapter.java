@@ -17,8 +17,6 @@
 package com.android.settings.notification.history;
 
 import static android.app.Notification.COLOR_DEFAULT;
-import static android.content.pm.PackageManager.MATCH_ANY_USER;
-import static android.content.pm.PackageManager.NameNotFoundException;
 import static android.os.UserHandle.USER_ALL;
 import static android.provider.Settings.EXTRA_APP_PACKAGE;
 import static android.provider.Settings.EXTRA_CHANNEL_ID;
@@ -30,7 +28,6 @@ import android.app.ActivityManager;
 import android.app.Notification;
 import android.content.Context;
 import android.content.Intent;
-import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
 import android.content.res.Configuration;
 import android.graphics.PorterDuff;
@@ -113,7 +110,7 @@ public class NotificationSbnAdapter extends
         if (sbn != null) {
             holder.setIconBackground(loadBackground(sbn));
             holder.setIcon(loadIcon(sbn));
-            holder.setPackageLabel(loadPackageLabel(sbn.getPackageName()).toString());
+            holder.setPackageLabel(loadPackageLabel(sbn).toString());
             holder.setTitle(getTitleString(sbn.getNotification()));
             holder.setSummary(getTextString(mContext, sbn.getNotification()));
             holder.setPostedTime(sbn.getPostTime());
@@ -190,15 +187,14 @@ public class NotificationSbnAdapter extends
         return true;
     }
 
-    private @NonNull CharSequence loadPackageLabel(String pkg) {
-        try {
-            ApplicationInfo info = mPm.getApplicationInfo(pkg,
-                    MATCH_ANY_USER);
-            if (info != null) return mPm.getApplicationLabel(info);
-        } catch (NameNotFoundException e) {
-            Log.e(TAG, "Cannot load package name", e);
+    private @NonNull CharSequence loadPackageLabel(StatusBarNotification sbn) {
+        final String pkg = sbn.getPackageName();
+        final CharSequence label = AppLabelIconCache.getLabel(mPm, pkg, normalizeUserId(sbn));
+        if (label == null) {
+            Log.e(TAG, "Cannot load package name of " + pkg);
+            return pkg;
         }
-        return pkg;
+        return label;
     }
 
     private static String getTitleString(Notification n) {
@@ -33,6 +33,12 @@ public interface PanelContent extends Instrumentable {
 
     int VIEW_TYPE_SLIDER = 1;
 
+    /**
+     * Default time a Slice has to show content before a progressively rendered Panel shows
+     * without it, in milliseconds.
+     */
+    int DEFAULT_SLICE_DEADLINE_MS = 250;
+
     /**
      * @return a icon for the title of the Panel.
      */
@@ -121,4 +127,21 @@ public interface PanelContent extends Instrumentable {
     default boolean isProgressBarVisible() {
         return false;
     }
+
+    /**
+     * @return {@code true} to show the Panel once each Slice has either loaded or missed its
+     * deadline, keeping room for the late Slices which fill in as they load. {@code false} to
+     * wait until every Slice has loaded.
+     */
+    default boolean isProgressiveRenderingEnabled() {
+        return false;
+    }
+
+    /**
+     * @return how long the Slice of {@code sliceUri} has to show content, in milliseconds, before
+     * a progressively rendered Panel shows without it.
+     */
+    default int getSliceDeadlineMs(Uri sliceUri) {
+        return DEFAULT_SLICE_DEADLINE_MS;
+    }
 }
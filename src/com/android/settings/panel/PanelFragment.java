@@ -25,7 +25,10 @@ import android.app.settings.SettingsEnums;
 import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.text.TextUtils;
+import android.util.ArraySet;
 import android.view.Gravity;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -55,6 +58,8 @@ import com.android.internal.annotations.VisibleForTesting;
 import com.android.settings.R;
 import com.android.settings.overlay.FeatureFactory;
 import com.android.settings.panel.PanelLoggingContract.PanelClosedKeys;
+import com.android.settings.panel.PanelLoggingContract.PanelSliceLoadActions;
+import com.android.settings.panel.PanelLoggingContract.PanelSliceLoadKeys;
 import com.android.settingslib.core.instrumentation.MetricsFeatureProvider;
 import com.android.settingslib.utils.ThreadUtils;
 
@@ -64,6 +69,7 @@ import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class PanelFragment extends Fragment {
 
@@ -106,6 +112,10 @@ public class PanelFragment extends Fragment {
     private View mHeaderDivider;
 
     private final Map<Uri, LiveData<Slice>> mSliceLiveData = new LinkedHashMap<>();
+    // Slices which showed content since the Panel started loading, and when it started.
+    private final Set<Uri> mSlicesWithContent = new ArraySet<>();
+    private long mSlicesLoadStartTime;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
 
     @VisibleForTesting
     PanelSlicesLoaderCountdownLatch mPanelSlicesLoaderCountdownLatch;
@@ -333,8 +343,12 @@ public class PanelFragment extends Fragment {
 
     private void loadAllSlices() {
         mSliceLiveData.clear();
+        mSlicesWithContent.clear();
+        mHandler.removeCallbacksAndMessages(null);
+        mSlicesLoadStartTime = SystemClock.elapsedRealtime();
         final List<Uri> sliceUris = mPanel.getSlices();
         mPanelSlicesLoaderCountdownLatch = new PanelSlicesLoaderCountdownLatch(sliceUris.size());
+        final boolean progressive = mPanel.isProgressiveRenderingEnabled();
 
         for (Uri uri : sliceUris) {
             final LiveData<Slice> sliceLiveData = SliceLiveData.fromUri(getActivity(), uri,
@@ -346,7 +360,26 @@ public class PanelFragment extends Fragment {
             // Add slice first to make it in order.  Will remove it later if there's an error.
             mSliceLiveData.put(uri, sliceLiveData);
 
+            if (progressive) {
+                mHandler.postDelayed(() -> onSliceDeadline(uri), mPanel.getSliceDeadlineMs(uri));
+            }
+
             sliceLiveData.observe(getViewLifecycleOwner(), slice -> {
+                if (slice != null) {
+                    logSliceFirstContent(uri, slice);
+                }
+
+                final SliceMetadata metadata = SliceMetadata.from(getActivity(), slice);
+                final boolean isErrorSlice = slice == null || metadata.isErrorSlice();
+
+                // A progressively rendered Panel may have shown a placeholder for a Slice that
+                // missed its deadline, so drop it if it fails after that.
+                if (progressive && isErrorSlice
+                        && mPanelSlicesLoaderCountdownLatch.isSliceLoaded(uri)) {
+                    removeSliceLiveData(uri);
+                    return;
+                }
+
                 // If the Slice has already loaded, do nothing.
                 if (mPanelSlicesLoaderCountdownLatch.isSliceLoaded(uri)) {
                     return;
@@ -365,15 +398,15 @@ public class PanelFragment extends Fragment {
                  *     If the Slice does not match the above condition, we will still want to mark
                  *     it as loaded after 250ms timeout to avoid delay showing up the panel for
                  *     too long.  Since we are still having the Slice data in the list, the Slice
-                 *     will show up later once it is loaded.
+                 *     will show up later once it is loaded. Progressively rendered Panels mark it
+                 *     as loaded at its deadline instead, see {@link #onSliceDeadline(Uri)}.
                  */
-                final SliceMetadata metadata = SliceMetadata.from(getActivity(), slice);
-                if (slice == null || metadata.isErrorSlice()) {
+                if (isErrorSlice) {
                     removeSliceLiveData(uri);
                     mPanelSlicesLoaderCountdownLatch.markSliceLoaded(uri);
                 } else if (metadata.getLoadingState() == SliceMetadata.LOADED_ALL) {
                     mPanelSlicesLoaderCountdownLatch.markSliceLoaded(uri);
-                } else {
+                } else if (!progressive) {
                     Handler handler = new Handler();
                     handler.postDelayed(() -> {
                         mPanelSlicesLoaderCountdownLatch.markSliceLoaded(uri);
@@ -391,13 +424,51 @@ public class PanelFragment extends Fragment {
                 getResources().getStringArray(
                         R.array.config_panel_keep_observe_uri));
         if (!allowList.contains(uri.toString())) {
-            mSliceLiveData.remove(uri);
+            final LiveData<Slice> sliceLiveData = mSliceLiveData.remove(uri);
+            final PanelSlicesAdapter adapter = mAdapter;
+            if (adapter != null && sliceLiveData != null) {
+                // The Panel may already show a placeholder for it.
+                ThreadUtils.postOnMainThread(() -> adapter.removeSliceLiveData(sliceLiveData));
+            }
         }
     }
 
     /**
-     * When all of the Slices have loaded for the first time, then we can setup the
-     * {@link RecyclerView}.
+     * Let a progressively rendered Panel show without the Slice of {@code uri}, which will fill
+     * in its reserved row once it loads.
+     */
+    @VisibleForTesting
+    void onSliceDeadline(Uri uri) {
+        if (mPanelSlicesLoaderCountdownLatch.isSliceLoaded(uri)) {
+            return;
+        }
+        mMetricsProvider.action(
+                0 /* attribution */,
+                PanelSliceLoadActions.ACTION_DEADLINE_MISSED,
+                mPanel.getMetricsCategory(),
+                PanelSliceLoadKeys.KEY_PREFIX_DEADLINE_MISSED + uri.getLastPathSegment(),
+                mPanel.getSliceDeadlineMs(uri));
+        mPanelSlicesLoaderCountdownLatch.markSliceLoaded(uri);
+        loadPanelWhenReady();
+    }
+
+    private void logSliceFirstContent(Uri uri, Slice slice) {
+        if (mSlicesWithContent.contains(uri)
+                || SliceMetadata.from(getActivity(), slice).isErrorSlice()) {
+            return;
+        }
+        mSlicesWithContent.add(uri);
+        mMetricsProvider.action(
+                0 /* attribution */,
+                PanelSliceLoadActions.ACTION_FIRST_CONTENT,
+                mPanel.getMetricsCategory(),
+                PanelSliceLoadKeys.KEY_PREFIX_FIRST_CONTENT + uri.getLastPathSegment(),
+                (int) (SystemClock.elapsedRealtime() - mSlicesLoadStartTime));
+    }
+
+    /**
+     * When all of the Slices have loaded for the first time, or missed their deadline for a
+     * progressively rendered Panel, then we can setup the {@link RecyclerView}.
      * <p>
      * When the Recyclerview has been laid out, we can begin the animation with the
      * {@link mOnGlobalLayoutListener}, which calls {@link #animateIn()}.
@@ -472,6 +543,7 @@ public class PanelFragment extends Fragment {
             mPanelClosedKey = PanelClosedKeys.KEY_OTHERS;
         }
 
+        mHandler.removeCallbacksAndMessages(null);
         if (mLayoutView != null) {
             mLayoutView.getViewTreeObserver().removeOnGlobalLayoutListener(mPanelLayoutListener);
         }
@@ -15,6 +15,8 @@
  */
 package com.android.settings.panel;
 
+import android.app.settings.SettingsEnums;
+
 /**
  * Simple contract class to track keys in Panel logging.
  *
@@ -44,4 +46,39 @@ public class PanelLoggingContract {
          */
         String KEY_OTHERS = "others";
     }
+
+    /**
+     * Actions the Slice load timings of a Panel are logged with, kept apart from
+     * {@code PAGE_VISIBLE}, {@code ACTION_PANEL_INTERACTION} and the contextual card load actions
+     * so that none of them are inflated by Panel timings. The page id is the metrics category of the Panel.
+     */
+    interface PanelSliceLoadActions {
+        /**
+         * A Slice showed its first content.
+         */
+        int ACTION_FIRST_CONTENT = SettingsEnums.ACTION_PANEL_SLICE_FIRST_CONTENT;
+
+        /**
+         * A Slice missed its deadline.
+         */
+        int ACTION_DEADLINE_MISSED = SettingsEnums.ACTION_PANEL_SLICE_DEADLINE_MISSED;
+    }
+
+    /**
+     * Key prefixes tracking how long the Slices of a Panel take to load. Each prefix is followed
+     * by the last path segment of the Slice {@link android.net.Uri}, and logged with the matching
+     * {@link PanelSliceLoadActions} action.
+     */
+    interface PanelSliceLoadKeys {
+        /**
+         * The Slice showed its first content. Logged with the time since the Panel started
+         * loading its Slices, in milliseconds.
+         */
+        String KEY_PREFIX_FIRST_CONTENT = "first_content_";
+
+        /**
+         * The Slice missed its deadline, and the Panel showed without it.
+         */
+        String KEY_PREFIX_DEADLINE_MISSED = "deadline_missed_";
+    }
 }
@@ -29,6 +29,7 @@ import android.widget.LinearLayout;
 import androidx.annotation.NonNull;
 import androidx.annotation.VisibleForTesting;
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Observer;
 import androidx.recyclerview.widget.RecyclerView;
 import androidx.slice.Slice;
 import androidx.slice.widget.SliceView;
@@ -98,6 +99,25 @@ public class PanelSlicesAdapter
         return mPanelFragment.getPanelViewType();
     }
 
+    /**
+     * Remove a Slice which failed to load after the adapter was created.
+     */
+    void removeSliceLiveData(LiveData<Slice> sliceLiveData) {
+        final int position = mSliceLiveData.indexOf(sliceLiveData);
+        if (position < 0) {
+            return;
+        }
+        final int oldCount = getItemCount();
+        mSliceLiveData.remove(position);
+        if (position < oldCount) {
+            notifyItemRemoved(position);
+            if (getItemCount() == oldCount) {
+                // A Slice over the max number moved into the last visible row.
+                notifyItemInserted(oldCount - 1);
+            }
+        }
+    }
+
     /**
      * Return the available data from the adapter. If the number of Slices over the max number
      * allowed, the list will only have the first MAX_NUM_OF_SLICES of slices.
@@ -119,6 +139,9 @@ public class PanelSlicesAdapter
         final SliceView sliceView;
         @VisibleForTesting
         final LinearLayout mSliceSliderLayout;
+        private final int mPlaceholderHeight;
+        private final Observer<Slice> mPlaceholderObserver = this::updatePlaceholder;
+        private LiveData<Slice> mBoundSliceLiveData;
 
         public SliceRowViewHolder(View view) {
             super(view);
@@ -127,6 +150,8 @@ public class PanelSlicesAdapter
             sliceView.setShowTitleItems(true);
             sliceView.setImportantForAccessibility(View.IMPORTANT_FOR_ACCESSIBILITY_NO);
             mSliceSliderLayout = view.findViewById(R.id.slice_slider_layout);
+            mPlaceholderHeight = view.getResources().getDimensionPixelSize(
+                    R.dimen.settings_panel_slice_placeholder_height);
         }
 
         /**
@@ -135,6 +160,15 @@ public class PanelSlicesAdapter
         public void onBind(LiveData<Slice> sliceLiveData, int position) {
             sliceLiveData.observe(mPanelFragment.getViewLifecycleOwner(), sliceView);
 
+            // Keep room for a Slice still loading, so that the rows below it don't jump once it
+            // shows up.
+            if (mBoundSliceLiveData != null) {
+                mBoundSliceLiveData.removeObserver(mPlaceholderObserver);
+            }
+            mBoundSliceLiveData = sliceLiveData;
+            updatePlaceholder(sliceLiveData.getValue());
+            sliceLiveData.observe(mPanelFragment.getViewLifecycleOwner(), mPlaceholderObserver);
+
             // Do not show the divider above media devices switcher slice per request
             final Slice slice = sliceLiveData.getValue();
             if (slice == null || slice.getUri().equals(MEDIA_OUTPUT_INDICATOR_SLICE_URI)) {
@@ -156,6 +190,10 @@ public class PanelSlicesAdapter
             );
         }
 
+        private void updatePlaceholder(Slice slice) {
+            itemView.setMinimumHeight(slice == null ? mPlaceholderHeight : 0);
+        }
+
         @Override
         public boolean isDividerAllowedAbove() {
             return mDividerAllowedAbove;
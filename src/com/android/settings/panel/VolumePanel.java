@@ -122,6 +122,11 @@ public class VolumePanel implements PanelContent, LifecycleObserver {
         return PanelContent.VIEW_TYPE_SLIDER;
     }
 
+    @Override
+    public boolean isProgressiveRenderingEnabled() {
+        return true;
+    }
+
     @Override
     public void registerCallback(PanelContentCallback callback) {
         mCallback = callback;
@@ -75,4 +75,9 @@ public class WifiPanel implements PanelContent {
     public int getMetricsCategory() {
         return SettingsEnums.PANEL_WIFI;
     }
+
+    @Override
+    public boolean isProgressiveRenderingEnabled() {
+        return true;
+    }
 }
@@ -0,0 +1,378 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.search;
+
+import android.app.settings.SettingsEnums;
+import android.os.SystemClock;
+import android.util.ArrayMap;
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settingslib.core.instrumentation.MetricsFeatureProvider;
+import com.android.settingslib.search.SearchIndexableData;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Evaluates {@link SearchIndexableData} providers in parallel and keeps the last result of each
+ * provider, together with the generation at which its content last changed.
+ * <p>
+ * A provider still running when the query deadline passes contributes its previous result
+ * instead of stalling the whole query. A provider without a previous result is waited for up to a
+ * longer deadline, after which the query fails rather than leave out that provider. Callers
+ * holding a generation token can ask which providers changed since. The latency of every
+ * provider is reported through the {@link MetricsFeatureProvider}.
+ * <p>
+ * Callers tracking the inputs of the providers can pass an input version to
+ * {@link #evaluateIfChanged}, which reuses recent results computed at the same version instead
+ * of running their provider again.
+ */
+public class SearchIndexableResultCache {
+
+    private static final String TAG = "SearchIndexableCache";
+
+    // Deadline of a whole query, after which providers with a previous result stop being waited
+    // for.
+    private static final long EVALUATION_TIMEOUT_MS = 3000L;
+    // Deadline of a whole query for providers without a previous result.
+    private static final long FIRST_RESULT_TIMEOUT_MS = 10000L;
+    // Age after which a result is computed again even if its inputs look unchanged, as not every
+    // input of the providers can be observed.
+    private static final long MAX_REUSE_AGE_MS = 60000L;
+    private static final int SLOW_PROVIDER_THRESHOLD_MS = 50;
+    private static final long KEEP_ALIVE_SECONDS = 10L;
+
+    /**
+     * Input version of results computed without a known input version, never reused.
+     */
+    public static final long INPUT_VERSION_UNKNOWN = -1L;
+
+    private static ExecutorService sExecutor;
+
+    private final ExecutorService mExecutor;
+    private final MetricsFeatureProvider mMetricsFeature;
+    private final long mEvaluationTimeoutMs;
+    private final long mFirstResultTimeoutMs;
+    private final AtomicLong mGeneration = new AtomicLong();
+
+    /**
+     * Computes the result of a single provider. Must be safe to call from a worker thread.
+     */
+    public interface ProviderFunction<T> {
+        List<T> apply(SearchIndexableData bundle);
+    }
+
+    /**
+     * Returns the content of a single item, compared with {@link Object#equals(Object)} to
+     * detect providers whose output changed.
+     */
+    public interface ItemContent<T> {
+        Object getContent(T item);
+    }
+
+    /**
+     * The cached results of one kind of query, keyed by provider target class.
+     */
+    public static class ResultTable<T> {
+        private final Map<String, Entry<T>> mEntries = new ArrayMap<>();
+        private final ItemContent<T> mItemContent;
+        // Generation of the latest change stored in the table.
+        private long mGeneration;
+
+        public ResultTable(ItemContent<T> itemContent) {
+            mItemContent = itemContent;
+        }
+
+        /**
+         * Returns the providers whose result changed after {@code sinceGeneration}, with their
+         * current result.
+         */
+        public synchronized Map<String, List<T>> getChangedSince(long sinceGeneration) {
+            final Map<String, List<T>> changed = new ArrayMap<>();
+            for (Map.Entry<String, Entry<T>> entry : mEntries.entrySet()) {
+                if (entry.getValue().mGeneration > sinceGeneration) {
+                    changed.put(entry.getKey(), entry.getValue().mResult);
+                }
+            }
+            return changed;
+        }
+
+        /**
+         * Returns the generation of the latest change stored in the table. Changes stored later
+         * have a larger generation.
+         */
+        public synchronized long getGeneration() {
+            return mGeneration;
+        }
+
+        synchronized List<T> get(String className) {
+            final Entry<T> entry = mEntries.get(className);
+            return entry == null ? null : entry.mResult;
+        }
+
+        /**
+         * Returns the result of {@code className} if it was computed at {@code inputVersion} no
+         * longer than {@code maxAgeMs} ago, otherwise {@code null}.
+         */
+        synchronized List<T> getIfUnchanged(String className, long inputVersion, long maxAgeMs) {
+            final Entry<T> entry = mEntries.get(className);
+            if (entry == null || inputVersion == INPUT_VERSION_UNKNOWN
+                    || entry.mInputVersion != inputVersion
+                    || SystemClock.elapsedRealtime() - entry.mUpdateTime > maxAgeMs) {
+                return null;
+            }
+            return entry.mResult;
+        }
+
+        /**
+         * Stores the result of {@code className}. A changed result gets the next generation of
+         * {@code generationCounter}, taken under the table lock so that changes are stored in
+         * generation order.
+         */
+        synchronized void put(String className, List<T> result, AtomicLong generationCounter,
+                long inputVersion) {
+            final List<Object> content = getContent(result);
+            final Entry<T> previous = mEntries.get(className);
+            if (previous != null && previous.mContent.equals(content)) {
+                previous.mResult = result;
+                previous.mInputVersion = inputVersion;
+                previous.mUpdateTime = SystemClock.elapsedRealtime();
+                return;
+            }
+            mGeneration = generationCounter.incrementAndGet();
+            mEntries.put(className, new Entry<>(result, content, mGeneration, inputVersion));
+        }
+
+        private List<Object> getContent(List<T> result) {
+            final List<Object> content = new ArrayList<>(result.size());
+            for (T item : result) {
+                content.add(item == null ? null : mItemContent.getContent(item));
+            }
+            return content;
+        }
+    }
+
+    private static class Entry<T> {
+        private List<T> mResult;
+        private final List<Object> mContent;
+        private final long mGeneration;
+        private long mInputVersion;
+        private long mUpdateTime;
+
+        Entry(List<T> result, List<Object> content, long generation, long inputVersion) {
+            mResult = result;
+            mContent = content;
+            mGeneration = generation;
+            mInputVersion = inputVersion;
+            mUpdateTime = SystemClock.elapsedRealtime();
+        }
+    }
+
+    /**
+     * The results of an evaluation, with the generation token covering them.
+     */
+    public static class Evaluation<T> {
+        /** The results of the providers, concatenated in provider order. */
+        public final List<T> results;
+        /**
+         * Generation of the table once the evaluation stored its results. Changes stored later,
+         * including by overlapping evaluations, have a larger generation.
+         */
+        public final long generation;
+
+        Evaluation(List<T> results, long generation) {
+            this.results = results;
+            this.generation = generation;
+        }
+    }
+
+    public SearchIndexableResultCache(MetricsFeatureProvider metricsFeature) {
+        this(getSharedExecutor(), metricsFeature, EVALUATION_TIMEOUT_MS,
+                FIRST_RESULT_TIMEOUT_MS);
+    }
+
+    @VisibleForTesting
+    SearchIndexableResultCache(ExecutorService executor, MetricsFeatureProvider metricsFeature,
+            long evaluationTimeoutMs, long firstResultTimeoutMs) {
+        mExecutor = executor;
+        mMetricsFeature = metricsFeature;
+        mEvaluationTimeoutMs = evaluationTimeoutMs;
+        mFirstResultTimeoutMs = firstResultTimeoutMs;
+    }
+
+    /**
+     * Runs {@code function} for every provider in parallel, stores the results in {@code table}
+     * and returns them concatenated in provider order.
+     *
+     * @throws IllegalStateException if interrupted, or if a provider without a previous result
+     *                               fails or times out, rather than returning a partial result.
+     */
+    public <T> List<T> evaluate(Collection<SearchIndexableData> bundles, ResultTable<T> table,
+            ProviderFunction<T> function) {
+        return evaluate(bundles, table, function, INPUT_VERSION_UNKNOWN, false /* reuse */)
+                .results;
+    }
+
+    /**
+     * Like {@link #evaluate}, but providers whose result was computed recently at the same
+     * {@code inputVersion} aren't run again and contribute that result.
+     *
+     * @param inputVersion version of the inputs of the providers, which the caller changes
+     *                     whenever an input it observes changes.
+     * @return the results, with the generation token to pass to
+     * {@link ResultTable#getChangedSince} next time.
+     */
+    public <T> Evaluation<T> evaluateIfChanged(Collection<SearchIndexableData> bundles,
+            ResultTable<T> table, ProviderFunction<T> function, long inputVersion) {
+        return evaluate(bundles, table, function, inputVersion, true /* reuse */);
+    }
+
+    private <T> Evaluation<T> evaluate(Collection<SearchIndexableData> bundles,
+            ResultTable<T> table, ProviderFunction<T> function, long inputVersion,
+            boolean reuse) {
+        final long startTime = SystemClock.elapsedRealtime();
+        final long deadline = startTime + mEvaluationTimeoutMs;
+        final long firstResultDeadline = startTime + mFirstResultTimeoutMs;
+        final List<SearchIndexableData> bundleList = new ArrayList<>(bundles);
+        final List<List<T>> reusedResults = new ArrayList<>(bundleList.size());
+        final List<Future<List<T>>> futures = new ArrayList<>(bundleList.size());
+        for (SearchIndexableData bundle : bundleList) {
+            final List<T> reusedResult = reuse ? table.getIfUnchanged(
+                    bundle.getTargetClass().getName(), inputVersion, MAX_REUSE_AGE_MS) : null;
+            reusedResults.add(reusedResult);
+            futures.add(reusedResult != null ? null : mExecutor.submit(timed(bundle, function)));
+        }
+
+        final List<T> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < bundleList.size(); i++) {
+                final List<T> result;
+                if (reusedResults.get(i) != null) {
+                    result = reusedResults.get(i);
+                } else {
+                    final String className = bundleList.get(i).getTargetClass().getName();
+                    result = getResult(futures.get(i), className, table, inputVersion,
+                            deadline, firstResultDeadline);
+                }
+                if (result != null) {
+                    results.addAll(result);
+                }
+            }
+        } catch (InterruptedException e) {
+            cancelAll(futures);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while evaluating providers", e);
+        } catch (RuntimeException e) {
+            cancelAll(futures);
+            throw e;
+        }
+        return new Evaluation<>(results, table.getGeneration());
+    }
+
+    private static <T> void cancelAll(List<Future<List<T>>> futures) {
+        for (Future<List<T>> future : futures) {
+            if (future != null) {
+                future.cancel(true /* mayInterruptIfRunning */);
+            }
+        }
+    }
+
+    /**
+     * Returns the result of {@code future}, or the previous result of {@code className} if the
+     * future fails or isn't done by {@code deadline}. Without a previous result, waits for the
+     * future until {@code firstResultDeadline}, and rethrows its failure or timeout.
+     */
+    private <T> List<T> getResult(Future<List<T>> future, String className,
+            ResultTable<T> table, long inputVersion, long deadline,
+            long firstResultDeadline) throws InterruptedException {
+        final List<T> previousResult = table.get(className);
+        List<T> result;
+        try {
+            final long timeout = Math.max(0L, (previousResult == null
+                    ? firstResultDeadline : deadline) - SystemClock.elapsedRealtime());
+            result = future.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true /* mayInterruptIfRunning */);
+            if (previousResult == null) {
+                throw new IllegalStateException(
+                        "Timed out on " + className + " without a previous result", e);
+            }
+            Log.w(TAG, "Timed out on " + className + ", using previous result");
+            return previousResult;
+        } catch (ExecutionException e) {
+            if (previousResult != null) {
+                Log.w(TAG, "Failed on " + className + ", using previous result", e.getCause());
+                return previousResult;
+            }
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+        result = result == null ? Collections.emptyList() : result;
+        table.put(className, result, mGeneration, inputVersion);
+        return result;
+    }
+
+    private <T> Callable<List<T>> timed(SearchIndexableData bundle,
+            ProviderFunction<T> function) {
+        return () -> {
+            final long startTime = SystemClock.elapsedRealtime();
+            final List<T> result = function.apply(bundle);
+            final int elapsedTime = (int) (SystemClock.elapsedRealtime() - startTime);
+            if (mMetricsFeature != null) {
+                mMetricsFeature.action(SettingsEnums.PAGE_UNKNOWN,
+                        SettingsEnums.ACTION_SEARCH_INDEXABLE_PROVIDER_LATENCY,
+                        SettingsEnums.PAGE_UNKNOWN, bundle.getTargetClass().getName(),
+                        elapsedTime);
+            }
+            if (elapsedTime > SLOW_PROVIDER_THRESHOLD_MS) {
+                Log.w(TAG, bundle.getTargetClass().getSimpleName() + " took " + elapsedTime
+                        + " ms");
+            } else if (SettingsSearchIndexablesProvider.DEBUG) {
+                Log.d(TAG, bundle.getTargetClass().getSimpleName() + " took " + elapsedTime);
+            }
+            return result;
+        };
+    }
+
+    private static synchronized ExecutorService getSharedExecutor() {
+        if (sExecutor == null) {
+            final int poolSize = Math.max(2, Runtime.getRuntime().availableProcessors());
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize,
+                    KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+            executor.allowCoreThreadTimeOut(true);
+            sExecutor = executor;
+        }
+        return sExecutor;
+    }
+}
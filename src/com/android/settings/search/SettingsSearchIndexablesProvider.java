@@ -45,14 +45,23 @@ import static android.provider.SearchIndexablesContract.SLICE_URI_PAIRS_COLUMNS;
 
 import static com.android.settings.dashboard.DashboardFragmentRegistry.CATEGORY_KEY_TO_PARENT_MAP;
 
+import android.Manifest;
+import android.content.BroadcastReceiver;
 import android.content.ContentResolver;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.res.Configuration;
+import android.database.ContentObserver;
 import android.database.Cursor;
 import android.database.MatrixCursor;
 import android.net.Uri;
+import android.os.Bundle;
+import android.os.UserManager;
 import android.provider.SearchIndexableResource;
 import android.provider.SearchIndexablesContract;
 import android.provider.SearchIndexablesProvider;
+import android.provider.Settings;
 import android.provider.SettingsSlicesContract;
 import android.text.TextUtils;
 import android.util.ArrayMap;
@@ -78,9 +87,11 @@ import com.android.settingslib.search.SearchIndexableData;
 import com.android.settingslib.search.SearchIndexableRaw;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
 
@@ -97,9 +108,39 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
 
     private static final Collection<String> INVALID_KEYS;
 
+    /**
+     * Method for {@link #call(String, String, Bundle)} returning the non-indexable keys of the
+     * providers that changed since the generation token passed as argument. The result holds the
+     * new token in {@link #EXTRA_GENERATION_TOKEN}, and one string list per changed provider,
+     * keyed by provider class name, under {@link #EXTRA_CHANGED_PROVIDERS}.
+     * <p>
+     * Providers evaluated recently, with no change of their observed inputs since, aren't run
+     * again.
+     */
+    public static final String METHOD_GET_NON_INDEXABLE_KEYS_DELTA =
+            "getNonIndexableKeysDelta";
+    public static final String EXTRA_GENERATION_TOKEN = "generation_token";
+    public static final String EXTRA_CHANGED_PROVIDERS = "changed_providers";
+
     // Search enabled states for injection (key: category key, value: search enabled)
     private Map<String, Boolean> mSearchEnabledByCategoryKeyMap;
 
+    private SearchIndexableResultCache mResultCache;
+    private final AtomicLong mInputVersion = new AtomicLong();
+    private boolean mObservingInputs;
+    private final SearchIndexableResultCache.ResultTable<String> mNonIndexableKeys =
+            new SearchIndexableResultCache.ResultTable<>(key -> key);
+    private final SearchIndexableResultCache.ResultTable<SearchIndexableResource> mXmlResources =
+            new SearchIndexableResultCache.ResultTable<>(
+                    res -> Arrays.asList(res.xmlResId, res.rank, res.className, res.iconResId,
+                            res.intentAction, res.intentTargetPackage));
+    private final SearchIndexableResultCache.ResultTable<SearchIndexableRaw> mRawData =
+            new SearchIndexableResultCache.ResultTable<>(
+                    raw -> Arrays.asList(raw.key, raw.title, raw.summaryOn, raw.summaryOff,
+                            raw.entries, raw.keywords, raw.screenTitle, raw.className,
+                            raw.iconResId, raw.intentAction, raw.intentTargetPackage,
+                            raw.intentTargetClass, raw.userId));
+
     static {
         INVALID_KEYS = new ArraySet<>();
         INVALID_KEYS.add(null);
@@ -112,6 +153,41 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
         return true;
     }
 
+    @Override
+    public Bundle call(String method, String arg, Bundle extras) {
+        if (!METHOD_GET_NON_INDEXABLE_KEYS_DELTA.equals(method)) {
+            return super.call(method, arg, extras);
+        }
+        getContext().enforceCallingOrSelfPermission(
+                Manifest.permission.READ_SEARCH_INDEXABLES, TAG);
+        long sinceGeneration = 0L;
+        if (!TextUtils.isEmpty(arg)) {
+            try {
+                sinceGeneration = Long.parseLong(arg);
+            } catch (NumberFormatException e) {
+                Log.w(TAG, "Invalid generation token " + arg);
+            }
+        }
+        // Re-evaluate the providers whose inputs may have changed, so the delta reflects the
+        // current state.
+        final Context context = getContext();
+        final SearchIndexableResultCache.Evaluation<String> evaluation =
+                getResultCache().evaluateIfChanged(getSearchIndexableData(context),
+                        mNonIndexableKeys, bundle -> getNonIndexableKeys(context, bundle),
+                        getInputVersion());
+
+        final Bundle result = new Bundle();
+        result.putLong(EXTRA_GENERATION_TOKEN, evaluation.generation);
+        final Bundle changedProviders = new Bundle();
+        for (Map.Entry<String, List<String>> entry
+                : mNonIndexableKeys.getChangedSince(sinceGeneration).entrySet()) {
+            changedProviders.putStringArrayList(entry.getKey(),
+                    new ArrayList<>(entry.getValue()));
+        }
+        result.putBundle(EXTRA_CHANGED_PROVIDERS, changedProviders);
+        return result;
+    }
+
     @Override
     public Cursor queryXmlResources(String[] projection) {
         final MatrixCursor cursor = new MatrixCursor(INDEXABLES_XML_RES_COLUMNS);
@@ -271,68 +347,61 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
     }
 
     private List<String> getNonIndexableKeysFromProvider(Context context) {
-        final Collection<SearchIndexableData> bundles = FeatureFactory.getFactory(context)
-                .getSearchFeatureProvider().getSearchIndexableResources().getProviderValues();
-
-        final List<String> nonIndexableKeys = new ArrayList<>();
+        return getResultCache().evaluate(getSearchIndexableData(context), mNonIndexableKeys,
+                bundle -> getNonIndexableKeys(context, bundle));
+    }
 
-        for (SearchIndexableData bundle : bundles) {
-            final long startTime = System.currentTimeMillis();
-            Indexable.SearchIndexProvider provider = bundle.getSearchIndexProvider();
-            List<String> providerNonIndexableKeys;
-            try {
-                providerNonIndexableKeys = provider.getNonIndexableKeys(context);
-            } catch (Exception e) {
-                // Catch a generic crash. In the absence of the catch, the background thread will
-                // silently fail anyway, so we aren't losing information by catching the exception.
-                // We crash when the system property exists so that we can test if crashes need to
-                // be fixed.
-                // The gain is that if there is a crash in a specific controller, we don't lose all
-                // non-indexable keys, but we can still find specific crashes in development.
-                if (System.getProperty(SYSPROP_CRASH_ON_ERROR) != null) {
-                    throw new RuntimeException(e);
-                }
-                Log.e(TAG, "Error trying to get non-indexable keys from: "
-                        + bundle.getTargetClass().getName(), e);
-                continue;
-            }
+    private static Collection<SearchIndexableData> getSearchIndexableData(Context context) {
+        return FeatureFactory.getFactory(context).getSearchFeatureProvider()
+                .getSearchIndexableResources().getProviderValues();
+    }
 
-            if (providerNonIndexableKeys == null || providerNonIndexableKeys.isEmpty()) {
-                if (DEBUG) {
-                    final long totalTime = System.currentTimeMillis() - startTime;
-                    Log.d(TAG, "No indexable, total time " + totalTime);
-                }
-                continue;
+    private List<String> getNonIndexableKeys(Context context, SearchIndexableData bundle) {
+        Indexable.SearchIndexProvider provider = bundle.getSearchIndexProvider();
+        List<String> providerNonIndexableKeys;
+        try {
+            providerNonIndexableKeys = provider.getNonIndexableKeys(context);
+        } catch (Exception e) {
+            // Catch a generic crash. In the absence of the catch, the background thread will
+            // silently fail anyway, so we aren't losing information by catching the exception.
+            // We crash when the system property exists so that we can test if crashes need to
+            // be fixed.
+            // The gain is that if there is a crash in a specific controller, we don't lose all
+            // non-indexable keys, but we can still find specific crashes in development.
+            if (System.getProperty(SYSPROP_CRASH_ON_ERROR) != null) {
+                throw new RuntimeException(e);
             }
+            Log.e(TAG, "Error trying to get non-indexable keys from: "
+                    + bundle.getTargetClass().getName(), e);
+            return null;
+        }
 
-            if (providerNonIndexableKeys.removeAll(INVALID_KEYS)) {
-                Log.v(TAG, provider + " tried to add an empty non-indexable key");
-            }
+        if (providerNonIndexableKeys == null || providerNonIndexableKeys.isEmpty()) {
+            return null;
+        }
 
-            if (DEBUG) {
-                final long totalTime = System.currentTimeMillis() - startTime;
-                Log.d(TAG, "Non-indexables " + providerNonIndexableKeys.size() + ", total time "
-                        + totalTime);
-            }
+        if (providerNonIndexableKeys.removeAll(INVALID_KEYS)) {
+            Log.v(TAG, provider + " tried to add an empty non-indexable key");
+        }
 
-            nonIndexableKeys.addAll(providerNonIndexableKeys);
+        if (DEBUG) {
+            Log.d(TAG, "Non-indexables " + providerNonIndexableKeys.size());
         }
 
-        return nonIndexableKeys;
+        return providerNonIndexableKeys;
     }
 
     private List<SearchIndexableResource> getSearchIndexableResourcesFromProvider(Context context) {
         final Collection<SearchIndexableData> bundles = FeatureFactory.getFactory(context)
                 .getSearchFeatureProvider().getSearchIndexableResources().getProviderValues();
-        List<SearchIndexableResource> resourceList = new ArrayList<>();
 
-        for (SearchIndexableData bundle : bundles) {
+        return getResultCache().evaluate(bundles, mXmlResources, bundle -> {
             Indexable.SearchIndexProvider provider = bundle.getSearchIndexProvider();
             final List<SearchIndexableResource> resList =
                     provider.getXmlResourcesToIndex(context, true);
 
             if (resList == null) {
-                continue;
+                return null;
             }
 
             for (SearchIndexableResource item : resList) {
@@ -340,25 +409,21 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
                         ? bundle.getTargetClass().getName()
                         : item.className;
             }
-
-            resourceList.addAll(resList);
-        }
-
-        return resourceList;
+            return resList;
+        });
     }
 
     private List<SearchIndexableRaw> getSearchIndexableRawFromProvider(Context context) {
         final Collection<SearchIndexableData> bundles = FeatureFactory.getFactory(context)
                 .getSearchFeatureProvider().getSearchIndexableResources().getProviderValues();
-        final List<SearchIndexableRaw> rawList = new ArrayList<>();
 
-        for (SearchIndexableData bundle : bundles) {
+        return getResultCache().evaluate(bundles, mRawData, bundle -> {
             Indexable.SearchIndexProvider provider = bundle.getSearchIndexProvider();
             final List<SearchIndexableRaw> providerRaws = provider.getRawDataToIndex(context,
                     true /* enabled */);
 
             if (providerRaws == null) {
-                continue;
+                return null;
             }
 
             for (SearchIndexableRaw raw : providerRaws) {
@@ -367,10 +432,8 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
                 raw.className = bundle.getTargetClass().getName();
 
             }
-            rawList.addAll(providerRaws);
-        }
-
-        return rawList;
+            return providerRaws;
+        });
     }
 
     private List<SearchIndexableRaw> getDynamicSearchIndexableRawData(Context context,
@@ -390,6 +453,68 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
         return providerRaws;
     }
 
+    private synchronized SearchIndexableResultCache getResultCache() {
+        if (mResultCache == null) {
+            mResultCache = new SearchIndexableResultCache(FeatureFactory.getFactory(getContext())
+                    .getMetricsFeatureProvider());
+        }
+        return mResultCache;
+    }
+
+    /**
+     * Returns the version of the inputs observed for non-indexable keys, and starts observing
+     * them on the first call: settings, packages, user restrictions and the configuration. Other
+     * inputs are covered by the maximum age of the cached results.
+     */
+    @VisibleForTesting
+    synchronized long getInputVersion() {
+        if (!mObservingInputs) {
+            mObservingInputs = true;
+            final Context context = getContext();
+            final ContentObserver observer = new ContentObserver(null /* handler */) {
+                @Override
+                public void onChange(boolean selfChange) {
+                    onInputChanged();
+                }
+            };
+            final ContentResolver resolver = context.getContentResolver();
+            resolver.registerContentObserver(Settings.Global.CONTENT_URI,
+                    true /* notifyForDescendants */, observer);
+            resolver.registerContentObserver(Settings.Secure.CONTENT_URI,
+                    true /* notifyForDescendants */, observer);
+            resolver.registerContentObserver(Settings.System.CONTENT_URI,
+                    true /* notifyForDescendants */, observer);
+
+            final BroadcastReceiver receiver = new BroadcastReceiver() {
+                @Override
+                public void onReceive(Context context, Intent intent) {
+                    onInputChanged();
+                }
+            };
+            final IntentFilter packageFilter = new IntentFilter();
+            packageFilter.addAction(Intent.ACTION_PACKAGE_ADDED);
+            packageFilter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+            packageFilter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+            packageFilter.addDataScheme("package");
+            context.registerReceiver(receiver, packageFilter);
+            final IntentFilter filter = new IntentFilter();
+            filter.addAction(UserManager.ACTION_USER_RESTRICTIONS_CHANGED);
+            filter.addAction(Intent.ACTION_LOCALE_CHANGED);
+            context.registerReceiver(receiver, filter);
+        }
+        return mInputVersion.get();
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        onInputChanged();
+    }
+
+    private void onInputChanged() {
+        mInputVersion.incrementAndGet();
+    }
+
     @VisibleForTesting
     List<SearchIndexableRaw> getInjectionIndexableRawData(Context context) {
         final DashboardFeatureProvider dashboardFeatureProvider =
@@ -28,6 +28,7 @@ import androidx.preference.Preference;
 import androidx.preference.PreferenceScreen;
 
 import com.android.settings.core.BasePreferenceController;
+import com.android.settings.network.CarrierConfigCache;
 
 import java.util.List;
 
@@ -110,8 +111,8 @@ public class SimLockPreferenceController extends BasePreferenceController {
         for (SubscriptionInfo subInfo : subInfoList) {
             final TelephonyManager telephonyManager = mTelephonyManager
                     .createForSubscriptionId(subInfo.getSubscriptionId());
-            final PersistableBundle bundle = mCarrierConfigManager.getConfigForSubId(
-                    subInfo.getSubscriptionId());
+            final PersistableBundle bundle = CarrierConfigCache.getInstance().getConfigForSubId(
+                    mContext, mCarrierConfigManager, subInfo.getSubscriptionId());
             if (telephonyManager.hasIccCard() && bundle != null
                     && !bundle.getBoolean(CarrierConfigManager.KEY_HIDE_SIM_LOCK_SETTINGS_BOOL)) {
                 // one or more sims show sim lock setting UI.
@@ -60,7 +60,6 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.WeakHashMap;
 import java.util.stream.Collectors;
 
 /**
@@ -75,9 +74,10 @@ import java.util.stream.Collectors;
  * return an stub {@link Slice} with the correct {@link Uri} immediately. In the background, the
  * data corresponding to the key in the {@link Uri} is read by {@link SlicesDatabaseAccessor}, and
  * the entire row is converted into a {@link SliceData}. Once complete, it is stored in
- * {@link #mSliceWeakDataCache}, and then an update sent via the Slice framework to the Slice.
+ * {@link #mSliceDataCache}, and then an update sent via the Slice framework to the Slice.
  * The {@link Slice} displayed by the Slice-presenter will re-query this Slice-provider and find
- * the {@link SliceData} cached to build the full {@link Slice}.
+ * the {@link SliceData} cached to build the full {@link Slice}. The {@link SliceData} stays
+ * cached for later binds until it is evicted, and pinned slices are never evicted.
  *
  * <p>When an action is taken on that {@link Slice}, we receive the action in
  * {@link SliceBroadcastReceiver}, and use the
@@ -135,15 +135,24 @@ public class SettingsSliceProvider extends SliceProvider {
 
     private static final KeyValueListParser KEY_VALUE_LIST_PARSER = new KeyValueListParser(',');
 
+    private static final String SHARED_PREFS_TAG = "slice_data_cache";
+    private static final String KEY_HOT_SLICE_URIS = "hot_slice_uris";
+    // Number of most recently used slices whose SliceData is loaded when the provider starts.
+    @VisibleForTesting
+    static final int HOT_SLICE_COUNT = 8;
+
     @VisibleForTesting
     SlicesDatabaseAccessor mSlicesDatabaseAccessor;
 
     @VisibleForTesting
-    Map<Uri, SliceData> mSliceWeakDataCache;
+    SliceDataCache mSliceDataCache;
 
     @VisibleForTesting
     final Map<Uri, SliceBackgroundWorker> mPinnedWorkers = new ArrayMap<>();
 
+    // Hot slice uris last written to the shared preferences, guarded by itself.
+    private final Set<String> mSavedHotUris = new ArraySet<>();
+
     private Boolean mNightMode;
     private boolean mFirstSlicePinned;
     private boolean mFirstSliceBound;
@@ -157,7 +166,8 @@ public class SettingsSliceProvider extends SliceProvider {
     public boolean onCreateSliceProvider() {
         Log.d(TAG, "onCreateSliceProvider");
         mSlicesDatabaseAccessor = new SlicesDatabaseAccessor(getContext());
-        mSliceWeakDataCache = new WeakHashMap<>();
+        mSliceDataCache = SliceDataCache.getInstance();
+        ThreadUtils.postOnBackgroundThread(this::warmUpSliceDataCache);
         return true;
     }
 
@@ -188,6 +198,7 @@ public class SettingsSliceProvider extends SliceProvider {
         }
 
         // Start warming the slice, we expect someone will want it soon.
+        mSliceDataCache.pin(sliceUri);
         loadSliceInBackground(sliceUri);
     }
 
@@ -197,6 +208,7 @@ public class SettingsSliceProvider extends SliceProvider {
         if (!VolumeSliceHelper.unregisterUri(context, sliceUri)) {
             SliceBroadcastRelay.unregisterReceivers(context, sliceUri);
         }
+        mSliceDataCache.unpin(sliceUri);
         ThreadUtils.postOnMainThread(() -> stopBackgroundWorker(sliceUri));
     }
 
@@ -218,6 +230,7 @@ public class SettingsSliceProvider extends SliceProvider {
                 Log.e(TAG, "Requested blocked slice with Uri: " + sliceUri);
                 return null;
             }
+            SliceBackgroundWorker.onSliceBound(sliceUri);
 
             final boolean nightMode = Utils.isNightMode(getContext());
             if (mNightMode == null) {
@@ -228,6 +241,7 @@ public class SettingsSliceProvider extends SliceProvider {
                 mNightMode = nightMode;
                 getContext().getTheme().rebase();
             }
+            mSliceDataCache.invalidateIfConfigChanged(getContext().getResources());
 
             // Before adding a slice to {@link CustomSliceManager}, please get approval
             // from the Settings team.
@@ -259,16 +273,12 @@ public class SettingsSliceProvider extends SliceProvider {
                         .createWifiCallingPreferenceSlice(sliceUri);
             }
 
-            final SliceData cachedSliceData = mSliceWeakDataCache.get(sliceUri);
+            final SliceData cachedSliceData = mSliceDataCache.get(sliceUri);
             if (cachedSliceData == null) {
                 loadSliceInBackground(sliceUri);
                 return getSliceStub(sliceUri);
             }
 
-            // Remove the SliceData from the cache after it has been used to prevent a memory-leak.
-            if (!getPinnedSlices().contains(sliceUri)) {
-                mSliceWeakDataCache.remove(sliceUri);
-            }
             return SliceBuilderUtils.buildSlice(getContext(), cachedSliceData);
         } finally {
             StrictMode.setThreadPolicy(oldPolicy);
@@ -420,8 +430,9 @@ public class SettingsSliceProvider extends SliceProvider {
 
         ThreadUtils.postOnMainThread(() -> startBackgroundWorker(controller, uri));
 
-        mSliceWeakDataCache.put(uri, sliceData);
+        mSliceDataCache.put(uri, sliceData);
         getContext().getContentResolver().notifyChange(uri, null /* content observer */);
+        saveHotSliceUris();
 
         Log.d(TAG, "Built slice (" + uri + ") in: " +
                 (System.currentTimeMillis() - startBuildTime));
@@ -432,6 +443,54 @@ public class SettingsSliceProvider extends SliceProvider {
         ThreadUtils.postOnBackgroundThread(() -> loadSlice(uri));
     }
 
+    /**
+     * Loads the {@link SliceData} of the slices that were most recently used before the process
+     * restarted, so that their first bind is a cache hit. Skipped while the slices index is
+     * stale, since reading it would rebuild the whole index before any slice is requested.
+     */
+    @VisibleForTesting
+    void warmUpSliceDataCache() {
+        final Set<String> hotUris = getContext()
+                .getSharedPreferences(SHARED_PREFS_TAG, Context.MODE_PRIVATE)
+                .getStringSet(KEY_HOT_SLICE_URIS, Collections.emptySet());
+        synchronized (mSavedHotUris) {
+            if (mSavedHotUris.isEmpty()) {
+                mSavedHotUris.addAll(hotUris);
+            }
+        }
+        if (hotUris.isEmpty()
+                || !SlicesDatabaseHelper.getInstance(getContext()).isSliceDataIndexed()) {
+            return;
+        }
+        for (String hotUri : hotUris) {
+            final Uri uri = Uri.parse(hotUri);
+            try {
+                mSliceDataCache.put(uri, mSlicesDatabaseAccessor.getSliceDataFromUri(uri));
+            } catch (IllegalStateException e) {
+                Log.d(TAG, "Could not warm up slicedata for uri: " + uri, e);
+            }
+        }
+    }
+
+    /** Persists the most recently used slice uris, unless they are the ones already saved. */
+    private void saveHotSliceUris() {
+        final Set<String> hotUris = new ArraySet<>();
+        for (Uri uri : mSliceDataCache.getMostRecentlyUsed(HOT_SLICE_COUNT)) {
+            hotUris.add(uri.toString());
+        }
+        synchronized (mSavedHotUris) {
+            if (hotUris.equals(mSavedHotUris)) {
+                return;
+            }
+            mSavedHotUris.clear();
+            mSavedHotUris.addAll(hotUris);
+        }
+        getContext().getSharedPreferences(SHARED_PREFS_TAG, Context.MODE_PRIVATE)
+                .edit()
+                .putStringSet(KEY_HOT_SLICE_URIS, hotUris)
+                .apply();
+    }
+
     @VisibleForTesting
     /**
      * Registers an IntentFilter in SysUI to notify changes to {@param sliceUri} when broadcasts to
@@ -18,6 +18,7 @@ package com.android.settings.slices;
 
 import android.annotation.MainThread;
 import android.annotation.Nullable;
+import android.content.ContentResolver;
 import android.content.Context;
 import android.net.Uri;
 import android.os.Handler;
@@ -29,11 +30,12 @@ import android.os.SystemClock;
 import android.util.ArrayMap;
 import android.util.Log;
 
+import androidx.annotation.VisibleForTesting;
+
 import java.io.Closeable;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -61,7 +63,9 @@ public abstract class SliceBackgroundWorker<E> implements Closeable {
     private final Context mContext;
     private final Uri mUri;
 
-    private List<E> mCachedResults;
+    private volatile List<E> mCachedResults;
+    // The results the client was last notified of.
+    private volatile List<E> mNotifiedResults;
 
     protected SliceBackgroundWorker(Context context, Uri uri) {
         mContext = context;
@@ -161,7 +165,7 @@ public abstract class SliceBackgroundWorker<E> implements Closeable {
 
         if (needNotify) {
             mCachedResults = results;
-            notifySliceChange();
+            NotifySliceChangeHandler.getInstance().updateSlice(this, true /* resultsOnly */);
         }
     }
 
@@ -173,7 +177,7 @@ public abstract class SliceBackgroundWorker<E> implements Closeable {
      * Notify that data was updated and attempt to sync changes to the Slice.
      */
     protected final void notifySliceChange() {
-        NotifySliceChangeHandler.getInstance().updateSlice(this);
+        NotifySliceChangeHandler.getInstance().updateSlice(this, false /* resultsOnly */);
     }
 
     void pin() {
@@ -185,16 +189,69 @@ public abstract class SliceBackgroundWorker<E> implements Closeable {
         NotifySliceChangeHandler.getInstance().cancelSliceUpdate(this);
     }
 
-    private static class NotifySliceChangeHandler extends Handler {
+    /**
+     * Called when a client binds the slice at {@code uri}, so that slices whose clients rebind
+     * promptly are notified more often than slices whose clients lag behind.
+     */
+    static void onSliceBound(Uri uri) {
+        final NotifySliceChangeHandler handler = NotifySliceChangeHandler.peekInstance();
+        if (handler != null) {
+            handler.onSliceBound(uri);
+        }
+    }
 
-        private static final int MSG_UPDATE_SLICE = 1000;
+    /**
+     * Returns {@code true} if the client was already notified of the current results.
+     */
+    private boolean isResultsNotified() {
+        final List<E> results = mCachedResults;
+        final List<E> notifiedResults = mNotifiedResults;
+        if (results == null || notifiedResults == null) {
+            return results == notifiedResults;
+        }
+        return results == notifiedResults || areListsTheSame(results, notifiedResults);
+    }
+
+    private void markResultsNotified() {
+        mNotifiedResults = mCachedResults;
+    }
+
+    /**
+     * Coalesces slice change notifications.
+     * <p>
+     * Each slice is throttled by its own interval, which starts at
+     * {@link #SLICE_UPDATE_THROTTLE_INTERVAL}. The interval doubles every time a notification is
+     * due while the client hasn't rebound the slice since the previous one, and halves back when
+     * the client keeps up. Due times are aligned to a frame window so that all slices due in the
+     * same window are notified in a single pass. An update requested through
+     * {@link #updateResults(List)} is dropped if the client was already notified of an equal
+     * result list.
+     */
+    @VisibleForTesting
+    static class NotifySliceChangeHandler extends Handler {
+
+        private static final int MSG_FLUSH = 1000;
+
+        private static final long FRAME_WINDOW = 16L;
+        private static final long MAX_THROTTLE_INTERVAL = 8 * SLICE_UPDATE_THROTTLE_INTERVAL;
 
         private static NotifySliceChangeHandler sHandler;
 
-        private final Map<Uri, Long> mLastUpdateTimeLookup = Collections.synchronizedMap(
-                new ArrayMap<>());
+        // Guarded by this.
+        private final Map<Uri, UpdateState> mUpdateStates = new ArrayMap<>();
+        private long mNextFlushTime;
+
+        private static class UpdateState {
+            private SliceBackgroundWorker mWorker;
+            private long mLastUpdateTime;
+            private long mThrottleInterval = SLICE_UPDATE_THROTTLE_INTERVAL;
+            // 0 when no update is pending.
+            private long mDueTime;
+            private boolean mForceUpdate;
+            private boolean mBoundSinceUpdate = true;
+        }
 
-        private static NotifySliceChangeHandler getInstance() {
+        private static synchronized NotifySliceChangeHandler getInstance() {
             if (sHandler == null) {
                 final HandlerThread workerThread = new HandlerThread("NotifySliceChangeHandler",
                         Process.THREAD_PRIORITY_BACKGROUND);
@@ -204,45 +261,130 @@ public abstract class SliceBackgroundWorker<E> implements Closeable {
             return sHandler;
         }
 
-        private NotifySliceChangeHandler(Looper looper) {
+        private static synchronized NotifySliceChangeHandler peekInstance() {
+            return sHandler;
+        }
+
+        @VisibleForTesting
+        static synchronized void setInstance(NotifySliceChangeHandler handler) {
+            sHandler = handler;
+        }
+
+        @VisibleForTesting
+        NotifySliceChangeHandler(Looper looper) {
             super(looper);
         }
 
         @Override
         public void handleMessage(Message msg) {
-            if (msg.what != MSG_UPDATE_SLICE) {
+            if (msg.what != MSG_FLUSH) {
                 return;
             }
-
-            final SliceBackgroundWorker worker = (SliceBackgroundWorker) msg.obj;
-            final Uri uri = worker.getUri();
-            final Context context = worker.getContext();
-            mLastUpdateTimeLookup.put(uri, SystemClock.uptimeMillis());
-            context.getContentResolver().notifyChange(uri, null);
+            flush();
         }
 
-        private void updateSlice(SliceBackgroundWorker worker) {
-            if (hasMessages(MSG_UPDATE_SLICE, worker)) {
+        private synchronized void updateSlice(SliceBackgroundWorker worker, boolean resultsOnly) {
+            final Uri uri = worker.getUri();
+            UpdateState state = mUpdateStates.get(uri);
+            if (state == null) {
+                state = new UpdateState();
+                mUpdateStates.put(uri, state);
+            }
+            state.mWorker = worker;
+            state.mForceUpdate |= !resultsOnly;
+            if (state.mDueTime != 0L) {
                 return;
             }
 
-            final Message message = obtainMessage(MSG_UPDATE_SLICE, worker);
-            final long lastUpdateTime = mLastUpdateTimeLookup.getOrDefault(worker.getUri(), 0L);
-            if (lastUpdateTime == 0L) {
+            final long now = SystemClock.uptimeMillis();
+            final long dueTime;
+            if (state.mLastUpdateTime == 0L) {
                 // Postpone the first update triggering by onSlicePinned() to avoid being too close
                 // to the first Slice bind.
-                sendMessageDelayed(message, SLICE_UPDATE_THROTTLE_INTERVAL);
-            } else if (SystemClock.uptimeMillis() - lastUpdateTime
-                    > SLICE_UPDATE_THROTTLE_INTERVAL) {
-                sendMessage(message);
+                dueTime = now + SLICE_UPDATE_THROTTLE_INTERVAL;
             } else {
-                sendMessageAtTime(message, lastUpdateTime + SLICE_UPDATE_THROTTLE_INTERVAL);
+                dueTime = Math.max(now, state.mLastUpdateTime + state.mThrottleInterval);
+            }
+            state.mDueTime = alignToFrame(dueTime);
+            scheduleFlush(state.mDueTime);
+        }
+
+        private synchronized void onSliceBound(Uri uri) {
+            final UpdateState state = mUpdateStates.get(uri);
+            if (state != null) {
+                state.mBoundSinceUpdate = true;
+            }
+        }
+
+        private synchronized void cancelSliceUpdate(SliceBackgroundWorker worker) {
+            mUpdateStates.remove(worker.getUri());
+        }
+
+        private void flush() {
+            final Map<ContentResolver, List<Uri>> dirtyUris = new ArrayMap<>();
+            synchronized (this) {
+                mNextFlushTime = 0L;
+                final long now = SystemClock.uptimeMillis();
+                long nextDueTime = Long.MAX_VALUE;
+                for (Map.Entry<Uri, UpdateState> entry : mUpdateStates.entrySet()) {
+                    final UpdateState state = entry.getValue();
+                    if (state.mDueTime == 0L) {
+                        continue;
+                    }
+                    if (state.mDueTime > now) {
+                        nextDueTime = Math.min(nextDueTime, state.mDueTime);
+                        continue;
+                    }
+                    state.mDueTime = 0L;
+                    if (!state.mForceUpdate && state.mWorker.isResultsNotified()) {
+                        continue;
+                    }
+                    if (state.mLastUpdateTime != 0L) {
+                        state.mThrottleInterval = state.mBoundSinceUpdate
+                                ? Math.max(SLICE_UPDATE_THROTTLE_INTERVAL,
+                                        state.mThrottleInterval / 2)
+                                : Math.min(MAX_THROTTLE_INTERVAL, state.mThrottleInterval * 2);
+                    }
+                    state.mLastUpdateTime = now;
+                    state.mBoundSinceUpdate = false;
+                    state.mForceUpdate = false;
+                    state.mWorker.markResultsNotified();
+
+                    final ContentResolver resolver =
+                            state.mWorker.getContext().getContentResolver();
+                    List<Uri> uris = dirtyUris.get(resolver);
+                    if (uris == null) {
+                        uris = new ArrayList<>();
+                        dirtyUris.put(resolver, uris);
+                    }
+                    uris.add(entry.getKey());
+                }
+                if (nextDueTime != Long.MAX_VALUE) {
+                    scheduleFlush(nextDueTime);
+                }
+            }
+
+            for (Map.Entry<ContentResolver, List<Uri>> entry : dirtyUris.entrySet()) {
+                final List<Uri> uris = entry.getValue();
+                if (uris.size() == 1) {
+                    entry.getKey().notifyChange(uris.get(0), null /* observer */);
+                } else {
+                    entry.getKey().notifyChange(uris, null /* observer */, 0 /* flags */);
+                }
             }
         }
 
-        private void cancelSliceUpdate(SliceBackgroundWorker worker) {
-            removeMessages(MSG_UPDATE_SLICE, worker);
-            mLastUpdateTimeLookup.remove(worker.getUri());
+        private void scheduleFlush(long dueTime) {
+            if (mNextFlushTime != 0L && mNextFlushTime <= dueTime) {
+                return;
+            }
+            removeMessages(MSG_FLUSH);
+            mNextFlushTime = dueTime;
+            sendEmptyMessageAtTime(MSG_FLUSH, dueTime);
         }
-    };
+
+        private static long alignToFrame(long time) {
+            return (time + FRAME_WINDOW - 1) / FRAME_WINDOW * FRAME_WINDOW;
+        }
+    }
 }
@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.slices;
+
+import android.content.res.Resources;
+import android.net.Uri;
+import android.util.ArraySet;
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settingslib.applications.InterestingConfigChanges;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A bounded, size-accounted LRU cache of {@link SliceData} used by
+ * {@link SettingsSliceProvider}.
+ * <p>
+ * Entries stay cached after they are bound so that clients which bind the same slice repeatedly
+ * don't go through the stub, database and rebind cycle each time. Pinned slices are never
+ * evicted, and the whole cache is dropped when the locale or night mode changes since the cached
+ * titles and summaries are localized.
+ * <p>
+ * Only {@link SliceData} is cached: a built {@link androidx.slice.Slice} carries the live state of
+ * its controller and is rebuilt on every bind.
+ */
+public class SliceDataCache {
+
+    private static final String TAG = "SliceDataCache";
+
+    @VisibleForTesting
+    static final int MAX_SIZE_BYTES = 128 * 1024;
+    // Rough per-entry cost of the SliceData object, its Uri and the map entry.
+    private static final int ENTRY_OVERHEAD_BYTES = 160;
+
+    private static SliceDataCache sInstance;
+
+    private final int mMaxSizeBytes;
+    private final LinkedHashMap<Uri, SliceData> mEntries =
+            new LinkedHashMap<>(16 /* initialCapacity */, 0.75f /* loadFactor */,
+                    true /* accessOrder */);
+    private final Set<Uri> mPinnedUris = new ArraySet<>();
+    private InterestingConfigChanges mInterestingConfigChanges;
+
+    private int mSizeBytes;
+    private long mHitCount;
+    private long mMissCount;
+    private long mEvictionCount;
+    private long mInvalidationCount;
+
+    /**
+     * Returns the process-wide cache.
+     */
+    public static synchronized SliceDataCache getInstance() {
+        if (sInstance == null) {
+            sInstance = new SliceDataCache(MAX_SIZE_BYTES);
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    SliceDataCache(int maxSizeBytes) {
+        mMaxSizeBytes = maxSizeBytes;
+    }
+
+    /**
+     * Returns the cached {@link SliceData} for {@code uri}, or {@code null} on a miss.
+     */
+    public synchronized SliceData get(Uri uri) {
+        final SliceData data = mEntries.get(uri);
+        if (data == null) {
+            mMissCount++;
+        } else {
+            mHitCount++;
+        }
+        return data;
+    }
+
+    /**
+     * Caches {@code data} for {@code uri}, evicting the least recently used unpinned entries if
+     * the cache grows over its budget.
+     */
+    public synchronized void put(Uri uri, SliceData data) {
+        final SliceData previous = mEntries.put(uri, data);
+        if (previous != null) {
+            mSizeBytes -= sizeOf(previous);
+        }
+        mSizeBytes += sizeOf(data);
+        trimToSize();
+    }
+
+    /**
+     * Removes the cached {@link SliceData} for {@code uri}, if any.
+     */
+    public synchronized void remove(Uri uri) {
+        final SliceData previous = mEntries.remove(uri);
+        if (previous != null) {
+            mSizeBytes -= sizeOf(previous);
+        }
+    }
+
+    /**
+     * Exempts {@code uri} from eviction until {@link #unpin(Uri)} is called.
+     */
+    public synchronized void pin(Uri uri) {
+        mPinnedUris.add(uri);
+    }
+
+    /**
+     * Makes {@code uri} evictable again, trimming the cache if pinned entries kept it over budget.
+     */
+    public synchronized void unpin(Uri uri) {
+        if (mPinnedUris.remove(uri)) {
+            trimToSize();
+        }
+    }
+
+    /**
+     * Drops every cached entry if the locale, night mode or another configuration tracked by
+     * {@link InterestingConfigChanges} changed since the last call.
+     */
+    public synchronized void invalidateIfConfigChanged(Resources resources) {
+        if (mInterestingConfigChanges == null) {
+            mInterestingConfigChanges = new InterestingConfigChanges();
+            mInterestingConfigChanges.applyNewConfig(resources);
+            return;
+        }
+        if (mInterestingConfigChanges.applyNewConfig(resources)) {
+            Log.d(TAG, "Configuration changed, dropping " + mEntries.size() + " entries");
+            mEntries.clear();
+            mSizeBytes = 0;
+            mInvalidationCount++;
+        }
+    }
+
+    /**
+     * Returns up to {@code count} cached uris, most recently used first.
+     */
+    public synchronized List<Uri> getMostRecentlyUsed(int count) {
+        final List<Uri> uris = new ArrayList<>(mEntries.keySet());
+        final List<Uri> result = new ArrayList<>(Math.min(count, uris.size()));
+        for (int i = uris.size() - 1; i >= 0 && result.size() < count; i--) {
+            result.add(uris.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the cache counters, for {@link com.android.settings.SettingsDumpService}.
+     */
+    public synchronized JSONObject dump() throws JSONException {
+        final JSONObject obj = new JSONObject();
+        obj.put("entries", mEntries.size());
+        obj.put("pinned", mPinnedUris.size());
+        obj.put("size_bytes", mSizeBytes);
+        obj.put("max_size_bytes", mMaxSizeBytes);
+        obj.put("hits", mHitCount);
+        obj.put("misses", mMissCount);
+        obj.put("evictions", mEvictionCount);
+        obj.put("invalidations", mInvalidationCount);
+        return obj;
+    }
+
+    @VisibleForTesting
+    synchronized long getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    private void trimToSize() {
+        final Iterator<Map.Entry<Uri, SliceData>> iterator = mEntries.entrySet().iterator();
+        while (mSizeBytes > mMaxSizeBytes && iterator.hasNext()) {
+            final Map.Entry<Uri, SliceData> eldest = iterator.next();
+            if (mPinnedUris.contains(eldest.getKey())) {
+                continue;
+            }
+            iterator.remove();
+            mSizeBytes -= sizeOf(eldest.getValue());
+            mEvictionCount++;
+        }
+    }
+
+    @VisibleForTesting
+    static int sizeOf(SliceData data) {
+        final CharSequence screenTitle = data.getScreenTitle();
+        final Uri uri = data.getUri();
+        final int chars = length(data.getKey())
+                + length(data.getTitle())
+                + length(data.getSummary())
+                + length(screenTitle)
+                + length(data.getKeywords())
+                + length(data.getFragmentClassName())
+                + length(data.getPreferenceController())
+                + length(data.getUnavailableSliceSubtitle())
+                + (uri == null ? 0 : length(uri.toString()));
+        return ENTRY_OVERHEAD_BYTES + 2 * chars;
+    }
+
+    private static int length(CharSequence value) {
+        return value == null ? 0 : value.length();
+    }
+}
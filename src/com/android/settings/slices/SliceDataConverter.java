@@ -28,12 +28,15 @@ import android.app.settings.SettingsEnums;
 import android.content.ComponentName;
 import android.content.ContentResolver;
 import android.content.Context;
+import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.content.pm.ResolveInfo;
 import android.content.pm.ServiceInfo;
+import android.content.res.Configuration;
 import android.content.res.Resources;
 import android.content.res.XmlResourceParser;
 import android.net.Uri;
+import android.os.Build;
 import android.os.Bundle;
 import android.provider.SearchIndexableResource;
 import android.provider.SettingsSlicesContract;
@@ -43,6 +46,7 @@ import android.util.Log;
 import android.util.Xml;
 import android.view.accessibility.AccessibilityManager;
 
+import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 
 import com.android.settings.R;
@@ -61,12 +65,21 @@ import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Converts all Slice sources into {@link SliceData}.
@@ -79,6 +92,16 @@ class SliceDataConverter {
     private static final String TAG = "SliceDataConverter";
 
     private static final String NODE_NAME_PREFERENCE_SCREEN = "PreferenceScreen";
+    private static final long KEEP_ALIVE_SECONDS = 10L;
+
+    private static ExecutorService sExecutor;
+
+    /**
+     * Source of the accessibility service slices, which share the fragment of
+     * {@link AccessibilitySettings} with its XML slices.
+     */
+    static final String ACCESSIBILITY_SOURCE = AccessibilitySettings.class.getName() + "/"
+            + AccessibilitySlicePreferenceController.class.getName();
 
     private final MetricsFeatureProvider mMetricsFeatureProvider;
     private Context mContext;
@@ -88,6 +111,86 @@ class SliceDataConverter {
         mMetricsFeatureProvider = FeatureFactory.getFactory(context).getMetricsFeatureProvider();
     }
 
+    /**
+     * Tells which sources are already indexed.
+     * <p>
+     * A source is either a {@link DashboardFragment}, named by its class name, or
+     * {@link #ACCESSIBILITY_SOURCE}.
+     */
+    interface IndexedSources {
+        /**
+         * Returns {@code true} if the slices of {@code source} are already indexed from inputs
+         * digesting to {@code inputDigest}, in which case the source isn't converted again. May
+         * be called concurrently from converter threads.
+         */
+        boolean isIndexed(String source, String inputDigest);
+    }
+
+    /**
+     * The slices converted from one source, see {@link IndexedSources}.
+     */
+    static class ConvertedSource {
+        private final String mSource;
+        private final String mInputDigest;
+        private final List<SliceData> mSliceData;
+
+        ConvertedSource(String source, @Nullable String inputDigest,
+                @Nullable List<SliceData> sliceData) {
+            mSource = source;
+            mInputDigest = inputDigest;
+            mSliceData = sliceData;
+        }
+
+        String getSource() {
+            return mSource;
+        }
+
+        /**
+         * Returns the digest of the inputs of the source, or {@code null} if the source is
+         * converted every time.
+         */
+        @Nullable
+        String getInputDigest() {
+            return mInputDigest;
+        }
+
+        /**
+         * Returns {@code null} if the source was not converted because it is already indexed.
+         */
+        @Nullable
+        List<SliceData> getSliceData() {
+            return mSliceData;
+        }
+    }
+
+    /**
+     * Returns the source of an indexed slice, see {@link IndexedSources}.
+     */
+    static String getSource(String fragmentName, String controllerClassName) {
+        return AccessibilitySlicePreferenceController.class.getName().equals(controllerClassName)
+                ? ACCESSIBILITY_SOURCE : fragmentName;
+    }
+
+    /**
+     * Waits for {@code future} and returns its source.
+     *
+     * @throws IllegalStateException if the conversion failed or the wait was interrupted.
+     */
+    static ConvertedSource getConvertedSource(Future<ConvertedSource> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while converting slice data", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("Failed to convert slice data", cause);
+        }
+    }
+
     /**
      * @return a list of {@link SliceData} to be indexed and later referenced as a Slice.
      *
@@ -97,41 +200,118 @@ class SliceDataConverter {
      * - From each fragment, grab a {@link SearchIndexProvider}.
      * - For each provider, collect XML resource layout and a list of
      * {@link com.android.settings.core.BasePreferenceController}.
+     *
+     * @throws IllegalStateException if a source fails to convert.
      */
     public List<SliceData> getSliceData() {
-        List<SliceData> sliceData = new ArrayList<>();
+        final List<SliceData> sliceData = new ArrayList<>();
+        for (Future<ConvertedSource> future : convertSliceData((source, inputDigest) -> false)) {
+            sliceData.addAll(getConvertedSource(future).getSliceData());
+        }
+        return sliceData;
+    }
 
+    /**
+     * Starts converting every source into {@link SliceData} on the shared converter pool, one
+     * source per task, and returns the task of each source in a stable order.
+     * <p>
+     * A provider is only converted if {@code indexedSources} doesn't have it indexed from the
+     * same inputs: its XML resources, which name its controllers, the locales and resource
+     * overlays they are loaded with, and the build and Settings version. The columns derived from
+     * the controllers, such as the slice type and whether it is public, only change with the
+     * code, so any system or Settings update converts every source again.
+     */
+    public List<Future<ConvertedSource>> convertSliceData(IndexedSources indexedSources) {
         final Collection<SearchIndexableData> bundles = FeatureFactory.getFactory(mContext)
                 .getSearchFeatureProvider().getSearchIndexableResources().getProviderValues();
+        final String sourceState = getSourceState();
+        final ExecutorService executor = getSharedExecutor();
 
+        final List<Future<ConvertedSource>> futures = new ArrayList<>(bundles.size() + 1);
         for (SearchIndexableData bundle : bundles) {
             final String fragmentName = bundle.getTargetClass().getName();
 
             final SearchIndexProvider provider = bundle.getSearchIndexProvider();
 
-            // CodeInspection test guards against the null check. Keep check in case of bad actors.
+            // CodeInspection test guards against the null check. Keep check in case of bad
+            // actors.
             if (provider == null) {
                 Log.e(TAG, fragmentName + " dose not implement Search Index Provider");
                 continue;
             }
 
-            final List<SliceData> providerSliceData = getSliceDataFromProvider(provider,
-                    fragmentName);
-            sliceData.addAll(providerSliceData);
+            futures.add(executor.submit(() -> {
+                final List<SearchIndexableResource> resList =
+                        provider.getXmlResourcesToIndex(mContext, true /* enabled */);
+                final String inputDigest = getInputDigest(resList, sourceState);
+                if (inputDigest != null && indexedSources.isIndexed(fragmentName, inputDigest)) {
+                    return new ConvertedSource(fragmentName, inputDigest, null /* sliceData */);
+                }
+                return new ConvertedSource(fragmentName, inputDigest,
+                        getSliceDataFromProvider(resList, fragmentName));
+            }));
         }
 
-        final List<SliceData> a11ySliceData = getAccessibilitySliceData();
-        sliceData.addAll(a11ySliceData);
-        return sliceData;
+        // Installed services aren't worth digesting, converting them is as cheap.
+        futures.add(executor.submit(() -> new ConvertedSource(ACCESSIBILITY_SOURCE,
+                null /* inputDigest */, getAccessibilitySliceData())));
+        return futures;
+    }
+
+    /**
+     * Returns the state shared by all sources: the build and Settings version, which change the
+     * controllers, and the configuration the XML resources are loaded with, which changes their
+     * strings.
+     */
+    @VisibleForTesting
+    String getSourceState() {
+        final Configuration config = mContext.getResources().getConfiguration();
+        return Build.FINGERPRINT + "|" + getPackageVersion() + "|"
+                + config.getLocales().toLanguageTags() + "|"
+                + Arrays.toString(mContext.getApplicationInfo().resourceDirs);
+    }
+
+    private String getPackageVersion() {
+        try {
+            final PackageInfo info = mContext.getPackageManager().getPackageInfo(
+                    mContext.getPackageName(), 0 /* flags */);
+            return info.getLongVersionCode() + "@" + info.lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            Log.w(TAG, "Unable to get the version of " + mContext.getPackageName(), e);
+            return "";
+        }
+    }
+
+    /**
+     * Returns the digest of {@code resList} loaded with {@code sourceState}, or {@code null} if
+     * a resource can't be read.
+     */
+    @Nullable
+    private String getInputDigest(List<SearchIndexableResource> resList, String sourceState) {
+        final MessageDigest digest = SliceDigestUtils.newDigest();
+        SliceDigestUtils.update(digest, sourceState);
+        if (resList != null) {
+            final Resources res = mContext.getResources();
+            for (SearchIndexableResource resource : resList) {
+                SliceDigestUtils.update(digest, String.valueOf(resource.xmlResId));
+                if (resource.xmlResId == 0) {
+                    continue;
+                }
+                try (InputStream in = res.openRawResource(resource.xmlResId)) {
+                    SliceDigestUtils.update(digest, in);
+                } catch (IOException | Resources.NotFoundException e) {
+                    Log.w(TAG, "Unable to digest XML " + resource.xmlResId, e);
+                    return null;
+                }
+            }
+        }
+        return SliceDigestUtils.toHex(digest.digest());
     }
 
-    private List<SliceData> getSliceDataFromProvider(SearchIndexProvider provider,
+    private List<SliceData> getSliceDataFromProvider(List<SearchIndexableResource> resList,
             String fragmentName) {
         final List<SliceData> sliceData = new ArrayList<>();
 
-        final List<SearchIndexableResource> resList =
-                provider.getXmlResourcesToIndex(mContext, true /* enabled */);
-
         if (resList == null) {
             return sliceData;
         }
@@ -313,6 +493,21 @@ class SliceDataConverter {
         return sliceData;
     }
 
+    /**
+     * Returns the pool converting the sources. It is not shared with the {@code ThreadUtils}
+     * background threads, one of which runs the indexer waiting for the conversions.
+     */
+    private static synchronized ExecutorService getSharedExecutor() {
+        if (sExecutor == null) {
+            final int poolSize = Math.max(2, Runtime.getRuntime().availableProcessors());
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize,
+                    KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+            executor.allowCoreThreadTimeOut(true);
+            sExecutor = executor;
+        }
+        return sExecutor;
+    }
+
     @VisibleForTesting
     List<AccessibilityServiceInfo> getAccessibilityServiceInfoList() {
         final AccessibilityManager accessibilityManager = AccessibilityManager.getInstance(
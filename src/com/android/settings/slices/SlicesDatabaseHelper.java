@@ -17,6 +17,7 @@
 package com.android.settings.slices;
 
 import android.content.Context;
+import android.content.SharedPreferences;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.os.Build;
@@ -25,6 +26,7 @@ import android.util.Log;
 import androidx.annotation.VisibleForTesting;
 
 import java.util.Locale;
+import java.util.Map;
 
 /**
  * Defines the schema for the Slices database.
@@ -35,6 +37,7 @@ public class SlicesDatabaseHelper extends SQLiteOpenHelper {
 
     private static final String DATABASE_NAME = "slices_index.db";
     private static final String SHARED_PREFS_TAG = "slices_shared_prefs";
+    private static final String DIGEST_PREFS_TAG = "slices_fragment_digests";
 
     private static final int DATABASE_VERSION = 8;
 
@@ -176,19 +179,53 @@ public class SlicesDatabaseHelper extends SQLiteOpenHelper {
                 .edit()
                 .clear()
                 .apply();
+        mContext.getSharedPreferences(DIGEST_PREFS_TAG, Context.MODE_PRIVATE)
+                .edit()
+                .clear()
+                .apply();
         dropTables(db);
         createDatabases(db);
     }
 
     /**
      * Marks the current state of the device for the validity of the data. Should be called after
-     * a full index of the TABLE_SLICES_INDEX.
+     * a full or incremental index of the TABLE_SLICES_INDEX.
      */
     public void setIndexedState() {
+        // Forget any previously indexed build or locale, the table only reflects the current one.
+        mContext.getSharedPreferences(SHARED_PREFS_TAG, Context.MODE_PRIVATE)
+                .edit()
+                .clear()
+                .apply();
         setBuildIndexed();
         setLocaleIndexed();
     }
 
+    /**
+     * Returns the digest of the indexed rows of each source, as stored by the last index. Keys
+     * are source identifiers: the fragment class name, or
+     * {@link SliceDataConverter#ACCESSIBILITY_SOURCE} for the accessibility services. Empty if
+     * the table was never indexed or has been reconstructed.
+     */
+    @SuppressWarnings("unchecked")
+    Map<String, String> getFragmentDigests() {
+        return (Map<String, String>) mContext.getSharedPreferences(DIGEST_PREFS_TAG,
+                Context.MODE_PRIVATE).getAll();
+    }
+
+    /**
+     * Replaces the stored source digests. Should be called once the rows they describe have
+     * been committed.
+     */
+    void setFragmentDigests(Map<String, String> digests) {
+        final SharedPreferences.Editor editor = mContext.getSharedPreferences(DIGEST_PREFS_TAG,
+                Context.MODE_PRIVATE).edit().clear();
+        for (Map.Entry<String, String> entry : digests.entrySet()) {
+            editor.putString(entry.getKey(), entry.getValue());
+        }
+        editor.apply();
+    }
+
     /**
      * Indicates if the indexed slice data reflects the current state of the phone.
      *
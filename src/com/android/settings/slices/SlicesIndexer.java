@@ -16,9 +16,12 @@
 
 package com.android.settings.slices;
 
-import android.content.ContentValues;
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.util.ArrayMap;
 import android.util.Log;
 
 import androidx.annotation.VisibleForTesting;
@@ -26,10 +29,16 @@ import androidx.annotation.VisibleForTesting;
 import com.android.settings.core.BasePreferenceController;
 import com.android.settings.dashboard.DashboardFragment;
 import com.android.settings.overlay.FeatureFactory;
+import com.android.settings.slices.SliceDataConverter.ConvertedSource;
 import com.android.settings.slices.SlicesDatabaseHelper.IndexColumns;
 import com.android.settings.slices.SlicesDatabaseHelper.Tables;
 
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
 
 /**
  * Manages the conversion of {@link DashboardFragment} and {@link BasePreferenceController} to
@@ -39,6 +48,60 @@ class SlicesIndexer implements Runnable {
 
     private static final String TAG = "SlicesIndexer";
 
+    private static final String INSERT_SLICE_SQL = "INSERT OR REPLACE INTO "
+            + Tables.TABLE_SLICES_INDEX + " ("
+            + IndexColumns.KEY + ", "
+            + IndexColumns.SLICE_URI + ", "
+            + IndexColumns.TITLE + ", "
+            + IndexColumns.SUMMARY + ", "
+            + IndexColumns.SCREENTITLE + ", "
+            + IndexColumns.KEYWORDS + ", "
+            + IndexColumns.ICON_RESOURCE + ", "
+            + IndexColumns.FRAGMENT + ", "
+            + IndexColumns.CONTROLLER + ", "
+            + IndexColumns.SLICE_TYPE + ", "
+            + IndexColumns.UNAVAILABLE_SLICE_SUBTITLE + ", "
+            + IndexColumns.PUBLIC_SLICE
+            + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String UPDATE_LOCALIZED_SQL = "UPDATE "
+            + Tables.TABLE_SLICES_INDEX + " SET "
+            + IndexColumns.TITLE + " = ?, "
+            + IndexColumns.SUMMARY + " = ?, "
+            + IndexColumns.SCREENTITLE + " = ?, "
+            + IndexColumns.KEYWORDS + " = ?, "
+            + IndexColumns.UNAVAILABLE_SLICE_SUBTITLE + " = ?"
+            + " WHERE rowid = ?";
+
+    private static final String DELETE_ROW_SQL = "DELETE FROM "
+            + Tables.TABLE_SLICES_INDEX + " WHERE rowid = ?";
+
+    private static final String SELECT_ROWS_SQL = "SELECT rowid, "
+            + IndexColumns.KEY + ", "
+            + IndexColumns.FRAGMENT + ", "
+            + IndexColumns.CONTROLLER
+            + " FROM " + Tables.TABLE_SLICES_INDEX;
+
+    private static final char DIGEST_SEPARATOR = ':';
+
+    // Order of the rows of a source, in which they are digested and written.
+    private static final Comparator<SliceData> ROW_ORDER = Comparator.comparing(SliceData::getKey)
+            .thenComparing(dataRow -> String.valueOf(dataRow.getUri()));
+
+    // Bind indexes of INSERT_SLICE_SQL.
+    private static final int COLUMN_KEY = 1;
+    private static final int COLUMN_SLICE_URI = 2;
+    private static final int COLUMN_TITLE = 3;
+    private static final int COLUMN_SUMMARY = 4;
+    private static final int COLUMN_SCREENTITLE = 5;
+    private static final int COLUMN_KEYWORDS = 6;
+    private static final int COLUMN_ICON_RESOURCE = 7;
+    private static final int COLUMN_FRAGMENT = 8;
+    private static final int COLUMN_CONTROLLER = 9;
+    private static final int COLUMN_SLICE_TYPE = 10;
+    private static final int COLUMN_UNAVAILABLE_SLICE_SUBTITLE = 11;
+    private static final int COLUMN_PUBLIC_SLICE = 12;
+
     private Context mContext;
 
     private SlicesDatabaseHelper mHelper;
@@ -58,7 +121,17 @@ class SlicesIndexer implements Runnable {
 
     /**
      * Synchronously takes data obtained from {@link SliceDataConverter} and indexes it into a
-     * SQLite database
+     * SQLite database.
+     * <p>
+     * Conversion runs on the converter pool, and the calling thread writes each source into the
+     * database with compiled statements as soon as it and the sources before it are converted,
+     * so that the rows are always written in the same order. A source failing to convert fails
+     * the whole index, which is then retried on the next call.
+     * <p>
+     * When a previous index exists, only the sources whose inputs changed are converted, and
+     * only the converted sources whose rows changed are written: a source whose keys,
+     * controllers and slice types are unchanged (e.g. after a locale change) only has its
+     * localized columns updated, and any other changed source is rewritten.
      */
     protected void indexSliceData() {
         if (mHelper.isSliceDataIndexed()) {
@@ -67,58 +140,266 @@ class SlicesIndexer implements Runnable {
         }
 
         final SQLiteDatabase database = mHelper.getWritableDatabase();
+        final Map<String, String> previousDigests = mHelper.getFragmentDigests();
+        final Map<String, String> digests;
 
-        long startTime = System.currentTimeMillis();
+        final long startTime = SystemClock.elapsedRealtime();
         database.beginTransaction();
         try {
-            mHelper.reconstruct(database);
-            List<SliceData> indexData = getSliceData();
-            insertSliceData(database, indexData);
+            if (previousDigests.isEmpty()) {
+                mHelper.reconstruct(database);
+            }
+            digests = indexSources(database, previousDigests);
 
             mHelper.setIndexedState();
 
-            // TODO (b/71503044) Log indexing time.
-            Log.d(TAG,
-                    "Indexing slices database took: " + (System.currentTimeMillis() - startTime));
+            final long elapsedTime = SystemClock.elapsedRealtime() - startTime;
+            Log.d(TAG, "Indexing slices took: " + elapsedTime);
             database.setTransactionSuccessful();
         } finally {
             database.endTransaction();
         }
+        mHelper.setFragmentDigests(digests);
     }
 
+    /**
+     * Starts converting every source to index, see {@link SliceDataConverter#convertSliceData}.
+     */
     @VisibleForTesting
-    List<SliceData> getSliceData() {
+    List<Future<ConvertedSource>> convertSliceData(
+            SliceDataConverter.IndexedSources indexedSources) {
         return FeatureFactory.getFactory(mContext)
                 .getSlicesFeatureProvider()
                 .getSliceDataConverter(mContext)
-                .getSliceData();
+                .convertSliceData(indexedSources);
     }
 
-    @VisibleForTesting
-    void insertSliceData(SQLiteDatabase database, List<SliceData> indexData) {
-        ContentValues values;
+    /**
+     * Writes the sources which changed since {@code previousDigests}, and returns the digests
+     * of the written index, keyed by source, formatted as
+     * {@code <input digest>:<structural digest>:<localized digest>}. The input part covers
+     * what the source is converted from, so a source whose input part is unchanged isn't
+     * converted again. The structural part covers the columns which don't depend on the
+     * locale, so a source whose structural part is unchanged only needs its localized columns
+     * rewritten.
+     */
+    private Map<String, String> indexSources(SQLiteDatabase database,
+            Map<String, String> previousDigests) {
+        final Map<String, IndexedRows> indexedRows = previousDigests.isEmpty()
+                ? new ArrayMap<>() : queryIndexedRows(database);
+        final Map<String, String> digests = new ArrayMap<>();
+        int skippedCount = 0;
+        int localizedCount = 0;
+        int rewrittenCount = 0;
+
+        try (SQLiteStatement insert = database.compileStatement(INSERT_SLICE_SQL);
+             SQLiteStatement update = database.compileStatement(UPDATE_LOCALIZED_SQL);
+             SQLiteStatement delete = database.compileStatement(DELETE_ROW_SQL)) {
+            final List<Future<ConvertedSource>> futures = convertSliceData(
+                    (source, inputDigest) -> inputDigest.equals(
+                            getInputDigest(previousDigests.get(source))));
+            for (int i = 0; i < futures.size(); i++) {
+                final ConvertedSource converted;
+                try {
+                    converted = SliceDataConverter.getConvertedSource(futures.get(i));
+                } catch (RuntimeException e) {
+                    // Fail the transaction rather than marking a partial index as complete.
+                    for (int j = i + 1; j < futures.size(); j++) {
+                        futures.get(j).cancel(true /* mayInterruptIfRunning */);
+                    }
+                    throw e;
+                }
+                final String source = converted.getSource();
+                final IndexedRows sourceRows = indexedRows.remove(source);
+                final String previousDigest = previousDigests.get(source);
+                if (converted.getSliceData() == null) {
+                    // Not converted, its rows are still valid.
+                    digests.put(source, previousDigest);
+                    skippedCount++;
+                    continue;
+                }
+
+                final List<SliceData> rows = new ArrayList<>(converted.getSliceData());
+                rows.sort(ROW_ORDER);
+                final String rowDigest = computeRowDigest(rows);
+                digests.put(source, (converted.getInputDigest() == null
+                        ? "" : converted.getInputDigest()) + DIGEST_SEPARATOR + rowDigest);
+                final String previousRowDigest = getRowDigest(previousDigest);
+
+                if (sourceRows != null && rowDigest.equals(previousRowDigest)) {
+                    skippedCount++;
+                    continue;
+                }
+                if (sourceRows != null && previousRowDigest != null
+                        && getStructuralDigest(rowDigest).equals(
+                                getStructuralDigest(previousRowDigest))
+                        && sourceRows.containsExactly(rows)) {
+                    updateLocalizedColumns(update, rows, sourceRows);
+                    localizedCount++;
+                    continue;
+                }
+                if (sourceRows != null) {
+                    deleteRows(delete, sourceRows);
+                }
+                insertSliceData(insert, rows);
+                rewrittenCount++;
+            }
+            // Whatever is left belongs to sources which no longer provide slices.
+            for (IndexedRows staleRows : indexedRows.values()) {
+                deleteRows(delete, staleRows);
+            }
+        }
+        Log.d(TAG, "Indexed " + digests.size() + " sources: " + skippedCount + " unchanged, "
+                + localizedCount + " localized, " + rewrittenCount + " rewritten, "
+                + indexedRows.size() + " removed");
+        return digests;
+    }
+
+    private static Map<String, IndexedRows> queryIndexedRows(SQLiteDatabase database) {
+        final Map<String, IndexedRows> indexedRows = new ArrayMap<>();
+        try (Cursor cursor = database.rawQuery(SELECT_ROWS_SQL, null /* selectionArgs */)) {
+            while (cursor.moveToNext()) {
+                final String source = SliceDataConverter.getSource(cursor.getString(2),
+                        cursor.getString(3));
+                IndexedRows sourceRows = indexedRows.get(source);
+                if (sourceRows == null) {
+                    sourceRows = new IndexedRows();
+                    indexedRows.put(source, sourceRows);
+                }
+                sourceRows.add(cursor.getString(1), cursor.getLong(0));
+            }
+        }
+        return indexedRows;
+    }
+
+    private static void updateLocalizedColumns(SQLiteStatement statement, List<SliceData> rows,
+            IndexedRows indexedRows) {
+        for (SliceData dataRow : rows) {
+            statement.clearBindings();
+            bindString(statement, 1, dataRow.getTitle());
+            bindString(statement, 2, dataRow.getSummary());
+            final CharSequence screenTitle = dataRow.getScreenTitle();
+            bindString(statement, 3, screenTitle == null ? null : screenTitle.toString());
+            bindString(statement, 4, dataRow.getKeywords());
+            bindString(statement, 5, dataRow.getUnavailableSliceSubtitle());
+            statement.bindLong(6, indexedRows.getRowId(dataRow.getKey()));
+            statement.executeUpdateDelete();
+        }
+    }
+
+    private static void deleteRows(SQLiteStatement statement, IndexedRows indexedRows) {
+        for (long rowId : indexedRows.getRowIds()) {
+            statement.bindLong(1, rowId);
+            statement.executeUpdateDelete();
+        }
+    }
 
+    /**
+     * Computes the digest of the rows of a source, sorted in {@link #ROW_ORDER}, formatted as
+     * {@code <structural digest>:<localized digest>}.
+     */
+    private static String computeRowDigest(List<SliceData> rows) {
+        final MessageDigest structural = SliceDigestUtils.newDigest();
+        final MessageDigest localized = SliceDigestUtils.newDigest();
+        for (SliceData dataRow : rows) {
+            SliceDigestUtils.update(structural, dataRow.getKey());
+            SliceDigestUtils.update(structural, String.valueOf(dataRow.getUri()));
+            SliceDigestUtils.update(structural, String.valueOf(dataRow.getIconResource()));
+            SliceDigestUtils.update(structural, dataRow.getPreferenceController());
+            SliceDigestUtils.update(structural, String.valueOf(dataRow.getSliceType()));
+            SliceDigestUtils.update(structural, String.valueOf(dataRow.isPublicSlice()));
+
+            SliceDigestUtils.update(localized, dataRow.getTitle());
+            SliceDigestUtils.update(localized, dataRow.getSummary());
+            final CharSequence screenTitle = dataRow.getScreenTitle();
+            SliceDigestUtils.update(localized,
+                    screenTitle == null ? null : screenTitle.toString());
+            SliceDigestUtils.update(localized, dataRow.getKeywords());
+            SliceDigestUtils.update(localized, dataRow.getUnavailableSliceSubtitle());
+        }
+        return SliceDigestUtils.toHex(structural.digest()) + DIGEST_SEPARATOR
+                + SliceDigestUtils.toHex(localized.digest());
+    }
+
+    private static String getInputDigest(String digest) {
+        final int index = digest == null ? -1 : digest.indexOf(DIGEST_SEPARATOR);
+        return index < 0 ? null : digest.substring(0, index);
+    }
+
+    private static String getRowDigest(String digest) {
+        final int index = digest == null ? -1 : digest.indexOf(DIGEST_SEPARATOR);
+        return index < 0 ? null : digest.substring(index + 1);
+    }
+
+    private static String getStructuralDigest(String rowDigest) {
+        final int index = rowDigest.indexOf(DIGEST_SEPARATOR);
+        return index < 0 ? rowDigest : rowDigest.substring(0, index);
+    }
+
+    private static void insertSliceData(SQLiteStatement statement, List<SliceData> indexData) {
         for (SliceData dataRow : indexData) {
-            values = new ContentValues();
-            values.put(IndexColumns.KEY, dataRow.getKey());
-            values.put(IndexColumns.SLICE_URI, dataRow.getUri().toSafeString());
-            values.put(IndexColumns.TITLE, dataRow.getTitle());
-            values.put(IndexColumns.SUMMARY, dataRow.getSummary());
+            statement.clearBindings();
+            bindString(statement, COLUMN_KEY, dataRow.getKey());
+            bindString(statement, COLUMN_SLICE_URI, dataRow.getUri().toSafeString());
+            bindString(statement, COLUMN_TITLE, dataRow.getTitle());
+            bindString(statement, COLUMN_SUMMARY, dataRow.getSummary());
             final CharSequence screenTitle = dataRow.getScreenTitle();
-            if (screenTitle != null) {
-                values.put(IndexColumns.SCREENTITLE, screenTitle.toString());
-            }
-            values.put(IndexColumns.KEYWORDS, dataRow.getKeywords());
-            values.put(IndexColumns.ICON_RESOURCE, dataRow.getIconResource());
-            values.put(IndexColumns.FRAGMENT, dataRow.getFragmentClassName());
-            values.put(IndexColumns.CONTROLLER, dataRow.getPreferenceController());
-            values.put(IndexColumns.SLICE_TYPE, dataRow.getSliceType());
-            values.put(IndexColumns.UNAVAILABLE_SLICE_SUBTITLE,
+            bindString(statement, COLUMN_SCREENTITLE,
+                    screenTitle == null ? null : screenTitle.toString());
+            bindString(statement, COLUMN_KEYWORDS, dataRow.getKeywords());
+            statement.bindLong(COLUMN_ICON_RESOURCE, dataRow.getIconResource());
+            bindString(statement, COLUMN_FRAGMENT, dataRow.getFragmentClassName());
+            bindString(statement, COLUMN_CONTROLLER, dataRow.getPreferenceController());
+            statement.bindLong(COLUMN_SLICE_TYPE, dataRow.getSliceType());
+            bindString(statement, COLUMN_UNAVAILABLE_SLICE_SUBTITLE,
                     dataRow.getUnavailableSliceSubtitle());
-            values.put(IndexColumns.PUBLIC_SLICE, dataRow.isPublicSlice());
+            statement.bindLong(COLUMN_PUBLIC_SLICE, dataRow.isPublicSlice() ? 1 : 0);
 
-            database.replaceOrThrow(Tables.TABLE_SLICES_INDEX, null /* nullColumnHack */,
-                    values);
+            statement.executeInsert();
+        }
+    }
+
+    private static void bindString(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    /**
+     * The rows currently indexed for one source.
+     */
+    private static class IndexedRows {
+        private final Map<String, Long> mRowIdByKey = new ArrayMap<>();
+        private final List<Long> mRowIds = new ArrayList<>();
+
+        void add(String key, long rowId) {
+            mRowIdByKey.put(key, rowId);
+            mRowIds.add(rowId);
+        }
+
+        long getRowId(String key) {
+            return mRowIdByKey.get(key);
+        }
+
+        List<Long> getRowIds() {
+            return mRowIds;
+        }
+
+        /**
+         * Returns {@code true} if every row maps to exactly one indexed row with the same key.
+         */
+        boolean containsExactly(List<SliceData> rows) {
+            if (rows.size() != mRowIds.size() || mRowIdByKey.size() != mRowIds.size()) {
+                return false;
+            }
+            for (SliceData dataRow : rows) {
+                if (!mRowIdByKey.containsKey(dataRow.getKey())) {
+                    return false;
+                }
+            }
+            return true;
         }
     }
-}
\ No newline at end of file
+}
@@ -35,6 +35,7 @@ import androidx.lifecycle.LifecycleObserver;
 import androidx.lifecycle.OnLifecycleEvent;
 
 import com.android.internal.annotations.VisibleForTesting;
+import com.android.settings.network.CarrierConfigCache;
 import com.android.settings.overlay.FeatureFactory;
 import com.android.wifitrackerlib.MergedCarrierEntry;
 import com.android.wifitrackerlib.WifiEntry;
@@ -65,6 +66,7 @@ public class WifiPickerTrackerHelper implements LifecycleObserver {
 
     protected final WifiManager mWifiManager;
     protected final CarrierConfigManager mCarrierConfigManager;
+    private final Context mContext;
 
     public WifiPickerTrackerHelper(@NonNull Lifecycle lifecycle, @NonNull Context context,
             @Nullable WifiPickerTracker.WifiPickerTrackerCallback listener) {
@@ -89,6 +91,7 @@ public class WifiPickerTrackerHelper implements LifecycleObserver {
 
         mWifiManager = context.getSystemService(WifiManager.class);
         mCarrierConfigManager = context.getSystemService(CarrierConfigManager.class);
+        mContext = context;
     }
 
     /** @OnLifecycleEvent(ON_DESTROY) */
@@ -104,7 +107,8 @@ public class WifiPickerTrackerHelper implements LifecycleObserver {
 
     /** Return the enabled/disabled state of the carrier network provision */
     public boolean isCarrierNetworkProvisionEnabled(int subId) {
-        final PersistableBundle config = mCarrierConfigManager.getConfigForSubId(subId);
+        final PersistableBundle config = CarrierConfigCache.getInstance()
+                .getConfigForSubId(mContext, mCarrierConfigManager, subId);
         if (config == null) {
             Log.e(TAG, "Could not get carrier config, subId:" + subId);
             return false;
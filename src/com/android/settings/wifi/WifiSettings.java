@@ -38,10 +38,12 @@ import android.os.PowerManager;
 import android.os.Process;
 import android.os.SimpleClock;
 import android.os.SystemClock;
+import android.os.Trace;
 import android.provider.Settings;
 import android.text.TextUtils;
 import android.util.FeatureFlagUtils;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.ContextMenu;
 import android.view.ContextMenu.ContextMenuInfo;
 import android.view.Menu;
@@ -52,6 +54,7 @@ import android.widget.Toast;
 import androidx.annotation.VisibleForTesting;
 import androidx.preference.Preference;
 import androidx.preference.PreferenceCategory;
+import androidx.preference.PreferenceGroup;
 import androidx.preference.PreferenceScreen;
 import androidx.recyclerview.widget.RecyclerView;
 
@@ -162,8 +165,14 @@ public class WifiSettings extends RestrictedSettingsFragment
 
     private boolean mIsWifiEntryListStale = true;
     private final Runnable mUpdateWifiEntryPreferencesRunnable = () -> {
-        updateWifiEntryPreferences();
+        requestWifiEntryPreferencesUpdate();
     };
+    private boolean mIsWifiEntryPreferencesUpdatePending;
+    private final Choreographer.FrameCallback mUpdateWifiEntryPreferencesFrameCallback =
+            frameTimeNanos -> {
+                mIsWifiEntryPreferencesUpdatePending = false;
+                updateWifiEntryPreferences();
+            };
     private final Runnable mHideProgressBarRunnable = () -> {
         setProgressBarVisible(false);
     };
@@ -425,6 +434,8 @@ public class WifiSettings extends RestrictedSettingsFragment
     public void onStop() {
         getView().removeCallbacks(mUpdateWifiEntryPreferencesRunnable);
         getView().removeCallbacks(mHideProgressBarRunnable);
+        Choreographer.getInstance().removeFrameCallback(mUpdateWifiEntryPreferencesFrameCallback);
+        mIsWifiEntryPreferencesUpdatePending = false;
         mIsWifiEntryListStale = true;
         super.onStop();
     }
@@ -656,7 +667,7 @@ public class WifiSettings extends RestrictedSettingsFragment
 
         switch (wifiState) {
             case WifiManager.WIFI_STATE_ENABLED:
-                updateWifiEntryPreferences();
+                requestWifiEntryPreferencesUpdate();
                 break;
 
             case WifiManager.WIFI_STATE_ENABLING:
@@ -685,7 +696,7 @@ public class WifiSettings extends RestrictedSettingsFragment
     public void onWifiEntriesChanged() {
         if (mIsWifiEntryListStale) {
             mIsWifiEntryListStale = false;
-            updateWifiEntryPreferences();
+            requestWifiEntryPreferencesUpdate();
         } else {
             updateWifiEntryPreferencesDelayed();
         }
@@ -741,13 +752,26 @@ public class WifiSettings extends RestrictedSettingsFragment
         }
     }
 
+    /**
+     * Schedules {@link #updateWifiEntryPreferences()} for the next display frame. Requests made
+     * before then are coalesced, so the list is rebuilt at most once per frame.
+     */
+    private void requestWifiEntryPreferencesUpdate() {
+        if (mIsWifiEntryPreferencesUpdatePending) {
+            return;
+        }
+        mIsWifiEntryPreferencesUpdatePending = true;
+        Choreographer.getInstance().postFrameCallback(mUpdateWifiEntryPreferencesFrameCallback);
+    }
+
     private void updateWifiEntryPreferences() {
         // in case state has changed
         if (mWifiPickerTracker.getWifiState() != WifiManager.WIFI_STATE_ENABLED) {
             return;
         }
 
-        boolean hasAvailableWifiEntries = false;
+        Trace.beginSection("WifiSettings#updateWifiEntryPreferences");
+        final long startTime = SystemClock.elapsedRealtimeNanos();
         mStatusMessagePreference.setVisible(false);
         mWifiEntryPreferenceCategory.setVisible(true);
 
@@ -784,55 +808,96 @@ public class WifiSettings extends RestrictedSettingsFragment
             mConnectedWifiEntryPreferenceCategory.removeAll();
         }
 
+        final List<WifiEntry> wifiEntries = mWifiPickerTracker.getWifiEntries();
+        final UpdatePassStats stats =
+                updateWifiEntryPreferenceList(mWifiEntryPreferenceCategory, wifiEntries);
+        if (wifiEntries.isEmpty()) {
+            setProgressBarVisible(true);
+        } else {
+            // Continuing showing progress bar for an additional delay to overlap with animation
+            getView().postDelayed(mHideProgressBarRunnable, 1700 /* delay millis */);
+        }
+        setAdditionalSettingsSummaries();
+
+        stats.mDurationMicros = (SystemClock.elapsedRealtimeNanos() - startTime) / 1000;
+        Trace.endSection();
+        if (isVerboseLoggingEnabled()) {
+            Log.i(TAG, "updateWifiEntryPreferences " + stats);
+        }
+    }
+
+    /**
+     * Binds {@code wifiEntries} to the preferences of {@code group}, keyed by
+     * {@link WifiEntry#getKey()}. A preference whose key is still listed is rebound in place when
+     * its {@link WifiEntry} object changed, and its order is only touched when it moved, so a scan
+     * result only invalidates the rows which actually changed.
+     */
+    @VisibleForTesting
+    UpdatePassStats updateWifiEntryPreferenceList(PreferenceGroup group,
+            List<WifiEntry> wifiEntries) {
+        final UpdatePassStats stats = new UpdatePassStats();
         int index = 0;
-        cacheRemoveAllPrefs(mWifiEntryPreferenceCategory);
-        List<WifiEntry> wifiEntries = mWifiPickerTracker.getWifiEntries();
+        cacheRemoveAllPrefs(group);
         for (WifiEntry wifiEntry : wifiEntries) {
-            hasAvailableWifiEntries = true;
-
             String key = wifiEntry.getKey();
             LongPressWifiEntryPreference pref =
                     (LongPressWifiEntryPreference) getCachedPreference(key);
-            if (pref != null) {
-                if (pref.getWifiEntry() == wifiEntry) {
-                    pref.setOrder(index++);
-                    continue;
-                } else {
-                    // Create a new preference if the underlying WifiEntry object has changed
-                    removePreference(key);
-                }
+            final boolean isNew = pref == null;
+            if (isNew) {
+                pref = createLongPressWifiEntryPreference(wifiEntry);
+                pref.setKey(key);
+                pref.refresh();
+                stats.mCreated++;
+            } else if (pref.getWifiEntry() != wifiEntry) {
+                // Rebind the new WifiEntry object of the same network to the existing preference
+                pref.setWifiEntry(wifiEntry);
+                stats.mRebound++;
+            } else {
+                moveWifiEntryPreference(pref, index++, stats);
+                continue;
             }
 
-            pref = createLongPressWifiEntryPreference(wifiEntry);
-            pref.setKey(wifiEntry.getKey());
-            pref.setOrder(index++);
-            pref.refresh();
-
             if (wifiEntry.getHelpUriString() != null) {
+                final LongPressWifiEntryPreference boundPref = pref;
                 pref.setOnButtonClickListener(preference -> {
-                    openSubscriptionHelpPage(wifiEntry);
+                    openSubscriptionHelpPage(boundPref.getWifiEntry());
                 });
+            } else if (!isNew) {
+                pref.setOnButtonClickListener(null);
+            }
+            if (isNew) {
+                pref.setOrder(index++);
+                group.addPreference(pref);
+            } else {
+                moveWifiEntryPreference(pref, index++, stats);
             }
-            mWifiEntryPreferenceCategory.addPreference(pref);
         }
-        removeCachedPrefs(mWifiEntryPreferenceCategory);
 
-        if (!hasAvailableWifiEntries) {
-            setProgressBarVisible(true);
-            Preference pref = new Preference(getPrefContext());
-            pref.setSelectable(false);
-            pref.setSummary(R.string.wifi_empty_list_wifi_on);
+        if (wifiEntries.isEmpty()) {
+            Preference pref = getCachedPreference(PREF_KEY_EMPTY_WIFI_LIST);
+            if (pref == null) {
+                pref = new Preference(getPrefContext());
+                pref.setSelectable(false);
+                pref.setSummary(R.string.wifi_empty_list_wifi_on);
+                pref.setKey(PREF_KEY_EMPTY_WIFI_LIST);
+            }
             pref.setOrder(index++);
-            pref.setKey(PREF_KEY_EMPTY_WIFI_LIST);
-            mWifiEntryPreferenceCategory.addPreference(pref);
-        } else {
-            // Continuing showing progress bar for an additional delay to overlap with animation
-            getView().postDelayed(mHideProgressBarRunnable, 1700 /* delay millis */);
+            group.addPreference(pref);
         }
+        stats.mRemoved = getCachedCount();
+        removeCachedPrefs(group);
 
         mAddWifiNetworkPreference.setOrder(index++);
-        mWifiEntryPreferenceCategory.addPreference(mAddWifiNetworkPreference);
-        setAdditionalSettingsSummaries();
+        group.addPreference(mAddWifiNetworkPreference);
+        return stats;
+    }
+
+    private static void moveWifiEntryPreference(Preference pref, int order,
+            UpdatePassStats stats) {
+        if (pref.getOrder() != order) {
+            pref.setOrder(order);
+            stats.mMoved++;
+        }
     }
 
     private void launchNetworkDetailsFragment(LongPressWifiEntryPreference pref) {
@@ -859,6 +924,22 @@ public class WifiSettings extends RestrictedSettingsFragment
         return new LongPressWifiEntryPreference(getPrefContext(), wifiEntry, this);
     }
 
+    /** What one pass of {@link #updateWifiEntryPreferences()} did to the list, and its cost. */
+    @VisibleForTesting
+    static class UpdatePassStats {
+        int mCreated;
+        int mRebound;
+        int mMoved;
+        int mRemoved;
+        long mDurationMicros;
+
+        @Override
+        public String toString() {
+            return "created=" + mCreated + " rebound=" + mRebound + " moved=" + mMoved
+                    + " removed=" + mRemoved + " duration=" + mDurationMicros + "us";
+        }
+    }
+
     private void launchAddNetworkFragment() {
         new SubSettingLauncher(getContext())
                 .setTitleRes(R.string.wifi_add_network)
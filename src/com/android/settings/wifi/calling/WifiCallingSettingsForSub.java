@@ -55,6 +55,7 @@ import com.android.settings.SettingsActivity;
 import com.android.settings.SettingsPreferenceFragment;
 import com.android.settings.Utils;
 import com.android.settings.core.SubSettingLauncher;
+import com.android.settings.network.CarrierConfigCache;
 import com.android.settings.network.ims.WifiCallingQueryImsState;
 import com.android.settings.widget.SettingsMainSwitchBar;
 import com.android.settingslib.widget.OnMainSwitchChangeListener;
@@ -131,8 +132,8 @@ public class WifiCallingSettingsForSub extends SettingsPreferenceFragment
             final CarrierConfigManager configManager = (CarrierConfigManager)
                     activity.getSystemService(Context.CARRIER_CONFIG_SERVICE);
             if (configManager != null) {
-                PersistableBundle b =
-                        configManager.getConfigForSubId(WifiCallingSettingsForSub.this.mSubId);
+                PersistableBundle b = CarrierConfigCache.getInstance().getConfigForSubId(
+                        activity, configManager, WifiCallingSettingsForSub.this.mSubId);
                 if (b != null) {
                     isWfcModeEditable = b.getBoolean(
                             CarrierConfigManager.KEY_EDITABLE_WFC_MODE_BOOL);
@@ -348,7 +349,8 @@ public class WifiCallingSettingsForSub extends SettingsPreferenceFragment
         boolean isWifiOnlySupported = true;
 
         if (configManager != null) {
-            final PersistableBundle b = configManager.getConfigForSubId(mSubId);
+            final PersistableBundle b = CarrierConfigCache.getInstance()
+                    .getConfigForSubId(getActivity(), configManager, mSubId);
             if (b != null) {
                 mEditableWfcMode = b.getBoolean(
                         CarrierConfigManager.KEY_EDITABLE_WFC_MODE_BOOL);
@@ -496,7 +498,8 @@ public class WifiCallingSettingsForSub extends SettingsPreferenceFragment
                 getActivity().getSystemService(CarrierConfigManager.class);
         if (configManager == null) return null;
 
-        final PersistableBundle bundle = configManager.getConfigForSubId(mSubId);
+        final PersistableBundle bundle = CarrierConfigCache.getInstance()
+                .getConfigForSubId(getActivity(), configManager, mSubId);
         if (bundle == null) return null;
 
         final String carrierApp = bundle.getString(
@@ -45,6 +45,7 @@ import androidx.slice.builders.SliceAction;
 
 import com.android.settings.R;
 import com.android.settings.Utils;
+import com.android.settings.network.CarrierConfigCache;
 import com.android.settings.network.ims.WifiCallingQueryImsState;
 import com.android.settings.slices.SliceBroadcastReceiver;
 
@@ -482,7 +483,8 @@ public class WifiCallingSliceHelper {
         final CarrierConfigManager configManager = getCarrierConfigManager(mContext);
         boolean ret = false;
         if (configManager != null) {
-            final PersistableBundle bundle = configManager.getConfigForSubId(subId);
+            final PersistableBundle bundle = CarrierConfigCache.getInstance()
+                    .getConfigForSubId(mContext, configManager, subId);
             if (bundle != null) {
                 ret = bundle.getBoolean(key, defaultValue);
             }
@@ -511,7 +513,8 @@ public class WifiCallingSliceHelper {
             return null;
         }
 
-        final PersistableBundle bundle = configManager.getConfigForSubId(subId);
+        final PersistableBundle bundle = CarrierConfigCache.getInstance()
+                .getConfigForSubId(mContext, configManager, subId);
         if (bundle == null) {
             return null;
         }
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.pm.ApplicationInfo;
+import android.os.Looper;
+
+import com.android.settingslib.applications.ApplicationsState;
+import com.android.settingslib.applications.ApplicationsState.AppEntry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+@RunWith(RobolectricTestRunner.class)
+public class AppStateBaseBridgeTest {
+
+    @Mock
+    private ApplicationsState mState;
+    @Mock
+    private ApplicationsState.Session mSession;
+
+    private TestBridge mBridge;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        when(mState.newSession(any())).thenReturn(mSession);
+        when(mState.getBackgroundLooper()).thenReturn(mock(Looper.class));
+        mBridge = new TestBridge(mState);
+    }
+
+    @Test
+    public void loadExtraInfoInParallel_manyApps_assignsEveryResultInOrder() {
+        final ArrayList<AppEntry> apps = new ArrayList<>();
+        for (int i = 0; i < AppStateBridgeExecutor.MIN_PARTITION_SIZE * 8; i++) {
+            apps.add(createAppEntry("pkg" + i, i));
+        }
+        final Set<String> threads = Collections.synchronizedSet(new HashSet<>());
+
+        mBridge.loadExtraInfoInParallel(apps, app -> {
+            threads.add(Thread.currentThread().getName());
+            return app.info.packageName;
+        });
+
+        for (AppEntry app : apps) {
+            assertThat(app.extraInfo).isEqualTo(app.info.packageName);
+        }
+        if (Runtime.getRuntime().availableProcessors() > 1) {
+            assertThat(threads.size()).isGreaterThan(1);
+        }
+    }
+
+    @Test
+    public void loadExtraInfoInParallel_fewApps_loadsOnCallingThread() {
+        final ArrayList<AppEntry> apps = new ArrayList<>();
+        apps.add(createAppEntry("pkg1", 1));
+        apps.add(createAppEntry("pkg2", 2));
+        final Thread callingThread = Thread.currentThread();
+
+        mBridge.loadExtraInfoInParallel(apps, app -> Thread.currentThread() == callingThread);
+
+        assertThat(apps.get(0).extraInfo).isEqualTo(Boolean.TRUE);
+        assertThat(apps.get(1).extraInfo).isEqualTo(Boolean.TRUE);
+    }
+
+    @Test
+    public void findApp_indexedApp_returnsMatchingUidAndPackage() {
+        final ArrayList<AppEntry> apps = new ArrayList<>();
+        final AppEntry app1 = createAppEntry("pkg1", 1);
+        final AppEntry sharedUidApp = createAppEntry("pkg2", 1);
+        apps.add(app1);
+        apps.add(sharedUidApp);
+        mBridge.indexApps(apps);
+
+        assertThat(mBridge.findApp("pkg1", 1)).isSameInstanceAs(app1);
+        assertThat(mBridge.findApp("pkg2", 1)).isSameInstanceAs(sharedUidApp);
+    }
+
+    @Test
+    public void findApp_appAddedAfterIndex_reindexesFromSession() {
+        final ArrayList<AppEntry> apps = new ArrayList<>();
+        apps.add(createAppEntry("pkg1", 1));
+        mBridge.indexApps(apps);
+        final AppEntry newApp = createAppEntry("pkg2", 2);
+        final ArrayList<AppEntry> newApps = new ArrayList<>(apps);
+        newApps.add(newApp);
+        when(mSession.getAllApps()).thenReturn(newApps);
+
+        assertThat(mBridge.findApp("pkg2", 2)).isSameInstanceAs(newApp);
+        assertThat(mBridge.findApp("pkg2", 3)).isNull();
+    }
+
+    @Test
+    public void findApp_missingApp_reindexesOnceUntilNextIndex() {
+        final ArrayList<AppEntry> apps = new ArrayList<>();
+        apps.add(createAppEntry("pkg1", 1));
+        mBridge.indexApps(apps);
+        when(mSession.getAllApps()).thenReturn(apps);
+
+        assertThat(mBridge.findApp("pkg2", 2)).isNull();
+        assertThat(mBridge.findApp("pkg2", 2)).isNull();
+        verify(mSession).getAllApps();
+
+        // A full load after the package list changed forgets the missing apps.
+        final AppEntry newApp = createAppEntry("pkg2", 2);
+        final ArrayList<AppEntry> newApps = new ArrayList<>(apps);
+        newApps.add(newApp);
+        mBridge.indexApps(apps);
+        when(mSession.getAllApps()).thenReturn(newApps);
+
+        assertThat(mBridge.findApp("pkg2", 2)).isSameInstanceAs(newApp);
+        verify(mSession, times(2)).getAllApps();
+    }
+
+    @Test
+    public void findApp_severalMissingAppsOfSameUid_remembersEveryMissingApp() {
+        final ArrayList<AppEntry> apps = new ArrayList<>();
+        apps.add(createAppEntry("pkg1", 1));
+        mBridge.indexApps(apps);
+        when(mSession.getAllApps()).thenReturn(apps);
+
+        assertThat(mBridge.findApp("pkg2", 2)).isNull();
+        assertThat(mBridge.findApp("pkg3", 2)).isNull();
+        verify(mSession, times(2)).getAllApps();
+
+        assertThat(mBridge.findApp("pkg2", 2)).isNull();
+        assertThat(mBridge.findApp("pkg3", 2)).isNull();
+        verify(mSession, times(2)).getAllApps();
+    }
+
+    private static AppEntry createAppEntry(String pkg, int uid) {
+        final AppEntry entry = mock(AppEntry.class);
+        entry.info = new ApplicationInfo();
+        entry.info.packageName = pkg;
+        entry.info.uid = uid;
+        return entry;
+    }
+
+    private static class TestBridge extends AppStateBaseBridge {
+
+        TestBridge(ApplicationsState appState) {
+            super(appState, mock(Callback.class));
+        }
+
+        @Override
+        protected void loadAllExtraInfo() {
+        }
+
+        @Override
+        protected void updateExtraInfo(AppEntry app, String pkg, int uid) {
+        }
+    }
+}
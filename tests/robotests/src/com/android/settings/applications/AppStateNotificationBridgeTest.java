@@ -39,6 +39,8 @@ import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -52,6 +54,7 @@ import android.os.Parcel;
 import android.os.RemoteException;
 import android.os.UserHandle;
 import android.os.UserManager;
+import android.util.ArraySet;
 import android.view.ViewGroup;
 import android.widget.CompoundButton;
 import android.widget.Switch;
@@ -65,14 +68,17 @@ import com.android.settingslib.applications.ApplicationsState.AppEntry;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.RuntimeEnvironment;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @RunWith(RobolectricTestRunner.class)
 public class AppStateNotificationBridgeTest {
@@ -99,7 +105,16 @@ public class AppStateNotificationBridgeTest {
         when(mState.newSession(any())).thenReturn(mSession);
         when(mState.getBackgroundLooper()).thenReturn(mock(Looper.class));
         when(mBackend.getNotificationsBanned(anyString(), anyInt())).thenReturn(true);
+        when(mBackend.getBannedPackages(anyInt(), any())).thenAnswer(invocation -> {
+            final Set<String> bannedApps = new ArraySet<>();
+            for (ApplicationInfo info : (List<ApplicationInfo>) invocation.getArgument(1)) {
+                bannedApps.add(info.packageName);
+            }
+            return bannedApps;
+        });
         when(mBackend.isSystemApp(any(), any())).thenReturn(true);
+        when(mBackend.getSystemAppPackages(any(), anyInt()))
+                .thenReturn(new ArraySet<>(Arrays.asList(PKG1, PKG2)));
         // most tests assume no work profile
         when(mUserManager.getProfileIdsWithDisabled(anyInt())).thenReturn(new int[]{});
         mContext = RuntimeEnvironment.application.getApplicationContext();
@@ -115,6 +130,18 @@ public class AppStateNotificationBridgeTest {
         return entry;
     }
 
+    private static List<Event> getNotificationEvents(String pkg, long firstTimestamp, int count) {
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Event event = new Event();
+            event.mEventType = Event.NOTIFICATION_INTERRUPTION;
+            event.mPackage = pkg;
+            event.mTimeStamp = firstTimestamp + i;
+            events.add(event);
+        }
+        return events;
+    }
+
     private UsageEvents getUsageEvents(List<Event> events) {
         UsageEvents usageEvents = new UsageEvents(events, new String[] {PKG1, PKG2});
         Parcel parcel = Parcel.obtain();
@@ -214,7 +241,8 @@ public class AppStateNotificationBridgeTest {
         mBridge.loadAllExtraInfo();
         // extra info should exist and blocked status should be populated
         assertThat(apps.get(0).extraInfo).isNotNull();
-        verify(mBackend).getNotificationsBanned(PKG1, 0);
+        verify(mBackend).getBannedPackages(eq(0), any());
+        assertThat(((NotificationsSentState) apps.get(0).extraInfo).blocked).isTrue();
         // but the recent/frequent counts should be 0 so they don't appear on those screens
         assertThat(((NotificationsSentState) apps.get(0).extraInfo).avgSentDaily).isEqualTo(0);
         assertThat(((NotificationsSentState) apps.get(0).extraInfo).lastSent).isEqualTo(0);
@@ -342,6 +370,83 @@ public class AppStateNotificationBridgeTest {
         assertThat(((NotificationsSentState) apps.get(1).extraInfo).avgSentDaily).isEqualTo(1);
     }
 
+    @Test
+    public void testGetAggregatedUsageEvents_replaysOnlyNewEvents() throws Exception {
+        final long now = System.currentTimeMillis();
+        when(mUsageStats.queryEventsForUser(anyLong(), anyLong(), anyInt(), anyString()))
+                .thenReturn(getUsageEvents(getNotificationEvents(PKG1, now - DAY_IN_MILLIS, 3)));
+        mBridge.getAggregatedUsageEvents();
+
+        when(mUsageStats.queryEventsForUser(anyLong(), anyLong(), anyInt(), anyString()))
+                .thenReturn(getUsageEvents(getNotificationEvents(PKG1, now, 2)));
+        final Map<String, NotificationsSentState> map = mBridge.getAggregatedUsageEvents();
+
+        final ArgumentCaptor<Long> startTime = ArgumentCaptor.forClass(Long.class);
+        verify(mUsageStats, times(2)).queryEventsForUser(
+                startTime.capture(), anyLong(), anyInt(), anyString());
+        assertThat(startTime.getAllValues().get(0)).isLessThan(now - 6 * DAY_IN_MILLIS);
+        assertThat(startTime.getAllValues().get(1)).isAtLeast(now);
+        assertThat(map.get(AppStateNotificationBridge.getKey(0, PKG1)).sentCount).isEqualTo(5);
+        assertThat(map.get(AppStateNotificationBridge.getKey(0, PKG1)).lastSent)
+                .isEqualTo(now + 1);
+    }
+
+    @Test
+    public void testGetAggregatedUsageEvents_restoresPersistedStats() throws Exception {
+        final long now = System.currentTimeMillis();
+        when(mUsageStats.queryEventsForUser(anyLong(), anyLong(), anyInt(), anyString()))
+                .thenReturn(getUsageEvents(getNotificationEvents(PKG2, now - DAY_IN_MILLIS, 4)));
+        mBridge.getAggregatedUsageEvents();
+
+        when(mUsageStats.queryEventsForUser(anyLong(), anyLong(), anyInt(), anyString()))
+                .thenReturn(mock(UsageEvents.class));
+        final AppStateNotificationBridge bridge = new AppStateNotificationBridge(mContext, mState,
+                mock(AppStateBaseBridge.Callback.class), mUsageStats, mUserManager, mBackend);
+        final Map<String, NotificationsSentState> map = bridge.getAggregatedUsageEvents();
+
+        assertThat(map.get(AppStateNotificationBridge.getKey(0, PKG2)).sentCount).isEqualTo(4);
+    }
+
+    @Test
+    public void testGetAggregatedUsageEvents_dropsDaysOutOfWindow() throws Exception {
+        final long now = System.currentTimeMillis();
+        when(mUsageStats.queryEventsForUser(anyLong(), anyLong(), anyInt(), anyString()))
+                .thenReturn(getUsageEvents(getNotificationEvents(PKG1, now - DAY_IN_MILLIS, 1)));
+        mBridge.getAggregatedUsageEvents();
+        when(mUsageStats.queryEventsForUser(anyLong(), anyLong(), anyInt(), anyString()))
+                .thenReturn(getUsageEvents(
+                        getNotificationEvents(PKG2, now - 10 * DAY_IN_MILLIS, 1)));
+        mBridge.getAggregatedUsageEvents();
+
+        when(mUsageStats.queryEventsForUser(anyLong(), anyLong(), anyInt(), anyString()))
+                .thenReturn(mock(UsageEvents.class));
+        final Map<String, NotificationsSentState> map = mBridge.getAggregatedUsageEvents();
+
+        assertThat(map).containsKey(AppStateNotificationBridge.getKey(0, PKG1));
+        assertThat(map).doesNotContainKey(AppStateNotificationBridge.getKey(0, PKG2));
+    }
+
+    @Test
+    public void testLoadAllExtraInfo_resolvesSystemAppsAndBlockStateOncePerUser() {
+        when(mUsageStats.queryEventsForUser(anyLong(), anyLong(), anyInt(), anyString()))
+                .thenReturn(mock(UsageEvents.class));
+        ArrayList<AppEntry> apps = new ArrayList<>();
+        apps.add(getMockAppEntry(PKG1));
+        apps.add(getMockAppEntry(PKG2));
+        apps.add(getMockAppEntry("pkg3"));
+        when(mSession.getAllApps()).thenReturn(apps);
+
+        mBridge.loadAllExtraInfo();
+
+        verify(mBackend, times(1)).getSystemAppPackages(mContext, 0);
+        verify(mBackend, never()).isSystemApp(any(), any());
+        verify(mBackend, times(1)).getBannedPackages(eq(0), any());
+        verify(mBackend, never()).getNotificationsBanned(anyString(), anyInt());
+        assertThat(((NotificationsSentState) apps.get(1).extraInfo).systemApp).isTrue();
+        assertThat(((NotificationsSentState) apps.get(2).extraInfo).systemApp).isFalse();
+        assertThat(((NotificationsSentState) apps.get(2).extraInfo).blockable).isTrue();
+    }
+
     @Test
     public void testUpdateExtraInfo_noEvents() throws RemoteException {
         when(mUsageStats.queryEventsForPackageForUser(
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+
+import com.android.internal.app.procstats.ProcessStats;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class ProcStatsDataTest {
+
+    private static final long DURATION = 3 * 60 * 60 * 1000L;
+    private static final long OTHER_DURATION = 24 * 60 * 60 * 1000L;
+
+    private Context mContext;
+    // The durations the stats were loaded for, in order.
+    private final List<Long> mLoads = new ArrayList<>();
+    private ProcStatsData mData;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mData = new ProcStatsData(mContext, false /* useXfer */, duration -> {
+            mLoads.add(duration);
+            return new ProcessStats(false);
+        });
+    }
+
+    @Test
+    public void refreshStats_notForced_reusesStatsAndEntries() {
+        mData.setDuration(DURATION);
+        final List<ProcStatsPackageEntry> entries = mData.getEntries();
+
+        mData.refreshStats(false /* forceLoad */);
+
+        assertThat(mLoads).containsExactly(DURATION);
+        assertThat(mData.getEntries()).isSameInstanceAs(entries);
+    }
+
+    @Test
+    public void refreshStats_forced_reloadsStatsAndEntries() {
+        mData.setDuration(DURATION);
+        final List<ProcStatsPackageEntry> entries = mData.getEntries();
+
+        mData.refreshStats(true /* forceLoad */);
+
+        assertThat(mLoads).containsExactly(DURATION, DURATION);
+        assertThat(mData.getEntries()).isNotSameInstanceAs(entries);
+    }
+
+    @Test
+    public void setStats_filterChanged_recomputesEntriesWithoutLoading() {
+        mData.setDuration(DURATION);
+        final List<ProcStatsPackageEntry> entries = mData.getEntries();
+
+        mData.setStats(ProcessStats.NON_CACHED_PROC_STATES);
+        final List<ProcStatsPackageEntry> nonCachedEntries = mData.getEntries();
+        assertThat(nonCachedEntries).isNotSameInstanceAs(entries);
+
+        mData.setStats(ProcessStats.BACKGROUND_PROC_STATES);
+        assertThat(mData.getEntries()).isSameInstanceAs(entries);
+        assertThat(mLoads).containsExactly(DURATION);
+    }
+
+    @Test
+    public void setMemStates_filterChanged_recomputesEntries() {
+        mData.setDuration(DURATION);
+        final List<ProcStatsPackageEntry> entries = mData.getEntries();
+
+        mData.setMemStates(new int[] {ProcessStats.ADJ_MEM_FACTOR_NORMAL});
+
+        assertThat(mData.getEntries()).isNotSameInstanceAs(entries);
+        assertThat(mLoads).containsExactly(DURATION);
+    }
+
+    @Test
+    public void setDuration_durationChanged_loadsOnlyNewDuration() {
+        mData.setDuration(DURATION);
+        final List<ProcStatsPackageEntry> entries = mData.getEntries();
+
+        mData.setDuration(OTHER_DURATION);
+        assertThat(mData.getEntries()).isNotSameInstanceAs(entries);
+
+        mData.setDuration(DURATION);
+        assertThat(mData.getEntries()).isSameInstanceAs(entries);
+        assertThat(mLoads).containsExactly(DURATION, OTHER_DURATION).inOrder();
+    }
+}
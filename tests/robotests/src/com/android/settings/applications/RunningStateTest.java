@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+import android.app.ActivityManager;
+import android.app.ActivityManager.RunningAppProcessInfo;
+import android.app.ActivityManager.RunningServiceInfo;
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.RemoteException;
+import android.util.ArraySet;
+import android.util.SparseBooleanArray;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class RunningStateTest {
+
+    private static final String PACKAGE_NAME = "com.android.test";
+
+    @Mock
+    private ActivityManager mAm;
+
+    private Context mContext;
+    private RunningState mState;
+    private final List<RunningAppProcessInfo> mProcesses = new ArrayList<>();
+
+    @Before
+    public void setUp() throws RemoteException {
+        MockitoAnnotations.initMocks(this);
+        mContext = RuntimeEnvironment.application;
+        // The activity manager returns new lists, which the state filters in place.
+        when(mAm.getRunningServices(anyInt())).thenAnswer(invocation -> new ArrayList<>());
+        when(mAm.getRunningAppProcesses()).thenAnswer(invocation -> new ArrayList<>(mProcesses));
+        mState = spy(new RunningState(mContext));
+        doAnswer(invocation -> new long[((int[]) invocation.getArgument(0)).length])
+                .when(mState).getProcessPss(any());
+        mState.setWatchingBackgroundItems(true);
+    }
+
+    @Test
+    public void sameServices_sameContent_shouldReturnTrue() {
+        assertThat(RunningState.sameServices(createServices(1000L), createServices(1000L)))
+                .isTrue();
+    }
+
+    @Test
+    public void sameServices_restarted_shouldReturnFalse() {
+        final List<RunningServiceInfo> restarted = createServices(1000L);
+        restarted.get(0).pid = 2;
+
+        assertThat(RunningState.sameServices(createServices(1000L), restarted)).isFalse();
+        assertThat(RunningState.sameServices(createServices(1000L), createServices(2000L)))
+                .isFalse();
+    }
+
+    @Test
+    public void sameServices_differentCount_shouldReturnFalse() {
+        assertThat(RunningState.sameServices(createServices(1000L), new ArrayList<>()))
+                .isFalse();
+    }
+
+    @Test
+    public void sameServices_nullAndEmpty_shouldReturnTrue() {
+        assertThat(RunningState.sameServices(null, new ArrayList<>())).isTrue();
+    }
+
+    @Test
+    public void sameProcess_sameContent_shouldReturnTrue() {
+        final RunningAppProcessInfo sameProcess = createProcess(1,
+                RunningAppProcessInfo.IMPORTANCE_SERVICE);
+        // The lru position doesn't matter to the items.
+        sameProcess.lru = 5;
+
+        assertThat(RunningState.sameProcess(
+                createProcess(1, RunningAppProcessInfo.IMPORTANCE_SERVICE), sameProcess))
+                .isTrue();
+    }
+
+    @Test
+    public void sameProcess_importanceChanged_shouldReturnFalse() {
+        assertThat(RunningState.sameProcess(
+                createProcess(1, RunningAppProcessInfo.IMPORTANCE_SERVICE),
+                createProcess(1, RunningAppProcessInfo.IMPORTANCE_CACHED))).isFalse();
+    }
+
+    @Test
+    public void getChangedPids_shouldOnlyReturnChangedPids() {
+        final List<RunningAppProcessInfo> oldProcesses = new ArrayList<>();
+        oldProcesses.add(createProcess(1, RunningAppProcessInfo.IMPORTANCE_SERVICE));
+        oldProcesses.add(createProcess(2, RunningAppProcessInfo.IMPORTANCE_CACHED));
+        oldProcesses.add(createProcess(3, RunningAppProcessInfo.IMPORTANCE_CACHED));
+        final List<RunningAppProcessInfo> newProcesses = new ArrayList<>();
+        newProcesses.add(createProcess(1, RunningAppProcessInfo.IMPORTANCE_SERVICE));
+        newProcesses.add(createProcess(2, RunningAppProcessInfo.IMPORTANCE_SERVICE));
+        newProcesses.add(createProcess(4, RunningAppProcessInfo.IMPORTANCE_CACHED));
+        final List<RunningServiceInfo> newServices = createServices(2000L);
+
+        final SparseBooleanArray changedPids = RunningState.getChangedPids(
+                RunningState.getServicesByPid(createServices(1000L)),
+                RunningState.getServicesByPid(newServices),
+                RunningState.getProcessesByPid(oldProcesses),
+                RunningState.getProcessesByPid(newProcesses));
+
+        // The service of pid 1 restarted, pid 2 changed importance, pid 3 died and pid 4 started.
+        assertThat(changedPids.size()).isEqualTo(4);
+        assertThat(changedPids.get(1)).isTrue();
+        assertThat(changedPids.get(2)).isTrue();
+        assertThat(changedPids.get(3)).isTrue();
+        assertThat(changedPids.get(4)).isTrue();
+    }
+
+    @Test
+    public void getChangedPids_sameSnapshots_shouldReturnEmpty() {
+        final List<RunningAppProcessInfo> processes = new ArrayList<>();
+        processes.add(createProcess(1, RunningAppProcessInfo.IMPORTANCE_SERVICE));
+
+        final SparseBooleanArray changedPids = RunningState.getChangedPids(
+                RunningState.getServicesByPid(createServices(1000L)),
+                RunningState.getServicesByPid(createServices(1000L)),
+                RunningState.getProcessesByPid(processes),
+                RunningState.getProcessesByPid(processes));
+
+        assertThat(changedPids.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void update_nothingChanged_shouldOnlyRefreshTime() {
+        mProcesses.add(createProcess(1, RunningAppProcessInfo.IMPORTANCE_CACHED));
+        mProcesses.add(createProcess(2, RunningAppProcessInfo.IMPORTANCE_CACHED));
+
+        assertThat(mState.update(mContext, mAm))
+                .isEqualTo(RunningState.OnRefreshUiListener.REFRESH_STRUCTURE);
+        assertThat(mState.update(mContext, mAm))
+                .isEqualTo(RunningState.OnRefreshUiListener.REFRESH_TIME);
+        assertThat(mState.takeChangedItems()).isEmpty();
+    }
+
+    @Test
+    public void update_processChanged_shouldOnlyRebindItsItem() {
+        mProcesses.add(createProcess(1, RunningAppProcessInfo.IMPORTANCE_CACHED));
+        mProcesses.add(createProcess(2, RunningAppProcessInfo.IMPORTANCE_CACHED));
+        mState.update(mContext, mAm);
+        final ArrayList<RunningState.MergedItem> items = mState.getCurrentBackgroundItems();
+        final RunningAppProcessInfo changedProcess =
+                createProcess(2, RunningAppProcessInfo.IMPORTANCE_CACHED);
+        changedProcess.importanceReasonCode = RunningAppProcessInfo.REASON_SERVICE_IN_USE;
+        mProcesses.set(1, changedProcess);
+
+        assertThat(mState.update(mContext, mAm))
+                .isEqualTo(RunningState.OnRefreshUiListener.REFRESH_DATA);
+        assertThat(mState.getCurrentBackgroundItems()).isSameInstanceAs(items);
+        final ArraySet<RunningState.MergedItem> changedItems = mState.takeChangedItems();
+        assertThat(changedItems).hasSize(1);
+        assertThat(changedItems.valueAt(0).mProcess.mPid).isEqualTo(2);
+        assertThat(mState.takeChangedItems()).isEmpty();
+    }
+
+    @Test
+    public void update_processDied_shouldRefreshStructure() {
+        mProcesses.add(createProcess(1, RunningAppProcessInfo.IMPORTANCE_CACHED));
+        mProcesses.add(createProcess(2, RunningAppProcessInfo.IMPORTANCE_CACHED));
+        mState.update(mContext, mAm);
+        mProcesses.remove(1);
+
+        assertThat(mState.update(mContext, mAm))
+                .isEqualTo(RunningState.OnRefreshUiListener.REFRESH_STRUCTURE);
+        assertThat(mState.getCurrentBackgroundItems()).hasSize(1);
+    }
+
+    private static List<RunningServiceInfo> createServices(long activeSince) {
+        final RunningServiceInfo service = new RunningServiceInfo();
+        service.service = new ComponentName(PACKAGE_NAME, PACKAGE_NAME + ".Service");
+        service.pid = 1;
+        service.uid = 10001;
+        service.process = PACKAGE_NAME;
+        service.started = true;
+        service.activeSince = activeSince;
+        final List<RunningServiceInfo> services = new ArrayList<>();
+        services.add(service);
+        return services;
+    }
+
+    private static RunningAppProcessInfo createProcess(int pid, int importance) {
+        final RunningAppProcessInfo process = new RunningAppProcessInfo(PACKAGE_NAME + pid, pid,
+                new String[] {PACKAGE_NAME});
+        process.uid = 10001;
+        process.importance = importance;
+        return process;
+    }
+}
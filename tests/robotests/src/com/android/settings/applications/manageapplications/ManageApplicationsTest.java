@@ -43,6 +43,7 @@ import android.content.res.Resources;
 import android.os.Bundle;
 import android.os.Looper;
 import android.os.UserManager;
+import android.util.ArraySet;
 import android.view.LayoutInflater;
 import android.view.Menu;
 import android.view.MenuInflater;
@@ -339,6 +340,95 @@ public class ManageApplicationsTest {
         verify(adapter).notifyDataSetChanged();
     }
 
+    @Test
+    public void onRebuildComplete_sameSortOrder_shouldOnlyNotifyChangedItems() {
+        final RecyclerView recyclerView = mock(RecyclerView.class);
+        ReflectionHelpers.setField(mFragment, "mRecyclerView", recyclerView);
+        ReflectionHelpers.setField(mFragment, "mEmptyView", mock(View.class));
+        ReflectionHelpers.setField(mFragment, "mLoadingContainer", mock(View.class));
+        ReflectionHelpers.setField(
+                mFragment, "mFilterAdapter", mock(ManageApplications.FilterSpinnerAdapter.class));
+        final ManageApplications.ApplicationsAdapter adapter =
+                spy(new ManageApplications.ApplicationsAdapter(mState, mFragment,
+                        AppFilterRegistry.getInstance().get(FILTER_APPS_ALL),
+                        null /* savedInstanceState */));
+        ReflectionHelpers.setField(adapter, "mLoadingViewController",
+                mock(LoadingViewController.class));
+        final ArrayList<AppEntry> appList = new ArrayList<>();
+        appList.add(createAppEntry("pkg1", 1, 100));
+        appList.add(createAppEntry("pkg2", 2, 200));
+        adapter.onRebuildComplete(appList);
+
+        final ArrayList<AppEntry> newAppList = new ArrayList<>(appList);
+        newAppList.add(createAppEntry("pkg3", 3, 300));
+        adapter.onRebuildComplete(newAppList);
+
+        verify(adapter).notifyDataSetChanged();
+        verify(adapter).notifyItemRangeInserted(2, 1);
+        assertThat(adapter.getItemCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void onPackageSizeChanged_sortedBySize_shouldMoveChangedEntryOnly() {
+        final ManageApplications.ApplicationsAdapter adapter =
+                spy(new ManageApplications.ApplicationsAdapter(mState, mFragment,
+                        AppFilterRegistry.getInstance().get(FILTER_APPS_ALL),
+                        null /* savedInstanceState */));
+        final ArrayList<AppEntry> appList = new ArrayList<>();
+        appList.add(createAppEntry("pkg1", 1, 300));
+        appList.add(createAppEntry("pkg2", 2, 200));
+        appList.add(createAppEntry("pkg3", 3, 100));
+        ReflectionHelpers.setField(adapter, "mEntries", appList);
+        ReflectionHelpers.setField(adapter, "mOriginalEntries", appList);
+        ReflectionHelpers.setField(adapter, "mLastSortMode", R.id.sort_order_size);
+        ReflectionHelpers.setField(adapter, "mEntriesSortMode", R.id.sort_order_size);
+        ReflectionHelpers.setField(adapter, "mComparator", ApplicationsState.SIZE_COMPARATOR);
+
+        appList.get(2).size = 400;
+        adapter.onPackageSizeChanged("pkg3");
+
+        assertThat(adapter.getAppEntry(0).info.packageName).isEqualTo("pkg3");
+        assertThat(adapter.getAppEntry(1).info.packageName).isEqualTo("pkg1");
+        assertThat(adapter.getAppEntry(2).info.packageName).isEqualTo("pkg2");
+        verify(adapter).notifyItemMoved(2, 0);
+        verify(adapter).notifyItemChanged(0);
+        verify(adapter, never()).notifyItemChanged(1);
+        verify(adapter, never()).notifyDataSetChanged();
+    }
+
+    @Test
+    public void flushPendingSizeChanges_severalChanged_sortedBySize_shouldKeepListSorted() {
+        final ManageApplications.ApplicationsAdapter adapter =
+                spy(new ManageApplications.ApplicationsAdapter(mState, mFragment,
+                        AppFilterRegistry.getInstance().get(FILTER_APPS_ALL),
+                        null /* savedInstanceState */));
+        final ArrayList<AppEntry> appList = new ArrayList<>();
+        appList.add(createAppEntry("pkg1", 1, 400));
+        appList.add(createAppEntry("pkg2", 2, 300));
+        appList.add(createAppEntry("pkg3", 3, 200));
+        appList.add(createAppEntry("pkg4", 4, 100));
+        ReflectionHelpers.setField(adapter, "mEntries", appList);
+        ReflectionHelpers.setField(adapter, "mOriginalEntries", appList);
+        ReflectionHelpers.setField(adapter, "mLastSortMode", R.id.sort_order_size);
+        ReflectionHelpers.setField(adapter, "mEntriesSortMode", R.id.sort_order_size);
+        ReflectionHelpers.setField(adapter, "mComparator", ApplicationsState.SIZE_COMPARATOR);
+        final ArraySet<String> pendingSizeChanges =
+                ReflectionHelpers.getField(adapter, "mPendingSizeChanges");
+
+        appList.get(0).size = 50;
+        appList.get(3).size = 500;
+        pendingSizeChanges.add("pkg1");
+        pendingSizeChanges.add("pkg4");
+        adapter.flushPendingSizeChanges();
+
+        assertThat(adapter.getItemCount()).isEqualTo(4);
+        assertThat(adapter.getAppEntry(0).info.packageName).isEqualTo("pkg4");
+        assertThat(adapter.getAppEntry(1).info.packageName).isEqualTo("pkg2");
+        assertThat(adapter.getAppEntry(2).info.packageName).isEqualTo("pkg3");
+        assertThat(adapter.getAppEntry(3).info.packageName).isEqualTo("pkg1");
+        verify(adapter, never()).notifyDataSetChanged();
+    }
+
     @Test
     public void applicationsAdapter_onBindViewHolder_notifications_wrongExtraInfo() {
         when(mUserManager.getProfileIdsWithDisabled(anyInt())).thenReturn(new int[]{});
@@ -624,6 +714,16 @@ public class ManageApplicationsTest {
         return appList;
     }
 
+    private AppEntry createAppEntry(String packageName, long id, long size) {
+        final ApplicationInfo info = new ApplicationInfo();
+        info.packageName = packageName;
+        info.sourceDir = "abc";
+        final AppEntry entry = new AppEntry(mContext, info, id);
+        entry.label = packageName;
+        entry.size = size;
+        return entry;
+    }
+
     private AppEntry createPowerAllowListApp(boolean isPowerAllowListed) {
         final ApplicationInfo info = new ApplicationInfo();
         info.sourceDir = "abc";
@@ -35,7 +35,11 @@ import com.android.settings.dashboard.DashboardFragment;
 import com.android.settings.testutils.shadow.ShadowAudioManager;
 import com.android.settings.testutils.shadow.ShadowBluetoothAdapter;
 import com.android.settings.testutils.shadow.ShadowCachedBluetoothDeviceManager;
+import com.android.settingslib.bluetooth.BluetoothEventManager;
 import com.android.settingslib.bluetooth.CachedBluetoothDevice;
+import com.android.settingslib.bluetooth.CachedBluetoothDeviceManager;
+import com.android.settingslib.bluetooth.LocalBluetoothManager;
+import com.android.settingslib.bluetooth.LocalBluetoothProfileManager;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -66,6 +70,14 @@ public class AvailableMediaBluetoothDeviceUpdaterTest {
     private BluetoothDevice mBluetoothDevice;
     @Mock
     private Drawable mDrawable;
+    @Mock
+    private LocalBluetoothManager mLocalManager;
+    @Mock
+    private BluetoothEventManager mEventManager;
+    @Mock
+    private LocalBluetoothProfileManager mProfileManager;
+    @Mock
+    private CachedBluetoothDeviceManager mCachedDeviceManager;
 
     private Context mContext;
     private AvailableMediaBluetoothDeviceUpdater mBluetoothDeviceUpdater;
@@ -74,6 +86,7 @@ public class AvailableMediaBluetoothDeviceUpdaterTest {
     private BluetoothDevicePreference mPreference;
     private ShadowBluetoothAdapter mShadowBluetoothAdapter;
     private ShadowCachedBluetoothDeviceManager mShadowCachedBluetoothDeviceManager;
+    private BluetoothDeviceEventDispatcher mDispatcher;
 
     @Before
     public void setUp() {
@@ -101,56 +114,66 @@ public class AvailableMediaBluetoothDeviceUpdaterTest {
                 BluetoothDevicePreference.SortType.TYPE_DEFAULT);
         doNothing().when(mBluetoothDeviceUpdater).addPreference(any());
         doNothing().when(mBluetoothDeviceUpdater).removePreference(any());
+
+        when(mLocalManager.getEventManager()).thenReturn(mEventManager);
+        when(mLocalManager.getProfileManager()).thenReturn(mProfileManager);
+        when(mLocalManager.getCachedDeviceManager()).thenReturn(mCachedDeviceManager);
+        when(mCachedDeviceManager.getCachedDevicesCopy()).thenReturn(mCachedDevices);
+        mDispatcher = new BluetoothDeviceEventDispatcher(mContext, mLocalManager);
     }
 
     @Test
     public void onAudioModeChanged_hfpDeviceConnected_inCall_addPreference() {
-        mAudioManager.setMode(AudioManager.MODE_IN_CALL);
+        mAudioManager.setMode(AudioManager.MODE_NORMAL);
         when(mBluetoothDeviceUpdater.
                 isDeviceConnected(any(CachedBluetoothDevice.class))).thenReturn(true);
         when(mCachedBluetoothDevice.isConnectedHfpDevice()).thenReturn(true);
         mCachedDevices.add(mCachedBluetoothDevice);
+        addUpdaterToDispatcher();
 
-        mBluetoothDeviceUpdater.onAudioModeChanged();
+        changeAudioMode(AudioManager.MODE_IN_CALL);
 
         verify(mBluetoothDeviceUpdater).addPreference(mCachedBluetoothDevice);
     }
 
     @Test
     public void onAudioModeChanged_hfpDeviceConnected_notInCall_removePreference() {
-        mAudioManager.setMode(AudioManager.MODE_NORMAL);
+        mAudioManager.setMode(AudioManager.MODE_IN_CALL);
         when(mBluetoothDeviceUpdater.
                 isDeviceConnected(any(CachedBluetoothDevice.class))).thenReturn(true);
         when(mCachedBluetoothDevice.isConnectedHfpDevice()).thenReturn(true);
         mCachedDevices.add(mCachedBluetoothDevice);
+        addUpdaterToDispatcher();
 
-        mBluetoothDeviceUpdater.onAudioModeChanged();
+        changeAudioMode(AudioManager.MODE_NORMAL);
 
         verify(mBluetoothDeviceUpdater).removePreference(mCachedBluetoothDevice);
     }
 
     @Test
     public void onAudioModeChanged_a2dpDeviceConnected_inCall_removePreference() {
-        mAudioManager.setMode(AudioManager.MODE_IN_CALL);
+        mAudioManager.setMode(AudioManager.MODE_NORMAL);
         when(mBluetoothDeviceUpdater.
                 isDeviceConnected(any(CachedBluetoothDevice.class))).thenReturn(true);
         when(mCachedBluetoothDevice.isConnectedA2dpDevice()).thenReturn(true);
         mCachedDevices.add(mCachedBluetoothDevice);
+        addUpdaterToDispatcher();
 
-        mBluetoothDeviceUpdater.onAudioModeChanged();
+        changeAudioMode(AudioManager.MODE_IN_CALL);
 
         verify(mBluetoothDeviceUpdater).removePreference(mCachedBluetoothDevice);
     }
 
     @Test
     public void onAudioModeChanged_a2dpDeviceConnected_notInCall_addPreference() {
-        mAudioManager.setMode(AudioManager.MODE_NORMAL);
+        mAudioManager.setMode(AudioManager.MODE_IN_CALL);
         when(mBluetoothDeviceUpdater.
                 isDeviceConnected(any(CachedBluetoothDevice.class))).thenReturn(true);
         when(mCachedBluetoothDevice.isConnectedA2dpDevice()).thenReturn(true);
         mCachedDevices.add(mCachedBluetoothDevice);
+        addUpdaterToDispatcher();
 
-        mBluetoothDeviceUpdater.onAudioModeChanged();
+        changeAudioMode(AudioManager.MODE_NORMAL);
 
         verify(mBluetoothDeviceUpdater).addPreference(mCachedBluetoothDevice);
     }
@@ -248,5 +271,17 @@ public class AvailableMediaBluetoothDeviceUpdaterTest {
 
         verify(mCachedBluetoothDevice).setActive();
     }
-}
 
+    private void addUpdaterToDispatcher() {
+        // The dispatcher only groups the bonded and connected devices.
+        when(mBluetoothDevice.getBondState()).thenReturn(BluetoothDevice.BOND_BONDED);
+        when(mBluetoothDevice.isConnected()).thenReturn(true);
+        mDispatcher.addUpdater(mBluetoothDeviceUpdater);
+    }
+
+    private void changeAudioMode(int audioMode) {
+        mAudioManager.setMode(audioMode);
+        mDispatcher.onAudioModeChanged();
+        mDispatcher.dispatchPendingEvents();
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.bluetooth;
+
+import static com.android.settings.bluetooth.BluetoothDeviceEventDispatcher.CATEGORY_AVAILABLE_MEDIA;
+import static com.android.settings.bluetooth.BluetoothDeviceEventDispatcher.CATEGORY_CONNECTED;
+import static com.android.settings.bluetooth.BluetoothDeviceEventDispatcher.CATEGORY_SAVED;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothProfile;
+import android.content.Context;
+import android.media.AudioManager;
+
+import com.android.settings.testutils.shadow.ShadowAudioManager;
+import com.android.settings.testutils.shadow.ShadowBluetoothAdapter;
+import com.android.settingslib.bluetooth.BluetoothEventManager;
+import com.android.settingslib.bluetooth.CachedBluetoothDevice;
+import com.android.settingslib.bluetooth.CachedBluetoothDeviceManager;
+import com.android.settingslib.bluetooth.LocalBluetoothManager;
+import com.android.settingslib.bluetooth.LocalBluetoothProfileManager;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadow.api.Shadow;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(shadows = {ShadowAudioManager.class, ShadowBluetoothAdapter.class})
+public class BluetoothDeviceEventDispatcherTest {
+
+    private static final int DEVICE_COUNT_PER_CATEGORY = 100;
+    private static final int EVENTS_PER_DEVICE = 5;
+
+    @Mock
+    private LocalBluetoothManager mLocalManager;
+    @Mock
+    private BluetoothEventManager mEventManager;
+    @Mock
+    private LocalBluetoothProfileManager mProfileManager;
+    @Mock
+    private CachedBluetoothDeviceManager mCachedDeviceManager;
+    @Mock
+    private BluetoothDeviceUpdater mMediaUpdater;
+    @Mock
+    private BluetoothDeviceUpdater mConnectedUpdater;
+    @Mock
+    private BluetoothDeviceUpdater mSavedUpdater;
+
+    private Context mContext;
+    private AudioManager mAudioManager;
+    private List<CachedBluetoothDevice> mMediaDevices;
+    private List<CachedBluetoothDevice> mConnectedDevices;
+    private List<CachedBluetoothDevice> mSavedDevices;
+    private BluetoothDeviceEventDispatcher mDispatcher;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mContext = RuntimeEnvironment.application;
+        mAudioManager = mContext.getSystemService(AudioManager.class);
+        mAudioManager.setMode(AudioManager.MODE_NORMAL);
+        final ShadowBluetoothAdapter shadowBluetoothAdapter =
+                Shadow.extract(BluetoothAdapter.getDefaultAdapter());
+        shadowBluetoothAdapter.setEnabled(true);
+
+        mMediaDevices = createDevices(true /* connected */, true /* a2dp */);
+        mConnectedDevices = createDevices(true /* connected */, false /* a2dp */);
+        mSavedDevices = createDevices(false /* connected */, false /* a2dp */);
+        final List<CachedBluetoothDevice> cachedDevices = new ArrayList<>();
+        cachedDevices.addAll(mMediaDevices);
+        cachedDevices.addAll(mConnectedDevices);
+        cachedDevices.addAll(mSavedDevices);
+        when(mLocalManager.getEventManager()).thenReturn(mEventManager);
+        when(mLocalManager.getProfileManager()).thenReturn(mProfileManager);
+        when(mLocalManager.getCachedDeviceManager()).thenReturn(mCachedDeviceManager);
+        when(mCachedDeviceManager.getCachedDevicesCopy()).thenReturn(cachedDevices);
+        when(mMediaUpdater.getDeviceCategories()).thenReturn(CATEGORY_AVAILABLE_MEDIA);
+        when(mConnectedUpdater.getDeviceCategories()).thenReturn(CATEGORY_CONNECTED);
+        when(mSavedUpdater.getDeviceCategories()).thenReturn(CATEGORY_SAVED);
+
+        mDispatcher = new BluetoothDeviceEventDispatcher(mContext, mLocalManager);
+        mDispatcher.addUpdater(mMediaUpdater);
+        mDispatcher.addUpdater(mConnectedUpdater);
+        mDispatcher.addUpdater(mSavedUpdater);
+    }
+
+    @Test
+    public void addUpdater_shouldRegisterOnce() {
+        verify(mEventManager).registerCallback(mDispatcher);
+        verify(mProfileManager).addServiceListener(mDispatcher);
+    }
+
+    @Test
+    public void dispatchPendingEvents_flappingProfiles_shouldOnlyUpdateChangedDevices() {
+        // Every media device flaps its profile, but only the first ten really lose A2DP.
+        for (int i = 0; i < mMediaDevices.size(); i++) {
+            final CachedBluetoothDevice cachedDevice = mMediaDevices.get(i);
+            for (int j = 0; j < EVENTS_PER_DEVICE; j++) {
+                mDispatcher.onProfileConnectionStateChanged(cachedDevice,
+                        BluetoothProfile.STATE_DISCONNECTED, BluetoothProfile.A2DP);
+                mDispatcher.onProfileConnectionStateChanged(cachedDevice,
+                        BluetoothProfile.STATE_CONNECTED, BluetoothProfile.A2DP);
+            }
+            if (i < 10) {
+                when(cachedDevice.isConnectedA2dpDevice()).thenReturn(false);
+            }
+        }
+        for (CachedBluetoothDevice cachedDevice : mSavedDevices) {
+            mDispatcher.onAclConnectionStateChanged(cachedDevice,
+                    BluetoothAdapter.STATE_DISCONNECTED);
+        }
+
+        mDispatcher.dispatchPendingEvents();
+
+        verify(mMediaUpdater, times(10)).update(any());
+        verify(mConnectedUpdater, times(10)).update(any());
+        verify(mSavedUpdater, never()).update(any());
+        for (int i = 0; i < 10; i++) {
+            verify(mMediaUpdater).update(mMediaDevices.get(i));
+            verify(mConnectedUpdater).update(mMediaDevices.get(i));
+        }
+    }
+
+    @Test
+    public void dispatchPendingEvents_audioModeChangedRepeatedly_shouldUpdateEachDeviceOnce() {
+        mAudioManager.setMode(AudioManager.MODE_IN_CALL);
+        for (int i = 0; i < EVENTS_PER_DEVICE; i++) {
+            mDispatcher.onAudioModeChanged();
+        }
+
+        mDispatcher.dispatchPendingEvents();
+
+        // No device is connected with HFP, so every media device moves to the connected group.
+        verify(mMediaUpdater, times(DEVICE_COUNT_PER_CATEGORY)).update(any());
+        verify(mConnectedUpdater, times(DEVICE_COUNT_PER_CATEGORY)).update(any());
+        verify(mSavedUpdater, never()).update(any());
+        // Updating every device again is left to the updaters driven without the dispatcher.
+        verify(mMediaUpdater, never()).onAudioModeChanged();
+        verify(mConnectedUpdater, never()).onAudioModeChanged();
+    }
+
+    @Test
+    public void onDeviceDeleted_shouldDropPendingUpdate() {
+        final CachedBluetoothDevice cachedDevice = mSavedDevices.get(0);
+        when(cachedDevice.getDevice().getBondState()).thenReturn(BluetoothDevice.BOND_NONE);
+        mDispatcher.onDeviceBondStateChanged(cachedDevice, BluetoothDevice.BOND_NONE);
+
+        mDispatcher.onDeviceDeleted(cachedDevice);
+        mDispatcher.dispatchPendingEvents();
+
+        verify(mSavedUpdater).onDeviceDeleted(cachedDevice);
+        verify(mSavedUpdater, never()).update(any());
+    }
+
+    @Test
+    public void removeUpdater_lastUpdater_shouldUnregister() {
+        mDispatcher.removeUpdater(mMediaUpdater);
+        mDispatcher.removeUpdater(mConnectedUpdater);
+        verify(mEventManager, never()).unregisterCallback(mDispatcher);
+
+        mDispatcher.removeUpdater(mSavedUpdater);
+
+        verify(mEventManager).unregisterCallback(mDispatcher);
+        verify(mProfileManager).removeServiceListener(mDispatcher);
+    }
+
+    private static List<CachedBluetoothDevice> createDevices(boolean connected, boolean a2dp) {
+        final List<CachedBluetoothDevice> cachedDevices = new ArrayList<>();
+        for (int i = 0; i < DEVICE_COUNT_PER_CATEGORY; i++) {
+            final BluetoothDevice device = mock(BluetoothDevice.class);
+            when(device.getBondState()).thenReturn(BluetoothDevice.BOND_BONDED);
+            when(device.isConnected()).thenReturn(connected);
+            final CachedBluetoothDevice cachedDevice = mock(CachedBluetoothDevice.class);
+            when(cachedDevice.getDevice()).thenReturn(device);
+            when(cachedDevice.isConnectedA2dpDevice()).thenReturn(a2dp);
+            cachedDevices.add(cachedDevice);
+        }
+        return cachedDevices;
+    }
+}
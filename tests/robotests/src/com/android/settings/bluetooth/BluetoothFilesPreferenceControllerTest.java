@@ -20,6 +20,8 @@ import static com.google.common.truth.Truth.assertThat;
 
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 import android.content.Context;
 import android.content.Intent;
@@ -28,6 +30,8 @@ import android.os.Bundle;
 
 import androidx.preference.Preference;
 
+import com.android.settings.core.StaticAvailabilityCache;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -57,6 +61,16 @@ public class BluetoothFilesPreferenceControllerTest {
         doReturn(true).when(mPackageManager).hasSystemFeature(PackageManager.FEATURE_BLUETOOTH);
     }
 
+    @Test
+    public void isAvailable_cachedVerdict_shouldNotQueryPackageManagerAgain() {
+        StaticAvailabilityCache.getInstance(mContext).clear();
+
+        assertThat(mController.isAvailable()).isTrue();
+        assertThat(mController.isAvailable()).isTrue();
+
+        verify(mPackageManager, times(1)).hasSystemFeature(PackageManager.FEATURE_BLUETOOTH);
+    }
+
     @Test
     public void testHandlePreferenceTreeClick_sendBroadcast() {
         mController.handlePreferenceTreeClick(mPreference);
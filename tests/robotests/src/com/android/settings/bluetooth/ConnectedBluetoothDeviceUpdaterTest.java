@@ -37,7 +37,11 @@ import com.android.settings.dashboard.DashboardFragment;
 import com.android.settings.testutils.shadow.ShadowAudioManager;
 import com.android.settings.testutils.shadow.ShadowBluetoothAdapter;
 import com.android.settings.testutils.shadow.ShadowCachedBluetoothDeviceManager;
+import com.android.settingslib.bluetooth.BluetoothEventManager;
 import com.android.settingslib.bluetooth.CachedBluetoothDevice;
+import com.android.settingslib.bluetooth.CachedBluetoothDeviceManager;
+import com.android.settingslib.bluetooth.LocalBluetoothManager;
+import com.android.settingslib.bluetooth.LocalBluetoothProfileManager;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -69,6 +73,14 @@ public class ConnectedBluetoothDeviceUpdaterTest {
     private BluetoothDevice mBluetoothDevice;
     @Mock
     private Drawable mDrawable;
+    @Mock
+    private LocalBluetoothManager mLocalManager;
+    @Mock
+    private BluetoothEventManager mEventManager;
+    @Mock
+    private LocalBluetoothProfileManager mProfileManager;
+    @Mock
+    private CachedBluetoothDeviceManager mCachedDeviceManager;
 
     private Context mContext;
     private ConnectedBluetoothDeviceUpdater mBluetoothDeviceUpdater;
@@ -76,6 +88,7 @@ public class ConnectedBluetoothDeviceUpdaterTest {
     private AudioManager mAudioManager;
     private ShadowBluetoothAdapter mShadowBluetoothAdapter;
     private ShadowCachedBluetoothDeviceManager mShadowCachedBluetoothDeviceManager;
+    private BluetoothDeviceEventDispatcher mDispatcher;
 
     @Before
     public void setUp() {
@@ -100,56 +113,66 @@ public class ConnectedBluetoothDeviceUpdaterTest {
         mBluetoothDeviceUpdater.setPrefContext(mContext);
         doNothing().when(mBluetoothDeviceUpdater).addPreference(any());
         doNothing().when(mBluetoothDeviceUpdater).removePreference(any());
+
+        when(mLocalManager.getEventManager()).thenReturn(mEventManager);
+        when(mLocalManager.getProfileManager()).thenReturn(mProfileManager);
+        when(mLocalManager.getCachedDeviceManager()).thenReturn(mCachedDeviceManager);
+        when(mCachedDeviceManager.getCachedDevicesCopy()).thenReturn(mCachedDevices);
+        mDispatcher = new BluetoothDeviceEventDispatcher(mContext, mLocalManager);
     }
 
     @Test
     public void onAudioModeChanged_hfpDeviceConnected_notInCall_addPreference() {
-        mAudioManager.setMode(AudioManager.MODE_NORMAL);
+        mAudioManager.setMode(AudioManager.MODE_IN_CALL);
         when(mBluetoothDeviceUpdater.
                 isDeviceConnected(any(CachedBluetoothDevice.class))).thenReturn(true);
         when(mCachedBluetoothDevice.isConnectedHfpDevice()).thenReturn(true);
         mCachedDevices.add(mCachedBluetoothDevice);
+        addUpdaterToDispatcher();
 
-        mBluetoothDeviceUpdater.onAudioModeChanged();
+        changeAudioMode(AudioManager.MODE_NORMAL);
 
         verify(mBluetoothDeviceUpdater).addPreference(mCachedBluetoothDevice);
     }
 
     @Test
     public void onAudioModeChanged_hfpDeviceConnected_inCall_removePreference() {
-        mAudioManager.setMode(AudioManager.MODE_IN_CALL);
+        mAudioManager.setMode(AudioManager.MODE_NORMAL);
         when(mBluetoothDeviceUpdater.
                 isDeviceConnected(any(CachedBluetoothDevice.class))).thenReturn(true);
         when(mCachedBluetoothDevice.isConnectedHfpDevice()).thenReturn(true);
         mCachedDevices.add(mCachedBluetoothDevice);
+        addUpdaterToDispatcher();
 
-        mBluetoothDeviceUpdater.onAudioModeChanged();
+        changeAudioMode(AudioManager.MODE_IN_CALL);
 
         verify(mBluetoothDeviceUpdater).removePreference(mCachedBluetoothDevice);
     }
 
     @Test
     public void onAudioModeChanged_a2dpDeviceConnected_notInCall_removePreference() {
-        mAudioManager.setMode(AudioManager.MODE_NORMAL);
+        mAudioManager.setMode(AudioManager.MODE_IN_CALL);
         when(mBluetoothDeviceUpdater.
                 isDeviceConnected(any(CachedBluetoothDevice.class))).thenReturn(true);
         when(mCachedBluetoothDevice.isConnectedA2dpDevice()).thenReturn(true);
         mCachedDevices.add(mCachedBluetoothDevice);
+        addUpdaterToDispatcher();
 
-        mBluetoothDeviceUpdater.onAudioModeChanged();
+        changeAudioMode(AudioManager.MODE_NORMAL);
 
         verify(mBluetoothDeviceUpdater).removePreference(mCachedBluetoothDevice);
     }
 
     @Test
     public void onAudioModeChanged_a2dpDeviceConnected_inCall_addPreference() {
-        mAudioManager.setMode(AudioManager.MODE_IN_CALL);
+        mAudioManager.setMode(AudioManager.MODE_NORMAL);
         when(mBluetoothDeviceUpdater.
                 isDeviceConnected(any(CachedBluetoothDevice.class))).thenReturn(true);
         when(mCachedBluetoothDevice.isConnectedA2dpDevice()).thenReturn(true);
         mCachedDevices.add(mCachedBluetoothDevice);
+        addUpdaterToDispatcher();
 
-        mBluetoothDeviceUpdater.onAudioModeChanged();
+        changeAudioMode(AudioManager.MODE_IN_CALL);
 
         verify(mBluetoothDeviceUpdater).addPreference(mCachedBluetoothDevice);
     }
@@ -253,4 +276,17 @@ public class ConnectedBluetoothDeviceUpdaterTest {
 
         assertThat(btPreference.shouldHideSecondTarget()).isTrue();
     }
+
+    private void addUpdaterToDispatcher() {
+        // The dispatcher only groups the bonded and connected devices.
+        when(mBluetoothDevice.getBondState()).thenReturn(BluetoothDevice.BOND_BONDED);
+        when(mBluetoothDevice.isConnected()).thenReturn(true);
+        mDispatcher.addUpdater(mBluetoothDeviceUpdater);
+    }
+
+    private void changeAudioMode(int audioMode) {
+        mAudioManager.setMode(audioMode);
+        mDispatcher.onAudioModeChanged();
+        mDispatcher.dispatchPendingEvents();
+    }
 }
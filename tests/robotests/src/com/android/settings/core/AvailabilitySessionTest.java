@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+
+import com.android.settingslib.core.AbstractPreferenceController;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class AvailabilitySessionTest {
+
+    private Context mContext;
+    private FakeInput mInput;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mInput = new FakeInput();
+    }
+
+    @Test
+    public void build_sharedInput_shouldLoadOnceAndPinStatus() {
+        final FakeController controller1 = new FakeController(mContext, mInput);
+        final FakeController controller2 = new FakeController(mContext, mInput);
+
+        final AvailabilitySession session = buildSession(controller1, controller2);
+
+        assertThat(mInput.mLoadCount).isEqualTo(1);
+        assertThat(controller1.mInputValue).isEqualTo(FakeInput.VALUE);
+        assertThat(controller2.mInputValue).isEqualTo(FakeInput.VALUE);
+        assertThat(controller1.isAvailable()).isTrue();
+        assertThat(controller1.mCallCount).isEqualTo(1);
+
+        session.close();
+
+        assertThat(controller1.mPinCount).isEqualTo(0);
+        assertThat(controller2.mPinCount).isEqualTo(0);
+        assertThat(AvailabilitySession.isInSession()).isFalse();
+    }
+
+    @Test
+    public void close_evaluationFailed_shouldNotUnpin() {
+        final FakeController controller = new FakeController(mContext, mInput);
+        controller.mThrow = true;
+
+        buildSession(controller).close();
+
+        assertThat(controller.mPinCount).isEqualTo(0);
+        assertThat(controller.mUnpinCount).isEqualTo(0);
+    }
+
+    @Test
+    public void build_controllerRunBeforeInput_shouldWaitForInput() throws Exception {
+        final List<Runnable> tasks = new ArrayList<>();
+        final FakeController controller = new FakeController(mContext, mInput);
+        controller.mReadLoadedInput = true;
+        final AvailabilitySession session = new AvailabilitySession.Builder(mContext,
+                Collections.singletonList(controller)).setExecutor(tasks::add).build();
+
+        // Run the controller ahead of its input, which it can only see once loaded.
+        final Thread pinThread = new Thread(tasks.get(1));
+        pinThread.start();
+        tasks.get(0).run();
+        pinThread.join();
+
+        assertThat(controller.mInputValue).isEqualTo(FakeInput.VALUE);
+        session.close();
+    }
+
+    @Test
+    public void getInput_noSession_shouldLoadEveryTime() {
+        AvailabilitySession.getInput(mContext, mInput);
+        AvailabilitySession.getInput(mContext, mInput);
+
+        assertThat(mInput.mLoadCount).isEqualTo(2);
+    }
+
+    private AvailabilitySession buildSession(AbstractPreferenceController... controllers) {
+        return new AvailabilitySession.Builder(mContext, Arrays.asList(controllers))
+                .setExecutor(Runnable::run)
+                .build();
+    }
+
+    private static class FakeInput implements AvailabilitySession.Input<String> {
+        private static final String VALUE = "value";
+        private int mLoadCount;
+        // Stands for a cache filled by loading the input.
+        private volatile String mLoadedValue;
+
+        @Override
+        public String load(Context context) {
+            mLoadCount++;
+            mLoadedValue = VALUE;
+            return VALUE;
+        }
+    }
+
+    private static class FakeController extends BasePreferenceController
+            implements AvailabilityStatusHandler, AvailabilitySession.InputConsumer {
+        private final FakeInput mInput;
+        private int mPinnedStatus;
+        private int mPinCount;
+        private int mUnpinCount;
+        private int mCallCount;
+        private boolean mThrow;
+        private boolean mReadLoadedInput;
+        private Object mInputValue;
+
+        FakeController(Context context, FakeInput input) {
+            super(context, "fake_key");
+            mInput = input;
+        }
+
+        @Override
+        public int getAvailabilityStatus() {
+            if (mPinCount > 0) {
+                return mPinnedStatus;
+            }
+            mCallCount++;
+            if (mThrow) {
+                throw new IllegalStateException();
+            }
+            mInputValue = mReadLoadedInput
+                    ? mInput.mLoadedValue : AvailabilitySession.getInput(mContext, mInput);
+            return AVAILABLE;
+        }
+
+        @Override
+        public void setAvailabilityStatus(int status) {
+            mPinnedStatus = status;
+            mPinCount++;
+        }
+
+        @Override
+        public void unsetAvailabilityStatus() {
+            mPinCount--;
+            mUnpinCount++;
+        }
+
+        @Override
+        public Collection<AvailabilitySession.Input<?>> getAvailabilityInputs() {
+            return Collections.singletonList(mInput);
+        }
+    }
+}
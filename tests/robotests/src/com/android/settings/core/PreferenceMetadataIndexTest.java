@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.os.Bundle;
+
+import com.android.settings.R;
+import com.android.settings.core.PreferenceXmlParserUtils.MetadataFlag;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class PreferenceMetadataIndexTest {
+
+    private static final int ALL_FLAGS = MetadataFlag.FLAG_INCLUDE_PREF_SCREEN
+            | MetadataFlag.FLAG_NEED_KEY
+            | MetadataFlag.FLAG_NEED_PREF_TYPE
+            | MetadataFlag.FLAG_NEED_PREF_CONTROLLER
+            | MetadataFlag.FLAG_NEED_PREF_TITLE
+            | MetadataFlag.FLAG_NEED_PREF_SUMMARY
+            | MetadataFlag.FLAG_NEED_PREF_ICON
+            | MetadataFlag.FLAG_NEED_KEYWORDS
+            | MetadataFlag.FLAG_NEED_SEARCHABLE
+            | MetadataFlag.FLAG_NEED_PREF_APPEND
+            | MetadataFlag.FLAG_UNAVAILABLE_SLICE_SUBTITLE
+            | MetadataFlag.FLAG_FOR_WORK;
+
+    private Context mContext;
+    private File mIndexFile;
+    private String mFingerprint;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mIndexFile = new File(mContext.getCacheDir(), PreferenceMetadataIndex.INDEX_FILE_NAME);
+        mIndexFile.delete();
+        mFingerprint = PreferenceMetadataIndex.getFingerprint(mContext);
+    }
+
+    @Test
+    public void getFingerprint_overlaysChanged_fingerprintChanged() {
+        mContext.getApplicationInfo().resourceDirs = new String[] {"/vendor/overlay/test.apk"};
+
+        assertThat(PreferenceMetadataIndex.getFingerprint(mContext)).isNotEqualTo(mFingerprint);
+    }
+
+    @Test
+    @Config(qualifiers = "mcc999")
+    public void extractMetadata_fromMappedIndex_sameAsParsedXml() throws Exception {
+        final PreferenceMetadataIndex index =
+                new PreferenceMetadataIndex(mFingerprint, mIndexFile);
+        final List<Bundle> parsed = index.extractMetadata(mContext, R.xml.location_settings,
+                ALL_FLAGS);
+        waitForIndexWrite();
+
+        final PreferenceMetadataIndex mappedIndex =
+                new PreferenceMetadataIndex(mFingerprint, mIndexFile);
+        assertThat(mappedIndex.isMapped(R.xml.location_settings)).isTrue();
+        final List<Bundle> mapped = mappedIndex.extractMetadata(mContext,
+                R.xml.location_settings, ALL_FLAGS);
+
+        assertThat(mapped).hasSize(parsed.size());
+        for (int i = 0; i < parsed.size(); i++) {
+            assertThat(mapped.get(i).toString()).isEqualTo(parsed.get(i).toString());
+        }
+    }
+
+    @Test
+    @Config(qualifiers = "mcc999")
+    public void newInstance_fingerprintChanged_ignoresIndexFile() throws Exception {
+        new PreferenceMetadataIndex(mFingerprint, mIndexFile)
+                .extractMetadata(mContext, R.xml.location_settings, ALL_FLAGS);
+        waitForIndexWrite();
+
+        final PreferenceMetadataIndex index =
+                new PreferenceMetadataIndex("other_fingerprint", mIndexFile);
+
+        assertThat(index.isMapped(R.xml.location_settings)).isFalse();
+    }
+
+    @Test
+    @Config(qualifiers = "mcc999")
+    public void extractMetadata_truncatedIndexFile_parsesXmlAndRebuilds() throws Exception {
+        final List<Bundle> parsed = new PreferenceMetadataIndex(mFingerprint, mIndexFile)
+                .extractMetadata(mContext, R.xml.location_settings, ALL_FLAGS);
+        waitForIndexWrite();
+        try (RandomAccessFile file = new RandomAccessFile(mIndexFile, "rw")) {
+            file.setLength(file.length() - 8);
+        }
+        final long truncatedLength = mIndexFile.length();
+
+        final PreferenceMetadataIndex index =
+                new PreferenceMetadataIndex(mFingerprint, mIndexFile);
+        assertThat(index.isMapped(R.xml.location_settings)).isTrue();
+        final List<Bundle> metadata = index.extractMetadata(mContext, R.xml.location_settings,
+                ALL_FLAGS);
+
+        assertThat(index.isMapped(R.xml.location_settings)).isFalse();
+        assertThat(metadata).hasSize(parsed.size());
+        for (int i = 0; i < parsed.size(); i++) {
+            assertThat(metadata.get(i).toString()).isEqualTo(parsed.get(i).toString());
+        }
+        waitForIndexLength(truncatedLength + 8);
+        assertThat(new PreferenceMetadataIndex(mFingerprint, mIndexFile)
+                .isMapped(R.xml.location_settings)).isTrue();
+    }
+
+    @Test
+    @Config(qualifiers = "mcc999")
+    public void extractMetadata_noPrefScreenFlag_skipsScreen() throws Exception {
+        final PreferenceMetadataIndex index =
+                new PreferenceMetadataIndex(mFingerprint, null /* indexFile */);
+
+        final List<Bundle> metadata = index.extractMetadata(mContext, R.xml.location_settings,
+                MetadataFlag.FLAG_NEED_PREF_TYPE);
+
+        for (Bundle bundle : metadata) {
+            assertThat(bundle.getString(PreferenceXmlParserUtils.METADATA_PREF_TYPE))
+                    .isNotEqualTo(PreferenceXmlParserUtils.PREF_SCREEN_TAG);
+        }
+    }
+
+    private void waitForIndexLength(long length) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (mIndexFile.length() != length && System.currentTimeMillis() < deadline) {
+            ShadowLooper.idleMainLooper();
+            Thread.sleep(10);
+        }
+    }
+
+    private void waitForIndexWrite() throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (!mIndexFile.exists() && System.currentTimeMillis() < deadline) {
+            ShadowLooper.idleMainLooper();
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+@RunWith(RobolectricTestRunner.class)
+public class StaticAvailabilityCacheTest {
+
+    private Context mContext;
+    private StaticAvailabilityCache mCache;
+    private FakeStaticController mController;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mCache = new StaticAvailabilityCache(mContext);
+        mController = new FakeStaticController(mContext);
+    }
+
+    @Test
+    public void getAvailabilityStatus_secondCall_servedFromCache() {
+        mController.mStatus = BasePreferenceController.UNSUPPORTED_ON_DEVICE;
+        mCache.getAvailabilityStatus(mController);
+
+        mController.mStatus = BasePreferenceController.AVAILABLE;
+
+        assertThat(mCache.getAvailabilityStatus(mController))
+                .isEqualTo(BasePreferenceController.UNSUPPORTED_ON_DEVICE);
+        assertThat(mController.mCallCount).isEqualTo(1);
+    }
+
+    @Test
+    public void getAvailabilityStatus_fingerprintChanged_recomputes() {
+        mController.mStatus = BasePreferenceController.UNSUPPORTED_ON_DEVICE;
+        mCache.getAvailabilityStatus(mController);
+        final SharedPreferences prefs = mContext.getSharedPreferences(
+                StaticAvailabilityCache.PREF_NAME, Context.MODE_PRIVATE);
+        prefs.edit().putString(StaticAvailabilityCache.KEY_FINGERPRINT, "old").apply();
+
+        mController.mStatus = BasePreferenceController.AVAILABLE;
+        final StaticAvailabilityCache cache = new StaticAvailabilityCache(mContext);
+
+        assertThat(cache.getAvailabilityStatus(mController))
+                .isEqualTo(BasePreferenceController.AVAILABLE);
+        assertThat(prefs.getString(StaticAvailabilityCache.KEY_FINGERPRINT, null))
+                .isEqualTo(cache.getFingerprint());
+    }
+
+    @Test
+    public void getAvailabilityStatus_persistedByOtherInstance_servedFromCache() {
+        mController.mStatus = BasePreferenceController.UNSUPPORTED_ON_DEVICE;
+        mCache.getAvailabilityStatus(mController);
+
+        mController.mStatus = BasePreferenceController.AVAILABLE;
+        final StaticAvailabilityCache cache = new StaticAvailabilityCache(mContext);
+
+        assertThat(cache.getAvailabilityStatus(mController))
+                .isEqualTo(BasePreferenceController.UNSUPPORTED_ON_DEVICE);
+        assertThat(mController.mCallCount).isEqualTo(1);
+    }
+
+    @Test
+    public void getFingerprint_overlaysChanged_fingerprintChanged() {
+        final String fingerprint = mCache.getFingerprint();
+
+        mContext.getApplicationInfo().resourceDirs = new String[] {"/vendor/overlay/test.apk"};
+
+        assertThat(mCache.getFingerprint()).isNotEqualTo(fingerprint);
+    }
+
+    @Test
+    public void clear_recomputes() {
+        mCache.getAvailabilityStatus(mController);
+
+        mCache.clear();
+        mCache.getAvailabilityStatus(mController);
+
+        assertThat(mController.mCallCount).isEqualTo(2);
+    }
+
+    @Test
+    public void isAvailable_staticController_usesCache() {
+        mController.mStatus = BasePreferenceController.AVAILABLE;
+        assertThat(mController.isAvailable()).isTrue();
+
+        mController.mStatus = BasePreferenceController.UNSUPPORTED_ON_DEVICE;
+
+        assertThat(mController.isAvailable()).isTrue();
+        assertThat(mController.mCallCount).isEqualTo(1);
+    }
+
+    private static class FakeStaticController extends BasePreferenceController
+            implements BasePreferenceController.StaticAvailability {
+        private int mStatus = AVAILABLE;
+        private int mCallCount;
+
+        FakeStaticController(Context context) {
+            super(context, "fake_key");
+        }
+
+        @Override
+        public int getAvailabilityStatus() {
+            mCallCount++;
+            return mStatus;
+        }
+    }
+}
@@ -29,10 +29,13 @@ import org.mockito.MockitoAnnotations;
 import org.robolectric.RuntimeEnvironment;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Queue;
 
 public class SettingsIntelligenceLogWriterTest {
     private Context mContext;
@@ -75,4 +78,40 @@ public class SettingsIntelligenceLogWriterTest {
         assertThat(settingsLog.getChangedPreferenceKey()).isEqualTo("package");
         assertThat(settingsLog.getChangedPreferenceIntValue()).isEqualTo(100);
     }
+
+    @Test
+    public void serialize_overMaxBytes_shouldSplitBatch() throws IOException {
+        final SettingsLog event = SettingsLog.newBuilder()
+                .setAction(SettingsEnums.ACTION_SET_NEW_PASSWORD)
+                .setChangedPreferenceKey("package")
+                .build();
+        final Queue<SettingsLog> events = new ArrayDeque<>();
+        events.add(event);
+        events.add(event);
+        events.add(event);
+        // Room for the size header and two logs.
+        final int maxBytes = Integer.BYTES + 2 * (Integer.BYTES + event.getSerializedSize());
+
+        final byte[] data = SettingsIntelligenceLogWriter.serialize(events,
+                new ByteArrayOutputStream(), maxBytes);
+
+        final DataInputStream inputStream = new DataInputStream(new ByteArrayInputStream(data));
+        assertThat(inputStream.readInt()).isEqualTo(2);
+        assertThat(data.length).isEqualTo(maxBytes);
+        assertThat(events).hasSize(1);
+        inputStream.close();
+    }
+
+    @Test
+    public void isSameLog_differentValue_returnFalse() {
+        final SettingsLog.Builder builder = SettingsLog.newBuilder()
+                .setAction(SettingsEnums.ACTION_SET_NEW_PASSWORD)
+                .setChangedPreferenceKey("package");
+        final SettingsLog event = builder.setChangedPreferenceIntValue(1).build();
+
+        assertThat(SettingsIntelligenceLogWriter.isSameLog(event,
+                builder.setChangedPreferenceIntValue(1).build())).isTrue();
+        assertThat(SettingsIntelligenceLogWriter.isSameLog(event,
+                builder.setChangedPreferenceIntValue(2).build())).isFalse();
+    }
 }
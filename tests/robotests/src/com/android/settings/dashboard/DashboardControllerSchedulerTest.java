@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.settings.dashboard;
+
+import static com.android.settingslib.core.instrumentation.Instrumentable.METRICS_CATEGORY_UNKNOWN;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+
+import androidx.preference.Preference;
+import androidx.preference.PreferenceManager;
+import androidx.preference.PreferenceScreen;
+
+import com.android.settings.R;
+import com.android.settingslib.core.AbstractPreferenceController;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+@RunWith(RobolectricTestRunner.class)
+public class DashboardControllerSchedulerTest {
+    private static final String KEY = "my_key";
+
+    private Context mContext;
+    private PreferenceScreen mScreen;
+    private List<Runnable> mQueued;
+    private DashboardControllerScheduler mScheduler;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        final PreferenceManager preferenceManager = new PreferenceManager(mContext);
+        mScreen = preferenceManager.createPreferenceScreen(mContext);
+        mQueued = new ArrayList<>();
+    }
+
+    @Test
+    public void getLane_preferenceAboveFold_visibleLane() {
+        addPreference(KEY);
+
+        assertThat(DashboardControllerScheduler.getLane(mScreen, KEY))
+                .isEqualTo(DashboardControllerScheduler.Lane.VISIBLE);
+    }
+
+    @Test
+    public void getLane_preferenceCollapsed_belowFoldLane() {
+        addPreference("first");
+        addPreference(KEY);
+        mScreen.setInitialExpandedChildrenCount(1);
+
+        assertThat(DashboardControllerScheduler.getLane(mScreen, KEY))
+                .isEqualTo(DashboardControllerScheduler.Lane.BELOW_FOLD);
+    }
+
+    @Test
+    public void getLane_emptyKey_belowFoldLane() {
+        assertThat(DashboardControllerScheduler.getLane(mScreen, ""))
+                .isEqualTo(DashboardControllerScheduler.Lane.BELOW_FOLD);
+    }
+
+    @Test
+    public void schedule_directExecutor_noPlaceholderAndTimingRecorded() {
+        final Preference preference = addPreference(KEY);
+        mScheduler = new DashboardControllerScheduler(Runnable::run, null /* metricsFeature */,
+                METRICS_CATEGORY_UNKNOWN);
+
+        mScheduler.schedule(mScreen, Collections.singletonList(
+                Collections.singletonList(new TestPreferenceController(mContext, KEY))));
+
+        assertThat(preference.getSummary()).isNull();
+        assertThat(mScheduler.getControllerTimings())
+                .containsKey(TestPreferenceController.class.getSimpleName() + "/" + KEY);
+    }
+
+    @Test
+    public void schedule_controllersOfSameClass_timingRecordedForEach() {
+        addPreference(KEY);
+        addPreference("other");
+        mScheduler = new DashboardControllerScheduler(Runnable::run, null /* metricsFeature */,
+                METRICS_CATEGORY_UNKNOWN);
+
+        mScheduler.schedule(mScreen, Collections.singletonList(Arrays.asList(
+                new TestPreferenceController(mContext, KEY),
+                new TestPreferenceController(mContext, "other"))));
+
+        assertThat(mScheduler.getControllerTimings()).hasSize(2);
+    }
+
+    @Test
+    public void schedule_taskNeverRuns_showsPlaceholder() {
+        final Preference preference = addPreference(KEY);
+        final Executor queueingExecutor = mQueued::add;
+        mScheduler = new DashboardControllerScheduler(queueingExecutor, null /* metricsFeature */,
+                METRICS_CATEGORY_UNKNOWN);
+
+        mScheduler.schedule(mScreen, Collections.singletonList(
+                Collections.singletonList(new TestPreferenceController(mContext, KEY))));
+
+        assertThat(preference.getSummary())
+                .isEqualTo(mContext.getString(R.string.summary_placeholder));
+    }
+
+    @Test
+    public void schedule_lateTaskFinishes_placeholderCleared() {
+        final Preference preference = addPreference(KEY);
+        mScheduler = new DashboardControllerScheduler(mQueued::add, null /* metricsFeature */,
+                METRICS_CATEGORY_UNKNOWN);
+        mScheduler.schedule(mScreen, Collections.singletonList(
+                Collections.singletonList(new TestPreferenceController(mContext, KEY))));
+
+        mQueued.get(0).run();
+        ShadowLooper.idleMainLooper();
+
+        assertThat(preference.getSummary()).isNull();
+    }
+
+    @Test
+    public void schedule_lateTaskSetsSummary_summaryKept() {
+        final Preference preference = addPreference(KEY);
+        mScheduler = new DashboardControllerScheduler(mQueued::add, null /* metricsFeature */,
+                METRICS_CATEGORY_UNKNOWN);
+        final TestPreferenceController controller = new TestPreferenceController(mContext, KEY);
+        controller.mSummary = "summary";
+        mScheduler.schedule(mScreen, Collections.singletonList(
+                Collections.singletonList(controller)));
+
+        mQueued.get(0).run();
+        ShadowLooper.idleMainLooper();
+
+        assertThat(preference.getSummary().toString()).isEqualTo("summary");
+    }
+
+    @Test
+    public void scheduledTask_visibleLaneSortedFirst() {
+        addPreference(KEY);
+        mScheduler = new DashboardControllerScheduler(mQueued::add, null /* metricsFeature */,
+                METRICS_CATEGORY_UNKNOWN);
+
+        mScheduler.schedule(mScreen, Arrays.asList(
+                Collections.singletonList(new TestPreferenceController(mContext, "other")),
+                Collections.singletonList(new TestPreferenceController(mContext, KEY))));
+        final List<DashboardControllerScheduler.ScheduledTask> tasks = new ArrayList<>();
+        for (Runnable runnable : mQueued) {
+            tasks.add((DashboardControllerScheduler.ScheduledTask) runnable);
+        }
+        Collections.sort(tasks);
+
+        assertThat(tasks.get(0).getController().getPreferenceKey()).isEqualTo(KEY);
+    }
+
+    private Preference addPreference(String key) {
+        final Preference preference = new Preference(mContext);
+        preference.setKey(key);
+        mScreen.addPreference(preference);
+        return preference;
+    }
+
+    static class TestPreferenceController extends AbstractPreferenceController {
+        private final String mKey;
+        private String mSummary;
+
+        TestPreferenceController(Context context, String key) {
+            super(context);
+            mKey = key;
+        }
+
+        @Override
+        public boolean isAvailable() {
+            return true;
+        }
+
+        @Override
+        public String getPreferenceKey() {
+            return mKey;
+        }
+
+        @Override
+        public void updateState(Preference preference) {
+            if (mSummary != null) {
+                preference.setSummary(mSummary);
+            }
+        }
+    }
+}
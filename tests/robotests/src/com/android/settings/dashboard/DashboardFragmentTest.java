@@ -37,6 +37,7 @@ import android.content.pm.ActivityInfo;
 import android.content.pm.ProviderInfo;
 import android.net.Uri;
 import android.os.Bundle;
+import android.util.FeatureFlagUtils;
 
 import androidx.preference.Preference;
 import androidx.preference.PreferenceFragmentCompat;
@@ -45,6 +46,7 @@ import androidx.preference.PreferenceScreen;
 import androidx.preference.SwitchPreference;
 
 import com.android.internal.logging.nano.MetricsProto.MetricsEvent;
+import com.android.settings.core.FeatureFlags;
 import com.android.settings.core.PreferenceControllerMixin;
 import com.android.settings.slices.BlockingSlicePrefController;
 import com.android.settings.testutils.FakeFeatureFactory;
@@ -259,6 +261,24 @@ public class DashboardFragmentTest {
         verify(mockController2).getPreferenceKey();
     }
 
+    @Test
+    public void updatePreferenceStates_controllerEnhancementDisabled_shouldNotSchedule() {
+        FeatureFlagUtils.setEnabled(mContext, FeatureFlags.CONTROLLER_ENHANCEMENT, false);
+
+        mTestFragment.updatePreferenceStates();
+
+        assertThat(mTestFragment.mControllerScheduler).isNull();
+    }
+
+    @Test
+    public void updatePreferenceStates_controllerEnhancementEnabled_shouldSchedule() {
+        FeatureFlagUtils.setEnabled(mContext, FeatureFlags.CONTROLLER_ENHANCEMENT, true);
+
+        mTestFragment.updatePreferenceStates();
+
+        assertThat(mTestFragment.mControllerScheduler).isNotNull();
+    }
+
     @Test
     public void onExpandButtonClick_shouldLogAdvancedButtonExpand() {
         final MetricsFeatureProvider metricsFeatureProvider
@@ -20,6 +20,7 @@ import static com.google.common.truth.Truth.assertThat;
 
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -34,8 +35,12 @@ import androidx.fragment.app.FragmentActivity;
 
 import com.android.internal.logging.nano.MetricsProto;
 import com.android.settings.R;
+import com.android.settings.development.autofill.AutofillLoggingLevelPreferenceController;
+import com.android.settings.development.graphicsdriver.GraphicsDriverEnableForAllAppsPreferenceController;
 import com.android.settings.testutils.shadow.ShadowAlertDialogCompat;
 import com.android.settings.widget.SettingsMainSwitchBar;
+import com.android.settingslib.core.AbstractPreferenceController;
+import com.android.settingslib.core.lifecycle.Lifecycle;
 import com.android.settingslib.development.AbstractEnableAdbPreferenceController;
 import com.android.settingslib.development.DevelopmentSettingsEnabler;
 
@@ -55,6 +60,8 @@ import org.robolectric.shadows.ShadowUserManager;
 import org.robolectric.shadows.androidx.fragment.FragmentController;
 import org.robolectric.util.ReflectionHelpers;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 @RunWith(RobolectricTestRunner.class)
@@ -83,6 +90,61 @@ public class DevelopmentSettingsDashboardFragmentTest {
         ShadowEnableDevelopmentSettingWarningDialog.reset();
     }
 
+    @Test
+    public void addLifecycleObservers_resumeObserver_shouldWaitUntilAvailable() {
+        final Lifecycle lifecycle = mock(Lifecycle.class);
+        final StayAwakePreferenceController resumeController =
+                mock(StayAwakePreferenceController.class);
+        when(resumeController.isAvailable()).thenReturn(false);
+        final AutofillLoggingLevelPreferenceController destroyController =
+                mock(AutofillLoggingLevelPreferenceController.class);
+        final List<AbstractPreferenceController> pendingObservers = new ArrayList<>();
+
+        DevelopmentSettingsDashboardFragment.addLifecycleObservers(lifecycle,
+                Arrays.asList(resumeController, destroyController), pendingObservers);
+
+        verify(lifecycle).addObserver(destroyController);
+        verify(lifecycle, never()).addObserver(resumeController);
+        verify(destroyController, never()).isAvailable();
+        assertThat(pendingObservers).containsExactly(resumeController);
+
+        DevelopmentSettingsDashboardFragment.addAvailableObservers(lifecycle, pendingObservers);
+        verify(lifecycle, never()).addObserver(resumeController);
+
+        when(resumeController.isAvailable()).thenReturn(true);
+        DevelopmentSettingsDashboardFragment.addAvailableObservers(lifecycle, pendingObservers);
+        verify(lifecycle).addObserver(resumeController);
+        assertThat(pendingObservers).isEmpty();
+    }
+
+    @Test
+    public void addLifecycleObservers_unavailableController_shouldNotObserve() {
+        final Lifecycle lifecycle = mock(Lifecycle.class);
+        final GraphicsDriverEnableForAllAppsPreferenceController controller =
+                mock(GraphicsDriverEnableForAllAppsPreferenceController.class);
+        when(controller.isAvailable()).thenReturn(false);
+        final List<AbstractPreferenceController> pendingObservers = new ArrayList<>();
+
+        DevelopmentSettingsDashboardFragment.addLifecycleObservers(lifecycle,
+                Arrays.asList(controller), pendingObservers);
+
+        verify(lifecycle, never()).addObserver(controller);
+        assertThat(pendingObservers).isEmpty();
+    }
+
+    @Test
+    public void addLifecycleObservers_unavailableDestroyObserver_shouldObserve() {
+        final Lifecycle lifecycle = mock(Lifecycle.class);
+        final AutofillLoggingLevelPreferenceController controller =
+                mock(AutofillLoggingLevelPreferenceController.class);
+        when(controller.isAvailable()).thenReturn(false);
+
+        DevelopmentSettingsDashboardFragment.addLifecycleObservers(lifecycle,
+                Arrays.asList(controller), new ArrayList<>());
+
+        verify(lifecycle).addObserver(controller);
+    }
+
     @Test
     public void shouldNotHaveHelpResource() {
         assertThat(mDashboard.getHelpResource()).isEqualTo(0);
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.deviceinfo.storage;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.util.SparseArray;
+
+import com.android.settings.deviceinfo.storage.StorageAsyncLoader.StorageResult;
+import com.android.settingslib.applications.StorageStatsSource;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+@RunWith(RobolectricTestRunner.class)
+public class StorageResultCacheTest {
+
+    private static final String FS_UUID = "fs_uuid";
+    private static final int SECONDARY_USER_ID = 10;
+
+    private StorageResultCache mCache;
+
+    @Before
+    public void setUp() {
+        final Context context = RuntimeEnvironment.application;
+        mCache = new StorageResultCache(context);
+    }
+
+    @Test
+    public void get_nothingStored_shouldReturnNull() {
+        assertThat(mCache.get(FS_UUID)).isNull();
+        assertThat(mCache.get(null /* fsUuid */)).isNull();
+    }
+
+    @Test
+    public void get_stored_shouldReturnSameResults() {
+        final SparseArray<StorageResult> results = createResults();
+
+        mCache.put(FS_UUID, results);
+
+        final SparseArray<StorageResult> cachedResults = mCache.get(FS_UUID);
+        assertThat(StorageResultCache.isSame(results, cachedResults)).isTrue();
+        assertThat(cachedResults.get(0).externalStats.totalBytes).isEqualTo(9L);
+        assertThat(cachedResults.get(SECONDARY_USER_ID).externalStats).isNull();
+        assertThat(mCache.get(null /* fsUuid */)).isNull();
+    }
+
+    @Test
+    public void isSame_sizeChanged_shouldReturnFalse() {
+        final SparseArray<StorageResult> results = createResults();
+        final SparseArray<StorageResult> otherResults = createResults();
+        otherResults.get(SECONDARY_USER_ID).trashSize++;
+
+        assertThat(StorageResultCache.isSame(results, otherResults)).isFalse();
+        assertThat(StorageResultCache.isSame(results, null)).isFalse();
+    }
+
+    private static SparseArray<StorageResult> createResults() {
+        final StorageResult result = new StorageResult();
+        result.gamesSize = 1L;
+        result.allAppsExceptGamesSize = 2L;
+        result.imagesSize = 3L;
+        result.duplicateCodeSize = 4L;
+        result.externalStats = new StorageStatsSource.ExternalStorageStats(9, 2, 3, 4, 0);
+        final StorageResult secondaryResult = new StorageResult();
+        secondaryResult.videosSize = 5L;
+        secondaryResult.trashSize = 6L;
+
+        final SparseArray<StorageResult> results = new SparseArray<>();
+        results.put(0, result);
+        results.put(SECONDARY_USER_ID, secondaryResult);
+        return results;
+    }
+}
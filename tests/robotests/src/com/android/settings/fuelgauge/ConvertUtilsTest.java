@@ -39,10 +39,12 @@ import org.robolectric.RuntimeEnvironment;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Random;
 import java.util.TimeZone;
 
 @RunWith(RobolectricTestRunner.class)
@@ -383,6 +385,71 @@ public final class ConvertUtilsTest {
         assertThat(resultEntry.mBackgroundUsageTimeInMs).isEqualTo(0);
     }
 
+    @Test
+    public void testGetIndexedUsageMap_matchesLegacyImplementation() {
+        final int timeSlotSize = 12;
+        final long[] batteryHistoryKeys = new long[timeSlotSize * 2 + 1];
+        final Map<Long, Map<String, BatteryHistEntry>> batteryHistoryMap = new HashMap<>();
+        final Random random = new Random(/*seed=*/ 2021);
+        final BatteryHistEntry fakeEntry = createBatteryHistEntry(
+            ConvertUtils.FAKE_PACKAGE_NAME, "fake_label", 0, 0L, 0L, 0L);
+        final double[] consumePowers = new double[40];
+        final long[] foregroundUsageTimes = new long[40];
+        for (int index = 0; index < batteryHistoryKeys.length; index++) {
+            batteryHistoryKeys[index] = 101L + index;
+            final Map<String, BatteryHistEntry> entryMap = new HashMap<>();
+            entryMap.put(fakeEntry.getKey(), fakeEntry);
+            for (int uid = 1; uid < consumePowers.length; uid++) {
+                // Apps come and go between snapshots, some with abnormal usage time.
+                if (random.nextInt(4) == 0) {
+                    continue;
+                }
+                consumePowers[uid] += random.nextInt(3) * random.nextDouble();
+                foregroundUsageTimes[uid] += random.nextInt(5) * 1000000L;
+                final BatteryHistEntry entry = createBatteryHistEntry(
+                    "package" + uid + ":process", "label" + uid, consumePowers[uid],
+                    uid, foregroundUsageTimes[uid], foregroundUsageTimes[uid] / 2);
+                entryMap.put(entry.getKey(), entry);
+            }
+            // Leaves a hole in the history to verify the empty time slot.
+            if (index != 7) {
+                batteryHistoryMap.put(Long.valueOf(batteryHistoryKeys[index]), entryMap);
+            }
+        }
+        when(mPowerUsageFeatureProvider.getHideBackgroundUsageTimeList(mContext))
+            .thenReturn(Arrays.asList((CharSequence) "package3"));
+
+        for (boolean purge : new boolean[] {false, true}) {
+            final Map<Integer, List<BatteryDiffEntry>> expectedMap =
+                LegacyConvertUtils.getIndexedUsageMap(
+                    mContext, timeSlotSize, batteryHistoryKeys, batteryHistoryMap, purge);
+            final Map<Integer, List<BatteryDiffEntry>> resultMap =
+                ConvertUtils.getIndexedUsageMap(
+                    mContext, timeSlotSize, batteryHistoryKeys, batteryHistoryMap, purge);
+
+            assertThat(resultMap.keySet()).isEqualTo(expectedMap.keySet());
+            for (Integer index : expectedMap.keySet()) {
+                final List<BatteryDiffEntry> expectedList = sortByKey(expectedMap.get(index));
+                final List<BatteryDiffEntry> resultList = sortByKey(resultMap.get(index));
+                assertThat(resultList).hasSize(expectedList.size());
+                for (int i = 0; i < expectedList.size(); i++) {
+                    final BatteryDiffEntry expected = expectedList.get(i);
+                    final BatteryDiffEntry result = resultList.get(i);
+                    assertThat(result.mBatteryHistEntry).isSameInstanceAs(
+                        expected.mBatteryHistEntry);
+                    assertThat(result.mForegroundUsageTimeInMs)
+                        .isEqualTo(expected.mForegroundUsageTimeInMs);
+                    assertThat(result.mBackgroundUsageTimeInMs)
+                        .isEqualTo(expected.mBackgroundUsageTimeInMs);
+                    assertThat(result.mConsumePower)
+                        .isWithin(1e-9).of(expected.mConsumePower);
+                    assertThat(result.getPercentOfTotal())
+                        .isWithin(1e-9).of(expected.getPercentOfTotal());
+                }
+            }
+        }
+    }
+
     @Test
     public void getLocale_nullContext_returnDefaultLocale() {
         assertThat(ConvertUtils.getLocale(/*context=*/ null))
@@ -419,6 +486,12 @@ public final class ConvertUtilsTest {
         return new BatteryHistEntry(values);
     }
 
+    private static List<BatteryDiffEntry> sortByKey(List<BatteryDiffEntry> entries) {
+        final List<BatteryDiffEntry> sortedEntries = new ArrayList<>(entries);
+        sortedEntries.sort(Comparator.comparing(entry -> entry.mBatteryHistEntry.getKey()));
+        return sortedEntries;
+    }
+
     private static void assertBatteryDiffEntry(
             BatteryDiffEntry entry, int percentOfTotal,
             long foregroundUsageTimeInMs, long backgroundUsageTimeInMs) {
@@ -121,6 +121,11 @@ public class PowerUsageSummaryTest {
         when(mFragment.findPreference(KEY_BATTERY_ERROR)).thenReturn(mHelpPreference);
     }
 
+    @Test
+    public void isParalleledControllers_shouldReturnTrue() {
+        assertThat(mFragment.isParalleledControllers()).isTrue();
+    }
+
     @Test
     @Config(shadows = ShadowUtils.class)
     public void nonIndexableKeys_MatchPreferenceKeys() {
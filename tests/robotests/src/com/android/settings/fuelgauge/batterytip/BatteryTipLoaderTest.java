@@ -19,19 +19,29 @@ package com.android.settings.fuelgauge.batterytip;
 import static com.google.common.truth.Truth.assertThat;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 
+import android.app.settings.SettingsEnums;
 import android.content.Context;
 import android.content.Intent;
+import android.os.BatteryManager;
 import android.os.BatteryUsageStats;
 import android.os.PowerManager;
 
 import com.android.settings.fuelgauge.BatteryInfo;
 import com.android.settings.fuelgauge.BatteryUtils;
+import com.android.settings.fuelgauge.batterytip.detectors.BatteryTipDetector;
 import com.android.settings.fuelgauge.batterytip.tips.AppLabelPredicate;
 import com.android.settings.fuelgauge.batterytip.tips.AppRestrictionPredicate;
 import com.android.settings.fuelgauge.batterytip.tips.BatteryTip;
+import com.android.settings.fuelgauge.batterytip.tips.SmartBatteryTip;
+import com.android.settings.testutils.FakeFeatureFactory;
 
 import org.junit.After;
 import org.junit.Before;
@@ -44,7 +54,11 @@ import org.robolectric.RobolectricTestRunner;
 import org.robolectric.RuntimeEnvironment;
 import org.robolectric.util.ReflectionHelpers;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @RunWith(RobolectricTestRunner.class)
 public class BatteryTipLoaderTest {
@@ -66,11 +80,13 @@ public class BatteryTipLoaderTest {
     @Mock
     private BatteryInfo mBatteryInfo;
     private Context mContext;
+    private FakeFeatureFactory mFeatureFactory;
     private BatteryTipLoader mBatteryTipLoader;
 
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(this);
+        mFeatureFactory = FakeFeatureFactory.setupForTest();
 
         mContext = spy(RuntimeEnvironment.application);
         doReturn(mContext).when(mContext).getApplicationContext();
@@ -96,4 +112,146 @@ public class BatteryTipLoaderTest {
             assertThat(batteryTips.get(i).getType()).isEqualTo(TIP_ORDER[i]);
         }
     }
+
+    @Test
+    public void testLoadBackground_detectorMissesBudget_returnFallbackTip() {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final BatteryTipDetector slowDetector = () -> {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                // Ignore
+            }
+            return new SmartBatteryTip(BatteryTip.StateType.NEW);
+        };
+        final BatteryTip fallbackTip = new SmartBatteryTip(BatteryTip.StateType.INVISIBLE);
+        mBatteryTipLoader = spy(mBatteryTipLoader);
+        mBatteryTipLoader.mDetectionBudgetMs = 10L;
+        doReturn(Collections.singletonList(
+                new BatteryTipLoader.DetectorTask(slowDetector, fallbackTip)))
+                .when(mBatteryTipLoader).createDetectorTasks(any(), any(), any());
+
+        final List<BatteryTip> batteryTips = mBatteryTipLoader.loadInBackground();
+        latch.countDown();
+
+        assertThat(batteryTips).containsExactly(fallbackTip);
+    }
+
+    @Test
+    public void testLoadBackground_startedLoader_deliversLateTipInNextLoad() {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicInteger detectCount = new AtomicInteger();
+        final BatteryTip detectedTip = new SmartBatteryTip(BatteryTip.StateType.NEW);
+        final BatteryTipDetector slowDetector = () -> {
+            detectCount.incrementAndGet();
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                // Ignore
+            }
+            return detectedTip;
+        };
+        final BatteryTip fallbackTip = new SmartBatteryTip(BatteryTip.StateType.INVISIBLE);
+        mBatteryTipLoader = spy(mBatteryTipLoader);
+        mBatteryTipLoader.mDetectionBudgetMs = 10L;
+        doReturn(true).when(mBatteryTipLoader).isStarted();
+        doAnswer(invocation -> Collections.singletonList(
+                new BatteryTipLoader.DetectorTask(slowDetector, fallbackTip)))
+                .when(mBatteryTipLoader).createDetectorTasks(any(), any(), any());
+
+        assertThat(mBatteryTipLoader.loadInBackground()).containsExactly(fallbackTip);
+        latch.countDown();
+        mBatteryTipLoader.mDetectionBudgetMs = 1000L;
+
+        assertThat(mBatteryTipLoader.loadInBackground()).containsExactly(detectedTip);
+        assertThat(detectCount.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testLoadBackground_inputsChanged_discardsLateTipAndDetectsAgain() {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicInteger detectCount = new AtomicInteger();
+        final BatteryTip detectedTip = new SmartBatteryTip(BatteryTip.StateType.NEW);
+        final BatteryTipDetector slowDetector = () -> {
+            if (detectCount.incrementAndGet() == 1) {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    // Ignore
+                }
+            }
+            return detectedTip;
+        };
+        final BatteryTip fallbackTip = new SmartBatteryTip(BatteryTip.StateType.INVISIBLE);
+        mBatteryTipLoader = spy(mBatteryTipLoader);
+        mBatteryTipLoader.mDetectionBudgetMs = 10L;
+        doReturn(true).when(mBatteryTipLoader).isStarted();
+        doAnswer(invocation -> Collections.singletonList(
+                new BatteryTipLoader.DetectorTask(slowDetector, fallbackTip)))
+                .when(mBatteryTipLoader).createDetectorTasks(any(), any(), any());
+
+        assertThat(mBatteryTipLoader.loadInBackground()).containsExactly(fallbackTip);
+        mBatteryInfo.batteryLevel = 5;
+        mBatteryTipLoader.mDetectionBudgetMs = 1000L;
+
+        assertThat(mBatteryTipLoader.loadInBackground()).containsExactly(detectedTip);
+        latch.countDown();
+        assertThat(detectCount.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void getInputs_sameContent_equal() {
+        final BatteryTipPolicy policy = BatteryTipPolicy.getInstance(mContext);
+        final BatteryInfo info = createBatteryInfo(50 /* level */, 0L /* remainingTimeUs */);
+        final BatteryInfo otherInfo = createBatteryInfo(50 /* level */, 0L /* remainingTimeUs */);
+
+        assertThat(mBatteryTipLoader.getInputs(policy, info))
+                .isEqualTo(mBatteryTipLoader.getInputs(policy, otherInfo));
+    }
+
+    @Test
+    public void getInputs_remainingTimeChangedAboveThreshold_equal() {
+        final BatteryTipPolicy policy = BatteryTipPolicy.getInstance(mContext);
+        final long highRemainingTimeUs = TimeUnit.HOURS.toMicros(policy.lowBatteryHour + 2);
+        final BatteryInfo info = createBatteryInfo(50 /* level */, highRemainingTimeUs);
+        final BatteryInfo otherInfo = createBatteryInfo(50 /* level */,
+                highRemainingTimeUs + TimeUnit.MINUTES.toMicros(10));
+
+        assertThat(mBatteryTipLoader.getInputs(policy, info))
+                .isEqualTo(mBatteryTipLoader.getInputs(policy, otherInfo));
+    }
+
+    @Test
+    public void getInputs_levelChanged_notEqual() {
+        final BatteryTipPolicy policy = BatteryTipPolicy.getInstance(mContext);
+
+        assertThat(mBatteryTipLoader.getInputs(policy, createBatteryInfo(50, 0L)))
+                .isNotEqualTo(mBatteryTipLoader.getInputs(policy, createBatteryInfo(40, 0L)));
+    }
+
+    @Test
+    public void testLoadBackground_recordsDetectorLatency() {
+        final BatteryTipDetector detector = () -> new SmartBatteryTip(BatteryTip.StateType.NEW);
+        mBatteryTipLoader = spy(mBatteryTipLoader);
+        doReturn(Collections.singletonList(new BatteryTipLoader.DetectorTask(detector,
+                new SmartBatteryTip(BatteryTip.StateType.INVISIBLE))))
+                .when(mBatteryTipLoader).createDetectorTasks(any(), any(), any());
+
+        mBatteryTipLoader.loadInBackground();
+
+        verify(mFeatureFactory.metricsFeatureProvider).action(eq(SettingsEnums.PAGE_UNKNOWN),
+                eq(SettingsEnums.ACTION_BATTERY_TIP_DETECTOR_LATENCY),
+                eq(SettingsEnums.PAGE_UNKNOWN), eq(detector.getClass().getSimpleName()),
+                anyInt());
+    }
+
+    private static BatteryInfo createBatteryInfo(int level, long remainingTimeUs) {
+        final BatteryInfo info = new BatteryInfo();
+        info.batteryLevel = level;
+        info.batteryStatus = BatteryManager.BATTERY_STATUS_DISCHARGING;
+        info.discharging = true;
+        info.isOverheated = false;
+        info.remainingTimeUs = remainingTimeUs;
+        return info;
+    }
 }
@@ -63,6 +63,11 @@ public class TopLevelSettingsTest {
         assertThat(mSettings.shouldForceRoundedIcon()).isTrue();
     }
 
+    @Test
+    public void isParalleledControllers_shouldReturnTrue() {
+        assertThat(mSettings.isParalleledControllers()).isTrue();
+    }
+
     @Test
     public void onCreatePreferences_shouldTintPreferenceIcon() {
         final Preference preference = new Preference(mContext);
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.homepage.contextualcards;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+
+@RunWith(RobolectricTestRunner.class)
+public class ContextualCardExecutorTest {
+
+    private final CountDownLatch mLatch = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        mLatch.countDown();
+    }
+
+    @Test
+    public void getEligibilityExecutor_isBounded() {
+        final ThreadPoolExecutor executor =
+                (ThreadPoolExecutor) ContextualCardExecutor.getEligibilityExecutor();
+
+        assertThat(executor.getMaximumPoolSize())
+                .isEqualTo(ContextualCardExecutor.ELIGIBILITY_POOL_SIZE);
+        assertThat(executor.getQueue().remainingCapacity())
+                .isAtMost(ContextualCardExecutor.ELIGIBILITY_QUEUE_CAPACITY);
+    }
+
+    @Test
+    public void getEligibilityExecutor_queueFull_cancelsCheck() {
+        final ExecutorService executor = ContextualCardExecutor.getEligibilityExecutor();
+        final int capacity = ContextualCardExecutor.ELIGIBILITY_POOL_SIZE
+                + ContextualCardExecutor.ELIGIBILITY_QUEUE_CAPACITY;
+        for (int i = 0; i < capacity; i++) {
+            executor.submit(this::awaitLatch);
+        }
+
+        final Future<?> future = executor.submit(this::awaitLatch);
+
+        assertThat(future.isCancelled()).isTrue();
+    }
+
+    private void awaitLatch() {
+        try {
+            mLatch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
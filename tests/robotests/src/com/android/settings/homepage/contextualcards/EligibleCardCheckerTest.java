@@ -22,7 +22,9 @@ import static com.google.common.truth.Truth.assertThat;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 
 import android.content.Context;
 import android.net.Uri;
@@ -125,6 +127,58 @@ public class EligibleCardCheckerTest {
         assertThat(mEligibleCardChecker.mCard.getSlice()).isNotNull();
     }
 
+    @Test
+    public void isCardEligibleToDisplay_cachedResult_doesNotBindSlice() {
+        final CardEligibilityCache cache = new CardEligibilityCache(mContext);
+        cache.put(TEST_SLICE_URI, true /* eligible */, null /* slice */,
+                true /* hasInlineAction */);
+        final EligibleCardChecker checker =
+                spy(new EligibleCardChecker(mContext, getContextualCard(TEST_SLICE_URI), cache));
+
+        assertThat(checker.isCardEligibleToDisplay(getContextualCard(TEST_SLICE_URI))).isTrue();
+
+        verify(checker, never()).bindSlice(any(Uri.class));
+        assertThat(checker.mCard.hasInlineAction()).isTrue();
+        assertThat(checker.isFromCache()).isTrue();
+    }
+
+    @Test
+    public void isCardEligibleToDisplay_errorSlice_cachesIneligible() {
+        final CardEligibilityCache cache = new CardEligibilityCache(mContext);
+        final EligibleCardChecker checker =
+                spy(new EligibleCardChecker(mContext, getContextualCard(TEST_SLICE_URI), cache));
+        final Slice slice = new Slice.Builder(TEST_SLICE_URI)
+                .addHints(HINT_ERROR).build();
+        doReturn(slice).when(checker).bindSlice(any(Uri.class));
+
+        checker.isCardEligibleToDisplay(getContextualCard(TEST_SLICE_URI));
+
+        assertThat(cache.get(TEST_SLICE_URI).isEligible()).isFalse();
+    }
+
+    @Test
+    public void cacheGet_expired_returnNull() {
+        final CardEligibilityCache cache = spy(new CardEligibilityCache(mContext));
+        doReturn(0L).when(cache).getElapsedTime();
+        cache.put(TEST_SLICE_URI, true /* eligible */, null /* slice */,
+                false /* hasInlineAction */);
+
+        doReturn(CardEligibilityCache.TTL_MS + 1).when(cache).getElapsedTime();
+
+        assertThat(cache.get(TEST_SLICE_URI)).isNull();
+    }
+
+    @Test
+    public void cacheGet_sliceChanged_returnNull() {
+        final CardEligibilityCache cache = new CardEligibilityCache(mContext);
+        cache.put(TEST_SLICE_URI, true /* eligible */, null /* slice */,
+                false /* hasInlineAction */);
+
+        mContext.getContentResolver().notifyChange(TEST_SLICE_URI, null /* observer */);
+
+        assertThat(cache.get(TEST_SLICE_URI)).isNull();
+    }
+
     private ContextualCard getContextualCard(Uri sliceUri) {
         return new ContextualCard.Builder()
                 .setName("test_card")
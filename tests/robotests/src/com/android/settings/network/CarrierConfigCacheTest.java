@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.network;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.Context;
+import android.os.PersistableBundle;
+import android.telephony.CarrierConfigManager;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+@RunWith(RobolectricTestRunner.class)
+public class CarrierConfigCacheTest {
+
+    private static final int SUB_ID = 1;
+    private static final int OTHER_SUB_ID = 2;
+
+    @Mock
+    private CarrierConfigManager mCarrierConfigManager;
+
+    private Context mContext;
+    private PersistableBundle mCarrierConfig;
+    private CarrierConfigCache mCache;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mContext = RuntimeEnvironment.application;
+        mCarrierConfig = new PersistableBundle();
+        mCarrierConfig.putBoolean(CarrierConfigManager.KEY_WORLD_PHONE_BOOL, true);
+        when(mCarrierConfigManager.getConfigForSubId(SUB_ID)).thenReturn(mCarrierConfig);
+        mCache = new CarrierConfigCache();
+    }
+
+    @Test
+    public void getConfigForSubId_twice_shouldLoadOnce() {
+        mCache.getConfigForSubId(mContext, mCarrierConfigManager, SUB_ID);
+        final PersistableBundle config =
+                mCache.getConfigForSubId(mContext, mCarrierConfigManager, SUB_ID);
+
+        verify(mCarrierConfigManager, times(1)).getConfigForSubId(SUB_ID);
+        assertThat(config.getBoolean(CarrierConfigManager.KEY_WORLD_PHONE_BOOL)).isTrue();
+        assertThat(mCache.getMissCount()).isEqualTo(1);
+        assertThat(mCache.getHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void getConfigForSubId_otherManager_shouldShareConfig() {
+        final PersistableBundle config =
+                mCache.getConfigForSubId(mContext, mCarrierConfigManager, SUB_ID);
+        final CarrierConfigManager otherManager = mock(CarrierConfigManager.class);
+
+        assertThat(mCache.getConfigForSubId(mContext, otherManager, SUB_ID))
+                .isSameInstanceAs(config);
+        verify(otherManager, never()).getConfigForSubId(SUB_ID);
+    }
+
+    @Test
+    public void getConfigForSubId_invalidated_shouldLoadAgain() {
+        mCache.getConfigForSubId(mContext, mCarrierConfigManager, SUB_ID);
+
+        mCache.invalidate(OTHER_SUB_ID);
+        mCache.getConfigForSubId(mContext, mCarrierConfigManager, SUB_ID);
+        verify(mCarrierConfigManager, times(1)).getConfigForSubId(SUB_ID);
+
+        mCache.invalidate(SUB_ID);
+        mCache.getConfigForSubId(mContext, mCarrierConfigManager, SUB_ID);
+        verify(mCarrierConfigManager, times(2)).getConfigForSubId(SUB_ID);
+    }
+
+    @Test
+    public void getConfigForSubId_noConfig_shouldNotCache() {
+        assertThat(mCache.getConfigForSubId(mContext, mCarrierConfigManager, OTHER_SUB_ID))
+                .isNull();
+        assertThat(mCache.getConfigForSubId(mContext, mCarrierConfigManager, OTHER_SUB_ID))
+                .isNull();
+
+        verify(mCarrierConfigManager, times(2)).getConfigForSubId(OTHER_SUB_ID);
+        assertThat(mCache.getConfigForSubId(mContext, null /* manager */, SUB_ID)).isNull();
+    }
+}
@@ -20,10 +20,15 @@ import static com.google.common.truth.Truth.assertThat;
 
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import android.app.INotificationManager;
+
 import android.app.role.RoleManager;
 import android.app.usage.UsageEvents;
 import android.bluetooth.BluetoothAdapter;
@@ -41,6 +46,7 @@ import com.android.settingslib.bluetooth.LocalBluetoothManager;
 
 import com.google.common.collect.ImmutableList;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -62,12 +68,42 @@ public class NotificationBackendTest {
     ICompanionDeviceManager mCdm;
     @Mock
     CachedBluetoothDeviceManager mCbm;
+    @Mock
+    INotificationManager mInm;
     ComponentName mCn = new ComponentName("a", "b");
+    private INotificationManager mOriginalInm;
 
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(this);
         when(mBm.getCachedDeviceManager()).thenReturn(mCbm);
+        mOriginalInm = NotificationBackend.sINM;
+        NotificationBackend.sINM = mInm;
+    }
+
+    @After
+    public void tearDown() {
+        NotificationBackend.sINM = mOriginalInm;
+    }
+
+    @Test
+    public void getBannedPackages_noneBlocked_skipsPackageLookups() throws Exception {
+        when(mInm.getBlockedAppCount(0)).thenReturn(0);
+
+        assertThat(new NotificationBackend().getBannedPackages(0,
+                ImmutableList.of(getApplicationInfo("pkg1", 1)))).isEmpty();
+        verify(mInm, never()).areNotificationsEnabledForPackage(anyString(), anyInt());
+    }
+
+    @Test
+    public void getBannedPackages_stopsOnceAllBlockedFound() throws Exception {
+        when(mInm.getBlockedAppCount(0)).thenReturn(1);
+        when(mInm.areNotificationsEnabledForPackage("pkg1", 1)).thenReturn(false);
+
+        assertThat(new NotificationBackend().getBannedPackages(0, ImmutableList.of(
+                getApplicationInfo("pkg1", 1), getApplicationInfo("pkg2", 2))))
+                .containsExactly("pkg1");
+        verify(mInm, never()).areNotificationsEnabledForPackage("pkg2", 2);
     }
 
     @Test
@@ -229,4 +265,11 @@ public class NotificationBackendTest {
         assertThat(new NotificationBackend().getDeviceList(
                 mCdm, mBm, mCn.getPackageName(), 0).toString()).isEqualTo("Device 1, Device 2");
     }
+
+    private static ApplicationInfo getApplicationInfo(String pkg, int uid) {
+        final ApplicationInfo info = new ApplicationInfo();
+        info.packageName = pkg;
+        info.uid = uid;
+        return info;
+    }
 }
@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.notification.history;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import android.app.NotificationHistory;
+import android.app.NotificationHistory.HistoricalNotification;
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.graphics.drawable.ColorDrawable;
+import android.os.LocaleList;
+
+import com.android.settings.notification.NotificationBackend;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+@RunWith(RobolectricTestRunner.class)
+public class HistoryLoaderTest {
+
+    private static final int PACKAGE_COUNT = 20;
+
+    @Mock
+    private NotificationBackend mBackend;
+    @Mock
+    private PackageManager mPm;
+
+    private Context mContext;
+    private HistoryLoader mLoader;
+    private List<Page> mPages;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mContext = RuntimeEnvironment.application;
+        when(mPm.getDefaultActivityIcon()).thenReturn(new ColorDrawable());
+        mLoader = new HistoryLoader(mContext, mBackend, mPm);
+        mPages = new ArrayList<>();
+    }
+
+    @Test
+    public void load_shouldDeliverPagesMostRecentFirst() {
+        setHistory(createNotifications(PACKAGE_COUNT));
+
+        mLoader.load(this::onHistoryLoaded);
+
+        assertThat(mPages).hasSize(3);
+        final List<String> packages = new ArrayList<>();
+        int expectedPosition = 0;
+        for (int i = 0; i < mPages.size(); i++) {
+            final Page page = mPages.get(i);
+            assertThat(page.mFirstPosition).isEqualTo(expectedPosition);
+            assertThat(page.mLastPage).isEqualTo(i == mPages.size() - 1);
+            expectedPosition += page.mPackages.size();
+            for (NotificationHistoryPackage nhp : page.mPackages) {
+                packages.add(nhp.pkgName);
+                assertThat(nhp.icon).isNotNull();
+            }
+        }
+        assertThat(expectedPosition).isEqualTo(PACKAGE_COUNT);
+        for (int i = 0; i < PACKAGE_COUNT; i++) {
+            // The last package notified most recently.
+            assertThat(packages.get(i)).isEqualTo(getPackageName(PACKAGE_COUNT - 1 - i));
+        }
+    }
+
+    @Test
+    public void load_emptyHistory_shouldDeliverOneEmptyPage() {
+        setHistory(Collections.emptyList());
+
+        mLoader.load(this::onHistoryLoaded);
+
+        assertThat(mPages).hasSize(1);
+        assertThat(mPages.get(0).mPackages).isEmpty();
+        assertThat(mPages.get(0).mFirstPosition).isEqualTo(0);
+        assertThat(mPages.get(0).mLastPage).isTrue();
+    }
+
+    @Test
+    public void load_canceledAfterFirstPage_shouldNotDeliverMorePages() {
+        setHistory(createNotifications(PACKAGE_COUNT));
+
+        mLoader.load((notificationsByPackage, firstPosition, lastPage) -> {
+            onHistoryLoaded(notificationsByPackage, firstPosition, lastPage);
+            // The activity cancels its loader when it is paused.
+            mLoader.cancel();
+        });
+
+        assertThat(mPages).hasSize(1);
+        assertThat(mPages.get(0).mFirstPosition).isEqualTo(0);
+        assertThat(mPages.get(0).mLastPage).isFalse();
+    }
+
+    @Test
+    public void load_canceledBeforeLoad_shouldNotDeliverAnyPage() {
+        setHistory(createNotifications(PACKAGE_COUNT));
+
+        mLoader.cancel();
+        mLoader.load(this::onHistoryLoaded);
+
+        assertThat(mPages).isEmpty();
+    }
+
+    @Test
+    public void getLabel_localesChanged_shouldResolveLabelAgain() throws Exception {
+        final String pkg = "com.example.localized";
+        when(mPm.getApplicationInfoAsUser(eq(pkg), anyInt(), anyInt()))
+                .thenReturn(new ApplicationInfo());
+        when(mPm.getApplicationLabel(any())).thenReturn("Label", "Étiquette");
+        final LocaleList locales = LocaleList.getDefault();
+        try {
+            LocaleList.setDefault(new LocaleList(Locale.US));
+            assertThat(AppLabelIconCache.getLabel(mPm, pkg, 0).toString()).isEqualTo("Label");
+            assertThat(AppLabelIconCache.getLabel(mPm, pkg, 0).toString()).isEqualTo("Label");
+
+            LocaleList.setDefault(new LocaleList(Locale.FRANCE));
+
+            assertThat(AppLabelIconCache.getLabel(mPm, pkg, 0).toString())
+                    .isEqualTo("Étiquette");
+        } finally {
+            LocaleList.setDefault(locales);
+        }
+    }
+
+    private void onHistoryLoaded(List<NotificationHistoryPackage> notificationsByPackage,
+            int firstPosition, boolean lastPage) {
+        mPages.add(new Page(notificationsByPackage, firstPosition, lastPage));
+    }
+
+    private void setHistory(List<HistoricalNotification> notifications) {
+        final NotificationHistory history = mock(NotificationHistory.class);
+        final int[] index = new int[1];
+        when(history.hasNextNotification()).thenAnswer(
+                invocation -> index[0] < notifications.size());
+        when(history.getNextNotification()).thenAnswer(
+                invocation -> notifications.get(index[0]++));
+        when(mBackend.getNotificationHistory(anyString(), any())).thenReturn(history);
+    }
+
+    private static List<HistoricalNotification> createNotifications(int packageCount) {
+        final List<HistoricalNotification> notifications = new ArrayList<>();
+        for (int i = 0; i < packageCount; i++) {
+            for (int j = 0; j < 2; j++) {
+                notifications.add(new HistoricalNotification.Builder()
+                        .setPackage(getPackageName(i))
+                        .setUid(10000 + i)
+                        .setChannelId("channel")
+                        .setChannelName("Channel")
+                        .setTitle("title " + j)
+                        .setPostedTimeMs(i * 10L + j)
+                        .build());
+            }
+        }
+        return notifications;
+    }
+
+    private static String getPackageName(int index) {
+        return "com.example.app" + index;
+    }
+
+    private static class Page {
+        private final List<NotificationHistoryPackage> mPackages;
+        private final int mFirstPosition;
+        private final boolean mLastPage;
+
+        Page(List<NotificationHistoryPackage> packages, int firstPosition, boolean lastPage) {
+            mPackages = packages;
+            mFirstPosition = firstPosition;
+            mLastPage = lastPage;
+        }
+    }
+}
@@ -49,6 +49,7 @@ public class FakePanelContent implements PanelContent {
     private boolean mIsCustomizedButtonUsed = false;
     private CharSequence mCustomizedButtonTitle;
     private boolean mIsProgressBarVisible;
+    private boolean mIsProgressiveRenderingEnabled;
 
     @Override
     public IconCompat getIcon() {
@@ -127,4 +128,13 @@ public class FakePanelContent implements PanelContent {
     public void setIsProgressBarVisible(boolean isProgressBarVisible) {
         mIsProgressBarVisible = isProgressBarVisible;
     }
+
+    @Override
+    public boolean isProgressiveRenderingEnabled() {
+        return mIsProgressiveRenderingEnabled;
+    }
+
+    public void setIsProgressiveRenderingEnabled(boolean isEnabled) {
+        mIsProgressiveRenderingEnabled = isEnabled;
+    }
 }
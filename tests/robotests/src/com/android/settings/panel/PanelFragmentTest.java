@@ -22,8 +22,12 @@ import static com.android.settings.panel.PanelContent.VIEW_TYPE_SLIDER;
 import static com.google.common.truth.Truth.assertThat;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -111,6 +115,32 @@ public class PanelFragmentTest {
         assertThat(countdownLatch.isPanelReadyToLoad()).isTrue();
     }
 
+    @Test
+    public void onSliceDeadline_progressive_shouldMarkSliceLoadedAndLog() {
+        mFakePanelContent.setIsProgressiveRenderingEnabled(true);
+        initFakeActivity();
+        mPanelFragment.onCreateView(LayoutInflater.from(mContext),
+                new LinearLayout(mContext), null);
+        final Uri sliceUri = mFakePanelContent.getSlices().get(0);
+
+        mPanelFragment.onSliceDeadline(sliceUri);
+
+        assertThat(mPanelFragment.mPanelSlicesLoaderCountdownLatch.isSliceLoaded(sliceUri))
+                .isTrue();
+        verify(mFakeFeatureFactory.metricsFeatureProvider).action(
+                0,
+                PanelLoggingContract.PanelSliceLoadActions.ACTION_DEADLINE_MISSED,
+                mFakePanelContent.getMetricsCategory(),
+                PanelLoggingContract.PanelSliceLoadKeys.KEY_PREFIX_DEADLINE_MISSED
+                        + sliceUri.getLastPathSegment(),
+                PanelContent.DEFAULT_SLICE_DEADLINE_MS);
+        // Only the panel open is counted as a visible page, and timings aren't interactions.
+        verify(mFakeFeatureFactory.metricsFeatureProvider, times(1)).action(anyInt(),
+                eq(SettingsEnums.PAGE_VISIBLE), anyInt(), any(), anyInt());
+        verify(mFakeFeatureFactory.metricsFeatureProvider, never()).action(anyInt(),
+                eq(SettingsEnums.ACTION_PANEL_INTERACTION), anyInt(), any(), anyInt());
+    }
+
     @Test
     public void onCreate_logsOpenEvent() {
         initFakeActivity();
@@ -0,0 +1,255 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.search;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import android.app.settings.SettingsEnums;
+
+import com.android.settingslib.core.instrumentation.MetricsFeatureProvider;
+import com.android.settingslib.search.SearchIndexableData;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(RobolectricTestRunner.class)
+public class SearchIndexableResultCacheTest {
+
+    private static final long EVALUATION_TIMEOUT_MS = 100L;
+    private static final long FIRST_RESULT_TIMEOUT_MS = 1000L;
+
+    private ExecutorService mExecutor;
+    private MetricsFeatureProvider mMetricsFeature;
+    private SearchIndexableResultCache mCache;
+    private SearchIndexableResultCache.ResultTable<String> mTable;
+    private List<SearchIndexableData> mBundles;
+
+    @Before
+    public void setUp() {
+        mExecutor = Executors.newFixedThreadPool(2);
+        mMetricsFeature = mock(MetricsFeatureProvider.class);
+        mCache = new SearchIndexableResultCache(mExecutor, mMetricsFeature,
+                EVALUATION_TIMEOUT_MS, FIRST_RESULT_TIMEOUT_MS);
+        mTable = new SearchIndexableResultCache.ResultTable<>(key -> key);
+        mBundles = new ArrayList<>();
+        mBundles.add(new SearchIndexableData(FakeSettingsFragment.class,
+                FakeSettingsFragment.SEARCH_INDEX_DATA_PROVIDER));
+        mBundles.add(new SearchIndexableData(String.class,
+                FakeSettingsFragment.SEARCH_INDEX_DATA_PROVIDER));
+    }
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+    }
+
+    @Test
+    public void evaluate_keepsProviderOrder() {
+        final List<String> result = mCache.evaluate(mBundles, mTable,
+                bundle -> Collections.singletonList(bundle.getTargetClass().getSimpleName()));
+
+        assertThat(result).containsExactly(FakeSettingsFragment.class.getSimpleName(),
+                String.class.getSimpleName()).inOrder();
+    }
+
+    @Test
+    public void getChangedSince_onlyChangedProvidersReturned() {
+        final List<String> fakeKeys = new ArrayList<>(Arrays.asList("a"));
+        mCache.evaluate(mBundles, mTable, bundle -> bundle.getTargetClass() == String.class
+                ? Collections.singletonList("b") : fakeKeys);
+        final long token = mTable.getGeneration();
+
+        fakeKeys.add("c");
+        mCache.evaluate(mBundles, mTable, bundle -> bundle.getTargetClass() == String.class
+                ? Collections.singletonList("b") : new ArrayList<>(fakeKeys));
+
+        assertThat(mTable.getChangedSince(token).keySet())
+                .containsExactly(FakeSettingsFragment.class.getName());
+        assertThat(mTable.getChangedSince(0L)).hasSize(2);
+    }
+
+    @Test
+    public void getChangedSince_sameHashDifferentContent_providerReturned() {
+        // "Aa" and "BB" have the same hash code.
+        mCache.evaluate(mBundles, mTable, bundle -> Collections.singletonList("Aa"));
+        final long token = mTable.getGeneration();
+
+        mCache.evaluate(mBundles, mTable, bundle -> Collections.singletonList("BB"));
+
+        assertThat(mTable.getChangedSince(token)).hasSize(2);
+    }
+
+    @Test
+    public void evaluate_slowProviderWithoutPreviousResult_waitsForIt() {
+        final List<String> result = mCache.evaluate(mBundles, mTable, bundle -> {
+            if (bundle.getTargetClass() == String.class) {
+                try {
+                    Thread.sleep(EVALUATION_TIMEOUT_MS * 3);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return Collections.singletonList(bundle.getTargetClass().getSimpleName());
+        });
+
+        assertThat(result).containsExactly(FakeSettingsFragment.class.getSimpleName(),
+                String.class.getSimpleName()).inOrder();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void evaluate_providerWithoutPreviousResultPastFirstResultTimeout_shouldThrow() {
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        try {
+            mCache.evaluate(mBundles, mTable, bundle -> {
+                if (bundle.getTargetClass() == String.class) {
+                    try {
+                        latch.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return Collections.singletonList(bundle.getTargetClass().getSimpleName());
+            });
+        } finally {
+            latch.countDown();
+        }
+    }
+
+    @Test
+    public void evaluate_shouldRecordProviderLatency() {
+        mCache.evaluate(mBundles, mTable, bundle -> Collections.singletonList("a"));
+
+        verify(mMetricsFeature).action(eq(SettingsEnums.PAGE_UNKNOWN),
+                eq(SettingsEnums.ACTION_SEARCH_INDEXABLE_PROVIDER_LATENCY),
+                eq(SettingsEnums.PAGE_UNKNOWN), eq(String.class.getName()), anyInt());
+    }
+
+    @Test
+    public void evaluateIfChanged_generationCoversStoredResults() {
+        final SearchIndexableResultCache.Evaluation<String> evaluation =
+                mCache.evaluateIfChanged(mBundles, mTable,
+                        bundle -> Collections.singletonList("a"), 1L /* inputVersion */);
+
+        assertThat(mTable.getChangedSince(evaluation.generation)).isEmpty();
+
+        mCache.evaluate(mBundles, mTable, bundle -> Collections.singletonList("b"));
+
+        assertThat(mTable.getChangedSince(evaluation.generation)).hasSize(2);
+    }
+
+    @Test
+    public void evaluateIfChanged_sameInputVersion_providersNotRunAgain() {
+        final AtomicInteger callCount = new AtomicInteger();
+        mCache.evaluateIfChanged(mBundles, mTable, bundle -> {
+            callCount.incrementAndGet();
+            return Collections.singletonList("a");
+        }, 1L /* inputVersion */);
+
+        final List<String> result = mCache.evaluateIfChanged(mBundles, mTable, bundle -> {
+            callCount.incrementAndGet();
+            return Collections.singletonList("b");
+        }, 1L /* inputVersion */).results;
+
+        assertThat(result).containsExactly("a", "a");
+        assertThat(callCount.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void evaluateIfChanged_inputVersionChanged_providersRunAgain() {
+        mCache.evaluateIfChanged(mBundles, mTable, bundle -> Collections.singletonList("a"),
+                1L /* inputVersion */);
+
+        final List<String> result = mCache.evaluateIfChanged(mBundles, mTable,
+                bundle -> Collections.singletonList("b"), 2L /* inputVersion */).results;
+
+        assertThat(result).containsExactly("b", "b");
+    }
+
+    @Test
+    public void evaluateIfChanged_afterFullEvaluation_providersRunAgain() {
+        mCache.evaluate(mBundles, mTable, bundle -> Collections.singletonList("a"));
+
+        final List<String> result = mCache.evaluateIfChanged(mBundles, mTable,
+                bundle -> Collections.singletonList("b"), 1L /* inputVersion */).results;
+
+        assertThat(result).containsExactly("b", "b");
+    }
+
+    @Test
+    public void evaluate_slowProviderWithPreviousResult_usesPreviousResult() {
+        mCache.evaluate(mBundles, mTable, bundle -> Collections.singletonList("a"));
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        final List<String> result = mCache.evaluate(mBundles, mTable, bundle -> {
+            if (bundle.getTargetClass() == String.class) {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return Collections.singletonList("b");
+        });
+        latch.countDown();
+
+        assertThat(result).containsExactly("b", "a").inOrder();
+    }
+
+    @Test
+    public void evaluate_failingProviderWithPreviousResult_usesPreviousResult() {
+        mCache.evaluate(mBundles, mTable, bundle -> Collections.singletonList("a"));
+
+        final List<String> result = mCache.evaluate(mBundles, mTable, bundle -> {
+            throw new IllegalStateException();
+        });
+
+        assertThat(result).containsExactly("a", "a");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void evaluate_failingProviderWithoutPreviousResult_shouldThrow() {
+        mCache.evaluate(mBundles, mTable, bundle -> {
+            throw new IllegalStateException();
+        });
+    }
+
+    @Test
+    public void evaluate_nullResult_treatedAsEmpty() {
+        final List<String> result = mCache.evaluate(mBundles, mTable, bundle -> null);
+
+        assertThat(result).isEmpty();
+        assertThat(mTable.getChangedSince(0L)).hasSize(2);
+    }
+}
@@ -41,6 +41,7 @@ import android.app.slice.SliceManager;
 import android.content.ContentResolver;
 import android.content.Context;
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.content.res.Resources.Theme;
 import android.net.Uri;
 import android.os.StrictMode;
@@ -87,9 +88,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Set;
 
 /**
@@ -149,7 +150,7 @@ public class SettingsSliceProviderTest {
 
         mProvider = spy(new SettingsSliceProvider());
         ShadowStrictMode.reset();
-        mProvider.mSliceWeakDataCache = new HashMap<>();
+        mProvider.mSliceDataCache = new SliceDataCache(SliceDataCache.MAX_SIZE_BYTES);
         mProvider.mSlicesDatabaseAccessor = new SlicesDatabaseAccessor(mContext);
         when(mProvider.getContext()).thenReturn(mContext);
 
@@ -184,7 +185,7 @@ public class SettingsSliceProviderTest {
         SliceTestUtils.insertSliceToDb(mContext, KEY);
 
         mProvider.loadSlice(INTENT_SLICE_URI);
-        SliceData data = mProvider.mSliceWeakDataCache.get(INTENT_SLICE_URI);
+        SliceData data = mProvider.mSliceDataCache.get(INTENT_SLICE_URI);
 
         assertThat(data.getKey()).isEqualTo(KEY);
         assertThat(data.getTitle()).isEqualTo(SliceTestUtils.FAKE_TITLE);
@@ -214,15 +215,56 @@ public class SettingsSliceProviderTest {
     }
 
     @Test
-    public void testLoadSlice_cachedEntryRemovedOnBuild() {
+    public void testLoadSlice_cachedEntryKeptOnBuild() {
         SliceData data = getMockData();
-        mProvider.mSliceWeakDataCache.put(data.getUri(), data);
+        mProvider.mSliceDataCache.put(data.getUri(), data);
         mProvider.onBindSlice(data.getUri());
         SliceTestUtils.insertSliceToDb(mContext, data.getKey());
 
-        SliceData cachedData = mProvider.mSliceWeakDataCache.get(data.getUri());
+        SliceData cachedData = mProvider.mSliceDataCache.get(data.getUri());
 
-        assertThat(cachedData).isNull();
+        assertThat(cachedData).isEqualTo(data);
+    }
+
+    @Test
+    public void warmUpSliceDataCache_loadsRecentlyUsedSlices() {
+        SliceTestUtils.insertSliceToDb(mContext, KEY);
+        mProvider.loadSlice(INTENT_SLICE_URI);
+        mProvider.mSliceDataCache = new SliceDataCache(SliceDataCache.MAX_SIZE_BYTES);
+
+        mProvider.warmUpSliceDataCache();
+
+        assertThat(mProvider.mSliceDataCache.get(INTENT_SLICE_URI).getKey()).isEqualTo(KEY);
+    }
+
+    @Test
+    public void warmUpSliceDataCache_indexStale_shouldNotLoadSlices() {
+        SliceTestUtils.insertSliceToDb(mContext, KEY);
+        mProvider.loadSlice(INTENT_SLICE_URI);
+        mProvider.mSliceDataCache = new SliceDataCache(SliceDataCache.MAX_SIZE_BYTES);
+        final Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(new Locale("ca"));
+
+        try {
+            mProvider.warmUpSliceDataCache();
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+
+        assertThat(mProvider.mSliceDataCache.get(INTENT_SLICE_URI)).isNull();
+    }
+
+    @Test
+    public void loadSlice_hotSlicesUnchanged_shouldNotSaveHotSlices() {
+        SliceTestUtils.insertSliceToDb(mContext, KEY);
+        mProvider.loadSlice(INTENT_SLICE_URI);
+        final SharedPreferences prefs =
+                mContext.getSharedPreferences("slice_data_cache", Context.MODE_PRIVATE);
+        prefs.edit().remove("hot_slice_uris").commit();
+
+        mProvider.loadSlice(INTENT_SLICE_URI);
+
+        assertThat(prefs.contains("hot_slice_uris")).isFalse();
     }
 
     @Test
@@ -230,7 +272,7 @@ public class SettingsSliceProviderTest {
         ShadowThreadUtils.setIsMainThread(true);
         final StrictMode.ThreadPolicy oldThreadPolicy = StrictMode.getThreadPolicy();
         SliceData data = getMockData();
-        mProvider.mSliceWeakDataCache.put(data.getUri(), data);
+        mProvider.mSliceDataCache.put(data.getUri(), data);
         mProvider.onBindSlice(data.getUri());
 
         final StrictMode.ThreadPolicy newThreadPolicy = StrictMode.getThreadPolicy();
@@ -244,7 +286,7 @@ public class SettingsSliceProviderTest {
         ShadowThreadUtils.setIsMainThread(false);
 
         SliceData data = getMockData();
-        mProvider.mSliceWeakDataCache.put(data.getUri(), data);
+        mProvider.mSliceDataCache.put(data.getUri(), data);
         mProvider.onBindSlice(data.getUri());
 
         assertThat(ShadowStrictMode.isThreadPolicyOverridden()).isTrue();
@@ -272,7 +314,7 @@ public class SettingsSliceProviderTest {
     public void onBindSlice_nightModeChanged_shouldReloadTheme() {
         mContext.getResources().getConfiguration().uiMode = UI_MODE_NIGHT_NO;
         final SliceData data = getMockData();
-        mProvider.mSliceWeakDataCache.put(data.getUri(), data);
+        mProvider.mSliceDataCache.put(data.getUri(), data);
         mProvider.onBindSlice(data.getUri());
 
         mContext.getResources().getConfiguration().uiMode = UI_MODE_NIGHT_YES;
@@ -285,7 +327,7 @@ public class SettingsSliceProviderTest {
     public void onBindSlice_nightModeNotChanged_shouldNotReloadTheme() {
         mContext.getResources().getConfiguration().uiMode = UI_MODE_NIGHT_NO;
         SliceData data = getMockData();
-        mProvider.mSliceWeakDataCache.put(data.getUri(), data);
+        mProvider.mSliceDataCache.put(data.getUri(), data);
         mProvider.onBindSlice(data.getUri());
 
         mContext.getResources().getConfiguration().uiMode = UI_MODE_NIGHT_NO;
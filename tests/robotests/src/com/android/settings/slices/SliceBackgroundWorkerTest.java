@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.slices;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.util.Scheduler;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class SliceBackgroundWorkerTest {
+
+    private static final Uri URI_1 = Uri.parse("content://com.android.settings.slices/test1");
+    private static final Uri URI_2 = Uri.parse("content://com.android.settings.slices/test2");
+    private static final long FRAME_WINDOW = 16L;
+
+    @Mock
+    private Context mContext;
+    @Mock
+    private ContentResolver mResolver;
+
+    private Scheduler mScheduler;
+    private TestWorker mWorker;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        when(mContext.getContentResolver()).thenReturn(mResolver);
+        SliceBackgroundWorker.NotifySliceChangeHandler.setInstance(
+                new SliceBackgroundWorker.NotifySliceChangeHandler(Looper.getMainLooper()));
+        mScheduler = Robolectric.getForegroundThreadScheduler();
+        mScheduler.pause();
+        mWorker = new TestWorker(mContext, URI_1);
+    }
+
+    @After
+    public void tearDown() {
+        SliceBackgroundWorker.NotifySliceChangeHandler.setInstance(null);
+        mScheduler.unPause();
+    }
+
+    @Test
+    public void notifySliceChange_calledRepeatedly_shouldNotifyOnce() {
+        for (int i = 0; i < 10; i++) {
+            mWorker.notifySliceChange();
+        }
+
+        mScheduler.advanceToLastPostedRunnable();
+
+        verify(mResolver).notifyChange(URI_1, null);
+    }
+
+    @Test
+    public void notifySliceChange_severalSlicesInSameFrame_shouldNotifyTogether() {
+        final TestWorker otherWorker = new TestWorker(mContext, URI_2);
+
+        mWorker.notifySliceChange();
+        otherWorker.notifySliceChange();
+        mScheduler.advanceToLastPostedRunnable();
+
+        final ArgumentCaptor<Collection<Uri>> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(mResolver).notifyChange(captor.capture(), isNull(), eq(0));
+        assertThat(captor.getValue()).containsExactly(URI_1, URI_2);
+        verify(mResolver, never()).notifyChange(any(Uri.class), any());
+    }
+
+    @Test
+    public void notifySliceChange_clientNotRebound_shouldDoubleIntervalUpToMax() {
+        assertNextUpdateDelay(300L);
+        assertNextUpdateDelay(300L);
+        assertNextUpdateDelay(600L);
+        assertNextUpdateDelay(1200L);
+        assertNextUpdateDelay(2400L);
+        assertNextUpdateDelay(2400L);
+
+        verify(mResolver, times(6)).notifyChange(URI_1, null);
+    }
+
+    @Test
+    public void onSliceBound_clientKeepsUp_shouldHalveIntervalDownToMin() {
+        for (int i = 0; i < 5; i++) {
+            measureNextUpdateDelay();
+        }
+
+        SliceBackgroundWorker.onSliceBound(URI_1);
+        assertNextUpdateDelay(2400L);
+        SliceBackgroundWorker.onSliceBound(URI_1);
+        assertNextUpdateDelay(1200L);
+        SliceBackgroundWorker.onSliceBound(URI_1);
+        assertNextUpdateDelay(600L);
+        SliceBackgroundWorker.onSliceBound(URI_1);
+        assertNextUpdateDelay(300L);
+        SliceBackgroundWorker.onSliceBound(URI_1);
+        assertNextUpdateDelay(300L);
+    }
+
+    @Test
+    public void updateResults_resultsRevertedWithinInterval_shouldNotNotify() {
+        mWorker.setResults(Collections.singletonList("a"));
+        mScheduler.advanceToLastPostedRunnable();
+        verify(mResolver).notifyChange(URI_1, null);
+
+        mWorker.setResults(Collections.singletonList("b"));
+        mWorker.setResults(Collections.singletonList("a"));
+        mScheduler.advanceToLastPostedRunnable();
+
+        verify(mResolver).notifyChange(URI_1, null);
+    }
+
+    @Test
+    public void notifySliceChange_resultsUnchanged_shouldStillNotify() {
+        mWorker.setResults(Collections.singletonList("a"));
+        mScheduler.advanceToLastPostedRunnable();
+
+        mWorker.setResults(Arrays.asList("a", "b"));
+        mWorker.setResults(Collections.singletonList("a"));
+        mWorker.notifySliceChange();
+        mScheduler.advanceToLastPostedRunnable();
+
+        verify(mResolver, times(2)).notifyChange(URI_1, null);
+    }
+
+    @Test
+    public void unpin_pendingUpdate_shouldNotNotify() {
+        mWorker.notifySliceChange();
+
+        mWorker.unpin();
+        mScheduler.advanceToLastPostedRunnable();
+
+        verify(mResolver, never()).notifyChange(any(Uri.class), any());
+        verify(mResolver, never()).notifyChange(any(Collection.class), any(), anyInt());
+    }
+
+    private void assertNextUpdateDelay(long interval) {
+        final long delay = measureNextUpdateDelay();
+        // Due times are aligned to the next frame window.
+        assertThat(delay).isAtLeast(interval);
+        assertThat(delay).isLessThan(interval + FRAME_WINDOW);
+    }
+
+    /**
+     * Requests an update right after the previous notification, and returns how long it took
+     * to be notified.
+     */
+    private long measureNextUpdateDelay() {
+        final long start = SystemClock.uptimeMillis();
+        mWorker.notifySliceChange();
+        mScheduler.advanceToNextPostedRunnable();
+        return SystemClock.uptimeMillis() - start;
+    }
+
+    private static class TestWorker extends SliceBackgroundWorker<String> {
+
+        TestWorker(Context context, Uri uri) {
+            super(context, uri);
+        }
+
+        @Override
+        protected void onSlicePinned() {
+        }
+
+        @Override
+        protected void onSliceUnpinned() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        void setResults(List<String> results) {
+            updateResults(results);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.slices;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.net.Uri;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Locale;
+
+@RunWith(RobolectricTestRunner.class)
+public class SliceDataCacheTest {
+
+    private Context mContext;
+    private SliceDataCache mCache;
+    private SliceData mData1;
+    private SliceData mData2;
+    private SliceData mData3;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mData1 = createSliceData("key1");
+        mData2 = createSliceData("key2");
+        mData3 = createSliceData("key3");
+        // Room for exactly two entries.
+        mCache = new SliceDataCache(SliceDataCache.sizeOf(mData1) * 2);
+    }
+
+    @Test
+    public void put_overBudget_evictsLeastRecentlyUsed() {
+        mCache.put(mData1.getUri(), mData1);
+        mCache.put(mData2.getUri(), mData2);
+        mCache.get(mData1.getUri());
+
+        mCache.put(mData3.getUri(), mData3);
+
+        assertThat(mCache.get(mData1.getUri())).isEqualTo(mData1);
+        assertThat(mCache.get(mData2.getUri())).isNull();
+        assertThat(mCache.get(mData3.getUri())).isEqualTo(mData3);
+        assertThat(mCache.getEvictionCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void put_overBudget_doesNotEvictPinned() {
+        mCache.pin(mData1.getUri());
+        mCache.put(mData1.getUri(), mData1);
+        mCache.put(mData2.getUri(), mData2);
+
+        mCache.put(mData3.getUri(), mData3);
+
+        assertThat(mCache.get(mData1.getUri())).isEqualTo(mData1);
+        assertThat(mCache.get(mData2.getUri())).isNull();
+    }
+
+    @Test
+    public void unpin_overBudget_evicts() {
+        mCache.pin(mData1.getUri());
+        mCache.pin(mData2.getUri());
+        mCache.put(mData1.getUri(), mData1);
+        mCache.put(mData2.getUri(), mData2);
+        mCache.put(mData3.getUri(), mData3);
+        assertThat(mCache.getEvictionCount()).isEqualTo(1);
+
+        mCache.unpin(mData1.getUri());
+
+        assertThat(mCache.get(mData1.getUri())).isNull();
+        assertThat(mCache.get(mData2.getUri())).isEqualTo(mData2);
+    }
+
+    @Test
+    public void invalidateIfConfigChanged_localeChanged_dropsEntries() {
+        mCache.invalidateIfConfigChanged(mContext.getResources());
+        mCache.put(mData1.getUri(), mData1);
+
+        final Configuration config = mContext.getResources().getConfiguration();
+        config.setLocale(Locale.JAPAN);
+        mContext.getResources().updateConfiguration(config, null /* metrics */);
+        mCache.invalidateIfConfigChanged(mContext.getResources());
+
+        assertThat(mCache.get(mData1.getUri())).isNull();
+    }
+
+    @Test
+    public void invalidateIfConfigChanged_noChange_keepsEntries() {
+        mCache.invalidateIfConfigChanged(mContext.getResources());
+        mCache.put(mData1.getUri(), mData1);
+
+        mCache.invalidateIfConfigChanged(mContext.getResources());
+
+        assertThat(mCache.get(mData1.getUri())).isEqualTo(mData1);
+    }
+
+    @Test
+    public void dump_reportsCounters() throws Exception {
+        mCache.put(mData1.getUri(), mData1);
+        mCache.get(mData1.getUri());
+        mCache.get(mData2.getUri());
+
+        final JSONObject dump = mCache.dump();
+
+        assertThat(dump.getInt("entries")).isEqualTo(1);
+        assertThat(dump.getLong("hits")).isEqualTo(1);
+        assertThat(dump.getLong("misses")).isEqualTo(1);
+    }
+
+    private static SliceData createSliceData(String key) {
+        return new SliceData.Builder()
+                .setKey(key)
+                .setTitle("title")
+                .setFragmentName("fragment")
+                .setPreferenceControllerClassName("controller")
+                .setUri(Uri.parse("content://com.android.settings.slices/action/" + key))
+                .build();
+    }
+}
@@ -25,9 +25,11 @@ import static org.mockito.Mockito.spy;
 
 import android.accessibilityservice.AccessibilityServiceInfo;
 import android.content.Context;
+import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.content.pm.ResolveInfo;
 import android.content.pm.ServiceInfo;
+import android.os.Build;
 import android.text.TextUtils;
 
 import com.android.settings.R;
@@ -114,6 +116,17 @@ public class SliceDataConverterTest {
         }
     }
 
+    @Test
+    public void getSourceState_containsBuildAndPackageVersion() throws Exception {
+        final PackageInfo info = mContext.getPackageManager().getPackageInfo(
+                mContext.getPackageName(), 0 /* flags */);
+
+        final String state = mSliceDataConverter.getSourceState();
+
+        assertThat(state).contains(Build.FINGERPRINT);
+        assertThat(state).contains(info.getLongVersionCode() + "@" + info.lastUpdateTime);
+    }
+
     private void assertFakeSlice(SliceData fakeSlice) {
         assertThat(fakeSlice.getKey()).isEqualTo(FAKE_KEY);
         assertThat(fakeSlice.getTitle()).isEqualTo(FAKE_TITLE);
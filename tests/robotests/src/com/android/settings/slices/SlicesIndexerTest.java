@@ -18,6 +18,8 @@ package com.android.settings.slices;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.spy;
 
@@ -27,6 +29,7 @@ import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
 
+import com.android.settings.slices.SliceDataConverter.ConvertedSource;
 import com.android.settings.slices.SlicesDatabaseHelper.IndexColumns;
 import com.android.settings.testutils.DatabaseTestUtils;
 
@@ -38,7 +41,12 @@ import org.robolectric.RobolectricTestRunner;
 import org.robolectric.RuntimeEnvironment;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
 
 @RunWith(RobolectricTestRunner.class)
 public class SlicesIndexerTest {
@@ -58,6 +66,7 @@ public class SlicesIndexerTest {
     private Context mContext;
 
     private SlicesIndexer mManager;
+    private int mStubCount;
 
 
     @Before
@@ -94,10 +103,10 @@ public class SlicesIndexerTest {
     }
 
     @Test
-    public void testInsertSliceData_indexedStateSet() {
+    public void testInsertSliceData_indexedStateSet() throws Exception {
         final SlicesDatabaseHelper helper = SlicesDatabaseHelper.getInstance(mContext);
         helper.setIndexedState();
-        doReturn(new ArrayList<SliceData>()).when(mManager).getSliceData();
+        stubSliceData(new ArrayList<>());
 
         mManager.run();
 
@@ -105,9 +114,9 @@ public class SlicesIndexerTest {
     }
 
     @Test
-    public void testInsertSliceData_nonPublicSlice_mockDataInserted() {
+    public void testInsertSliceData_nonPublicSlice_mockDataInserted() throws Exception {
         final List<SliceData> sliceData = getMockIndexableData(false);
-        doReturn(sliceData).when(mManager).getSliceData();
+        stubSliceData(sliceData);
 
         mManager.run();
 
@@ -150,9 +159,9 @@ public class SlicesIndexerTest {
     }
 
     @Test
-    public void insertSliceData_publicSlice_mockDataInserted() {
+    public void insertSliceData_publicSlice_mockDataInserted() throws Exception {
         final List<SliceData> sliceData = getMockIndexableData(true);
-        doReturn(sliceData).when(mManager).getSliceData();
+        stubSliceData(sliceData);
 
         mManager.run();
 
@@ -194,6 +203,178 @@ public class SlicesIndexerTest {
         }
     }
 
+    @Test
+    public void indexSliceData_localeChanged_onlyUpdatesLocalizedColumns() throws Exception {
+        stubSliceData(getMockIndexableData(false));
+        mManager.run();
+        final Map<String, Long> rowIds = getRowIds();
+
+        final List<SliceData> localizedData = new ArrayList<>();
+        for (SliceData dataRow : getMockIndexableData(false)) {
+            localizedData.add(copyOf(dataRow).setTitle("localized " + dataRow.getTitle())
+                    .build());
+        }
+        stubSliceData(localizedData);
+        markIndexedStateStale();
+        mManager.run();
+
+        assertThat(getRowIds()).isEqualTo(rowIds);
+        final SQLiteDatabase db = SlicesDatabaseHelper.getInstance(mContext).getWritableDatabase();
+        try (Cursor cursor = db.rawQuery("SELECT * FROM slices_index", null)) {
+            while (cursor.moveToNext()) {
+                assertThat(cursor.getString(cursor.getColumnIndex(IndexColumns.TITLE)))
+                        .startsWith("localized ");
+            }
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    public void indexSliceData_fragmentChanged_onlyRewritesChangedFragment() throws Exception {
+        final List<SliceData> sliceData = getMockIndexableData(false);
+        final SliceData otherRow = copyOf(sliceData.get(0)).setKey("otherKey")
+                .setFragmentName("other fragment").build();
+        sliceData.add(otherRow);
+        stubSliceData(sliceData);
+        mManager.run();
+        final Map<String, Long> rowIds = getRowIds();
+
+        final List<SliceData> newSliceData = getMockIndexableData(false);
+        newSliceData.add(copyOf(otherRow).setSliceType(SliceData.SliceType.SWITCH).build());
+        stubSliceData(newSliceData);
+        markIndexedStateStale();
+        mManager.run();
+
+        final Map<String, Long> newRowIds = getRowIds();
+        assertThat(newRowIds).hasSize(rowIds.size());
+        for (String key : KEYS) {
+            assertThat(newRowIds.get(key)).isEqualTo(rowIds.get(key));
+        }
+        assertThat(newRowIds.get("otherKey")).isNotEqualTo(rowIds.get("otherKey"));
+    }
+
+    @Test
+    public void indexSliceData_fragmentRemoved_deletesItsRows() throws Exception {
+        final List<SliceData> sliceData = getMockIndexableData(false);
+        sliceData.add(copyOf(sliceData.get(0)).setKey("otherKey")
+                .setFragmentName("other fragment").build());
+        stubSliceData(sliceData);
+        mManager.run();
+
+        stubSliceData(getMockIndexableData(false));
+        markIndexedStateStale();
+        mManager.run();
+
+        assertThat(getRowIds().keySet()).containsExactly(KEYS[0], KEYS[1], KEYS[2]);
+    }
+
+    @Test
+    public void indexSliceData_inputsUnchanged_keepsRowsWithoutConverting() throws Exception {
+        stubSliceData(getMockIndexableData(false), "input");
+        mManager.run();
+        final Map<String, Long> rowIds = getRowIds();
+
+        // Rows which would have been converted differently are ignored.
+        final List<SliceData> changedData = new ArrayList<>();
+        for (SliceData dataRow : getMockIndexableData(false)) {
+            changedData.add(copyOf(dataRow).setKey("changed " + dataRow.getKey()).build());
+        }
+        stubSliceData(changedData, "input");
+        markIndexedStateStale();
+        mManager.run();
+
+        assertThat(getRowIds()).isEqualTo(rowIds);
+
+        stubSliceData(changedData, "new input");
+        markIndexedStateStale();
+        mManager.run();
+
+        assertThat(getRowIds().keySet()).containsExactly("changed " + KEYS[0],
+                "changed " + KEYS[1], "changed " + KEYS[2]);
+    }
+
+    @Test
+    public void indexSliceData_conversionFailed_indexNotMarkedComplete() {
+        final SlicesDatabaseHelper helper = SlicesDatabaseHelper.getInstance(mContext);
+        final CompletableFuture<ConvertedSource> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IllegalStateException());
+        final List<Future<ConvertedSource>> futures = new ArrayList<>();
+        futures.add(CompletableFuture.completedFuture(new ConvertedSource(FRAGMENT_NAME,
+                "input", getMockIndexableData(false))));
+        futures.add(failed);
+        doReturn(futures).when(mManager).convertSliceData(any());
+
+        try {
+            mManager.run();
+        } catch (IllegalStateException expected) {
+            // Expected, the index is retried on the next run.
+        }
+
+        assertThat(helper.isSliceDataIndexed()).isFalse();
+        assertThat(getRowIds()).isEmpty();
+    }
+
+    private void markIndexedStateStale() {
+        mContext.getSharedPreferences("slices_shared_prefs", Context.MODE_PRIVATE)
+                .edit()
+                .clear()
+                .commit();
+    }
+
+    private Map<String, Long> getRowIds() {
+        final Map<String, Long> rowIds = new HashMap<>();
+        final SQLiteDatabase db = SlicesDatabaseHelper.getInstance(mContext).getWritableDatabase();
+        try (Cursor cursor = db.rawQuery("SELECT rowid, key FROM slices_index", null)) {
+            while (cursor.moveToNext()) {
+                rowIds.put(cursor.getString(1), cursor.getLong(0));
+            }
+        } finally {
+            db.close();
+        }
+        return rowIds;
+    }
+
+    private static SliceData.Builder copyOf(SliceData dataRow) {
+        return new SliceData.Builder()
+                .setKey(dataRow.getKey())
+                .setTitle(dataRow.getTitle())
+                .setSummary(dataRow.getSummary())
+                .setScreenTitle(dataRow.getScreenTitle())
+                .setKeywords(dataRow.getKeywords())
+                .setFragmentName(dataRow.getFragmentClassName())
+                .setIcon(dataRow.getIconResource())
+                .setUri(dataRow.getUri())
+                .setPreferenceControllerClassName(dataRow.getPreferenceController())
+                .setSliceType(dataRow.getSliceType())
+                .setUnavailableSliceSubtitle(dataRow.getUnavailableSliceSubtitle())
+                .setIsPublicSlice(dataRow.isPublicSlice());
+    }
+
+    private void stubSliceData(List<SliceData> sliceData) {
+        // Every run converts every source, as if its inputs had changed.
+        stubSliceData(sliceData, "input" + mStubCount++);
+    }
+
+    private void stubSliceData(List<SliceData> sliceData, String inputDigest) {
+        final Map<String, List<SliceData>> rowsBySource = new LinkedHashMap<>();
+        for (SliceData dataRow : sliceData) {
+            rowsBySource.computeIfAbsent(dataRow.getFragmentClassName(), k -> new ArrayList<>())
+                    .add(dataRow);
+        }
+        doAnswer(invocation -> {
+            final SliceDataConverter.IndexedSources indexedSources = invocation.getArgument(0);
+            final List<Future<ConvertedSource>> futures = new ArrayList<>();
+            for (Map.Entry<String, List<SliceData>> entry : rowsBySource.entrySet()) {
+                final String source = entry.getKey();
+                futures.add(CompletableFuture.completedFuture(new ConvertedSource(source,
+                        inputDigest, indexedSources.isIndexed(source, inputDigest)
+                                ? null : entry.getValue())));
+            }
+            return futures;
+        }).when(mManager).convertSliceData(any());
+    }
+
     private void insertSpecialCase(String key, String title) {
         final ContentValues values = new ContentValues();
         values.put(IndexColumns.KEY, key);
@@ -49,6 +49,7 @@ import android.view.View;
 
 import androidx.fragment.app.FragmentActivity;
 import androidx.preference.Preference;
+import androidx.preference.PreferenceCategory;
 import androidx.preference.PreferenceManager;
 import androidx.preference.PreferenceScreen;
 import androidx.recyclerview.widget.RecyclerView;
@@ -71,6 +72,8 @@ import org.robolectric.RuntimeEnvironment;
 import org.robolectric.annotation.Config;
 import org.robolectric.shadows.ShadowToast;
 
+import java.util.Arrays;
+
 @RunWith(RobolectricTestRunner.class)
 public class WifiSettingsTest {
 
@@ -282,6 +285,46 @@ public class WifiSettingsTest {
         verify(mWifiSettings).changeNextButtonState(anyBoolean());
     }
 
+    @Test
+    public void updateWifiEntryPreferenceList_sameKeyNewEntry_shouldRebindPreferenceInPlace() {
+        final PreferenceCategory category = createPreferenceCategory();
+        final WifiEntry otherWifiEntry = createWifiEntry("key2");
+        mWifiSettings.updateWifiEntryPreferenceList(category,
+                Arrays.asList(createWifiEntry("key1"), otherWifiEntry));
+        final LongPressWifiEntryPreference pref = category.findPreference("key1");
+
+        final WifiEntry newWifiEntry = createWifiEntry("key1");
+        final WifiSettings.UpdatePassStats stats = mWifiSettings.updateWifiEntryPreferenceList(
+                category, Arrays.asList(newWifiEntry, otherWifiEntry));
+
+        assertThat((Preference) category.findPreference("key1")).isSameInstanceAs(pref);
+        assertThat(pref.getWifiEntry()).isSameInstanceAs(newWifiEntry);
+        assertThat(stats.mCreated).isEqualTo(0);
+        assertThat(stats.mRebound).isEqualTo(1);
+        assertThat(stats.mMoved).isEqualTo(0);
+        assertThat(stats.mRemoved).isEqualTo(0);
+    }
+
+    @Test
+    public void updateWifiEntryPreferenceList_reordered_shouldOnlyMoveAndRemove() {
+        final PreferenceCategory category = createPreferenceCategory();
+        final WifiEntry wifiEntry1 = createWifiEntry("key1");
+        final WifiEntry wifiEntry3 = createWifiEntry("key3");
+        mWifiSettings.updateWifiEntryPreferenceList(category,
+                Arrays.asList(wifiEntry1, createWifiEntry("key2"), wifiEntry3));
+
+        final WifiSettings.UpdatePassStats stats = mWifiSettings.updateWifiEntryPreferenceList(
+                category, Arrays.asList(wifiEntry3, wifiEntry1));
+
+        assertThat((Preference) category.findPreference("key2")).isNull();
+        assertThat(category.findPreference("key3").getOrder()).isEqualTo(0);
+        assertThat(category.findPreference("key1").getOrder()).isEqualTo(1);
+        assertThat(stats.mCreated).isEqualTo(0);
+        assertThat(stats.mRebound).isEqualTo(0);
+        assertThat(stats.mMoved).isEqualTo(2);
+        assertThat(stats.mRemoved).isEqualTo(1);
+    }
+
     @Test
     public void openSubscriptionHelpPage_shouldCallStartActivityForResult() {
         doReturn(new Intent()).when(mWifiSettings).getHelpIntent(mContext, FAKE_URI_STRING);
@@ -356,6 +399,20 @@ public class WifiSettingsTest {
         verify(mWifiManager).connect(eq(config), any(WifiManager.ActionListener.class));
     }
 
+    private PreferenceCategory createPreferenceCategory() {
+        final PreferenceScreen screen =
+                new PreferenceManager(mContext).createPreferenceScreen(mContext);
+        final PreferenceCategory category = new PreferenceCategory(mContext);
+        screen.addPreference(category);
+        return category;
+    }
+
+    private static WifiEntry createWifiEntry(String key) {
+        final WifiEntry wifiEntry = mock(WifiEntry.class);
+        when(wifiEntry.getKey()).thenReturn(key);
+        return wifiEntry;
+    }
+
     private WifiDialog2 createWifiDialog2(int mode, WifiConfiguration config) {
         final WifiEntry wifiEntry = mock(WifiEntry.class);
         when(wifiEntry.canConnect()).thenReturn(true);
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Parcel;
+import android.os.ParcelFileDescriptor;
+import android.os.ServiceManager;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.android.internal.app.procstats.IProcessStats;
+import com.android.internal.app.procstats.ProcessStats;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Measures switching between the durations of the memory settings over process stats recorded
+ * from the device, once loading the stats at every switch as before, and once with the stats and
+ * the aggregates memoized by {@link ProcStatsData}. Results are reported through instrumentation
+ * status, e.g. {@code atest SettingsUnitTests:ProcStatsDataBenchmarkTest}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ProcStatsDataBenchmarkTest {
+
+    private static final String TAG = "ProcStatsDataBenchmark";
+    private static final int WARM_UP_ITERATIONS = 3;
+    private static final int ITERATIONS = 10;
+
+    private Context mContext;
+    // The process stats of each duration of ProcessStatsBase.sDurations, as parcels.
+    private final List<Parcel> mRecordedStats = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        mContext = ApplicationProvider.getApplicationContext();
+        final IProcessStats processStats = IProcessStats.Stub.asInterface(
+                ServiceManager.getService(ProcessStats.SERVICE_NAME));
+        for (long duration : ProcessStatsBase.sDurations) {
+            final ParcelFileDescriptor pfd = processStats.getStatsOverTime(duration);
+            final ProcessStats stats = new ProcessStats(false);
+            try (InputStream is = new ParcelFileDescriptor.AutoCloseInputStream(pfd)) {
+                stats.read(is);
+            }
+            final Parcel parcel = Parcel.obtain();
+            stats.writeToParcel(parcel, 0);
+            mRecordedStats.add(parcel);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        for (Parcel parcel : mRecordedStats) {
+            parcel.recycle();
+        }
+    }
+
+    @Test
+    public void switchDurations_uncachedVersusMemoized() {
+        final long uncachedMedian = measure(/*memoized=*/ false);
+        final long memoizedMedian = measure(/*memoized=*/ true);
+
+        final Bundle results = new Bundle();
+        results.putString("ProcStatsData_uncached_median_us", String.valueOf(uncachedMedian));
+        results.putString("ProcStatsData_memoized_median_us", String.valueOf(memoizedMedian));
+        results.putString("ProcStatsData_speedup", String.format("%.2f",
+                memoizedMedian == 0 ? 0d : (double) uncachedMedian / memoizedMedian));
+        results.putString("ProcStatsData_durations",
+                String.valueOf(ProcessStatsBase.sDurations.length));
+        Log.i(TAG, results.toString());
+        getInstrumentation().sendStatus(0, results);
+    }
+
+    /**
+     * Returns the median wall time of switching through every duration once. Without
+     * memoization every iteration starts from a new {@link ProcStatsData}, so that every switch
+     * loads the stats through {@link ProcStatsData#refreshStats(boolean)}, like every duration
+     * switch used to. Loads replay the recorded stats instead of querying the live service, so
+     * both runs measure the same stats.
+     */
+    private long measure(boolean memoized) {
+        final List<Long> wallTimes = new ArrayList<>();
+        ProcStatsData statsData = null;
+        for (int i = 0; i < WARM_UP_ITERATIONS + ITERATIONS; i++) {
+            if (statsData == null || !memoized) {
+                statsData = new ProcStatsData(mContext, false, this::readRecordedStats);
+            }
+            final long startTime = SystemClock.elapsedRealtimeNanos();
+            for (long duration : ProcessStatsBase.sDurations) {
+                statsData.setDuration(duration);
+            }
+            final long wallTime = (SystemClock.elapsedRealtimeNanos() - startTime) / 1000;
+            assertThat(statsData.getEntries()).isNotEmpty();
+            if (i >= WARM_UP_ITERATIONS) {
+                wallTimes.add(wallTime);
+            }
+        }
+        Collections.sort(wallTimes);
+        return wallTimes.get(wallTimes.size() / 2);
+    }
+
+    private ProcessStats readRecordedStats(long duration) {
+        int index = 0;
+        while (ProcessStatsBase.sDurations[index] != duration) {
+            index++;
+        }
+        final Parcel parcel = mRecordedStats.get(index);
+        parcel.setDataPosition(0);
+        return ProcessStats.CREATOR.createFromParcel(parcel);
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.fuelgauge;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Compares {@link LegacyConvertUtils} and the columnar {@link ConvertUtils#getIndexedUsageMap} on
+ * synthetic 24 hours battery histories and reports the wall time of both through instrumentation
+ * status, e.g. {@code atest SettingsUnitTests:ConvertUtilsBenchmarkTest}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ConvertUtilsBenchmarkTest {
+
+    private static final String TAG = "ConvertUtilsBenchmark";
+    private static final int WARM_UP_ITERATIONS = 5;
+    private static final int ITERATIONS = 20;
+    // 24 hours of history is aggregated into 12 two hours time slots from 25 snapshots.
+    private static final int TIME_SLOT_SIZE = 12;
+    private static final int UID_COUNT = 400;
+
+    private Context mContext;
+    private long[] mBatteryHistoryKeys;
+    private Map<Long, Map<String, BatteryHistEntry>> mBatteryHistoryMap;
+
+    @Before
+    public void setUp() {
+        mContext = ApplicationProvider.getApplicationContext();
+        mBatteryHistoryKeys = new long[TIME_SLOT_SIZE * 2 + 1];
+        mBatteryHistoryMap = new HashMap<>();
+        final Random random = new Random(/*seed=*/ 2021);
+        final double[] consumePowers = new double[UID_COUNT];
+        final long[] foregroundUsageTimes = new long[UID_COUNT];
+        final long[] backgroundUsageTimes = new long[UID_COUNT];
+        for (int index = 0; index < mBatteryHistoryKeys.length; index++) {
+            mBatteryHistoryKeys[index] = 1619196786769L + index * 3600000L;
+            final Map<String, BatteryHistEntry> entryMap = new HashMap<>();
+            final BatteryHistEntry fakeEntry = createBatteryHistEntry(
+                ConvertUtils.FAKE_PACKAGE_NAME, /*uid=*/ 0, 0, 0L, 0L);
+            entryMap.put(fakeEntry.getKey(), fakeEntry);
+            for (int uid = 1; uid < UID_COUNT; uid++) {
+                // Most apps only run in a part of the snapshots.
+                if (random.nextInt(3) == 0) {
+                    continue;
+                }
+                consumePowers[uid] += random.nextDouble() * 10;
+                foregroundUsageTimes[uid] += random.nextInt(600000);
+                backgroundUsageTimes[uid] += random.nextInt(1200000);
+                final BatteryHistEntry entry = createBatteryHistEntry(
+                    "com.android.package" + uid, 10000 + uid, consumePowers[uid],
+                    foregroundUsageTimes[uid], backgroundUsageTimes[uid]);
+                entryMap.put(entry.getKey(), entry);
+            }
+            mBatteryHistoryMap.put(Long.valueOf(mBatteryHistoryKeys[index]), entryMap);
+        }
+    }
+
+    @Test
+    public void getIndexedUsageMap_legacyVersusColumnar() {
+        final long legacyMedian = measure(/*columnar=*/ false);
+        final long columnarMedian = measure(/*columnar=*/ true);
+
+        final Bundle results = new Bundle();
+        results.putString("ConvertUtils_legacy_median_us", String.valueOf(legacyMedian));
+        results.putString("ConvertUtils_columnar_median_us", String.valueOf(columnarMedian));
+        results.putString("ConvertUtils_speedup", String.format("%.2f",
+                columnarMedian == 0 ? 0d : (double) legacyMedian / columnarMedian));
+        results.putString("ConvertUtils_snapshots", String.valueOf(mBatteryHistoryKeys.length));
+        results.putString("ConvertUtils_uids", String.valueOf(UID_COUNT));
+        Log.i(TAG, results.toString());
+        getInstrumentation().sendStatus(0, results);
+    }
+
+    private long measure(boolean columnar) {
+        final List<Long> wallTimes = new ArrayList<>();
+        for (int i = 0; i < WARM_UP_ITERATIONS + ITERATIONS; i++) {
+            final long startTime = SystemClock.elapsedRealtimeNanos();
+            final Map<Integer, List<BatteryDiffEntry>> resultMap = columnar
+                    ? ConvertUtils.getIndexedUsageMap(mContext, TIME_SLOT_SIZE,
+                            mBatteryHistoryKeys, mBatteryHistoryMap,
+                            /*purgeLowPercentageAndFakeData=*/ true)
+                    : LegacyConvertUtils.getIndexedUsageMap(mContext, TIME_SLOT_SIZE,
+                            mBatteryHistoryKeys, mBatteryHistoryMap,
+                            /*purgeLowPercentageAndFakeData=*/ true);
+            final long wallTime = (SystemClock.elapsedRealtimeNanos() - startTime) / 1000;
+            assertThat(resultMap).hasSize(TIME_SLOT_SIZE + 1);
+            if (i >= WARM_UP_ITERATIONS) {
+                wallTimes.add(wallTime);
+            }
+        }
+        Collections.sort(wallTimes);
+        return wallTimes.get(wallTimes.size() / 2);
+    }
+
+    private static BatteryHistEntry createBatteryHistEntry(String packageName, long uid,
+            double consumePower, long foregroundUsageTimeInMs, long backgroundUsageTimeInMs) {
+        final ContentValues values = new ContentValues();
+        values.put(BatteryHistEntry.KEY_PACKAGE_NAME, packageName);
+        values.put(BatteryHistEntry.KEY_UID, Long.valueOf(uid));
+        values.put(BatteryHistEntry.KEY_CONSUMER_TYPE,
+                Integer.valueOf(ConvertUtils.CONSUMER_TYPE_UID_BATTERY));
+        values.put(BatteryHistEntry.KEY_CONSUME_POWER, consumePower);
+        values.put(BatteryHistEntry.KEY_FOREGROUND_USAGE_TIME,
+                Long.valueOf(foregroundUsageTimeInMs));
+        values.put(BatteryHistEntry.KEY_BACKGROUND_USAGE_TIME,
+                Long.valueOf(backgroundUsageTimeInMs));
+        return new BatteryHistEntry(values);
+    }
+}
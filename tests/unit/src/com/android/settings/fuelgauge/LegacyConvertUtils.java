@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.fuelgauge;
+
+import android.content.ContentValues;
+import android.content.Context;
+
+import com.android.settings.overlay.FeatureFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The map based implementation of {@link ConvertUtils#getIndexedUsageMap}, which allocates a
+ * {@link BatteryDiffEntry} for every key of every time slot. The columnar implementation is
+ * compared against it, both for its results and for its performance.
+ */
+final class LegacyConvertUtils {
+    private static final Map<String, BatteryHistEntry> EMPTY_BATTERY_MAP = new HashMap<>();
+    private static final BatteryHistEntry EMPTY_BATTERY_HIST_ENTRY =
+        new BatteryHistEntry(new ContentValues());
+
+    private LegacyConvertUtils() {}
+
+    /**
+     * Gets indexed battery usage data for each corresponding time slot, like
+     * {@link ConvertUtils#getIndexedUsageMap}.
+     */
+    static Map<Integer, List<BatteryDiffEntry>> getIndexedUsageMap(
+            final Context context,
+            final int timeSlotSize,
+            final long[] batteryHistoryKeys,
+            final Map<Long, Map<String, BatteryHistEntry>> batteryHistoryMap,
+            final boolean purgeLowPercentageAndFakeData) {
+        if (batteryHistoryMap == null || batteryHistoryMap.isEmpty()) {
+            return new HashMap<>();
+        }
+        final Map<Integer, List<BatteryDiffEntry>> resultMap = new HashMap<>();
+        // Each time slot usage diff data =
+        //     Math.abs(timestamp[i+2] data - timestamp[i+1] data) +
+        //     Math.abs(timestamp[i+1] data - timestamp[i] data);
+        // since we want to aggregate every two hours data into a single time slot.
+        final int timestampStride = 2;
+        for (int index = 0; index < timeSlotSize; index++) {
+            final Long currentTimestamp =
+                Long.valueOf(batteryHistoryKeys[index * timestampStride]);
+            final Long nextTimestamp =
+                Long.valueOf(batteryHistoryKeys[index * timestampStride + 1]);
+            final Long nextTwoTimestamp =
+                Long.valueOf(batteryHistoryKeys[index * timestampStride + 2]);
+            // Fetches BatteryHistEntry data from corresponding time slot.
+            final Map<String, BatteryHistEntry> currentBatteryHistMap =
+                batteryHistoryMap.getOrDefault(currentTimestamp, EMPTY_BATTERY_MAP);
+            final Map<String, BatteryHistEntry> nextBatteryHistMap =
+                batteryHistoryMap.getOrDefault(nextTimestamp, EMPTY_BATTERY_MAP);
+            final Map<String, BatteryHistEntry> nextTwoBatteryHistMap =
+                batteryHistoryMap.getOrDefault(nextTwoTimestamp, EMPTY_BATTERY_MAP);
+            // We should not get the empty list since we have at least one fake data to record
+            // the battery level and status in each time slot, the empty list is used to
+            // represent there is no enough data to apply interpolation arithmetic.
+            if (currentBatteryHistMap.isEmpty()
+                    || nextBatteryHistMap.isEmpty()
+                    || nextTwoBatteryHistMap.isEmpty()) {
+                resultMap.put(Integer.valueOf(index), new ArrayList<BatteryDiffEntry>());
+                continue;
+            }
+
+            // Collects all keys in these three time slot records as all populations.
+            final Set<String> allBatteryHistEntryKeys = new HashSet<>();
+            allBatteryHistEntryKeys.addAll(currentBatteryHistMap.keySet());
+            allBatteryHistEntryKeys.addAll(nextBatteryHistMap.keySet());
+            allBatteryHistEntryKeys.addAll(nextTwoBatteryHistMap.keySet());
+
+            double totalConsumePower = 0.0;
+            final List<BatteryDiffEntry> batteryDiffEntryList = new ArrayList<>();
+            // Adds a specific time slot BatteryDiffEntry list into result map.
+            resultMap.put(Integer.valueOf(index), batteryDiffEntryList);
+
+            // Calculates all packages diff usage data in a specific time slot.
+            for (String key : allBatteryHistEntryKeys) {
+                final BatteryHistEntry currentEntry =
+                    currentBatteryHistMap.getOrDefault(key, EMPTY_BATTERY_HIST_ENTRY);
+                final BatteryHistEntry nextEntry =
+                    nextBatteryHistMap.getOrDefault(key, EMPTY_BATTERY_HIST_ENTRY);
+                final BatteryHistEntry nextTwoEntry =
+                    nextTwoBatteryHistMap.getOrDefault(key, EMPTY_BATTERY_HIST_ENTRY);
+                // Cumulative values is a specific time slot for a specific app.
+                long foregroundUsageTimeInMs =
+                    getDiffValue(
+                        currentEntry.mForegroundUsageTimeInMs,
+                        nextEntry.mForegroundUsageTimeInMs,
+                        nextTwoEntry.mForegroundUsageTimeInMs);
+                long backgroundUsageTimeInMs =
+                    getDiffValue(
+                        currentEntry.mBackgroundUsageTimeInMs,
+                        nextEntry.mBackgroundUsageTimeInMs,
+                        nextTwoEntry.mBackgroundUsageTimeInMs);
+                double consumePower =
+                    getDiffValue(
+                        currentEntry.mConsumePower,
+                        nextEntry.mConsumePower,
+                        nextTwoEntry.mConsumePower);
+                // Excludes entry since we don't have enough data to calculate.
+                if (foregroundUsageTimeInMs == 0
+                        && backgroundUsageTimeInMs == 0
+                        && consumePower == 0) {
+                    continue;
+                }
+                final BatteryHistEntry selectedBatteryEntry =
+                    selectBatteryHistEntry(currentEntry, nextEntry, nextTwoEntry);
+                if (selectedBatteryEntry == null) {
+                    continue;
+                }
+                // Forces refine the cumulative value since it may introduce deviation
+                // error since we will apply the interpolation arithmetic.
+                final float totalUsageTimeInMs =
+                    foregroundUsageTimeInMs + backgroundUsageTimeInMs;
+                if (totalUsageTimeInMs > ConvertUtils.TOTAL_TIME_THRESHOLD) {
+                    final float ratio = ConvertUtils.TOTAL_TIME_THRESHOLD / totalUsageTimeInMs;
+                    foregroundUsageTimeInMs =
+                        Math.round(foregroundUsageTimeInMs * ratio);
+                    backgroundUsageTimeInMs =
+                        Math.round(backgroundUsageTimeInMs * ratio);
+                    consumePower = consumePower * ratio;
+                }
+                totalConsumePower += consumePower;
+                batteryDiffEntryList.add(
+                    new BatteryDiffEntry(
+                        context,
+                        foregroundUsageTimeInMs,
+                        backgroundUsageTimeInMs,
+                        consumePower,
+                        selectedBatteryEntry));
+            }
+            // Sets total consume power data into all BatteryDiffEntry in the same slot.
+            for (BatteryDiffEntry diffEntry : batteryDiffEntryList) {
+                diffEntry.setTotalConsumePower(totalConsumePower);
+            }
+        }
+        insert24HoursData(BatteryChartView.SELECTED_INDEX_ALL, resultMap);
+        if (purgeLowPercentageAndFakeData) {
+            purgeLowPercentageAndFakeData(context, resultMap);
+        }
+        return resultMap;
+    }
+
+    private static void insert24HoursData(
+            final int desiredIndex,
+            final Map<Integer, List<BatteryDiffEntry>> indexedUsageMap) {
+        final Map<String, BatteryDiffEntry> resultMap = new HashMap<>();
+        double totalConsumePower = 0.0;
+        // Loops for all BatteryDiffEntry and aggregate them together.
+        for (List<BatteryDiffEntry> entryList : indexedUsageMap.values()) {
+            for (BatteryDiffEntry entry : entryList) {
+                final String key = entry.mBatteryHistEntry.getKey();
+                final BatteryDiffEntry oldBatteryDiffEntry = resultMap.get(key);
+                // Creates new BatteryDiffEntry if we don't have it.
+                if (oldBatteryDiffEntry == null) {
+                    resultMap.put(key, entry.clone());
+                } else {
+                    // Sums up some fields data into the existing one.
+                    oldBatteryDiffEntry.mForegroundUsageTimeInMs +=
+                        entry.mForegroundUsageTimeInMs;
+                    oldBatteryDiffEntry.mBackgroundUsageTimeInMs +=
+                        entry.mBackgroundUsageTimeInMs;
+                    oldBatteryDiffEntry.mConsumePower += entry.mConsumePower;
+                }
+                totalConsumePower += entry.mConsumePower;
+            }
+        }
+        final List<BatteryDiffEntry> resultList = new ArrayList<>(resultMap.values());
+        // Sets total 24 hours consume power data into all BatteryDiffEntry.
+        for (BatteryDiffEntry entry : resultList) {
+            entry.setTotalConsumePower(totalConsumePower);
+        }
+        indexedUsageMap.put(Integer.valueOf(desiredIndex), resultList);
+    }
+
+    // Removes low percentage data and fake usage data, which will be zero value.
+    private static void purgeLowPercentageAndFakeData(
+            final Context context,
+            final Map<Integer, List<BatteryDiffEntry>> indexedUsageMap) {
+        final List<CharSequence> backgroundUsageTimeHideList =
+                FeatureFactory.getFactory(context)
+                        .getPowerUsageFeatureProvider(context)
+                        .getHideBackgroundUsageTimeList(context);
+        for (List<BatteryDiffEntry> entries : indexedUsageMap.values()) {
+            final Iterator<BatteryDiffEntry> iterator = entries.iterator();
+            while (iterator.hasNext()) {
+                final BatteryDiffEntry entry = iterator.next();
+                if (entry.getPercentOfTotal() < ConvertUtils.PERCENTAGE_OF_TOTAL_THRESHOLD
+                        || ConvertUtils.FAKE_PACKAGE_NAME.equals(entry.getPackageName())) {
+                    iterator.remove();
+                }
+                final String packageName = entry.getPackageName();
+                if (packageName != null
+                        && !backgroundUsageTimeHideList.isEmpty()
+                        && backgroundUsageTimeHideList.contains(packageName)) {
+                  entry.mBackgroundUsageTimeInMs = 0;
+                }
+            }
+        }
+    }
+
+    private static long getDiffValue(long v1, long v2, long v3) {
+        return (v2 > v1 ? v2 - v1 : 0) + (v3 > v2 ? v3 - v2 : 0);
+    }
+
+    private static double getDiffValue(double v1, double v2, double v3) {
+        return (v2 > v1 ? v2 - v1 : 0) + (v3 > v2 ? v3 - v2 : 0);
+    }
+
+    private static BatteryHistEntry selectBatteryHistEntry(
+            BatteryHistEntry entry1,
+            BatteryHistEntry entry2,
+            BatteryHistEntry entry3) {
+        if (entry1 != null && entry1 != EMPTY_BATTERY_HIST_ENTRY) {
+            return entry1;
+        } else if (entry2 != null && entry2 != EMPTY_BATTERY_HIST_ENTRY) {
+            return entry2;
+        } else {
+            return entry3 != null && entry3 != EMPTY_BATTERY_HIST_ENTRY
+                ? entry3 : null;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.slices;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Measures a full rebuild of slices_index.db and reports wall time and rows per second through
+ * instrumentation status, e.g.
+ * {@code atest SettingsUnitTests:SlicesIndexerBenchmarkTest}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SlicesIndexerBenchmarkTest {
+
+    private static final String TAG = "SlicesIndexerBenchmark";
+    private static final int ITERATIONS = 5;
+
+    private Context mContext;
+    private SlicesDatabaseHelper mHelper;
+
+    @Before
+    public void setUp() {
+        mContext = ApplicationProvider.getApplicationContext();
+        mHelper = SlicesDatabaseHelper.getInstance(mContext);
+    }
+
+    @Test
+    public void indexSliceData_fullRebuild() {
+        final List<Long> wallTimes = new ArrayList<>();
+        long rowCount = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            // Drops the table and the indexed state so the next run is a cold rebuild.
+            mHelper.reconstruct(mHelper.getWritableDatabase());
+
+            final long startTime = SystemClock.elapsedRealtime();
+            new SlicesIndexer(mContext).indexSliceData();
+            wallTimes.add(SystemClock.elapsedRealtime() - startTime);
+
+            final SQLiteDatabase database = mHelper.getReadableDatabase();
+            rowCount = DatabaseUtils.queryNumEntries(database,
+                    SlicesDatabaseHelper.Tables.TABLE_SLICES_INDEX);
+        }
+
+        assertThat(rowCount).isGreaterThan(0L);
+        Collections.sort(wallTimes);
+        final long median = wallTimes.get(wallTimes.size() / 2);
+        final double rowsPerSecond = median == 0 ? rowCount : rowCount * 1000d / median;
+
+        final Bundle results = new Bundle();
+        results.putString("SlicesIndexer_wall_time_median_ms", String.valueOf(median));
+        results.putString("SlicesIndexer_wall_time_min_ms", String.valueOf(wallTimes.get(0)));
+        results.putString("SlicesIndexer_wall_time_max_ms",
+                String.valueOf(wallTimes.get(wallTimes.size() - 1)));
+        results.putString("SlicesIndexer_rows", String.valueOf(rowCount));
+        results.putString("SlicesIndexer_rows_per_second", String.format("%.1f", rowsPerSecond));
+        Log.i(TAG, results.toString());
+        getInstrumentation().sendStatus(0, results);
+    }
+}